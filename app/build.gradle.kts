@@ -1,6 +1,9 @@
 plugins {
     // Apply the application plugin to add support for building a CLI application in Java.
     application
+
+    // Apply the JMH plugin to add the jmh source set with micro-benchmarks (run: gradle jmh).
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 repositories {
@@ -25,6 +28,13 @@ java {
     }
 }
 
+jmh {
+    // Benchmarks are in src/jmh/java; they use a stub SMT solver, so z3 is not needed.
+    jmhVersion.set("1.37")
+    jvmArgsAppend.add("--enable-preview")
+    resultFormat.set("JSON")
+}
+
 application {
     // Define the main class for the application.
     mainClass.set("cora.App")
@@ -0,0 +1,66 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.reader;
+
+import charlie.trs.TRS;
+import charlie.trs.TrsFactory.TrsKind;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes to parse some of the files in the benchmarks/ directory.  The files
+ * are read into memory beforehand, so only the parsing (and type checking) is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class ParserBenchmark {
+  @Param({"tpdb_itrs/practical3.itrs", "tpdb_itrs/a.03.itrs", "esop2024/ex_06_factfold.lcstrs",
+          "mfcs2024/lambda.lcstrs", "extra/ack.mstrs", "tpdb_strs/02Ackermann.strs"})
+  public String file;
+
+  private String _text;
+  private String _extension;
+
+  /**
+   * Returns the location of the benchmarks/ directory: benchmarks are run either from the root of
+   * the repository or from the app/ directory.
+   */
+  static Path benchmarkDirectory() {
+    Path dir = Path.of("benchmarks");
+    return Files.isDirectory(dir) ? dir : Path.of("..", "benchmarks");
+  }
+
+  @Setup
+  public void setup() throws IOException {
+    _text = Files.readString(benchmarkDirectory().resolve(file));
+    _extension = file.substring(file.lastIndexOf('.') + 1);
+  }
+
+  @Benchmark
+  public TRS parse() {
+    if (_extension.equals("itrs")) return ITrsInputReader.readTrsFromString(_text);
+    TrsKind kind = CoraInputReader.queryKindForExtension(_extension);
+    return CoraInputReader.readTrsFromString(_text, kind);
+  }
+}
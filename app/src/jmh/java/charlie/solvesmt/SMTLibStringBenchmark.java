@@ -0,0 +1,65 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import charlie.smt.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the generation of SMT-LIB input for a problem with the given number of constraints,
+ * each a small linear inequality or disjunction over a shared pool of variables.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class SMTLibStringBenchmark {
+  @Param({"100", "1000"})
+  public int constraints;
+
+  private SmtProblem _problem;
+  private SMTLibString _builder;
+
+  @Setup
+  public void setup() {
+    _problem = new SmtProblem();
+    ArrayList<IVar> ivars = new ArrayList<IVar>();
+    ArrayList<BVar> bvars = new ArrayList<BVar>();
+    for (int i = 0; i < 20; i++) {
+      ivars.add(_problem.createIntegerVariable());
+      bvars.add(_problem.createBooleanVariable());
+    }
+    for (int i = 0; i < constraints; i++) {
+      IVar x = ivars.get(i % 20), y = ivars.get((7 * i + 3) % 20);
+      IntegerExpression left = SmtFactory.createAddition(SmtFactory.createMultiplication(
+        SmtFactory.createValue(i % 5 + 1), x), SmtFactory.createValue(i));
+      Constraint c = SmtFactory.createGeq(left, y);
+      if (i % 3 == 0) c = SmtFactory.createDisjunction(c, bvars.get(i % 20));
+      _problem.require(c);
+    }
+    _builder = new SMTLibString(SMTLibString.Version.V26, SMTLibString.Logic.QFLIA);
+  }
+
+  @Benchmark
+  public String buildSmtlibString() {
+    return _builder.buildSmtlibString(_problem);
+  }
+}
@@ -0,0 +1,35 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import charlie.smt.SmtProblem;
+import charlie.smt.SmtSolver;
+
+/**
+ * A StubSmtSolver answers every query without doing any work: satisfiability queries get MAYBE,
+ * and validity queries get false.  This is what Cora would see from a solver that always gives
+ * up, so the benchmarks that use it measure only Cora's own code, give the same results on every
+ * run, and do not need z3 to be installed.
+ */
+public class StubSmtSolver implements SmtSolver {
+  public Answer checkSatisfiability(SmtProblem problem) {
+    return new Answer.MAYBE("stub solver");
+  }
+
+  public boolean checkValidity(SmtProblem problem) {
+    return false;
+  }
+}
@@ -0,0 +1,70 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package cora.data.digraph;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the computation of strongly connected components on deterministic graphs: a long chain
+ * of small cycles (many SCCs) and a pseudo-random graph with a few edges per vertex.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class SCCBenchmark {
+  @Param({"100", "1000", "5000"})
+  public int vertices;
+
+  private Digraph _chain;
+  private Digraph _random;
+
+  @Setup
+  public void setup() {
+    // vertices 3k, 3k+1 and 3k+2 form a cycle, and the cycle for k is connected to that for k+1
+    _chain = new Digraph(vertices);
+    for (int i = 0; i < vertices; i++) {
+      int k = i - i % 3;
+      _chain.addEdge(i, Math.min(i % 3 == 2 ? k : i + 1, vertices - 1));
+      if (i % 3 == 0 && i + 3 < vertices) _chain.addEdge(i, i + 3);
+    }
+    // a linear congruential generator with a fixed seed, so every run uses the same graph
+    _random = new Digraph(vertices);
+    long seed = 42;
+    for (int i = 0; i < 3 * vertices; i++) {
+      seed = (seed * 6364136223846793005L + 1442695040888963407L);
+      int from = (int)((seed >>> 33) % vertices);
+      seed = (seed * 6364136223846793005L + 1442695040888963407L);
+      int to = (int)((seed >>> 33) % vertices);
+      _random.addEdge(from, to);
+    }
+  }
+
+  @Benchmark
+  public List<Integer> chainOfCycles() {
+    return new SCC(_chain).getTopologicalOrder();
+  }
+
+  @Benchmark
+  public List<Integer> randomGraph() {
+    return new SCC(_random).getTopologicalOrder();
+  }
+}
@@ -0,0 +1,82 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package cora.reduction;
+
+import charlie.reader.CoraInputReader;
+import charlie.terms.Term;
+import charlie.trs.TRS;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Reducer.normalise on terms that grow with a parameter: the unary sum and product of two
+ * numbers n, and a calculation over the integers that takes n steps.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class ReducerBenchmark {
+  @Param({"10", "50", "200"})
+  public int size;
+
+  private Reducer _unary;
+  private Reducer _integer;
+  private Term _sum;
+  private Term _product;
+  private Term _loop;
+
+  /** Returns s(s(...(o)...)) with n occurrences of s. */
+  private static String numeral(int n) {
+    return "s(".repeat(n) + "o" + ")".repeat(n);
+  }
+
+  @Setup
+  public void setup() {
+    TRS unary = CoraInputReader.readTrsFromString(
+      "o :: nat s :: nat -> nat add :: nat -> nat -> nat mul :: nat -> nat -> nat\n" +
+      "add(o, y) -> y add(s(x), y) -> s(add(x, y))\n" +
+      "mul(o, y) -> o mul(s(x), y) -> add(y, mul(x, y))\n");
+    TRS integer = CoraInputReader.readTrsFromString(
+      "sum :: Int -> Int -> Int\n" +
+      "sum(x, a) -> sum(x - 1, a + x) | x > 0\n" +
+      "sum(x, a) -> a | x <= 0\n");
+    _unary = new Reducer(unary);
+    _integer = new Reducer(integer);
+    _sum = CoraInputReader.readTerm("add(" + numeral(size) + ", " + numeral(size) + ")", unary);
+    _product = CoraInputReader.readTerm("mul(" + numeral(size) + ", " + numeral(size) + ")",
+                                        unary);
+    _loop = CoraInputReader.readTerm("sum(" + size + ", 0)", integer);
+  }
+
+  @Benchmark
+  public Object normaliseSum() {
+    return _unary.normalise(_sum);
+  }
+
+  @Benchmark
+  public Object normaliseProduct() {
+    return _unary.normalise(_product);
+  }
+
+  @Benchmark
+  public Object normaliseCalculation() {
+    return _integer.normalise(_loop);
+  }
+}
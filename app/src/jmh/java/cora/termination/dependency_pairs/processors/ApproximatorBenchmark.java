@@ -0,0 +1,69 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package cora.termination.dependency_pairs.processors;
+
+import charlie.reader.CoraInputReader;
+import charlie.solvesmt.StubSmtSolver;
+import cora.config.ProverContext;
+import cora.data.digraph.Digraph;
+import cora.termination.dependency_pairs.DPGenerator;
+import cora.termination.dependency_pairs.Problem;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Approximator.problemToGraph on a DP problem with a given number of DPs, where every
+ * function fi calls f(i+1) and f(i+2).  The SMT solver is a stub, so only the unification and
+ * approximation work inside Cora is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class ApproximatorBenchmark {
+  @Param({"10", "40"})
+  public int functions;
+
+  @Param({"1", "4"})
+  public int threads;
+
+  private Problem _problem;
+  private ProverContext _context;
+
+  @Setup
+  public void setup() {
+    StringBuilder program = new StringBuilder();
+    for (int i = 0; i < functions; i++) program.append("f" + i + " :: Int -> Int -> Int\n");
+    for (int i = 0; i < functions; i++) {
+      int j = (i + 1) % functions, k = (i + 2) % functions;
+      program.append("f" + i + "(x, y) -> f" + j + "(x - 1, y + x) | x > " + i + "\n");
+      program.append("f" + i + "(x, y) -> f" + k + "(y, x) | x < y\n");
+    }
+    _problem = DPGenerator.generateProblemFromTrs(
+      CoraInputReader.readTrsFromString(program.toString()));
+    _context = new ProverContext(new StubSmtSolver(), Set.of(), threads, false, Map.of());
+  }
+
+  @Benchmark
+  public Digraph problemToGraph() {
+    return _context.run(() -> Approximator.problemToGraph(_problem));
+  }
+}
@@ -0,0 +1,85 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package cora.termination.reduction_pairs;
+
+import charlie.reader.CoraInputReader;
+import charlie.terms.FunctionSymbol;
+import charlie.terms.TermPrinter;
+import charlie.trs.Rule;
+import charlie.trs.TRS;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Measures how long it takes to simplify the HORPO requirements for all rules of a TRS into an
+ * SMT problem.  No SMT solver is called: this only measures the generation of the constraints.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class HorpoConstraintListBenchmark {
+  @Param({"first-order", "higher-order"})
+  public String system;
+
+  private TRS _trs;
+  private Set<String> _symbols;
+
+  @Setup
+  public void setup() {
+    if (system.equals("first-order")) {
+      _trs = CoraInputReader.readTrsFromString(
+        "o :: nat s :: nat -> nat add :: nat -> nat -> nat mul :: nat -> nat -> nat\n" +
+        "ack :: nat -> nat -> nat fact :: nat -> Int -> Int\n" +
+        "add(o, y) -> y add(s(x), y) -> s(add(x, y))\n" +
+        "mul(o, y) -> o mul(s(x), y) -> add(y, mul(x, y))\n" +
+        "ack(o, y) -> s(y) ack(s(x), o) -> ack(x, s(o)) ack(s(x), s(y)) -> ack(x, ack(s(x), y))\n" +
+        "fact(o, z) -> z fact(s(x), z) -> fact(x, z * 2) | z > 0\n");
+    }
+    else {
+      _trs = CoraInputReader.readTrsFromString(
+        "nil :: list cons :: Int -> list -> list\n" +
+        "map :: (Int -> Int) -> list -> list\n" +
+        "fold :: (Int -> Int -> Int) -> Int -> list -> Int\n" +
+        "filter :: (Int -> Bool) -> list -> list cond :: Bool -> Int -> list -> list\n" +
+        "map(F, nil) -> nil map(F, cons(x, l)) -> cons(F(x), map(F, l))\n" +
+        "fold(G, z, nil) -> z fold(G, z, cons(x, l)) -> G(x, fold(G, z, l))\n" +
+        "filter(P, nil) -> nil\n" +
+        "filter(P, cons(x, l)) -> cond(P(x), x, filter(P, l))\n" +
+        "cond(true, x, l) -> cons(x, l) cond(false, x, l) -> l\n");
+    }
+    _symbols = _trs.queryAlphabet().getSymbols().stream().map(FunctionSymbol::queryName)
+                   .collect(Collectors.toSet());
+  }
+
+  @Benchmark
+  public Object simplifyAll() {
+    HorpoConstraintList lst =
+      new HorpoConstraintList(new HorpoParameters(1000, false), new TermPrinter(_symbols));
+    for (int i = 0; i < _trs.queryRuleCount(); i++) {
+      Rule rule = _trs.queryRule(i);
+      lst.store(rule.queryLeftSide(), HorpoConstraintList.StartRelation.Greater,
+                rule.queryRightSide(), rule.queryConstraint());
+    }
+    while (!lst.isFullySimplified()) lst.simplify();
+    return lst;
+  }
+}
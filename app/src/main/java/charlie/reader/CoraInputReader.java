@@ -278,19 +278,29 @@ public class CoraInputReader extends TermTyper {
     return readTrsFromString(str, TrsFactory.CORA);
   }
 
+  /**
+   * Returns the kind of TRS that is expected in a file with the given extension (in lower case),
+   * or null if the extension is not known.
+   */
+  public static TrsKind queryKindForExtension(String extension) {
+    if (extension.equals("trs") || extension.equals("mstrs")) return TrsFactory.MSTRS;
+    if (extension.equals("lctrs")) return TrsFactory.LCTRS;
+    if (extension.equals("lcstrs")) return TrsFactory.LCSTRS;
+    if (extension.equals("atrs") || extension.equals("strs")) return TrsFactory.STRS;
+    if (extension.equals("cfs") || extension.equals("afs")) return TrsFactory.CFS;
+    if (extension.equals("ams") || extension.equals("afsm")) return TrsFactory.AMS;
+    if (extension.equals("cora")) return TrsFactory.CORA;
+    return null;
+  }
+
   /** Reads the given file, parses the program in it, and returns the TRS that it defines. */
   public static TRS readTrsFromFile(String filename) throws IOException {
     ErrorCollector collector = new ErrorCollector();
-    TrsKind kind = TrsFactory.CORA;
     String extension =
       filename.substring(filename.lastIndexOf(".") + 1, filename.length()).toLowerCase();
-    if (extension.equals("trs") || extension.equals("mstrs")) kind = TrsFactory.MSTRS;
-    else if (extension.equals("lctrs")) kind = TrsFactory.LCTRS;
-    else if (extension.equals("lcstrs")) kind = TrsFactory.LCSTRS;
-    else if (extension.equals("atrs") || extension.equals("strs")) kind = TrsFactory.STRS;
-    else if (extension.equals("cfs") || extension.equals("afs")) kind = TrsFactory.CFS;
-    else if (extension.equals("ams") || extension.equals("afsm")) kind = TrsFactory.AMS;
-    else if (!extension.equals("cora")) {
+    TrsKind kind = queryKindForExtension(extension);
+    if (kind == null) {
+      kind = TrsFactory.CORA;
       collector.addError("Unexpected file extension: " + extension + ".  For default format, " +
         "use <filename>.cora");
     }
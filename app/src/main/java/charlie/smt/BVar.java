@@ -16,10 +16,12 @@
 package charlie.smt;
 
 import charlie.exceptions.SmtEvaluationException;
+import java.util.function.Supplier;
 
 public final class BVar extends Constraint {
   private int _index;
   private String _name;
+  private Supplier<String> _nameSupplier;
 
   /** The constructors are hidden, since Constraints should be made through the SmtFactory. */
   BVar(int i) {
@@ -32,11 +34,21 @@ public final class BVar extends Constraint {
     _name = "[" + name + "]";
   }
 
+  /** Here, the name is only computed when it is first asked for. */
+  BVar(int i, Supplier<String> name) {
+    _index = i;
+    _nameSupplier = name;
+  }
+
   public int queryIndex() {
     return _index;
   }
 
   public String queryName() {
+    if (_name == null) {
+      _name = "[" + _nameSupplier.get() + "]";
+      _nameSupplier = null;
+    }
     return _name;
   }
 
@@ -45,7 +57,7 @@ public final class BVar extends Constraint {
   }
 
   public boolean evaluate(Valuation val) {
-    if (val == null) throw new SmtEvaluationException("b" + _index + " (" + _name + ")");
+    if (val == null) throw new SmtEvaluationException("b" + _index + " (" + queryName() + ")");
     else return val.queryBoolAssignment(_index);
   }
 
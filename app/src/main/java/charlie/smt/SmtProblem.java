@@ -18,6 +18,7 @@ package charlie.smt;
 import java.lang.Iterable;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.function.Supplier;
 
 /**
  * An SmtProblem keeps track of a list of integer and boolean variables, as well as a list of
@@ -64,6 +65,16 @@ public class SmtProblem implements Iterable<Constraint> {
     return new BVar(_lastBooleanIndex, name);
   }
 
+  /**
+   * Creates a boolean variable with an index that has not yet been used, and a name that is
+   * computed by the given supplier only when the variable is first printed.  This is useful when
+   * the name is expensive to build, and most variables are never printed.
+   */
+  public BVar createBooleanVariable(Supplier<String> name) {
+    _lastBooleanIndex++;
+    return new BVar(_lastBooleanIndex, name);
+  }
+
   /**
    * This requires that the constraint holds.  Note that all variables in the constraint must have
    * been created through the createIntegerVariable or createBooleanVariable functions, since
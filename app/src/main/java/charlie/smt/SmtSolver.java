@@ -15,6 +15,9 @@
 
 package charlie.smt;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * An SmtSolver is an object that takes a Constraint and determines its satisfiability or validity.
  */
@@ -50,4 +53,18 @@ public interface SmtSolver {
    * simply could not determine whether a solution exists.
    */
   boolean checkValidity(SmtProblem problem);
+
+  /**
+   * Given a list of SmtProblems, this function tries to prove each of them valid, and returns the
+   * results in the same order, with the same meaning as for checkValidity.
+   *
+   * The default implementation simply checks the problems one by one.  Solvers with a high cost
+   * per query -- for instance because they start an external process -- may instead answer the
+   * whole batch together.
+   */
+  default List<Boolean> checkValidityBatch(List<SmtProblem> problems) {
+    ArrayList<Boolean> ret = new ArrayList<Boolean>();
+    for (SmtProblem problem : problems) ret.add(checkValidity(problem));
+    return ret;
+  }
 }
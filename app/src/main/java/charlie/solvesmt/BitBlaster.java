@@ -0,0 +1,412 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import charlie.smt.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The BitBlaster translates Constraints into clauses for a SatSolver.  The boolean structure is
+ * encoded with a Tseitin translation; integer expressions are encoded as two's complement bit
+ * vectors, with ripple-carry adders and shift-and-add multipliers.
+ *
+ * This requires every integer variable to be given a range before it is used (see setRange).  The
+ * range of every subexpression is then computed from the ranges of its parts, and its bit vector
+ * is made just wide enough to hold any value in that range, so the arithmetic never overflows:
+ * within the given ranges, the encoding is exact.
+ *
+ * Division and modulo are not supported; see isSupported.  Expressions whose range does not fit in
+ * MAX_WIDTH bits cause an ArithmeticException.
+ */
+final class BitBlaster {
+  static final int MAX_WIDTH = 62;
+
+  /**
+   * A bit vector: the literals for the bits, least significant first (the last is the sign bit),
+   * and bounds on the value it may take.
+   */
+  private record Bits(int[] lits, long min, long max) {}
+
+  /**
+   * The key under which a gate is cached: the kind of gate ('&' or '^'), and its sorted input
+   * literals.  (Unlike the default for records, arrays are compared by their contents.)
+   */
+  private record Gate(char kind, int[] lits) {
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof Gate g && g.kind == kind && Arrays.equals(g.lits, lits);
+    }
+    @Override
+    public int hashCode() { return 31 * kind + Arrays.hashCode(lits); }
+  }
+
+  private final SatSolver _solver;
+  /** A literal that is always true; its negation is always false. */
+  private final int _true;
+  private final TreeMap<Integer,Integer> _boolVars;
+  private final TreeMap<Integer,Bits> _intVars;
+  private final TreeMap<Integer,long[]> _ranges;
+  private final IdentityHashMap<Constraint,Integer> _encoded;
+  private final HashMap<Gate,Integer> _gates;
+
+  BitBlaster(SatSolver solver) {
+    _solver = solver;
+    _true = solver.newVariable();
+    solver.addClause(_true);
+    _boolVars = new TreeMap<Integer,Integer>();
+    _intVars = new TreeMap<Integer,Bits>();
+    _ranges = new TreeMap<Integer,long[]>();
+    _encoded = new IdentityHashMap<Constraint,Integer>();
+    _gates = new HashMap<Gate,Integer>();
+  }
+
+  /** Returns whether the given constraint can be encoded (that is, has no division or modulo). */
+  static boolean isSupported(Constraint constraint) {
+    return switch (constraint) {
+      case Not n -> isSupported(n.queryChild());
+      case Conjunction c -> {
+        for (int i = 1; i <= c.numChildren(); i++) {
+          if (!isSupported(c.queryChild(i))) yield false;
+        }
+        yield true;
+      }
+      case Disjunction d -> {
+        for (int i = 1; i <= d.numChildren(); i++) {
+          if (!isSupported(d.queryChild(i))) yield false;
+        }
+        yield true;
+      }
+      case Iff iff -> isSupported(iff.queryLeft()) && isSupported(iff.queryRight());
+      case Geq0 g -> isSupported(g.queryExpression());
+      case Is0 i -> isSupported(i.queryExpression());
+      case Neq0 n -> isSupported(n.queryExpression());
+      default -> true;
+    };
+  }
+
+  private static boolean isSupported(IntegerExpression expr) {
+    return switch (expr) {
+      case CMult c -> isSupported(c.queryChild());
+      case Addition a -> {
+        for (int i = 1; i <= a.numChildren(); i++) {
+          if (!isSupported(a.queryChild(i))) yield false;
+        }
+        yield true;
+      }
+      case Multiplication m -> {
+        for (int i = 1; i <= m.numChildren(); i++) {
+          if (!isSupported(m.queryChild(i))) yield false;
+        }
+        yield true;
+      }
+      case Division d -> false;
+      case Modulo m -> false;
+      default -> true;
+    };
+  }
+
+  /**
+   * Fixes the range of the integer variable with the given index to min..max.  This should be
+   * called before the variable is first encoded; later calls have no effect.
+   */
+  void setRange(int index, long min, long max) {
+    if (!_ranges.containsKey(index)) _ranges.put(index, new long[] { min, max });
+  }
+
+  /** Adds clauses to the solver that force the given constraint to hold. */
+  void require(Constraint constraint) {
+    switch (constraint) {
+      case Truth t: break;
+      case Conjunction c:
+        for (int i = 1; i <= c.numChildren(); i++) require(c.queryChild(i));
+        break;
+      case Disjunction d:
+        int[] clause = new int[d.numChildren()];
+        for (int i = 1; i <= d.numChildren(); i++) clause[i-1] = encode(d.queryChild(i));
+        _solver.addClause(clause);
+        break;
+      default:
+        _solver.addClause(encode(constraint));
+    }
+  }
+
+  /**
+   * Returns a fresh literal that, if set to true, forces every integer variable with an index in
+   * the given list to take a value in -2^(width-1)..2^(width-1)-1.  This is used to search in
+   * small ranges first, by passing the literal as an assumption to the SatSolver.
+   */
+  int restrictWidth(List<Integer> indexes, int width) {
+    int guard = _solver.newVariable();
+    for (int index : indexes) {
+      int[] lits = variable(index).lits();
+      int sign = lits[lits.length - 1];
+      for (int i = width - 1; i < lits.length - 1; i++) {
+        _solver.addClause(-guard, -lits[i], sign);
+        _solver.addClause(-guard, lits[i], -sign);
+      }
+    }
+    return guard;
+  }
+
+  /** Returns the boolean and integer variables that were encoded, as a valuation in the model. */
+  Valuation queryModel() {
+    Valuation val = new Valuation();
+    for (var entry : _boolVars.entrySet()) {
+      val.setBool(entry.getKey(), _solver.modelValue(entry.getValue()));
+    }
+    for (var entry : _intVars.entrySet()) {
+      int[] lits = entry.getValue().lits();
+      long value = _solver.modelValue(lits[lits.length - 1]) ? -(1L << (lits.length - 1)) : 0;
+      for (int i = 0; i < lits.length - 1; i++) {
+        if (_solver.modelValue(lits[i])) value += 1L << i;
+      }
+      val.setInt(entry.getKey(), (int)value);
+    }
+    return val;
+  }
+
+  /** Returns a literal that is true exactly if the given constraint holds. */
+  int encode(Constraint constraint) {
+    Integer known = _encoded.get(constraint);
+    if (known != null) return known;
+    int ret = switch (constraint) {
+      case Truth t -> _true;
+      case Falsehood f -> -_true;
+      case BVar x -> boolVariable(x.queryIndex());
+      case NBVar x -> -boolVariable(x.queryIndex());
+      case Not n -> -encode(n.queryChild());
+      case Conjunction c -> {
+        int[] lits = new int[c.numChildren()];
+        for (int i = 1; i <= c.numChildren(); i++) lits[i-1] = encode(c.queryChild(i));
+        yield andAll(lits);
+      }
+      case Disjunction d -> {
+        int[] lits = new int[d.numChildren()];
+        for (int i = 1; i <= d.numChildren(); i++) lits[i-1] = -encode(d.queryChild(i));
+        yield -andAll(lits);
+      }
+      case Iff iff -> -xor(encode(iff.queryLeft()), encode(iff.queryRight()));
+      case Geq0 g -> {
+        Bits bits = encode(g.queryExpression());
+        if (bits.min() >= 0) yield _true;
+        if (bits.max() < 0) yield -_true;
+        yield -bits.lits()[bits.lits().length - 1];
+      }
+      case Is0 i -> isZero(encode(i.queryExpression()));
+      case Neq0 n -> -isZero(encode(n.queryExpression()));
+      default -> throw new IllegalArgumentException("Cannot encode constraint " + constraint);
+    };
+    _encoded.put(constraint, ret);
+    return ret;
+  }
+
+  private int boolVariable(int index) {
+    Integer x = _boolVars.get(index);
+    if (x == null) {
+      x = _solver.newVariable();
+      _boolVars.put(index, x);
+    }
+    return x;
+  }
+
+  /** Returns the bit vector for the integer variable with the given index. */
+  private Bits variable(int index) {
+    Bits ret = _intVars.get(index);
+    if (ret != null) return ret;
+    long[] range = _ranges.get(index);
+    if (range == null) {
+      throw new IllegalArgumentException("No range given for integer variable i" + index + ".");
+    }
+    int[] lits = new int[width(range[0], range[1])];
+    for (int i = 0; i < lits.length; i++) lits[i] = _solver.newVariable();
+    // if the range is smaller than the bits can hold, we must add range constraints; these are
+    // computed on all values that the bits can represent
+    long lowest = -(1L << (lits.length - 1)), highest = (1L << (lits.length - 1)) - 1;
+    Bits all = new Bits(lits, lowest, highest);
+    if (range[0] > lowest) _solver.addClause(-sign(add(all, constant(-range[0]))));
+    if (range[1] < highest) _solver.addClause(-sign(add(constant(range[1]), negate(all))));
+    ret = new Bits(lits, range[0], range[1]);
+    _intVars.put(index, ret);
+    return ret;
+  }
+
+  private Bits encode(IntegerExpression expr) {
+    switch (expr) {
+      case IValue v: return constant(v.queryValue());
+      case IVar x: return variable(x.queryIndex());
+      case CMult c: return multiply(constant(c.queryConstant()), encode(c.queryChild()));
+      case Addition a:
+        Bits sum = encode(a.queryChild(1));
+        for (int i = 2; i <= a.numChildren(); i++) sum = add(sum, encode(a.queryChild(i)));
+        return sum;
+      case Multiplication m:
+        Bits product = encode(m.queryChild(1));
+        for (int i = 2; i <= m.numChildren(); i++) {
+          product = multiply(product, encode(m.queryChild(i)));
+        }
+        return product;
+      default:
+        throw new IllegalArgumentException("Cannot encode expression " + expr);
+    }
+  }
+
+  /** Returns the number of bits needed to represent all numbers in min..max. */
+  private static int width(long min, long max) {
+    int w = 1;
+    while (min < -(1L << (w - 1)) || max > (1L << (w - 1)) - 1) {
+      w++;
+      if (w > MAX_WIDTH) throw new ArithmeticException("Range too large for bit-blasting.");
+    }
+    return w;
+  }
+
+  private static int sign(Bits bits) {
+    return bits.lits()[bits.lits().length - 1];
+  }
+
+  /** Returns the bits of the given vector, sign-extended to the given width. */
+  private static int[] extend(Bits bits, int width) {
+    int[] ret = new int[width];
+    int[] lits = bits.lits();
+    for (int i = 0; i < width; i++) ret[i] = i < lits.length ? lits[i] : lits[lits.length - 1];
+    return ret;
+  }
+
+  private Bits constant(long value) {
+    int[] lits = new int[width(value, value)];
+    for (int i = 0; i < lits.length; i++) lits[i] = ((value >> i) & 1) == 1 ? _true : -_true;
+    return new Bits(lits, value, value);
+  }
+
+  private Bits add(Bits a, Bits b) {
+    long min = Math.addExact(a.min(), b.min());
+    long max = Math.addExact(a.max(), b.max());
+    int w = width(min, max);
+    return new Bits(addModulo(extend(a, w), extend(b, w), -_true), min, max);
+  }
+
+  /** Returns the bits of a + b + carry, modulo 2^width (where a and b both have that width). */
+  private int[] addModulo(int[] a, int[] b, int carry) {
+    int[] ret = new int[a.length];
+    for (int i = 0; i < a.length; i++) {
+      ret[i] = xor(xor(a[i], b[i]), carry);
+      if (i < a.length - 1) carry = or(and(a[i], b[i]), and(carry, xor(a[i], b[i])));
+    }
+    return ret;
+  }
+
+  private Bits negate(Bits a) {
+    long min = Math.negateExact(a.max());
+    long max = Math.negateExact(a.min());
+    int w = width(min, max);
+    int[] inverted = extend(a, w);
+    for (int i = 0; i < w; i++) inverted[i] = -inverted[i];
+    return new Bits(addModulo(inverted, extend(constant(0), w), _true), min, max);
+  }
+
+  private Bits multiply(Bits a, Bits b) {
+    long[] corners = new long[] { Math.multiplyExact(a.min(), b.min()),
+      Math.multiplyExact(a.min(), b.max()), Math.multiplyExact(a.max(), b.min()),
+      Math.multiplyExact(a.max(), b.max()) };
+    long min = corners[0], max = corners[0];
+    for (long c : corners) { min = Math.min(min, c); max = Math.max(max, c); }
+    int w = width(min, max);
+    // as the product fits in w bits, we may compute it modulo 2^w
+    int[] x = extend(a, w), y = extend(b, w);
+    int[] sum = extend(constant(0), w);
+    for (int i = 0; i < w; i++) {
+      if (y[i] == -_true) continue;
+      int[] row = new int[w];
+      for (int j = 0; j < w; j++) row[j] = j < i ? -_true : and(x[j - i], y[i]);
+      sum = addModulo(sum, row, -_true);
+    }
+    return new Bits(sum, min, max);
+  }
+
+  /** Returns a literal that is true exactly if the given bit vector represents 0. */
+  private int isZero(Bits bits) {
+    if (bits.min() > 0 || bits.max() < 0) return -_true;
+    int[] lits = new int[bits.lits().length];
+    for (int i = 0; i < lits.length; i++) lits[i] = -bits.lits()[i];
+    return andAll(lits);
+  }
+
+  private int and(int a, int b) {
+    return andAll(new int[] { a, b });
+  }
+
+  private int or(int a, int b) {
+    return -andAll(new int[] { -a, -b });
+  }
+
+  /** Returns a literal that is true exactly if all the given literals are. */
+  private int andAll(int[] lits) {
+    TreeSet<Integer> parts = new TreeSet<Integer>();
+    for (int l : lits) {
+      if (l == -_true || parts.contains(-l)) return -_true;
+      if (l != _true) parts.add(l);
+    }
+    if (parts.isEmpty()) return _true;
+    if (parts.size() == 1) return parts.first();
+    int[] inputs = new int[parts.size()];
+    int k = 0;
+    for (int l : parts) inputs[k++] = l;
+    Gate key = new Gate('&', inputs);
+    Integer known = _gates.get(key);
+    if (known != null) return known;
+    int gate = _solver.newVariable();
+    int[] clause = new int[inputs.length + 1];
+    for (int i = 0; i < inputs.length; i++) {
+      _solver.addClause(-gate, inputs[i]);
+      clause[i] = -inputs[i];
+    }
+    clause[inputs.length] = gate;
+    _solver.addClause(clause);
+    _gates.put(key, gate);
+    return gate;
+  }
+
+  /** Returns a literal that is true exactly if one of a and b is true, and the other false. */
+  private int xor(int a, int b) {
+    if (a == -_true) return b;
+    if (a == _true) return -b;
+    if (b == -_true) return a;
+    if (b == _true) return -a;
+    if (a == b) return -_true;
+    if (a == -b) return _true;
+    // xor(a,b) = xor(-a,-b) = -xor(-a,b), so we normalise to positive arguments
+    boolean flip = (a < 0) != (b < 0);
+    a = Math.abs(a);
+    b = Math.abs(b);
+    Gate key = new Gate('^', new int[] { Math.min(a, b), Math.max(a, b) });
+    Integer gate = _gates.get(key);
+    if (gate == null) {
+      gate = _solver.newVariable();
+      _solver.addClause(-gate, a, b);
+      _solver.addClause(-gate, -a, -b);
+      _solver.addClause(gate, -a, b);
+      _solver.addClause(gate, a, -b);
+      _gates.put(key, gate);
+    }
+    return flip ? -gate : gate;
+  }
+}
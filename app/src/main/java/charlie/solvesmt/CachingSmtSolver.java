@@ -0,0 +1,242 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import charlie.exceptions.NullStorageException;
+import charlie.smt.*;
+import charlie.util.ExceptionLogger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A CachingSmtSolver wraps around another SmtSolver, and remembers the answers it gives, so that
+ * if the same question is asked again -- modulo the naming of variables and the order of
+ * conjunctions and disjunctions, see CanonicalConstraint -- the answer can be returned
+ * immediately.  Only definite answers are stored: a MAYBE may be caused by a timeout.
+ *
+ * The cache has a limited capacity; when it is full, the least recently used answer is evicted.
+ * If a file is given, the cache is read from this file upon creation, and written back when
+ * save() is called.
+ *
+ * The CachingSmtSolver is thread-safe, provided the underlying solver is.
+ */
+public class CachingSmtSolver implements SmtSolver {
+  public static final int DEFAULT_CAPACITY = 10000;
+
+  /** A cached satisfiability answer, with the valuation (if any) on canonical variables. */
+  private record SatEntry(Answer answer, int numBools, int numInts) {}
+
+  private final SmtSolver _inner;
+  private final Path _file;
+  private final LinkedHashMap<String,SatEntry> _satCache;
+  private final LinkedHashMap<String,Boolean> _validCache;
+  private long _hits;
+  private long _misses;
+
+  /** Creates an in-memory cache around the given solver, with the default capacity. */
+  public CachingSmtSolver(@NotNull SmtSolver inner) {
+    this(inner, DEFAULT_CAPACITY, null);
+  }
+
+  /**
+   * Creates a cache around the given solver that stores up to capacity answers of each kind.  If
+   * file is not null, the cache is persistent: it is initialised from file (if it exists), and
+   * stored there by save().
+   */
+  public CachingSmtSolver(@NotNull SmtSolver inner, int capacity, Path file) {
+    if (inner == null) throw new NullStorageException("CachingSmtSolver",
+      "Cannot initialise with a null solver");
+    _inner = inner;
+    _file = file;
+    _satCache = new LinkedHashMap<String,SatEntry>(16, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<String,SatEntry> eldest) {
+        return size() > capacity;
+      }
+    };
+    _validCache = new LinkedHashMap<String,Boolean>(16, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<String,Boolean> eldest) {
+        return size() > capacity;
+      }
+    };
+    if (file != null && Files.exists(file)) load();
+  }
+
+  /** Returns the solver that queries are passed to if they are not in the cache. */
+  public SmtSolver queryInner() {
+    return _inner;
+  }
+
+  /** Returns the number of queries that could be answered from the cache. */
+  public synchronized long queryHits() {
+    return _hits;
+  }
+
+  /** Returns the number of queries that had to be passed to the underlying solver. */
+  public synchronized long queryMisses() {
+    return _misses;
+  }
+
+  @Override
+  public Answer checkSatisfiability(SmtProblem problem) {
+    Constraint constraint = problem.queryCombinedConstraint();
+    CanonicalConstraint canonical = new CanonicalConstraint(constraint);
+    Answer cached = null;
+    synchronized (this) {
+      SatEntry entry = _satCache.get(canonical.queryKey());
+      if (entry != null) cached = entry.answer();
+    }
+    if (cached instanceof Answer.YES(Valuation val)) {
+      Valuation translated = canonical.fromCanonical(val);
+      cached = constraint.evaluate(translated) ? new Answer.YES(translated) : null;
+    }
+    synchronized (this) {
+      if (cached != null) { _hits++; return cached; }
+      _misses++;
+    }
+    Answer answer = _inner.checkSatisfiability(problem);
+    SatEntry store = switch (answer) {
+      case Answer.YES(Valuation val) -> new SatEntry(new Answer.YES(canonical.toCanonical(val)),
+        canonical.numberBooleanVariables(), canonical.numberIntegerVariables());
+      case Answer.NO() -> new SatEntry(answer, 0, 0);
+      case Answer.MAYBE(String reason) -> null;
+    };
+    if (store != null) {
+      synchronized (this) { _satCache.put(canonical.queryKey(), store); }
+    }
+    return answer;
+  }
+
+  @Override
+  public boolean checkValidity(SmtProblem problem) {
+    String key = new CanonicalConstraint(problem.queryCombinedConstraint()).queryKey();
+    synchronized (this) {
+      Boolean known = _validCache.get(key);
+      if (known != null) { _hits++; return known; }
+      _misses++;
+    }
+    boolean valid = _inner.checkValidity(problem);
+    // a negative answer might be caused by a timeout, so we only store positive ones
+    if (valid) {
+      synchronized (this) { _validCache.put(key, true); }
+    }
+    return valid;
+  }
+
+  /**
+   * Answers the problems whose validity is already known from the cache, and passes the others on
+   * to the underlying solver as a single batch.
+   */
+  @Override
+  public List<Boolean> checkValidityBatch(List<SmtProblem> problems) {
+    ArrayList<Boolean> ret = new ArrayList<Boolean>();
+    ArrayList<String> keys = new ArrayList<String>();
+    ArrayList<Integer> missing = new ArrayList<Integer>();
+    ArrayList<SmtProblem> asked = new ArrayList<SmtProblem>();
+    for (SmtProblem problem : problems) {
+      keys.add(new CanonicalConstraint(problem.queryCombinedConstraint()).queryKey());
+    }
+    synchronized (this) {
+      for (int i = 0; i < problems.size(); i++) {
+        Boolean known = _validCache.get(keys.get(i));
+        ret.add(known);
+        if (known != null) _hits++;
+        else { _misses++; missing.add(i); asked.add(problems.get(i)); }
+      }
+    }
+    if (asked.isEmpty()) return ret;
+    List<Boolean> answers = _inner.checkValidityBatch(asked);
+    synchronized (this) {
+      for (int k = 0; k < missing.size(); k++) {
+        ret.set(missing.get(k), answers.get(k));
+        if (answers.get(k)) _validCache.put(keys.get(missing.get(k)), true);
+      }
+    }
+    return ret;
+  }
+
+  /**
+   * Reads the cache file.  Each line has the form "valid TAB key", "sat TAB key TAB NO" or
+   * "sat TAB key TAB YES TAB numBools TAB numInts TAB values", where values lists the canonical
+   * boolean variables (as 0 or 1) and then the integer ones, separated by spaces.
+   */
+  private synchronized void load() {
+    try {
+      for (String line : Files.readAllLines(_file)) {
+        String[] parts = line.split("\t", -1);
+        if (parts.length == 2 && parts[0].equals("valid")) _validCache.put(parts[1], true);
+        else if (parts.length == 3 && parts[0].equals("sat") && parts[2].equals("NO")) {
+          _satCache.put(parts[1], new SatEntry(new Answer.NO(), 0, 0));
+        }
+        else if (parts.length >= 6 && parts[0].equals("sat") && parts[2].equals("YES")) {
+          int numBools = Integer.parseInt(parts[3]);
+          int numInts = Integer.parseInt(parts[4]);
+          String[] values = parts[5].isEmpty() ? new String[0] : parts[5].split(" ");
+          if (values.length != numBools + numInts) continue;
+          Valuation val = new Valuation();
+          for (int i = 0; i < numBools; i++) val.setBool(i + 1, values[i].equals("1"));
+          for (int i = 0; i < numInts; i++) {
+            val.setInt(i + 1, Integer.parseInt(values[numBools + i]));
+          }
+          _satCache.put(parts[1], new SatEntry(new Answer.YES(val), numBools, numInts));
+        }
+      }
+    }
+    catch (IOException | NumberFormatException e) {
+      ExceptionLogger.log("Could not read SMT cache from " + _file, e);
+    }
+  }
+
+  /** Writes the cache to the file given at construction (if any). */
+  public void save() {
+    if (_file == null) return;
+    List<String> lines = new ArrayList<String>();
+    synchronized (this) {
+      for (String key : _validCache.keySet()) lines.add("valid\t" + key);
+      for (Map.Entry<String,SatEntry> entry : _satCache.entrySet()) {
+        SatEntry e = entry.getValue();
+        switch (e.answer()) {
+          case Answer.YES(Valuation val):
+            StringBuilder values = new StringBuilder();
+            for (int i = 1; i <= e.numBools(); i++) {
+              values.append(val.queryBoolAssignment(i) ? "1 " : "0 ");
+            }
+            for (int i = 1; i <= e.numInts(); i++) {
+              values.append(val.queryIntAssignment(i)).append(" ");
+            }
+            lines.add("sat\t" + entry.getKey() + "\tYES\t" + e.numBools() + "\t" + e.numInts() +
+              "\t" + values.toString().trim());
+            break;
+          default:
+            lines.add("sat\t" + entry.getKey() + "\tNO");
+        }
+      }
+    }
+    try (BufferedWriter writer = Files.newBufferedWriter(_file)) {
+      for (String line : lines) { writer.write(line); writer.newLine(); }
+    }
+    catch (IOException e) {
+      ExceptionLogger.log("Could not write SMT cache to " + _file, e);
+    }
+  }
+}
@@ -0,0 +1,221 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import charlie.smt.*;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.TreeMap;
+
+/**
+ * A CanonicalConstraint is a string representation of a Constraint that is the same for
+ * constraints that differ only in the names of their variables, or in the order of the children
+ * of conjunctions, disjunctions, additions and multiplications.  To achieve this, the children of
+ * these operators are first ordered by their shape (their representation with all variables
+ * anonymised), and then the variables are renumbered in order of their first occurrence.
+ *
+ * Equal keys imply that the constraints are the same modulo a renaming of variables, which is
+ * recorded so valuations can be translated between the original and the canonical variables.
+ * (The converse need not hold: for example, children with the same shape are not reordered.)
+ */
+final class CanonicalConstraint {
+  private final String _key;
+  /** _boolVars.get(i) is the index of the original variable that is renamed to b(i+1) */
+  private final ArrayList<Integer> _boolVars;
+  private final ArrayList<Integer> _intVars;
+  private final TreeMap<Integer,Integer> _boolRenaming;
+  private final TreeMap<Integer,Integer> _intRenaming;
+  private final IdentityHashMap<Object,String> _shapes;
+
+  CanonicalConstraint(Constraint constraint) {
+    _boolVars = new ArrayList<Integer>();
+    _intVars = new ArrayList<Integer>();
+    _boolRenaming = new TreeMap<Integer,Integer>();
+    _intRenaming = new TreeMap<Integer,Integer>();
+    _shapes = new IdentityHashMap<Object,String>();
+    StringBuilder builder = new StringBuilder();
+    print(constraint, builder, false);
+    _key = builder.toString();
+  }
+
+  /** Returns the canonical representation of the constraint. */
+  String queryKey() {
+    return _key;
+  }
+
+  /** Returns the number of distinct boolean variables in the constraint. */
+  int numberBooleanVariables() {
+    return _boolVars.size();
+  }
+
+  /** Returns the number of distinct integer variables in the constraint. */
+  int numberIntegerVariables() {
+    return _intVars.size();
+  }
+
+  /** Translates a valuation on the original variables to one on the canonical variables. */
+  Valuation toCanonical(Valuation val) {
+    Valuation ret = new Valuation();
+    for (int i = 0; i < _boolVars.size(); i++) {
+      ret.setBool(i + 1, val.queryBoolAssignment(_boolVars.get(i)));
+    }
+    for (int i = 0; i < _intVars.size(); i++) {
+      ret.setInt(i + 1, val.queryIntAssignment(_intVars.get(i)));
+    }
+    return ret;
+  }
+
+  /** Translates a valuation on the canonical variables to one on the original variables. */
+  Valuation fromCanonical(Valuation val) {
+    Valuation ret = new Valuation();
+    for (int i = 0; i < _boolVars.size(); i++) {
+      ret.setBool(_boolVars.get(i), val.queryBoolAssignment(i + 1));
+    }
+    for (int i = 0; i < _intVars.size(); i++) {
+      ret.setInt(_intVars.get(i), val.queryIntAssignment(i + 1));
+    }
+    return ret;
+  }
+
+  /** Returns the representation of the given constraint or expression with anonymous variables. */
+  private String shape(Object o) {
+    String ret = _shapes.get(o);
+    if (ret != null) return ret;
+    StringBuilder builder = new StringBuilder();
+    if (o instanceof Constraint c) print(c, builder, true);
+    else print((IntegerExpression)o, builder, true);
+    ret = builder.toString();
+    _shapes.put(o, ret);
+    return ret;
+  }
+
+  private String boolName(int index, boolean anonymous) {
+    if (anonymous) return "b";
+    Integer k = _boolRenaming.get(index);
+    if (k == null) {
+      _boolVars.add(index);
+      k = _boolVars.size();
+      _boolRenaming.put(index, k);
+    }
+    return "b" + k;
+  }
+
+  private String intName(int index, boolean anonymous) {
+    if (anonymous) return "i";
+    Integer k = _intRenaming.get(index);
+    if (k == null) {
+      _intVars.add(index);
+      k = _intVars.size();
+      _intRenaming.put(index, k);
+    }
+    return "i" + k;
+  }
+
+  /** Prints the given children, ordered by shape, to the given builder. */
+  private void printSorted(String symbol, ArrayList<Object> children, StringBuilder builder,
+                           boolean anonymous) {
+    children.sort((a, b) -> shape(a).compareTo(shape(b)));
+    builder.append("(").append(symbol);
+    for (Object child : children) {
+      builder.append(" ");
+      if (child instanceof Constraint c) print(c, builder, anonymous);
+      else print((IntegerExpression)child, builder, anonymous);
+    }
+    builder.append(")");
+  }
+
+  private void print(Constraint constraint, StringBuilder builder, boolean anonymous) {
+    switch (constraint) {
+      case Truth t: builder.append("true"); break;
+      case Falsehood f: builder.append("false"); break;
+      case BVar x: builder.append(boolName(x.queryIndex(), anonymous)); break;
+      case NBVar x:
+        builder.append("(not ").append(boolName(x.queryIndex(), anonymous)).append(")");
+        break;
+      case Not n:
+        builder.append("(not ");
+        print(n.queryChild(), builder, anonymous);
+        builder.append(")");
+        break;
+      case Iff iff:
+        builder.append("(= ");
+        print(iff.queryLeft(), builder, anonymous);
+        builder.append(" ");
+        print(iff.queryRight(), builder, anonymous);
+        builder.append(")");
+        break;
+      case Conjunction c:
+        ArrayList<Object> conj = new ArrayList<Object>();
+        for (int i = 1; i <= c.numChildren(); i++) conj.add(c.queryChild(i));
+        printSorted("and", conj, builder, anonymous);
+        break;
+      case Disjunction d:
+        ArrayList<Object> disj = new ArrayList<Object>();
+        for (int i = 1; i <= d.numChildren(); i++) disj.add(d.queryChild(i));
+        printSorted("or", disj, builder, anonymous);
+        break;
+      case Geq0 g: printComparison(">=", g.queryExpression(), builder, anonymous); break;
+      case Is0 g: printComparison("=", g.queryExpression(), builder, anonymous); break;
+      case Neq0 g: printComparison("distinct", g.queryExpression(), builder, anonymous); break;
+      default:
+        throw new IllegalArgumentException("Unexpected constraint: " + constraint);
+    }
+  }
+
+  private void printComparison(String symbol, IntegerExpression expr, StringBuilder builder,
+                               boolean anonymous) {
+    builder.append("(").append(symbol).append(" ");
+    print(expr, builder, anonymous);
+    builder.append(" 0)");
+  }
+
+  private void print(IntegerExpression expr, StringBuilder builder, boolean anonymous) {
+    switch (expr) {
+      case IValue v: builder.append(v.queryValue()); break;
+      case IVar x: builder.append(intName(x.queryIndex(), anonymous)); break;
+      case CMult c:
+        builder.append("(* ").append(c.queryConstant()).append(" ");
+        print(c.queryChild(), builder, anonymous);
+        builder.append(")");
+        break;
+      case Addition a:
+        ArrayList<Object> summands = new ArrayList<Object>();
+        for (int i = 1; i <= a.numChildren(); i++) summands.add(a.queryChild(i));
+        printSorted("+", summands, builder, anonymous);
+        break;
+      case Multiplication m:
+        ArrayList<Object> factors = new ArrayList<Object>();
+        for (int i = 1; i <= m.numChildren(); i++) factors.add(m.queryChild(i));
+        printSorted("*", factors, builder, anonymous);
+        break;
+      case Division d:
+        builder.append("(div ");
+        print(d.queryNumerator(), builder, anonymous);
+        builder.append(" ");
+        print(d.queryDenominator(), builder, anonymous);
+        builder.append(")");
+        break;
+      case Modulo m:
+        builder.append("(mod ");
+        print(m.queryNumerator(), builder, anonymous);
+        builder.append(" ");
+        print(m.queryDenominator(), builder, anonymous);
+        builder.append(")");
+        break;
+    }
+  }
+}
@@ -0,0 +1,441 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import charlie.smt.*;
+import charlie.smt.SmtSolver.Answer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+/**
+ * The ConstraintPreprocessor simplifies a constraint before it is sent to an external SMT solver,
+ * and splits it into parts that can be solved in the cheapest possible logic.  It does so by:
+ * <ul>
+ *   <li>constant folding: ground comparisons and junctions with a constant child are evaluated;
+ *   </li>
+ *   <li>unit propagation: a conjunct b or ¬b fixes the value of the boolean variable b;</li>
+ *   <li>equality substitution: a linear conjunct x + e = 0 or -x + e = 0 (where x does not occur
+ *     in e) eliminates x;</li>
+ *   <li>splitting the remaining conjuncts into components that do not share variables, and
+ *     grouping these components by the logic they need (pure SAT, QF_LIA or QF_NIA).</li>
+ * </ul>
+ * Each group is satisfiable independently of the others, so an external solver can consider
+ * them separately (there are at most three).  The fixed and eliminated variables are
+ * afterwards added to the combined valuation.
+ */
+final class ConstraintPreprocessor {
+  /** A set of conjuncts that together need (at most) the given logic. */
+  record Group(List<Constraint> constraints, SMTLibString.Logic logic) {}
+
+  /** The values of the boolean variables fixed by unit propagation. */
+  private final TreeMap<Integer,Boolean> _bools;
+  /** The definitions of the eliminated integer variables, in order of elimination. */
+  private final TreeMap<Integer,IntegerExpression> _definitions;
+  private final ArrayList<Integer> _eliminationOrder;
+  /** All integer variables encountered, so they can be used in rewritten constraints. */
+  private final TreeMap<Integer,IVar> _ivars;
+  private final ArrayList<Group> _groups;
+  private boolean _unsatisfiable;
+
+  ConstraintPreprocessor(Constraint constraint) {
+    _bools = new TreeMap<Integer,Boolean>();
+    _definitions = new TreeMap<Integer,IntegerExpression>();
+    _eliminationOrder = new ArrayList<Integer>();
+    _ivars = new TreeMap<Integer,IVar>();
+    _groups = new ArrayList<Group>();
+    ArrayList<Constraint> conjuncts = new ArrayList<Constraint>();
+    addConjuncts(constraint, conjuncts);
+    conjuncts = propagate(conjuncts);
+    if (conjuncts == null) _unsatisfiable = true;
+    else split(conjuncts);
+  }
+
+  /** Returns whether preprocessing already showed that the constraint is unsatisfiable. */
+  boolean isUnsatisfiable() {
+    return _unsatisfiable;
+  }
+
+  /**
+   * Returns the groups that the remaining conjuncts are split into.  This is empty if the
+   * constraint was found to be unsatisfiable, or if preprocessing solved it entirely.
+   */
+  List<Group> queryGroups() {
+    return _groups;
+  }
+
+  /**
+   * Determines satisfiability of the constraint, using the given function to solve the groups.
+   * If all of them are satisfiable, the resulting valuations are combined and extended with the
+   * fixed and eliminated variables; otherwise the answer for the first failed group is returned.
+   */
+  Answer solve(Function<Group,Answer> solver) {
+    if (_unsatisfiable) return new Answer.NO();
+    Valuation ret = new Valuation();
+    for (Group group : _groups) {
+      switch (solver.apply(group)) {
+        case Answer.YES(Valuation val): copyAssignments(group, val, ret); break;
+        case Answer answer: return answer;
+      }
+    }
+    completeValuation(ret);
+    return new Answer.YES(ret);
+  }
+
+  /**
+   * Returns true if the constraint is unsatisfiable: either because preprocessing shows this, or
+   * because the given test proves that one of the groups is.
+   */
+  boolean refute(Predicate<Group> unsatisfiable) {
+    if (_unsatisfiable) return true;
+    for (Group group : _groups) {
+      if (unsatisfiable.test(group)) return true;
+    }
+    return false;
+  }
+
+  // =============================================================================================
+  // Propagation and substitution
+  // =============================================================================================
+
+  /** Adds the conjuncts of c to the given list, pushing top-level negations inwards. */
+  private static void addConjuncts(Constraint c, ArrayList<Constraint> conjuncts) {
+    switch (c) {
+      case Conjunction j:
+        for (int i = 1; i <= j.numChildren(); i++) addConjuncts(j.queryChild(i), conjuncts);
+        break;
+      case Not n:
+        if (n.queryChild() instanceof Not m) addConjuncts(m.queryChild(), conjuncts);
+        else addConjuncts(n.queryChild().negate(), conjuncts);
+        break;
+      default: conjuncts.add(c);
+    }
+  }
+
+  /**
+   * Repeatedly rewrites the given conjuncts with the current substitution, and extends the
+   * substitution with the units and eliminable equalities that are found, until nothing changes.
+   * Returns the remaining conjuncts, or null if one of them became false.
+   */
+  private ArrayList<Constraint> propagate(ArrayList<Constraint> conjuncts) {
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      ArrayList<Constraint> remaining = new ArrayList<Constraint>();
+      for (Constraint c : conjuncts) {
+        ArrayList<Constraint> parts = new ArrayList<Constraint>();
+        addConjuncts(c, parts);
+        for (Constraint part : parts) {
+          // we rewrite every part separately, so units found in earlier parts are taken along
+          Constraint r = rewrite(part);
+          switch (r) {
+            case Truth t: break;
+            case Falsehood f: return null;
+            case BVar x: _bools.put(x.queryIndex(), true); changed = true; break;
+            case NBVar x: _bools.put(x.queryIndex(), false); changed = true; break;
+            case Is0 is:
+              if (eliminate(is)) changed = true;
+              else remaining.add(r);
+              break;
+            case Conjunction j: addConjuncts(j, remaining); changed = true; break;
+            case Not n: addConjuncts(n, remaining); changed = true; break;
+            default: remaining.add(r);
+          }
+        }
+      }
+      conjuncts = remaining;
+    }
+    return conjuncts;
+  }
+
+  /**
+   * If the given equality is linear, and has a variable with coefficient 1 or -1, then this
+   * variable is eliminated by adding a definition for it, and true is returned.
+   */
+  private boolean eliminate(Is0 equality) {
+    LinearConstraint lc = LinearConstraint.fromComparison(equality);
+    if (lc == null) return false;
+    Map<Integer,Long> coefficients = lc.queryCoefficients();
+    for (Map.Entry<Integer,Long> entry : coefficients.entrySet()) {
+      long a = entry.getValue();
+      if (a != 1 && a != -1) continue;
+      // a * x + rest = 0 implies x = -a * rest, since a = 1/a
+      TreeMap<Integer,Long> rest = new TreeMap<Integer,Long>();
+      for (Map.Entry<Integer,Long> other : coefficients.entrySet()) {
+        if (other.getKey().equals(entry.getKey())) continue;
+        rest.put(other.getKey(), -a * other.getValue());
+      }
+      IntegerExpression definition = buildLinear(rest, -a * lc.queryConstant());
+      if (definition == null) return false;
+      _definitions.put(entry.getKey(), definition);
+      _eliminationOrder.add(entry.getKey());
+      return true;
+    }
+    return false;
+  }
+
+  /** Applies the current substitution to c, and folds constants. */
+  private Constraint rewrite(Constraint c) {
+    switch (c) {
+      case BVar x:
+        Boolean b = _bools.get(x.queryIndex());
+        return b == null ? x : SmtFactory.createValue(b);
+      case NBVar x:
+        Boolean nb = _bools.get(x.queryIndex());
+        return nb == null ? x : SmtFactory.createValue(!nb);
+      case Not n:
+        Constraint child = rewrite(n.queryChild());
+        if (child instanceof Truth || child instanceof Falsehood) return child.negate();
+        return child == n.queryChild() ? n : SmtFactory.createNegation(child);
+      case Iff i:
+        Constraint left = rewrite(i.queryLeft()), right = rewrite(i.queryRight());
+        if (left instanceof Truth) return right;
+        if (right instanceof Truth) return left;
+        if (left instanceof Falsehood) return right.negate();
+        if (right instanceof Falsehood) return left.negate();
+        if (left == i.queryLeft() && right == i.queryRight()) return i;
+        return SmtFactory.createIff(left, right);
+      case Conjunction j:
+        ArrayList<Constraint> conj = new ArrayList<Constraint>();
+        for (int k = 1; k <= j.numChildren(); k++) {
+          Constraint d = rewrite(j.queryChild(k));
+          if (d instanceof Falsehood) return d;
+          if (!(d instanceof Truth)) conj.add(d);
+        }
+        if (conj.isEmpty()) return SmtFactory.createTrue();
+        Constraint ret = conj.get(0);
+        for (int k = 1; k < conj.size(); k++) ret = SmtFactory.createConjunction(ret, conj.get(k));
+        return ret;
+      case Disjunction j:
+        ArrayList<Constraint> disj = new ArrayList<Constraint>();
+        for (int k = 1; k <= j.numChildren(); k++) {
+          Constraint d = rewrite(j.queryChild(k));
+          if (d instanceof Truth) return d;
+          if (!(d instanceof Falsehood)) disj.add(d);
+        }
+        return SmtFactory.createDisjunction(disj);
+      case Geq0 g: return rewriteComparison(g, substitute(g.queryExpression()));
+      case Is0 g: return rewriteComparison(g, substitute(g.queryExpression()));
+      case Neq0 g: return rewriteComparison(g, substitute(g.queryExpression()));
+      default: return c;    // truth and falsehood
+    }
+  }
+
+  /**
+   * Helper function for rewrite: returns the comparison of the same kind as original, but on the
+   * given expression.  If this is linear, then it is normalised, and evaluated if it is ground.
+   */
+  private Constraint rewriteComparison(Constraint original, IntegerExpression expr) {
+    Constraint ret = switch (original) {
+      case Geq0 g -> g.queryExpression() == expr ? g : SmtFactory.createGeq(expr);
+      case Is0 g -> g.queryExpression() == expr ? g : SmtFactory.createEqual(expr);
+      case Neq0 g -> g.queryExpression() == expr ? g : SmtFactory.createUnequal(expr);
+      default -> original;
+    };
+    LinearConstraint lc = LinearConstraint.fromComparison(ret);
+    if (lc == null) return ret;
+    if (lc.isGround()) return SmtFactory.createValue(lc.evaluateGround());
+    IntegerExpression linear = buildLinear(lc.queryCoefficients(), lc.queryConstant());
+    if (linear == null) return ret;
+    return switch (lc.queryRelation()) {
+      case GEQ -> SmtFactory.createGeq(linear);
+      case EQ -> SmtFactory.createEqual(linear);
+      case NEQ -> SmtFactory.createUnequal(linear);
+    };
+  }
+
+  /** Returns e with all eliminated variables replaced by their definitions. */
+  private IntegerExpression substitute(IntegerExpression e) {
+    switch (e) {
+      case IVar x:
+        _ivars.putIfAbsent(x.queryIndex(), x);
+        IntegerExpression def = _definitions.get(x.queryIndex());
+        return def == null ? x : substitute(def);
+      case IValue v: return v;
+      case CMult c:
+        IntegerExpression sub = substitute(c.queryChild());
+        return sub == c.queryChild() ? c : sub.multiply(c.queryConstant());
+      case Addition a:
+        ArrayList<IntegerExpression> summands = substituteChildren(a.numChildren(), a::queryChild);
+        if (summands == null) return a;
+        IntegerExpression sum = summands.get(0);
+        for (int i = 1; i < summands.size(); i++) {
+          sum = SmtFactory.createAddition(sum, summands.get(i));
+        }
+        return sum;
+      case Multiplication m:
+        ArrayList<IntegerExpression> factors = substituteChildren(m.numChildren(), m::queryChild);
+        if (factors == null) return m;
+        IntegerExpression product = factors.get(0);
+        for (int i = 1; i < factors.size(); i++) {
+          product = SmtFactory.createMultiplication(product, factors.get(i));
+        }
+        return product;
+      case Division d:
+        IntegerExpression num = substitute(d.queryNumerator());
+        IntegerExpression den = substitute(d.queryDenominator());
+        if (num == d.queryNumerator() && den == d.queryDenominator()) return d;
+        return SmtFactory.createDivision(num, den);
+      case Modulo m:
+        IntegerExpression n = substitute(m.queryNumerator());
+        IntegerExpression k = substitute(m.queryDenominator());
+        if (n == m.queryNumerator() && k == m.queryDenominator()) return m;
+        return SmtFactory.createModulo(n, k);
+    }
+  }
+
+  /**
+   * Helper function for substitute: returns the substituted children (1..n) of an expression, or
+   * null if none of them changed.
+   */
+  private ArrayList<IntegerExpression> substituteChildren(int n,
+                                      IntFunction<IntegerExpression> child) {
+    ArrayList<IntegerExpression> ret = new ArrayList<IntegerExpression>();
+    boolean changed = false;
+    for (int i = 1; i <= n; i++) {
+      IntegerExpression original = child.apply(i);
+      IntegerExpression sub = substitute(original);
+      if (sub != original) changed = true;
+      ret.add(sub);
+    }
+    return changed ? ret : null;
+  }
+
+  /**
+   * Returns the expression sum a_i * x_i + constant for the given coefficients, or null if some
+   * number does not fit in an int.
+   */
+  private IntegerExpression buildLinear(Map<Integer,Long> coefficients, long constant) {
+    if (constant != (int)constant) return null;
+    IntegerExpression ret = SmtFactory.createValue((int)constant);
+    for (Map.Entry<Integer,Long> entry : coefficients.entrySet()) {
+      long a = entry.getValue();
+      if (a != (int)a) return null;
+      ret = SmtFactory.createAddition(ret, _ivars.get(entry.getKey()).multiply((int)a));
+    }
+    return ret.simplify();
+  }
+
+  // =============================================================================================
+  // Splitting and valuations
+  // =============================================================================================
+
+  /**
+   * Splits the given conjuncts into components without shared variables, and groups these by the
+   * logic they need.
+   */
+  private void split(ArrayList<Constraint> conjuncts) {
+    // union-find over the conjuncts, where conjuncts sharing a variable are joined
+    int[] parent = new int[conjuncts.size()];
+    for (int i = 0; i < parent.length; i++) parent[i] = i;
+    TreeMap<Integer,Integer> boolOwner = new TreeMap<Integer,Integer>();
+    TreeMap<Integer,Integer> intOwner = new TreeMap<Integer,Integer>();
+    for (int i = 0; i < conjuncts.size(); i++) {
+      TreeSet<Integer> bools = new TreeSet<Integer>(), ints = new TreeSet<Integer>();
+      SMTLibString.collectVariables(conjuncts.get(i), bools, ints);
+      for (int x : bools) { boolOwner.putIfAbsent(x, i); union(parent, i, boolOwner.get(x)); }
+      for (int x : ints) { intOwner.putIfAbsent(x, i); union(parent, i, intOwner.get(x)); }
+    }
+
+    // determine the logic of every component, and add its conjuncts to the matching group
+    int numLogics = SMTLibString.Logic.values().length;
+    SMTLibString.Logic[] componentLogic = new SMTLibString.Logic[conjuncts.size()];
+    for (int i = 0; i < conjuncts.size(); i++) {
+      int root = find(parent, i);
+      componentLogic[root] = max(componentLogic[root], logicFor(conjuncts.get(i)));
+    }
+    ArrayList<ArrayList<Constraint>> groups = new ArrayList<ArrayList<Constraint>>();
+    for (int i = 0; i < numLogics; i++) groups.add(new ArrayList<Constraint>());
+    for (int i = 0; i < conjuncts.size(); i++) {
+      groups.get(componentLogic[find(parent, i)].ordinal()).add(conjuncts.get(i));
+    }
+    for (SMTLibString.Logic logic : SMTLibString.Logic.values()) {
+      if (!groups.get(logic.ordinal()).isEmpty()) {
+        _groups.add(new Group(groups.get(logic.ordinal()), logic));
+      }
+    }
+  }
+
+  private static int find(int[] parent, int i) {
+    while (parent[i] != i) { parent[i] = parent[parent[i]]; i = parent[i]; }
+    return i;
+  }
+
+  private static void union(int[] parent, int i, int j) {
+    parent[find(parent, i)] = find(parent, j);
+  }
+
+  /** Returns the more expressive of the two logics (where null is the least expressive). */
+  private static SMTLibString.Logic max(SMTLibString.Logic a, SMTLibString.Logic b) {
+    if (a == null) return b;
+    return a.compareTo(b) >= 0 ? a : b;
+  }
+
+  /** Returns the cheapest logic in which c can be expressed. */
+  static SMTLibString.Logic logicFor(Constraint c) {
+    switch (c) {
+      case Not n: return logicFor(n.queryChild());
+      case Iff i: return max(logicFor(i.queryLeft()), logicFor(i.queryRight()));
+      case Conjunction j: return logicForJunction(j.numChildren(), j::queryChild);
+      case Disjunction j: return logicForJunction(j.numChildren(), j::queryChild);
+      case Geq0 g: return logicForComparison(g);
+      case Is0 g: return logicForComparison(g);
+      case Neq0 g: return logicForComparison(g);
+      default: return SMTLibString.Logic.QFUF;
+    }
+  }
+
+  private static SMTLibString.Logic logicForJunction(int n,
+                                          IntFunction<Constraint> child) {
+    SMTLibString.Logic ret = SMTLibString.Logic.QFUF;
+    for (int i = 1; i <= n; i++) ret = max(ret, logicFor(child.apply(i)));
+    return ret;
+  }
+
+  private static SMTLibString.Logic logicForComparison(Constraint comparison) {
+    return LinearConstraint.fromComparison(comparison) == null ? SMTLibString.Logic.QFNIA
+                                                               : SMTLibString.Logic.QFLIA;
+  }
+
+  /** Copies the assignments to the variables of the given group from val to ret. */
+  private static void copyAssignments(Group group, Valuation val, Valuation ret) {
+    TreeSet<Integer> bools = new TreeSet<Integer>(), ints = new TreeSet<Integer>();
+    for (Constraint c : group.constraints()) SMTLibString.collectVariables(c, bools, ints);
+    for (int x : bools) ret.setBool(x, val.queryBoolAssignment(x));
+    for (int x : ints) ret.setInt(x, val.queryIntAssignment(x));
+  }
+
+  /**
+   * Adds the fixed boolean variables and the eliminated integer variables to val.  The latter
+   * are handled in reverse order of elimination, since a definition may refer to variables that
+   * were eliminated later, but not to ones that were eliminated earlier.
+   */
+  private void completeValuation(Valuation val) {
+    for (Map.Entry<Integer,Boolean> entry : _bools.entrySet()) {
+      val.setBool(entry.getKey(), entry.getValue());
+    }
+    for (int i = _eliminationOrder.size() - 1; i >= 0; i--) {
+      int x = _eliminationOrder.get(i);
+      val.setInt(x, _definitions.get(x).evaluate(val));
+    }
+  }
+}
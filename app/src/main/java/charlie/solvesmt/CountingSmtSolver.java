@@ -0,0 +1,70 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import charlie.exceptions.NullStorageException;
+import charlie.smt.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A CountingSmtSolver passes all queries on to another SmtSolver, and counts how many queries of
+ * each kind were asked.  This is used for instance to report the number of SMT calls per input
+ * file when several files are handled by the same solver.
+ *
+ * The CountingSmtSolver is thread-safe, provided the underlying solver is.
+ */
+public class CountingSmtSolver implements SmtSolver {
+  private final SmtSolver _inner;
+  private final AtomicLong _satisfiability;
+  private final AtomicLong _validity;
+
+  /** Creates a counter around the given solver. */
+  public CountingSmtSolver(@NotNull SmtSolver inner) {
+    if (inner == null) throw new NullStorageException("CountingSmtSolver",
+      "Cannot initialise with a null solver");
+    _inner = inner;
+    _satisfiability = new AtomicLong(0);
+    _validity = new AtomicLong(0);
+  }
+
+  /** Returns the number of satisfiability queries asked so far. */
+  public long querySatisfiabilityCalls() { return _satisfiability.get(); }
+
+  /** Returns the number of validity queries asked so far. */
+  public long queryValidityCalls() { return _validity.get(); }
+
+  /** Returns the total number of queries asked so far. */
+  public long queryCalls() { return _satisfiability.get() + _validity.get(); }
+
+  public Answer checkSatisfiability(SmtProblem problem) {
+    _satisfiability.incrementAndGet();
+    return _inner.checkSatisfiability(problem);
+  }
+
+  public boolean checkValidity(SmtProblem problem) {
+    _validity.incrementAndGet();
+    return _inner.checkValidity(problem);
+  }
+
+  /** Counts every problem in the batch as a separate validity query. */
+  public List<Boolean> checkValidityBatch(List<SmtProblem> problems) {
+    _validity.addAndGet(problems.size());
+    return _inner.checkValidityBatch(problems);
+  }
+}
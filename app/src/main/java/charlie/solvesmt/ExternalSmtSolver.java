@@ -21,9 +21,10 @@ import charlie.util.ExceptionLogger;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Objects;
 import java.util.Scanner;
@@ -31,7 +32,8 @@ import java.util.Scanner;
 /**
  * An ExternalSmtSolver is a solver that operates by writing a file and calling a fixed external
  * SMT solver.
- * The output file of the solver is read to find the valuation.
+ * The output file of the solver is read to find the valuation.  Every call uses its own temporary
+ * problem and result files (which are deleted afterwards), so concurrent calls do not interfere.
  */
 public class ExternalSmtSolver implements SmtSolver {
   private String _cmd;
@@ -49,33 +51,30 @@ public class ExternalSmtSolver implements SmtSolver {
   }
 
  /**
-  * This creates a file for the SMT solver.
+  * This writes the given group of constraints to the given file for the SMT solver.
   * If creating the file fails for some reason, an IOException is thrown instead.
   */
-  private void createSmtFile(int numbool, int numint, Constraint constraint) throws IOException {
-    BufferedWriter writer = new BufferedWriter(new FileWriter("problem.smt2"));
-    SMTLibString file = new SMTLibString(SMTLibString.Version.V26, SMTLibString.Logic.QFNIA);
-    String stringOfFile = file.buildSmtlibString(numbool, numint, constraint);
-    writer.write(stringOfFile);
-    writer.close();
+  private void createSmtFile(ConstraintPreprocessor.Group group, Path problem) throws IOException {
+    SMTLibString file = new SMTLibString(SMTLibString.Version.V26, group.logic());
+    try (BufferedWriter writer = Files.newBufferedWriter(problem, StandardCharsets.UTF_8)) {
+      file.writeSmtlib(group.constraints(), writer);
+    }
   }
 
   /**
-   * This function runs the SMT solver on problem.smt2.  If this fails for whatever reason, an
-   * Exception is thrown instead.
+   * This function runs the SMT solver on the given problem file, which writes its output to the
+   * given result file.  If this fails for whatever reason, an Exception is thrown instead.
    */
-  private void runSmtSolver() throws IOException, InterruptedException {
+  private void runSmtSolver(Path problem, Path result) throws IOException, InterruptedException {
     Runtime rt = Runtime.getRuntime();
-    // clean up old result, if any
-    try { Process p = rt.exec(new String[] {"rm", "result"}); p.waitFor(); } catch (Exception e) {}
-    // start new smtsolver process
     Process p;
     if (Objects.requireNonNull(currentOS) == OS.WINDOWS) {
-        p = rt.exec(new String[]{"smtsolver_win.bat", "problem.smt2", "result"});
+        p = rt.exec(new String[]{"smtsolver_win.bat", problem.toString(), result.toString()});
     } else {
-        p = rt.exec(new String[]{"./smtsolver", "problem.smt2", "result"});
+        p = rt.exec(new String[]{"./smtsolver", problem.toString(), result.toString()});
     }
-    p.waitFor();
+    try { p.waitFor(); }
+    catch (InterruptedException e) { p.destroyForcibly(); throw e; }
   }
 
   /**
@@ -83,24 +82,35 @@ public class ExternalSmtSolver implements SmtSolver {
    * unsat, or a different string which should be expected to correspond to "maybe".  If the file
    * cannot be read ,then null is returned or an IOException thrown, as appropriate.
    */
-  private String readAnswer() throws IOException {
-    File file = new File("result");
-    Scanner reader = new Scanner(file);
-    return SMTLibResponseHandler.readAnswer(reader);
+  private String readAnswer(Path result) throws IOException {
+    try (Scanner reader = new Scanner(result)) {
+      return SMTLibResponseHandler.readAnswer(reader);
+    }
   }
 
   /**
-   * This reads the solution from the expected SMT output file, and returns the corresponding
-   * Answer.
+   * This reads the solution from the given SMT output file, and returns the corresponding Answer.
    * If the file cannot be read -- for example because the SMT solver failed -- then MAYBE is
    * returned (with an appropriate failure meesage).  The same holds if satisfiability could not
    * be determined.  If the result is not satisfiable, then NO is returned.
    */
-  private Answer readSmtFile() throws IOException {
-    List<SExpression> exprs = SmtParser.readExpressionsFromFile("result");
+  private Answer readSmtFile(Path result) throws IOException {
+    List<SExpression> exprs = SmtParser.readExpressionsFromFile(result.toString());
     return SMTLibResponseHandler.expressionsToAnswer(exprs);
   }
 
+  /** Creates an empty temporary file for a single call to the SMT solver. */
+  private static Path createTempFile(String suffix) throws IOException {
+    return Files.createTempFile("cora", suffix);
+  }
+
+  /** Deletes the given temporary file, if it was created. */
+  private static void deleteTempFile(Path path) {
+    if (path == null) return;
+    try { Files.deleteIfExists(path); }
+    catch (IOException e) { ExceptionLogger.log(e); }
+  }
+
   /**
    * Primary access function.  This generates an SMT file from the given SMT problem, executes the
    * SMT solver on it, and reads the result file to obtain a suitable Valuation -- or concludes
@@ -108,38 +118,7 @@ public class ExternalSmtSolver implements SmtSolver {
    */
   public Answer checkSatisfiability(@NotNull SmtProblem problem) {
     Constraint combinedConstraints = problem.queryCombinedConstraint();
-    try {
-      createSmtFile(problem.numberBooleanVariables(), problem.numberIntegerVariables(),
-                    combinedConstraints);
-    }
-    catch (IOException e) {
-      ExceptionLogger.log("Could not create SMT file: " + e.getMessage(), e);
-      return new Answer.MAYBE("Could not create SMT file: " + e.getMessage());
-    }
-
-    try { runSmtSolver(); }
-    catch (IOException e) {
-      ExceptionLogger.log("Could not execute SMT solver: " + e.getMessage(), e);
-      return new Answer.MAYBE("Could not execute SMT solver: " + e.getMessage());
-    }
-    catch (InterruptedException e) {
-      String msg = "Waiting for external SMT solver was interrupted: " + e.getMessage() + "\n" +
-        "(Warning: the SMT solver may still be running in the background.  If so, you may need " +
-        "to kill it.";
-      ExceptionLogger.log(msg, e);
-      return new Answer.MAYBE(msg);
-    }
-
-    Answer ret;
-    try { ret = readSmtFile(); }
-    catch (IOException e) {
-      ExceptionLogger.log("Error reading SMT solver result file: " + e.getMessage(), e);
-      return new Answer.MAYBE("Error reading result file: " + e.getMessage());
-    }
-    catch (ParseException e) {
-      ExceptionLogger.log("Parsing error reading result file: " + e.getMessage(), e);
-      return new Answer.MAYBE("Parsing error reading result file: " + e.getMessage());
-    }
+    Answer ret = new ConstraintPreprocessor(combinedConstraints).solve(this::solveGroup);
 
     switch (ret) {
       case Answer.YES(Valuation val):
@@ -152,6 +131,46 @@ public class ExternalSmtSolver implements SmtSolver {
     }
   }
 
+  /** Runs the SMT solver on the given group of constraints, and returns its answer. */
+  private Answer solveGroup(ConstraintPreprocessor.Group group) {
+    Path problem = null, result = null;
+    try {
+      try {
+        problem = createTempFile(".smt2");
+        result = createTempFile(".result");
+        createSmtFile(group, problem);
+      }
+      catch (IOException e) {
+        ExceptionLogger.log("Could not create SMT file: " + e.getMessage(), e);
+        return new Answer.MAYBE("Could not create SMT file: " + e.getMessage());
+      }
+
+      try { runSmtSolver(problem, result); }
+      catch (IOException e) {
+        ExceptionLogger.log("Could not execute SMT solver: " + e.getMessage(), e);
+        return new Answer.MAYBE("Could not execute SMT solver: " + e.getMessage());
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return new Answer.MAYBE("Waiting for external SMT solver was interrupted.");
+      }
+
+      try { return readSmtFile(result); }
+      catch (IOException e) {
+        ExceptionLogger.log("Error reading SMT solver result file: " + e.getMessage(), e);
+        return new Answer.MAYBE("Error reading result file: " + e.getMessage());
+      }
+      catch (ParseException e) {
+        ExceptionLogger.log("Parsing error reading result file: " + e.getMessage(), e);
+        return new Answer.MAYBE("Parsing error reading result file: " + e.getMessage());
+      }
+    }
+    finally {
+      deleteTempFile(problem);
+      deleteTempFile(result);
+    }
+  }
+
   /**
    * This checks the satisfiability of the negation of the constraint obtained from the given
    * SmtProblem, since unsatisfiability implies that the original constraint is valid.  No
@@ -159,15 +178,31 @@ public class ExternalSmtSolver implements SmtSolver {
    */
   public boolean checkValidity(SmtProblem problem) {
     Constraint negated = SmtFactory.createNegation(problem.queryCombinedConstraint());
+    return new ConstraintPreprocessor(negated).refute(this::refuteGroup);
+  }
+
+  /** Returns true if the SMT solver proves the given group of constraints unsatisfiable. */
+  private boolean refuteGroup(ConstraintPreprocessor.Group group) {
+    Path problem = null, result = null;
     try {
-      createSmtFile(problem.numberBooleanVariables(), problem.numberIntegerVariables(), negated);
-      runSmtSolver();
-      return readAnswer().equals("unsat");
+      problem = createTempFile(".smt2");
+      result = createTempFile(".result");
+      createSmtFile(group, problem);
+      runSmtSolver(problem, result);
+      return "unsat".equals(readAnswer(result));
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
     }
     catch (Exception e) {
       ExceptionLogger.log(e);
       return false; // we could not conclude validity
     }
+    finally {
+      deleteTempFile(problem);
+      deleteTempFile(result);
+    }
   }
 }
 
@@ -0,0 +1,165 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import charlie.util.Deadline;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The theory solver for conjunctions of LinearConstraints over the integers.  It determines
+ * rational satisfiability through the Simplex procedure, and uses branch-and-bound to find integer
+ * solutions.  Disequalities e ≠ 0 are handled by splitting them into e ≥ 1 and e ≤ -1.
+ *
+ * Since branch-and-bound need not terminate on unbounded problems, the number of Simplex calls is
+ * limited; if the limit is exceeded, the result is UNKNOWN.
+ */
+final class IntegerLinearSolver {
+  enum Result { SAT, UNSAT, UNKNOWN }
+
+  private final int _nodeLimit;
+  private int _nodes;
+  private Deadline _deadline;
+  /** maps variable indexes to the corresponding Simplex columns */
+  private TreeMap<Integer,Integer> _columns;
+  private TreeMap<Integer,Integer> _model;
+
+  /** Creates a solver that performs at most nodeLimit Simplex checks for a single problem. */
+  IntegerLinearSolver(int nodeLimit) {
+    _nodeLimit = nodeLimit;
+  }
+
+  /**
+   * Determines whether the given constraints have a common integer solution.  If the result is
+   * SAT, then the solution can be obtained through queryModel().
+   */
+  Result check(List<LinearConstraint> constraints) {
+    _nodes = 0;
+    _deadline = Deadline.current();
+    _model = null;
+    _columns = new TreeMap<Integer,Integer>();
+    ArrayList<LinearConstraint> main = new ArrayList<LinearConstraint>();
+    ArrayList<LinearConstraint> disequalities = new ArrayList<LinearConstraint>();
+    for (LinearConstraint c : constraints) {
+      if (c.isGround()) {
+        if (c.evaluateGround()) continue;
+        return Result.UNSAT;
+      }
+      for (Integer x : c.queryCoefficients().keySet()) {
+        if (!_columns.containsKey(x)) _columns.put(x, _columns.size());
+      }
+      if (c.queryRelation() == LinearConstraint.Relation.NEQ) disequalities.add(c);
+      else main.add(c);
+    }
+    return splitDisequalities(main, disequalities, 0);
+  }
+
+  /**
+   * After a successful check, returns an integer solution, mapping each variable index that
+   * occurs in the constraints to its value.
+   */
+  TreeMap<Integer,Integer> queryModel() {
+    return _model;
+  }
+
+  /** Returns whether we should give up: the node limit is exhausted, or we ran out of time. */
+  private boolean outOfResources() {
+    return _nodes >= _nodeLimit || _deadline.hasExpired() ||
+           Thread.currentThread().isInterrupted();
+  }
+
+  /** Handles disequalities[i..] by case analysis, and then calls branchAndBound. */
+  private Result splitDisequalities(ArrayList<LinearConstraint> main,
+                                    ArrayList<LinearConstraint> disequalities, int i) {
+    // once the limit is exhausted, every remaining case would be UNKNOWN anyway; and with many
+    // disequalities there are exponentially many of them
+    if (outOfResources()) return Result.UNKNOWN;
+    if (i >= disequalities.size()) {
+      int n = _columns.size();
+      return branchAndBound(main, new BigInteger[n], new BigInteger[n]);
+    }
+    boolean unknown = false;
+    for (boolean positive : new boolean[] { true, false }) {
+      main.add(disequalities.get(i).splitDisequality(positive));
+      Result result = splitDisequalities(main, disequalities, i + 1);
+      main.remove(main.size() - 1);
+      if (result == Result.SAT) return result;
+      if (result == Result.UNKNOWN) unknown = true;
+    }
+    return unknown ? Result.UNKNOWN : Result.UNSAT;
+  }
+
+  /**
+   * Determines whether the given (in)equalities have an integer solution within the given bounds
+   * on the columns (where null indicates that there is no bound).
+   */
+  private Result branchAndBound(ArrayList<LinearConstraint> constraints, BigInteger[] lower,
+                                BigInteger[] upper) {
+    if (outOfResources()) return Result.UNKNOWN;
+    _nodes++;
+    int n = _columns.size();
+    ArrayList<Map<Integer,Long>> rows = new ArrayList<Map<Integer,Long>>();
+    for (LinearConstraint c : constraints) {
+      TreeMap<Integer,Long> row = new TreeMap<Integer,Long>();
+      for (Map.Entry<Integer,Long> entry : c.queryCoefficients().entrySet()) {
+        row.put(_columns.get(entry.getKey()), entry.getValue());
+      }
+      rows.add(row);
+    }
+    Simplex simplex = new Simplex(n, rows);
+    for (int i = 0; i < constraints.size(); i++) {
+      // the slack variable n + i equals the linear part of constraint i, which should be ≥ -c
+      Rational bound = Rational.of(-constraints.get(i).queryConstant());
+      simplex.setLower(n + i, bound);
+      if (constraints.get(i).queryRelation() == LinearConstraint.Relation.EQ) {
+        simplex.setUpper(n + i, bound);
+      }
+    }
+    for (int x = 0; x < n; x++) {
+      if (lower[x] != null) simplex.setLower(x, Rational.of(lower[x]));
+      if (upper[x] != null) simplex.setUpper(x, Rational.of(upper[x]));
+    }
+    if (!simplex.check()) return Result.UNSAT;
+
+    for (int x = 0; x < n; x++) {
+      Rational value = simplex.queryValue(x);
+      if (value.isInteger()) continue;
+      BigInteger oldUpper = upper[x], oldLower = lower[x];
+      upper[x] = value.floor();
+      Result left = branchAndBound(constraints, lower, upper);
+      upper[x] = oldUpper;
+      if (left == Result.SAT) return left;
+      lower[x] = value.ceil();
+      Result right = branchAndBound(constraints, lower, upper);
+      lower[x] = oldLower;
+      if (right == Result.SAT) return right;
+      return left == Result.UNKNOWN || right == Result.UNKNOWN ? Result.UNKNOWN : Result.UNSAT;
+    }
+
+    // all values are integers: store the model, provided it fits in the integer domain
+    TreeMap<Integer,Integer> model = new TreeMap<Integer,Integer>();
+    for (Map.Entry<Integer,Integer> entry : _columns.entrySet()) {
+      BigInteger value = simplex.queryValue(entry.getValue()).floor();
+      if (value.bitLength() >= 32) return Result.UNKNOWN;
+      model.put(entry.getKey(), value.intValue());
+    }
+    _model = model;
+    return Result.SAT;
+  }
+}
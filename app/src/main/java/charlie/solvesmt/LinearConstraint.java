@@ -0,0 +1,209 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import charlie.smt.*;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A LinearConstraint is a normalised comparison of the form a1 * x1 + ... + an * xn + c R 0,
+ * where the xi are integer variables (identified by their index), all ai are non-zero, and R is
+ * one of ≥, = and ≠.  Normalisation divides all coefficients by their greatest common divisor,
+ * which for ≥ allows the constant to be rounded down (as the variables range over integers).
+ *
+ * LinearConstraints are immutable.
+ */
+final class LinearConstraint {
+  enum Relation { GEQ, EQ, NEQ }
+
+  private final TreeMap<Integer,Long> _coefficients;
+  private final long _constant;
+  private final Relation _relation;
+
+  /** Creates the constraint, normalising it; the given map should not be used afterwards. */
+  private LinearConstraint(TreeMap<Integer,Long> coefficients, long constant, Relation rel) {
+    long gcd = 0;
+    for (long a : coefficients.values()) gcd = gcd(gcd, Math.abs(a));
+    if (gcd > 1) {
+      boolean divides = constant % gcd == 0;
+      for (Map.Entry<Integer,Long> entry : coefficients.entrySet()) {
+        entry.setValue(entry.getValue() / gcd);
+      }
+      if (rel == Relation.GEQ) constant = Math.floorDiv(constant, gcd);
+      else if (divides) constant = constant / gcd;
+      else {  // a1 * x1 + ... + an * xn = -c has no integer solutions, so we use 1 R 0
+        coefficients.clear();
+        constant = 1;
+      }
+    }
+    _coefficients = coefficients;
+    _constant = constant;
+    _relation = rel;
+  }
+
+  private static long gcd(long a, long b) {
+    while (b != 0) { long t = a % b; a = b; b = t; }
+    return a;
+  }
+
+  /**
+   * Returns the LinearConstraint corresponding to the given comparison, or null if it is not
+   * linear (or its coefficients do not fit in a long).
+   */
+  static LinearConstraint fromComparison(Constraint comparison) {
+    IntegerExpression expr;
+    Relation rel;
+    switch (comparison) {
+      case Geq0 g: expr = g.queryExpression(); rel = Relation.GEQ; break;
+      case Is0 i: expr = i.queryExpression(); rel = Relation.EQ; break;
+      case Neq0 n: expr = n.queryExpression(); rel = Relation.NEQ; break;
+      default: return null;
+    }
+    TreeMap<Integer,Long> coefficients = new TreeMap<Integer,Long>();
+    long[] constant = new long[] { 0 };
+    try {
+      if (!addLinear(expr, 1, coefficients, constant)) return null;
+    }
+    catch (ArithmeticException e) { return null; }
+    coefficients.values().removeIf(a -> a == 0);
+    return new LinearConstraint(coefficients, constant[0], rel);
+  }
+
+  /**
+   * Adds factor * expr to the linear combination represented by coefficients and constant[0], or
+   * returns false if expr is not linear.  An ArithmeticException is thrown on overflow.
+   */
+  private static boolean addLinear(IntegerExpression expr, long factor,
+                                   TreeMap<Integer,Long> coefficients, long[] constant) {
+    switch (expr) {
+      case IValue v:
+        constant[0] = Math.addExact(constant[0], Math.multiplyExact(factor, v.queryValue()));
+        return true;
+      case IVar x:
+        long old = coefficients.getOrDefault(x.queryIndex(), 0L);
+        coefficients.put(x.queryIndex(), Math.addExact(old, factor));
+        return true;
+      case CMult c:
+        return addLinear(c.queryChild(), Math.multiplyExact(factor, c.queryConstant()),
+                         coefficients, constant);
+      case Addition a:
+        for (int i = 1; i <= a.numChildren(); i++) {
+          if (!addLinear(a.queryChild(i), factor, coefficients, constant)) return false;
+        }
+        return true;
+      case Multiplication m:
+        // this is linear if at most one of the factors contains variables
+        IntegerExpression main = null;
+        for (int i = 1; i <= m.numChildren(); i++) {
+          IntegerExpression child = m.queryChild(i);
+          TreeMap<Integer,Long> sub = new TreeMap<Integer,Long>();
+          long[] k = new long[] { 0 };
+          if (!addLinear(child, 1, sub, k)) return false;
+          sub.values().removeIf(a -> a == 0);
+          if (sub.isEmpty()) factor = Math.multiplyExact(factor, k[0]);
+          else if (main == null) main = child;
+          else return false;
+        }
+        if (main == null) {
+          constant[0] = Math.addExact(constant[0], factor);
+          return true;
+        }
+        return addLinear(main, factor, coefficients, constant);
+      default:
+        return false;
+    }
+  }
+
+  /** Returns a constraint that holds exactly when this one does not. */
+  LinearConstraint negate() {
+    return switch (_relation) {
+      case EQ -> new LinearConstraint(new TreeMap<Integer,Long>(_coefficients), _constant,
+                                      Relation.NEQ);
+      case NEQ -> new LinearConstraint(new TreeMap<Integer,Long>(_coefficients), _constant,
+                                       Relation.EQ);
+      case GEQ -> {
+        // ¬(e ≥ 0) ⇔ e ≤ -1 ⇔ -e - 1 ≥ 0
+        TreeMap<Integer,Long> coefs = new TreeMap<Integer,Long>();
+        for (Map.Entry<Integer,Long> entry : _coefficients.entrySet()) {
+          coefs.put(entry.getKey(), -entry.getValue());
+        }
+        yield new LinearConstraint(coefs, -_constant - 1, Relation.GEQ);
+      }
+    };
+  }
+
+  /**
+   * For a constraint with relation NEQ, this returns the constraint e - 1 ≥ 0 (if positive is
+   * true) or -e - 1 ≥ 0 (if it is false), where e is the linear expression of this constraint.
+   * Together, these two cover all the integer solutions of the disequality.
+   */
+  LinearConstraint splitDisequality(boolean positive) {
+    TreeMap<Integer,Long> coefs = new TreeMap<Integer,Long>();
+    for (Map.Entry<Integer,Long> entry : _coefficients.entrySet()) {
+      coefs.put(entry.getKey(), positive ? entry.getValue() : -entry.getValue());
+    }
+    return new LinearConstraint(coefs, (positive ? _constant : -_constant) - 1, Relation.GEQ);
+  }
+
+  /** Returns the (non-zero) coefficients of all variables, indexed by variable index. */
+  Map<Integer,Long> queryCoefficients() {
+    return Collections.unmodifiableMap(_coefficients);
+  }
+
+  long queryConstant() {
+    return _constant;
+  }
+
+  Relation queryRelation() {
+    return _relation;
+  }
+
+  /** Returns whether the constraint does not contain any variables. */
+  boolean isGround() {
+    return _coefficients.isEmpty();
+  }
+
+  /** For a ground constraint, returns whether it holds. */
+  boolean evaluateGround() {
+    return switch (_relation) {
+      case GEQ -> _constant >= 0;
+      case EQ -> _constant == 0;
+      case NEQ -> _constant != 0;
+    };
+  }
+
+  public boolean equals(Object other) {
+    return other instanceof LinearConstraint c && _relation == c._relation &&
+      _constant == c._constant && _coefficients.equals(c._coefficients);
+  }
+
+  public int hashCode() {
+    return (_coefficients.hashCode() * 31 + Long.hashCode(_constant)) * 3 + _relation.ordinal();
+  }
+
+  public String toString() {
+    StringBuilder ret = new StringBuilder();
+    for (Map.Entry<Integer,Long> entry : _coefficients.entrySet()) {
+      ret.append(entry.getValue()).append("*i").append(entry.getKey()).append(" + ");
+    }
+    ret.append(_constant);
+    ret.append(switch (_relation) { case GEQ -> " >= 0"; case EQ -> " = 0"; case NEQ -> " != 0"; });
+    return ret.toString();
+  }
+}
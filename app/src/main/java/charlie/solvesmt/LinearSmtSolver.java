@@ -0,0 +1,335 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import charlie.exceptions.NullStorageException;
+import charlie.smt.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The LinearSmtSolver is an SMT solver that runs inside the JVM, and is meant for the many small
+ * problems that Cora generates, where the cost of starting an external solver dominates the cost
+ * of actually solving them.
+ *
+ * It supports boolean combinations of linear integer (in)equalities, through a small DPLL(T)
+ * procedure: the boolean structure is handled by a DPLL search over a Tseitin encoding of the
+ * constraint, and each boolean model is checked for consistency in the integer theory by the
+ * IntegerLinearSolver (Simplex with branch-and-bound).  Theory conflicts are added to the clauses,
+ * and the search is repeated.
+ *
+ * Problems that are not linear (or on which the search gives up because some limit is reached)
+ * are passed on to a fallback solver, which is typically a ProcessSmtSolver.
+ */
+public class LinearSmtSolver implements SmtSolver {
+  private static final int DECISION_LIMIT = 10000;
+  private static final int THEORY_ROUNDS = 200;
+  private static final int NODE_LIMIT = 500;
+
+  private final SmtSolver _fallback;
+
+  /** Sets up a linear solver that falls back to the default ProcessSmtSolver. */
+  public LinearSmtSolver() {
+    this(new ProcessSmtSolver());
+  }
+
+  /** Sets up a linear solver that passes the problems it cannot handle on to fallback. */
+  public LinearSmtSolver(@NotNull SmtSolver fallback) {
+    if (fallback == null) throw new NullStorageException("LinearSmtSolver",
+      "Cannot initialise with a null fallback solver");
+    _fallback = fallback;
+  }
+
+  /**
+   * Given an SmtProblem, this function tries to find a valuation for the variables in the problem
+   * that satisfies all the constraints stored in the problem.  If the problem is not linear, or
+   * cannot be decided by the internal procedure, the fallback solver is asked instead.
+   */
+  @Override
+  public Answer checkSatisfiability(SmtProblem problem) {
+    Constraint constraint = problem.queryCombinedConstraint();
+    Answer answer = new Search().solve(constraint);
+    // as a safety net, we pass the problem on if the valuation does not actually make sense
+    if (answer instanceof Answer.YES(Valuation val) && !constraint.evaluate(val)) answer = null;
+    if (answer == null) return _fallback.checkSatisfiability(problem);
+    return answer;
+  }
+
+  /**
+   * Given an SmtProblem, this function tries to prove that it is valid, by showing that its
+   * negation is unsatisfiable.  If the problem is not linear, or cannot be decided by the internal
+   * procedure, the fallback solver is asked instead.
+   */
+  @Override
+  public boolean checkValidity(SmtProblem problem) {
+    Constraint negated = SmtFactory.createNegation(problem.queryCombinedConstraint());
+    Answer answer = new Search().solve(negated);
+    if (answer == null) return _fallback.checkValidity(problem);
+    return answer instanceof Answer.NO;
+  }
+
+  /**
+   * Decides the validity of the given problems with the internal procedure where possible, and
+   * passes all the others on to the fallback solver as a single batch.
+   */
+  @Override
+  public List<Boolean> checkValidityBatch(List<SmtProblem> problems) {
+    ArrayList<Boolean> ret = new ArrayList<Boolean>();
+    ArrayList<Integer> missing = new ArrayList<Integer>();
+    ArrayList<SmtProblem> fallback = new ArrayList<SmtProblem>();
+    for (int i = 0; i < problems.size(); i++) {
+      Constraint negated = SmtFactory.createNegation(problems.get(i).queryCombinedConstraint());
+      Answer answer = new Search().solve(negated);
+      ret.add(answer instanceof Answer.NO);
+      if (answer == null) { missing.add(i); fallback.add(problems.get(i)); }
+    }
+    if (fallback.isEmpty()) return ret;
+    List<Boolean> answers = _fallback.checkValidityBatch(fallback);
+    for (int k = 0; k < missing.size(); k++) ret.set(missing.get(k), answers.get(k));
+    return ret;
+  }
+
+  /** Thrown internally when the search should be abandoned in favour of the fallback solver. */
+  private static class GiveUp extends RuntimeException {
+    GiveUp() { super(null, null, false, false); }
+  }
+
+  /**
+   * The state of a single satisfiability check.  Boolean variables of the SAT encoding are
+   * numbered from 1; a literal is a variable v (for v true) or its negation -v (for v false).
+   */
+  private static class Search {
+    private final ArrayList<int[]> _clauses = new ArrayList<int[]>();
+    private int _numVars = 0;
+    /** maps the indexes of BVars in the problem to SAT variables */
+    private final TreeMap<Integer,Integer> _boolVars = new TreeMap<Integer,Integer>();
+    /** maps linear atoms to SAT variables */
+    private final HashMap<LinearConstraint,Integer> _atomVars =
+      new HashMap<LinearConstraint,Integer>();
+    /** maps SAT variables to the linear atom they stand for, if any */
+    private final TreeMap<Integer,LinearConstraint> _atoms = new TreeMap<Integer,LinearConstraint>();
+    /** _value[v] is 1 if v is true, -1 if it is false, and 0 if it is unassigned */
+    private int[] _value;
+    private final ArrayList<Integer> _trail = new ArrayList<Integer>();
+    private int _decisions = 0;
+    private int _trueVar = 0;
+
+    /**
+     * Returns YES or NO if the constraint could be solved, and null if it should be passed to the
+     * fallback solver instead.
+     */
+    Answer solve(Constraint constraint) {
+      try {
+        int root = encode(constraint);
+        _clauses.add(new int[] { root });
+        IntegerLinearSolver theory = new IntegerLinearSolver(NODE_LIMIT);
+        for (int round = 0; round < THEORY_ROUNDS; round++) {
+          _value = new int[_numVars + 1];
+          _trail.clear();
+          if (!search()) return new Answer.NO();
+          ArrayList<Integer> literals = new ArrayList<Integer>();
+          ArrayList<LinearConstraint> atoms = new ArrayList<LinearConstraint>();
+          for (Map.Entry<Integer,LinearConstraint> entry : _atoms.entrySet()) {
+            boolean positive = _value[entry.getKey()] > 0;
+            literals.add(positive ? entry.getKey() : -entry.getKey());
+            atoms.add(positive ? entry.getValue() : entry.getValue().negate());
+          }
+          switch (theory.check(atoms)) {
+            case SAT: return new Answer.YES(makeValuation(theory.queryModel()));
+            case UNKNOWN: return null;
+            case UNSAT: _clauses.add(explainConflict(theory, literals, atoms));
+          }
+        }
+        return null;
+      }
+      catch (GiveUp e) { return null; }
+    }
+
+    /**
+     * Given a set of atoms that is inconsistent in the theory, returns a clause that excludes it.
+     * The set is first made smaller by leaving out every atom that is not needed for the
+     * inconsistency.
+     */
+    private int[] explainConflict(IntegerLinearSolver theory, ArrayList<Integer> literals,
+                                  ArrayList<LinearConstraint> atoms) {
+      for (int i = atoms.size() - 1; i >= 0; i--) {
+        LinearConstraint atom = atoms.remove(i);
+        int literal = literals.remove(i);
+        if (theory.check(atoms) != IntegerLinearSolver.Result.UNSAT) {
+          atoms.add(i, atom);
+          literals.add(i, literal);
+        }
+      }
+      int[] clause = new int[literals.size()];
+      for (int i = 0; i < clause.length; i++) clause[i] = -literals.get(i);
+      return clause;
+    }
+
+    /** Builds the valuation for the current boolean assignment and the given integer model. */
+    private Valuation makeValuation(TreeMap<Integer,Integer> model) {
+      Valuation val = new Valuation();
+      for (Map.Entry<Integer,Integer> entry : _boolVars.entrySet()) {
+        val.setBool(entry.getKey(), _value[entry.getValue()] > 0);
+      }
+      for (Map.Entry<Integer,Integer> entry : model.entrySet()) {
+        val.setInt(entry.getKey(), entry.getValue());
+      }
+      return val;
+    }
+
+    // ===== Tseitin encoding =====
+
+    private int newVar() {
+      return ++_numVars;
+    }
+
+    /** Returns a literal that is true exactly when the given constraint is. */
+    private int encode(Constraint constraint) {
+      switch (constraint) {
+        case Truth t: return trueLiteral();
+        case Falsehood f: return -trueLiteral();
+        case BVar x: return boolVar(x.queryIndex());
+        case NBVar x: return -boolVar(x.queryIndex());
+        case Not n: return -encode(n.queryChild());
+        case Conjunction c:
+          int[] conj = new int[c.numChildren()];
+          for (int i = 1; i <= conj.length; i++) conj[i-1] = encode(c.queryChild(i));
+          return junction(conj, true);
+        case Disjunction d:
+          int[] disj = new int[d.numChildren()];
+          for (int i = 1; i <= disj.length; i++) disj[i-1] = encode(d.queryChild(i));
+          return junction(disj, false);
+        case Iff iff:
+          int a = encode(iff.queryLeft()), b = encode(iff.queryRight());
+          int v = newVar();
+          _clauses.add(new int[] { -v, -a, b });
+          _clauses.add(new int[] { -v, a, -b });
+          _clauses.add(new int[] { v, a, b });
+          _clauses.add(new int[] { v, -a, -b });
+          return v;
+        default:
+          LinearConstraint atom = LinearConstraint.fromComparison(constraint);
+          if (atom == null) throw new GiveUp();
+          return atom(atom);
+      }
+    }
+
+    /** Returns a literal that is true exactly when all / any of the given literals is true. */
+    private int junction(int[] literals, boolean conjunction) {
+      int sign = conjunction ? 1 : -1;
+      int v = newVar();
+      // for a conjunction: v → l for all l, and (∧ l) → v; a disjunction is dual
+      int[] back = new int[literals.length + 1];
+      back[0] = sign * v;
+      for (int i = 0; i < literals.length; i++) {
+        _clauses.add(new int[] { -sign * v, sign * literals[i] });
+        back[i+1] = -sign * literals[i];
+      }
+      _clauses.add(back);
+      return v;
+    }
+
+    private int trueLiteral() {
+      if (_trueVar == 0) {
+        _trueVar = newVar();
+        _clauses.add(new int[] { _trueVar });
+      }
+      return _trueVar;
+    }
+
+    private int boolVar(int index) {
+      Integer v = _boolVars.get(index);
+      if (v == null) { v = newVar(); _boolVars.put(index, v); }
+      return v;
+    }
+
+    /** Returns the literal for the given atom; an atom and its negation share a variable. */
+    private int atom(LinearConstraint atom) {
+      if (atom.isGround()) return atom.evaluateGround() ? trueLiteral() : -trueLiteral();
+      Integer v = _atomVars.get(atom);
+      if (v != null) return v;
+      v = _atomVars.get(atom.negate());
+      if (v != null) return -v;
+      v = newVar();
+      _atomVars.put(atom, v);
+      _atoms.put(v, atom);
+      return v;
+    }
+
+    // ===== DPLL =====
+
+    private boolean isTrue(int literal) {
+      return _value[Math.abs(literal)] == (literal > 0 ? 1 : -1);
+    }
+
+    private boolean isFalse(int literal) {
+      return _value[Math.abs(literal)] == (literal > 0 ? -1 : 1);
+    }
+
+    private void assign(int literal) {
+      _value[Math.abs(literal)] = literal > 0 ? 1 : -1;
+      _trail.add(literal);
+    }
+
+    private void undoUntil(int size) {
+      while (_trail.size() > size) {
+        _value[Math.abs(_trail.remove(_trail.size() - 1))] = 0;
+      }
+    }
+
+    /** Performs unit propagation, and returns false if a clause became false. */
+    private boolean propagate() {
+      boolean changed = true;
+      while (changed) {
+        changed = false;
+        for (int[] clause : _clauses) {
+          int unassigned = 0, count = 0;
+          boolean satisfied = false;
+          for (int literal : clause) {
+            if (isTrue(literal)) { satisfied = true; break; }
+            if (!isFalse(literal)) { unassigned = literal; count++; }
+          }
+          if (satisfied) continue;
+          if (count == 0) return false;
+          if (count == 1) { assign(unassigned); changed = true; }
+        }
+      }
+      return true;
+    }
+
+    /** Extends the current assignment to one satisfying all clauses, if possible. */
+    private boolean search() {
+      if (!propagate()) return false;
+      int v = 1;
+      while (v <= _numVars && _value[v] != 0) v++;
+      if (v > _numVars) return true;
+      if (++_decisions > DECISION_LIMIT) throw new GiveUp();
+      int mark = _trail.size();
+      assign(v);
+      if (search()) return true;
+      undoUntil(mark);
+      assign(-v);
+      if (search()) return true;
+      undoUntil(mark);
+      return false;
+    }
+  }
+}
@@ -22,16 +22,13 @@ import charlie.util.ProcessCaller;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Optional;
 import java.util.Scanner;
 
 import static charlie.solvesmt.ProcessSmtSolver.PhysicalSolver.Z3;
-import static charlie.solvesmt.SMTLibString.Logic.QFNIA;
 import static charlie.solvesmt.SMTLibString.Version.V26;
 
 public class ProcessSmtSolver implements SmtSolver {
@@ -75,8 +72,6 @@ public class ProcessSmtSolver implements SmtSolver {
 
   private PhysicalSolver _physicalSolver;
 
-  private OS currentOS;
-
   /** Sets up an SmtSolver that uses the default solver (this is currently set to Z3). */
   public ProcessSmtSolver() {
     this(Z3);
@@ -89,31 +84,21 @@ public class ProcessSmtSolver implements SmtSolver {
     );
 
     _physicalSolver = physicalSolver;
-
-    if (System.getProperty("os.name").startsWith("Windows")) {
-      currentOS = OS.WINDOWS;
-    } else {
-      currentOS = OS.UNIX;
-    }
   }
 
-  /** Create a process caller for the given input string, with the given timeout (in seconds). */
-  private ProcessCaller createSmtSolverProcess(Path smtProblemFile, int timeout) {
-    List<String> commands = new ArrayList<>();
-    //TODO For now we only care about linux and mac.
-    // Proper windows support for the process caller requires this code to identify the
-    // current OS the JVM is running on and change the commands accordingly.
-
-    if (currentOS == OS.UNIX) {
-      commands.add("/bin/sh");
-      commands.add("-c");
-    } else {
-      commands.add("cmd.exe");
-      commands.add("/c");
-    }
-
-    commands.add(_physicalSolver.getCommandName() + " " + smtProblemFile.toString() + " ");
-
+  /**
+   * Create a process caller that runs the solver on the SMTLIB input given on its standard input,
+   * with the given timeout (in seconds).  If incremental is true, the solver is started in a mode
+   * that supports push and pop.
+   */
+  private ProcessCaller createSmtSolverProcess(int timeout, boolean incremental) {
+    String name = _physicalSolver.getCommandName();
+    List<String> commands = switch (_physicalSolver) {
+      case Z3 -> List.of(name, "-in");
+      case CVC5 -> incremental ? List.of(name, "--incremental", "--lang=smt2")
+                               : List.of(name, "--lang=smt2");
+      case YICES2 -> incremental ? List.of(name, "--incremental") : List.of(name);
+    };
     return new ProcessCaller(commands, timeout);
   }
 
@@ -131,43 +116,62 @@ public class ProcessSmtSolver implements SmtSolver {
    */
   @Override
   public Answer checkSatisfiability(SmtProblem problem) {
-    SMTLibString file = new SMTLibString(V26, QFNIA);
-    String stringOfSmtProblem = file.buildSmtlibString(problem);
-    String smtResultString = null;
-    Path smtProblemFile = null;
-    try {
-      smtProblemFile = Files.createTempFile("coraSMTTask_sat_", null);
-      Files.writeString(smtProblemFile, stringOfSmtProblem);
-
-      ProcessCaller pc = createSmtSolverProcess(smtProblemFile, TIMEOUT);
-
-      Optional<String> optionalSmtResultString = pc.getResultAsString();
+    ConstraintPreprocessor preprocessor =
+      new ConstraintPreprocessor(problem.queryCombinedConstraint());
+    // The groups share no variables, so they are satisfiable together exactly if each of them is,
+    // and a single model covers all of them.  Hence, we only need one solver process: we send
+    // all groups as a single query, in the most expressive logic that any of them needs.  (Since
+    // solvers may give an error on get-model after an unsat answer, we do not use one scope per
+    // group here, as checkValidity does.)
+    List<ConstraintPreprocessor.Group> groups = preprocessor.queryGroups();
+    Answer ret;
+    if (groups.size() <= 1) ret = preprocessor.solve(this::solveGroup);
+    else {
+      ArrayList<Constraint> all = new ArrayList<Constraint>();
+      for (ConstraintPreprocessor.Group group : groups) all.addAll(group.constraints());
+      Answer answer = solveGroup(new ConstraintPreprocessor.Group(all, strongestLogic(groups)));
+      ret = preprocessor.solve(group -> answer);
+    }
 
-      Files.delete(smtProblemFile);
+    // Check if the valuation constructed really makes sense.
+    switch (ret) {
+      case Answer.YES(Valuation val):
+        if (!problem.queryCombinedConstraint().evaluate(val)) {
+          return new Answer.MAYBE("Valuation read from external solver " +
+            "does not satisfy the constraints posed on the smt problem!");
+        }
+      default:
+        return ret;
+    }
+  }
 
+  /**
+   * Runs the solver process on the given group of constraints, in its logic, and returns the
+   * answer it gives.
+   */
+  private Answer solveGroup(ConstraintPreprocessor.Group group) {
+    SMTLibString file = new SMTLibString(V26, group.logic());
+    String smtResultString = null;
+    try {
+      ProcessCaller pc = createSmtSolverProcess(TIMEOUT, false);
+      Optional<String> optionalSmtResultString =
+        pc.getResultAsString(input -> file.writeSmtlib(group.constraints(), input));
       if (!optionalSmtResultString.isPresent()) {
         return new Answer.MAYBE("SMT solver process did not return an answer within the " +
                                 "time limit.");
       }
       smtResultString = optionalSmtResultString.get();
     }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return new Answer.MAYBE("External SMT process was cancelled.");
+    }
     catch (Exception e) {
       ExceptionLogger.log(e);
       return new Answer.MAYBE("External SMT process failed: " + e.getMessage());
     }
     List<SExpression> parsedResults = SmtParser.readExpressionsFromString(smtResultString);
-    Answer ret = SMTLibResponseHandler.expressionsToAnswer(parsedResults);
-
-    // Check if the valuation constructed really makes sense.
-    switch (ret) {
-      case Answer.YES(Valuation val):
-        if (!problem.queryCombinedConstraint().evaluate(val)) {
-          return new Answer.MAYBE("Valuation read from external solver " +
-            "does not satisfy the constraints posed on the smt problem!");
-        }
-      default:
-        return ret;
-    }
+    return SMTLibResponseHandler.expressionsToAnswer(parsedResults);
   }
 
   /**
@@ -181,37 +185,110 @@ public class ProcessSmtSolver implements SmtSolver {
    */
   @Override
   public boolean checkValidity(SmtProblem problem) {
-
-    SMTLibString file = new SMTLibString(V26, QFNIA);
     Constraint negated = SmtFactory.createNegation(problem.queryCombinedConstraint());
+    ConstraintPreprocessor preprocessor = new ConstraintPreprocessor(negated);
+    List<ConstraintPreprocessor.Group> groups = preprocessor.queryGroups();
+    if (groups.size() <= 1) return preprocessor.refute(this::refuteGroup);
+    // to avoid starting a process for every group, they are all sent to the same one, each in its
+    // own push/pop scope
+    List<Boolean> answers = refuteGroups(groups, new SMTLibString(V26, strongestLogic(groups)));
+    return answers != null && answers.contains(true);
+  }
 
-    String stringOfSmtProblem =
-      file.buildSmtlibString(
-        problem.numberBooleanVariables(),
-        problem.numberIntegerVariables(),
-        negated
-      );
+  /** Returns the most expressive logic that any of the given groups needs. */
+  private static SMTLibString.Logic strongestLogic(List<ConstraintPreprocessor.Group> groups) {
+    SMTLibString.Logic logic = SMTLibString.Logic.QFUF;
+    for (ConstraintPreprocessor.Group group : groups) {
+      if (group.logic().compareTo(logic) > 0) logic = group.logic();
+    }
+    return logic;
+  }
 
+  /** Returns true if the solver process proves the given group of constraints unsatisfiable. */
+  private boolean refuteGroup(ConstraintPreprocessor.Group group) {
+    SMTLibString file = new SMTLibString(V26, group.logic());
     try {
-      Path smtProblemFile = Files.createTempFile("coraSMTTask_validity_", null);
-      Files.writeString(smtProblemFile, stringOfSmtProblem);
-
-      ProcessCaller pc = createSmtSolverProcess(smtProblemFile, TIMEOUT);
-
-      Optional<InputStream> is = pc.getResultAsInputStream();
-
-      Files.delete(smtProblemFile);
-
-      if (is.isPresent()) {
-        Scanner scanner = new Scanner(is.get());
+      ProcessCaller pc = createSmtSolverProcess(TIMEOUT, false);
+      Optional<String> result =
+        pc.getResultAsString(input -> file.writeSmtlib(group.constraints(), input));
+      if (result.isPresent()) {
+        Scanner scanner = new Scanner(result.get());
         return SMTLibResponseHandler.readAnswer(scanner).equals("unsat");
       }
     }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false; // we were cancelled, so no validity could be proven
+    }
     catch (Exception e) {
       ExceptionLogger.log(e);
       return false; // an error occurred, so no validity could be proven
     }
     return false; // could not read a result, so no validity could be proven
   }
-}
 
+  /**
+   * Checks the validity of all the given problems with a single solver process: after
+   * preprocessing their negations, all the remaining groups are sent to the solver, each in its
+   * own push/pop scope, in the most expressive logic that any of them needs.  A problem is valid
+   * if one of its groups is unsatisfiable.
+   */
+  @Override
+  public List<Boolean> checkValidityBatch(List<SmtProblem> problems) {
+    ArrayList<ConstraintPreprocessor> preprocessed = new ArrayList<ConstraintPreprocessor>();
+    ArrayList<ConstraintPreprocessor.Group> groups = new ArrayList<ConstraintPreprocessor.Group>();
+    for (SmtProblem problem : problems) {
+      Constraint negated = SmtFactory.createNegation(problem.queryCombinedConstraint());
+      ConstraintPreprocessor preprocessor = new ConstraintPreprocessor(negated);
+      preprocessed.add(preprocessor);
+      groups.addAll(preprocessor.queryGroups());
+    }
+
+    IdentityHashMap<ConstraintPreprocessor.Group,Boolean> refuted =
+      new IdentityHashMap<ConstraintPreprocessor.Group,Boolean>();
+    if (!groups.isEmpty()) {
+      List<Boolean> answers = refuteGroups(groups, new SMTLibString(V26, strongestLogic(groups)));
+      // if the output cannot be matched to the queries, we ask them one by one after all
+      if (answers == null) return SmtSolver.super.checkValidityBatch(problems);
+      for (int i = 0; i < groups.size(); i++) refuted.put(groups.get(i), answers.get(i));
+    }
+    ArrayList<Boolean> ret = new ArrayList<Boolean>();
+    for (ConstraintPreprocessor preprocessor : preprocessed) {
+      ret.add(preprocessor.refute(group -> refuted.getOrDefault(group, false)));
+    }
+    return ret;
+  }
+
+  /**
+   * Helper function for checkValidityBatch: runs a single solver process on all the given groups,
+   * and returns for each of them whether it was found to be unsatisfiable.  If the solver does
+   * not finish in time, all of them are considered satisfiable; if its output cannot be read, then
+   * null is returned.
+   */
+  private List<Boolean> refuteGroups(List<ConstraintPreprocessor.Group> groups,
+                                     SMTLibString file) {
+    ArrayList<Boolean> failed = new ArrayList<Boolean>();
+    for (int i = 0; i < groups.size(); i++) failed.add(false);
+    try {
+      int timeout = (int)Math.min(Integer.MAX_VALUE, (long)TIMEOUT * groups.size());
+      ProcessCaller pc = createSmtSolverProcess(timeout, true);
+      Optional<String> result = pc.getResultAsString(input -> {
+        input.write(file.buildSessionHeader());
+        for (ConstraintPreprocessor.Group group : groups) {
+          file.writeSessionQuery(group.constraints(), false, input);
+        }
+        input.write("(exit)" + System.lineSeparator());
+      });
+      if (result.isEmpty()) return failed;
+      return SMTLibResponseHandler.readUnsatAnswers(result.get(), groups.size());
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return failed;   // we were cancelled, so no validity could be proven
+    }
+    catch (Exception e) {
+      ExceptionLogger.log(e);
+      return failed;   // an error occurred, so no validity could be proven
+    }
+  }
+}
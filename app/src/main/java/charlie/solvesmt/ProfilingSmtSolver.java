@@ -0,0 +1,74 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import charlie.exceptions.NullStorageException;
+import charlie.smt.*;
+import charlie.util.Profiler;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * A ProfilingSmtSolver passes all queries on to another SmtSolver, and records the time and memory
+ * spent on each of them in a Profiler, along with the size of the problem (the number of variables
+ * and constraints).  Measurements are named after the class of the underlying solver.
+ *
+ * The ProfilingSmtSolver is thread-safe, provided the underlying solver is.
+ */
+public class ProfilingSmtSolver implements SmtSolver {
+  private final SmtSolver _inner;
+  private final Profiler _profiler;
+  private final String _name;
+
+  /** Creates a solver that records the queries passed on to inner in the given profiler. */
+  public ProfilingSmtSolver(@NotNull SmtSolver inner, @NotNull Profiler profiler) {
+    if (inner == null) throw new NullStorageException("ProfilingSmtSolver",
+      "Cannot initialise with a null solver");
+    if (profiler == null) throw new NullStorageException("ProfilingSmtSolver",
+      "Cannot initialise with a null profiler");
+    _inner = inner;
+    _profiler = profiler;
+    _name = inner.getClass().getSimpleName();
+  }
+
+  /** Returns the number of variables in the given problem. */
+  private static int variables(SmtProblem problem) {
+    return problem.numberBooleanVariables() + problem.numberIntegerVariables();
+  }
+
+  public Answer checkSatisfiability(SmtProblem problem) {
+    return _profiler.measure("smt-satisfiability", _name, variables(problem),
+                             problem.numberConstraints(),
+                             () -> _inner.checkSatisfiability(problem));
+  }
+
+  public boolean checkValidity(SmtProblem problem) {
+    return _profiler.measure("smt-validity", _name, variables(problem),
+                             problem.numberConstraints(), () -> _inner.checkValidity(problem));
+  }
+
+  /** Records the batch as a single measurement, with the sizes of all its problems added up. */
+  public List<Boolean> checkValidityBatch(List<SmtProblem> problems) {
+    int vars = 0, constraints = 0;
+    for (SmtProblem problem : problems) {
+      vars += variables(problem);
+      constraints += problem.numberConstraints();
+    }
+    return _profiler.measure("smt-validity-batch", _name, vars, constraints,
+                             () -> _inner.checkValidityBatch(problems));
+  }
+}
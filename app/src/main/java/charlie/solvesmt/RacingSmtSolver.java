@@ -0,0 +1,307 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import charlie.exceptions.NullStorageException;
+import charlie.smt.*;
+import charlie.solvesmt.ProcessSmtSolver.PhysicalSolver;
+import charlie.util.Deadline;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A RacingSmtSolver asks the same question to several solvers at once, takes the first definitive
+ * answer, and cancels the others (which, for a ProcessSmtSolver, kills the solver process).  A
+ * definitive answer is YES or NO for satisfiability; validity is decided through satisfiability of
+ * the negation, so proofs of both validity and invalidity end the race.  For a batch of validity
+ * questions, the answers of all solvers are combined, as explained in checkValidityBatch.
+ *
+ * Since each solver is much faster than the others on some kinds of problems, the racing solver
+ * keeps statistics of which solver wins for each problem shape (the logic the problem needs, and
+ * the order of magnitude of its size).  Once a shape has been seen often enough, and one solver has
+ * won most of the races, only that solver is started for problems of the same shape; the others are
+ * raced only if it fails to give a definitive answer.
+ *
+ * The RacingSmtSolver is thread-safe, provided the underlying solvers are.
+ */
+public class RacingSmtSolver implements SmtSolver {
+  /** The number of races on a shape that are needed before we trust its statistics. */
+  static final int MIN_EVIDENCE = 8;
+  /** The fraction of races a solver should have won to be used on its own. */
+  static final double DOMINANCE = 0.75;
+
+  /** The result of a race: the index of the winning solver (-1 if none won), and its answer. */
+  private record Outcome<T>(int winner, T value) {}
+
+  private final List<SmtSolver> _members;
+  private final ExecutorService _executor;
+  /** For every problem shape, the number of races won by each of the members. */
+  private final HashMap<String,int[]> _wins;
+
+  /** Creates a solver that races the given solvers. */
+  public RacingSmtSolver(@NotNull List<SmtSolver> members) {
+    if (members == null) throw new NullStorageException("RacingSmtSolver",
+      "Cannot initialise with a null list of solvers");
+    if (members.isEmpty()) {
+      throw new IllegalArgumentException("RacingSmtSolver needs at least one solver to race.");
+    }
+    _members = new ArrayList<SmtSolver>(members);
+    _executor = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "smt-race");
+      thread.setDaemon(true);
+      return thread;
+    });
+    _wins = new HashMap<String,int[]>();
+  }
+
+  /** Creates a solver that races a ProcessSmtSolver for each of the given physical solvers. */
+  public static RacingSmtSolver create(List<PhysicalSolver> solvers) {
+    ArrayList<SmtSolver> members = new ArrayList<SmtSolver>();
+    for (PhysicalSolver solver : solvers) members.add(new ProcessSmtSolver(solver));
+    return new RacingSmtSolver(members);
+  }
+
+  @Override
+  public Answer checkSatisfiability(SmtProblem problem) {
+    return race(shape(List.of(problem)), solver -> solver.checkSatisfiability(problem),
+                answer -> !(answer instanceof Answer.MAYBE),
+                new Answer.MAYBE("None of the racing SMT solvers found an answer."));
+  }
+
+  /**
+   * The problem is valid if its negation is unsatisfiable.  We race on the satisfiability of the
+   * negation rather than on validity, since a solver that finds a counterexample (YES) gives a
+   * definitive answer just like one that proves validity (NO); only MAYBE means we do not know.
+   */
+  @Override
+  public boolean checkValidity(SmtProblem problem) {
+    SmtProblem negation = new SmtProblem();
+    negation.require(SmtFactory.createNegation(problem.queryCombinedConstraint()));
+    Answer answer = race(shape(List.of(problem)), solver -> solver.checkSatisfiability(negation),
+                         a -> !(a instanceof Answer.MAYBE),
+                         new Answer.MAYBE("None of the racing SMT solvers found an answer."));
+    return answer instanceof Answer.NO;
+  }
+
+  /**
+   * Races the solvers on the whole batch.  Unlike a single question, a batch result is not simply
+   * definitive or not: different solvers may prove different problems valid.  Hence, a problem is
+   * considered valid if any of the solvers proves it so, and the race only stops early once every
+   * problem has been proved valid.  If there is a favourite for the shape, it is asked alone first,
+   * and the others are only asked about the problems it did not prove.
+   */
+  @Override
+  public List<Boolean> checkValidityBatch(List<SmtProblem> problems) {
+    String shape = shape(problems);
+    ArrayList<Boolean> valid = new ArrayList<Boolean>();
+    ArrayList<Integer> open = new ArrayList<Integer>();
+    for (int i = 0; i < problems.size(); i++) { valid.add(false); open.add(i); }
+    ArrayList<Integer> everyone = new ArrayList<Integer>();
+    for (int i = 0; i < _members.size(); i++) everyone.add(i);
+    int favourite = queryFavourite(shape);
+    if (favourite >= 0) {
+      int proved = raceBatch(List.of(favourite), problems, valid, open)[favourite];
+      if (open.isEmpty()) { recordWin(shape, favourite); return valid; }
+      everyone.remove(Integer.valueOf(favourite));
+      if (everyone.isEmpty()) {
+        if (proved > 0) recordWin(shape, favourite);
+        return valid;
+      }
+    }
+    int[] proved = raceBatch(everyone, problems, valid, open);
+    int winner = -1;
+    for (int i : everyone) {
+      if (proved[i] > 0 && (winner < 0 || proved[i] > proved[winner])) winner = i;
+    }
+    if (winner >= 0) recordWin(shape, winner);
+    return valid;
+  }
+
+  /**
+   * Returns the shape of the given problems: the logic they need, and the order of magnitude of
+   * their total size.
+   */
+  static String shape(List<SmtProblem> problems) {
+    SMTLibString.Logic logic = SMTLibString.Logic.QFUF;
+    int size = 0;
+    for (SmtProblem problem : problems) {
+      SMTLibString.Logic l = ConstraintPreprocessor.logicFor(problem.queryCombinedConstraint());
+      if (l.compareTo(logic) > 0) logic = l;
+      size += problem.numberConstraints() + problem.numberBooleanVariables() +
+              problem.numberIntegerVariables();
+    }
+    return SMTLibString.logicToString(logic) + "/" + (32 - Integer.numberOfLeadingZeros(size));
+  }
+
+  /**
+   * Returns the index of the solver that should be used on its own for the given shape, or -1 if
+   * all of them should be raced.
+   */
+  synchronized int queryFavourite(String shape) {
+    int[] wins = _wins.get(shape);
+    if (wins == null) return -1;
+    int total = 0, best = 0;
+    for (int i = 0; i < wins.length; i++) {
+      total += wins[i];
+      if (wins[i] > wins[best]) best = i;
+    }
+    if (total < MIN_EVIDENCE || wins[best] < DOMINANCE * total) return -1;
+    return best;
+  }
+
+  /** Records that the given solver won a race on the given shape. */
+  private synchronized void recordWin(String shape, int winner) {
+    _wins.computeIfAbsent(shape, s -> new int[_members.size()])[winner]++;
+  }
+
+  /**
+   * Poses a question to the solvers, and returns the first definitive answer.  If there is a
+   * favourite for the shape, it is asked alone first.  If no solver gives a definitive answer,
+   * the last answer is returned (or fallback if no solver finished at all).
+   */
+  private <T> T race(String shape, Function<SmtSolver,T> query, Predicate<T> definitive,
+                     T fallback) {
+    ArrayList<Integer> everyone = new ArrayList<Integer>();
+    for (int i = 0; i < _members.size(); i++) everyone.add(i);
+    int favourite = queryFavourite(shape);
+    Outcome<T> outcome;
+    if (favourite >= 0) {
+      outcome = runRace(List.of(favourite), query, definitive);
+      everyone.remove(Integer.valueOf(favourite));
+      if (outcome.winner() < 0 && !everyone.isEmpty()) {
+        outcome = runRace(everyone, query, definitive);
+      }
+    }
+    else outcome = runRace(everyone, query, definitive);
+    if (outcome.winner() >= 0) recordWin(shape, outcome.winner());
+    return outcome.value() == null ? fallback : outcome.value();
+  }
+
+  /**
+   * Runs the query on the given solvers in parallel, and returns the first definitive answer;
+   * the other solvers are then cancelled.  A single solver is run on the current thread.
+   */
+  private <T> Outcome<T> runRace(List<Integer> racers, Function<SmtSolver,T> query,
+                                 Predicate<T> definitive) {
+    if (racers.size() == 1) {
+      int i = racers.get(0);
+      T value = query.apply(_members.get(i));
+      return new Outcome<T>(value != null && definitive.test(value) ? i : -1, value);
+    }
+
+    // the racers run on other threads, so they should be bound by the deadline of this one
+    Deadline deadline = Deadline.current();
+    CompletionService<Outcome<T>> service = new ExecutorCompletionService<Outcome<T>>(_executor);
+    ArrayList<Future<Outcome<T>>> futures = new ArrayList<Future<Outcome<T>>>();
+    for (int i : racers) {
+      futures.add(service.submit(() ->
+        new Outcome<T>(i, deadline.run(() -> query.apply(_members.get(i))))));
+    }
+    T last = null;
+    try {
+      for (int k = 0; k < racers.size(); k++) {
+        Outcome<T> outcome;
+        try { outcome = service.take().get(); }
+        catch (ExecutionException e) { continue; }   // this solver crashed; the others may not
+        if (outcome.value() == null) continue;
+        if (definitive.test(outcome.value())) return outcome;
+        last = outcome.value();
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    finally {
+      for (Future<Outcome<T>> future : futures) future.cancel(true);
+    }
+    return new Outcome<T>(-1, last);
+  }
+
+  /**
+   * Runs the given solvers in parallel on the problems whose indexes are in open, and marks every
+   * problem that any of them proves valid as such in valid (removing it from open).  The solvers
+   * are cancelled once open is empty; otherwise, all of them are allowed to finish.  The result
+   * maps each solver index to the number of problems it proved valid.  A single solver is run on
+   * the current thread.
+   */
+  private int[] raceBatch(List<Integer> racers, List<SmtProblem> problems,
+                          ArrayList<Boolean> valid, ArrayList<Integer> open) {
+    int[] proved = new int[_members.size()];
+    List<Integer> asked = List.copyOf(open);
+    ArrayList<SmtProblem> todo = new ArrayList<SmtProblem>();
+    for (int i : asked) todo.add(problems.get(i));
+    if (racers.size() == 1) {
+      int i = racers.get(0);
+      proved[i] = recordValid(_members.get(i).checkValidityBatch(todo), asked, valid, open);
+      return proved;
+    }
+
+    Deadline deadline = Deadline.current();
+    CompletionService<Outcome<List<Boolean>>> service =
+      new ExecutorCompletionService<Outcome<List<Boolean>>>(_executor);
+    ArrayList<Future<Outcome<List<Boolean>>>> futures =
+      new ArrayList<Future<Outcome<List<Boolean>>>>();
+    for (int i : racers) {
+      SmtSolver solver = _members.get(i);
+      futures.add(service.submit(() ->
+        new Outcome<List<Boolean>>(i, deadline.run(() -> solver.checkValidityBatch(todo)))));
+    }
+    try {
+      for (int k = 0; k < racers.size() && !open.isEmpty(); k++) {
+        Outcome<List<Boolean>> outcome;
+        try { outcome = service.take().get(); }
+        catch (ExecutionException e) { continue; }   // this solver crashed; the others may not
+        proved[outcome.winner()] = recordValid(outcome.value(), asked, valid, open);
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    finally {
+      for (Future<Outcome<List<Boolean>>> future : futures) future.cancel(true);
+    }
+    return proved;
+  }
+
+  /**
+   * Helper function for raceBatch: answers[k] is the answer for the problem with index asked[k];
+   * every problem that is proved valid is marked as such.  This returns the number of problems
+   * that answers proves valid (including those that were already proved by another solver).
+   */
+  private static int recordValid(List<Boolean> answers, List<Integer> asked,
+                                 ArrayList<Boolean> valid, ArrayList<Integer> open) {
+    if (answers == null) return 0;
+    int count = 0;
+    for (int k = 0; k < asked.size() && k < answers.size(); k++) {
+      if (!Boolean.TRUE.equals(answers.get(k))) continue;
+      count++;
+      int i = asked.get(k);
+      if (!valid.get(i)) { valid.set(i, true); open.remove(Integer.valueOf(i)); }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,119 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import java.math.BigInteger;
+
+/**
+ * An exact rational number, used by the Simplex procedure.  Rationals are immutable, and always
+ * kept in normal form: the denominator is positive, and coprime with the numerator.
+ */
+final class Rational implements Comparable<Rational> {
+  static final Rational ZERO = new Rational(BigInteger.ZERO, BigInteger.ONE);
+  static final Rational ONE = new Rational(BigInteger.ONE, BigInteger.ONE);
+
+  private final BigInteger _num;
+  private final BigInteger _den;
+
+  /** Creates num / den, which is assumed to be already normalised. */
+  private Rational(BigInteger num, BigInteger den) {
+    _num = num;
+    _den = den;
+  }
+
+  /** Returns the rational representation of the given integer. */
+  static Rational of(long value) {
+    return new Rational(BigInteger.valueOf(value), BigInteger.ONE);
+  }
+
+  /** Returns the rational representation of the given integer. */
+  static Rational of(BigInteger value) {
+    return new Rational(value, BigInteger.ONE);
+  }
+
+  /** Returns num / den in normal form; den should not be 0. */
+  private static Rational create(BigInteger num, BigInteger den) {
+    if (den.signum() < 0) { num = num.negate(); den = den.negate(); }
+    BigInteger gcd = num.gcd(den);
+    if (!gcd.equals(BigInteger.ONE) && gcd.signum() != 0) {
+      num = num.divide(gcd);
+      den = den.divide(gcd);
+    }
+    return new Rational(num, den);
+  }
+
+  Rational add(Rational other) {
+    if (_den.equals(other._den)) return create(_num.add(other._num), _den);
+    return create(_num.multiply(other._den).add(other._num.multiply(_den)),
+                  _den.multiply(other._den));
+  }
+
+  Rational subtract(Rational other) {
+    return add(other.negate());
+  }
+
+  Rational multiply(Rational other) {
+    return create(_num.multiply(other._num), _den.multiply(other._den));
+  }
+
+  /** Returns this / other; other should not be zero. */
+  Rational divide(Rational other) {
+    return create(_num.multiply(other._den), _den.multiply(other._num));
+  }
+
+  Rational negate() {
+    return new Rational(_num.negate(), _den);
+  }
+
+  int signum() {
+    return _num.signum();
+  }
+
+  boolean isInteger() {
+    return _den.equals(BigInteger.ONE);
+  }
+
+  /** Returns the largest integer that is smaller than or equal to this number. */
+  BigInteger floor() {
+    BigInteger[] qr = _num.divideAndRemainder(_den);
+    if (qr[1].signum() < 0) return qr[0].subtract(BigInteger.ONE);
+    return qr[0];
+  }
+
+  /** Returns the smallest integer that is greater than or equal to this number. */
+  BigInteger ceil() {
+    BigInteger[] qr = _num.divideAndRemainder(_den);
+    if (qr[1].signum() > 0) return qr[0].add(BigInteger.ONE);
+    return qr[0];
+  }
+
+  public int compareTo(Rational other) {
+    return _num.multiply(other._den).compareTo(other._num.multiply(_den));
+  }
+
+  public boolean equals(Object other) {
+    return other instanceof Rational r && _num.equals(r._num) && _den.equals(r._den);
+  }
+
+  public int hashCode() {
+    return 31 * _num.hashCode() + _den.hashCode();
+  }
+
+  public String toString() {
+    if (isInteger()) return _num.toString();
+    return _num.toString() + "/" + _den.toString();
+  }
+}
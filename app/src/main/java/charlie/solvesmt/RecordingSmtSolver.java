@@ -0,0 +1,126 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import charlie.exceptions.NullStorageException;
+import charlie.smt.*;
+import charlie.util.ExceptionLogger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A RecordingSmtSolver wraps around another SmtSolver, and writes every question it is asked,
+ * together with the answer, to a log file.  This log can later be used by a ReplayingSmtSolver,
+ * to repeat the same run without the underlying solver -- for instance to benchmark the prover on
+ * a machine without an external SMT solver, with exactly the same proof search.
+ *
+ * Questions are stored in the canonical SMT-LIB form of CanonicalConstraint, so the log does not
+ * depend on the names of variables.  Each line has one of the forms:
+ * - "valid TAB key TAB true" or "valid TAB key TAB false"
+ * - "sat TAB key TAB NO" or "sat TAB key TAB MAYBE TAB reason"
+ * - "sat TAB key TAB YES TAB numBools TAB numInts TAB values", where values lists the canonical
+ *   boolean variables (as 0 or 1) and then the integer ones, separated by spaces.
+ * Unlike the CachingSmtSolver, all answers are stored, including negative ones and MAYBEs, and in
+ * the order they were given; a question that is asked twice is therefore also logged twice.
+ *
+ * Every line is flushed when it is written, so the log is usable even if the run is cut short.
+ * The RecordingSmtSolver is thread-safe, provided the underlying solver is.
+ */
+public class RecordingSmtSolver implements SmtSolver, Closeable {
+  private final SmtSolver _inner;
+  private final BufferedWriter _writer;
+
+  /** Creates a solver that passes all questions to inner, and logs them to the given file. */
+  public RecordingSmtSolver(@NotNull SmtSolver inner, @NotNull Path file) throws IOException {
+    if (inner == null) throw new NullStorageException("RecordingSmtSolver",
+      "Cannot initialise with a null solver");
+    _inner = inner;
+    _writer = Files.newBufferedWriter(file);
+  }
+
+  @Override
+  public Answer checkSatisfiability(SmtProblem problem) {
+    CanonicalConstraint canonical = new CanonicalConstraint(problem.queryCombinedConstraint());
+    Answer answer = _inner.checkSatisfiability(problem);
+    String line = "sat\t" + canonical.queryKey() + "\t" + switch (answer) {
+      case Answer.YES(Valuation val) -> "YES\t" + encodeValuation(canonical, val);
+      case Answer.NO() -> "NO";
+      case Answer.MAYBE(String reason) -> "MAYBE\t" + reason.replaceAll("\\s+", " ");
+    };
+    write(List.of(line));
+    return answer;
+  }
+
+  @Override
+  public boolean checkValidity(SmtProblem problem) {
+    String key = new CanonicalConstraint(problem.queryCombinedConstraint()).queryKey();
+    boolean valid = _inner.checkValidity(problem);
+    write(List.of("valid\t" + key + "\t" + valid));
+    return valid;
+  }
+
+  /** Passes the batch on to the underlying solver as a whole, and logs each of its answers. */
+  @Override
+  public List<Boolean> checkValidityBatch(List<SmtProblem> problems) {
+    ArrayList<String> keys = new ArrayList<String>();
+    for (SmtProblem problem : problems) {
+      keys.add(new CanonicalConstraint(problem.queryCombinedConstraint()).queryKey());
+    }
+    List<Boolean> answers = _inner.checkValidityBatch(problems);
+    ArrayList<String> lines = new ArrayList<String>();
+    for (int i = 0; i < keys.size(); i++) {
+      lines.add("valid\t" + keys.get(i) + "\t" + answers.get(i));
+    }
+    write(lines);
+    return answers;
+  }
+
+  /** Returns "numBools TAB numInts TAB values" for the canonical form of val. */
+  private static String encodeValuation(CanonicalConstraint canonical, Valuation val) {
+    Valuation cval = canonical.toCanonical(val);
+    int numBools = canonical.numberBooleanVariables();
+    int numInts = canonical.numberIntegerVariables();
+    StringBuilder values = new StringBuilder();
+    for (int i = 1; i <= numBools; i++) values.append(cval.queryBoolAssignment(i) ? "1 " : "0 ");
+    for (int i = 1; i <= numInts; i++) values.append(cval.queryIntAssignment(i)).append(" ");
+    return numBools + "\t" + numInts + "\t" + values.toString().trim();
+  }
+
+  /** Appends the given lines to the log, and flushes it. */
+  private synchronized void write(List<String> lines) {
+    try {
+      for (String line : lines) { _writer.write(line); _writer.newLine(); }
+      _writer.flush();
+    }
+    catch (IOException e) {
+      ExceptionLogger.log("Could not write to SMT log", e);
+    }
+  }
+
+  /** Closes the log file. */
+  @Override
+  public synchronized void close() {
+    try { _writer.close(); }
+    catch (IOException e) { ExceptionLogger.log("Could not close SMT log", e); }
+  }
+}
@@ -0,0 +1,130 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import charlie.smt.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A ReplayingSmtSolver answers questions from a log written by a RecordingSmtSolver, without
+ * calling any actual SMT solver.  If a question occurs several times in the log, the recorded
+ * answers are given in the order they were recorded; once they run out, the last one keeps being
+ * used.  Hence, if the prover is deterministic, a replayed run makes exactly the same choices as
+ * the recorded one, including those caused by timeouts.
+ *
+ * Questions that do not occur in the log are answered with MAYBE (for satisfiability) or false
+ * (for validity), as a solver that does not know the answer would.
+ *
+ * The ReplayingSmtSolver is thread-safe.
+ */
+public class ReplayingSmtSolver implements SmtSolver {
+  private final HashMap<String,ArrayDeque<Answer>> _satAnswers;
+  private final HashMap<String,ArrayDeque<Boolean>> _validAnswers;
+  private long _replayed;
+  private long _unknown;
+
+  /**
+   * Reads the given log.  An IOException is thrown if the file cannot be read or does not have
+   * the format described in RecordingSmtSolver.
+   */
+  public ReplayingSmtSolver(Path file) throws IOException {
+    _satAnswers = new HashMap<String,ArrayDeque<Answer>>();
+    _validAnswers = new HashMap<String,ArrayDeque<Boolean>>();
+    List<String> lines = Files.readAllLines(file);
+    for (int i = 0; i < lines.size(); i++) {
+      if (lines.get(i).isEmpty()) continue;
+      if (!readLine(lines.get(i).split("\t", -1))) {
+        throw new IOException("Malformed line " + (i + 1) + " in SMT log " + file + ".");
+      }
+    }
+  }
+
+  /** Stores the answer on the given line of the log, and returns false if it is malformed. */
+  private boolean readLine(String[] parts) {
+    if (parts.length == 3 && parts[0].equals("valid")) {
+      if (!parts[2].equals("true") && !parts[2].equals("false")) return false;
+      _validAnswers.computeIfAbsent(parts[1], k -> new ArrayDeque<Boolean>())
+                   .add(parts[2].equals("true"));
+      return true;
+    }
+    if (parts.length < 3 || !parts[0].equals("sat")) return false;
+    Answer answer;
+    if (parts.length == 3 && parts[2].equals("NO")) answer = new Answer.NO();
+    else if (parts.length == 4 && parts[2].equals("MAYBE")) answer = new Answer.MAYBE(parts[3]);
+    else if (parts.length == 6 && parts[2].equals("YES")) {
+      try {
+        int numBools = Integer.parseInt(parts[3]);
+        int numInts = Integer.parseInt(parts[4]);
+        String[] values = parts[5].isEmpty() ? new String[0] : parts[5].split(" ");
+        if (values.length != numBools + numInts) return false;
+        Valuation val = new Valuation();
+        for (int i = 0; i < numBools; i++) val.setBool(i + 1, values[i].equals("1"));
+        for (int i = 0; i < numInts; i++) {
+          val.setInt(i + 1, Integer.parseInt(values[numBools + i]));
+        }
+        answer = new Answer.YES(val);
+      }
+      catch (NumberFormatException e) { return false; }
+    }
+    else return false;
+    _satAnswers.computeIfAbsent(parts[1], k -> new ArrayDeque<Answer>()).add(answer);
+    return true;
+  }
+
+  /** Returns the number of questions that were answered from the log. */
+  public synchronized long queryReplayed() {
+    return _replayed;
+  }
+
+  /** Returns the number of questions that did not occur in the log. */
+  public synchronized long queryUnknown() {
+    return _unknown;
+  }
+
+  /**
+   * Returns the next recorded answer for the given key, or null if there is none.  The last
+   * answer for a key is never removed.
+   */
+  private synchronized <T> T next(HashMap<String,ArrayDeque<T>> answers, String key) {
+    ArrayDeque<T> queue = answers.get(key);
+    if (queue == null) { _unknown++; return null; }
+    _replayed++;
+    return queue.size() > 1 ? queue.poll() : queue.peek();
+  }
+
+  @Override
+  public Answer checkSatisfiability(SmtProblem problem) {
+    CanonicalConstraint canonical = new CanonicalConstraint(problem.queryCombinedConstraint());
+    return switch (next(_satAnswers, canonical.queryKey())) {
+      case null -> new Answer.MAYBE("Question does not occur in the SMT log.");
+      case Answer.YES(Valuation val) -> new Answer.YES(canonical.fromCanonical(val));
+      case Answer answer -> answer;
+    };
+  }
+
+  @Override
+  public boolean checkValidity(SmtProblem problem) {
+    String key = new CanonicalConstraint(problem.queryCombinedConstraint()).queryKey();
+    Boolean valid = next(_validAnswers, key);
+    return valid != null && valid;
+  }
+}
@@ -16,6 +16,7 @@
 package charlie.solvesmt;
 
 import charlie.smt.*;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
 
@@ -39,6 +40,22 @@ class SMTLibResponseHandler {
     return answer;
   }
 
+  /**
+   * This reads the answers to a series of check-sat commands from the output of an SMT solver,
+   * and returns for each of them whether it was unsat.  If the output does not contain exactly
+   * the expected number of answers (for instance because the solver was stopped half-way), then
+   * null is returned.
+   */
+  static List<Boolean> readUnsatAnswers(String output, int expected) {
+    ArrayList<Boolean> ret = new ArrayList<Boolean>();
+    for (String line : output.split("\\R")) {
+      String answer = line.trim().toLowerCase();
+      if (answer.equals("unsat")) ret.add(true);
+      else if (answer.equals("sat") || answer.equals("unknown")) ret.add(false);
+    }
+    return ret.size() == expected ? ret : null;
+  }
+
   /**
    * This reads an answer from an SExpression (which typically originates from parsing an SMT
    * result file/string).
@@ -15,20 +15,29 @@
 
 package charlie.solvesmt;
 
-import charlie.smt.Conjunction;
-import charlie.smt.Constraint;
-import charlie.smt.SmtProblem;
+import charlie.smt.*;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.IntFunction;
 
 /**
  * <p>This class helps with the construction of a smtlib2-compliant representation of an
  * {@link SmtProblem} object.</p>
- * <p>The main method to be called is {@link #buildSmtlibString }. </p>
+ * <p>The main method to be called is {@link #writeSmtlib}, which streams the problem to a
+ * {@link Writer} (for instance the standard input of a solver process), so that the full text of
+ * a large problem never needs to be kept in memory.  Only the variables that actually occur in the
+ * constraints are declared.  For convenience, {@link #buildSmtlibString} returns the same text as
+ * a String.</p>
  */
 class SMTLibString {
   public enum Version { V25   , V26   }
-  public enum Logic   { QFLIA , QFNIA }
+  /** The supported logics, from least to most expressive; QF_UF is used for pure SAT problems. */
+  public enum Logic   { QFUF , QFLIA , QFNIA }
 
   private Version _version;
   private Logic _logic;
@@ -50,6 +59,7 @@ class SMTLibString {
 
   public static String logicToString(Logic logic) {
     return switch (logic) {
+      case QFUF -> "QF_UF";
       case QFLIA -> "QF_LIA";
       case QFNIA -> "QF_NIA";
     };
@@ -64,53 +74,190 @@ class SMTLibString {
   }
 
   /**
-   * Returns the SMTLIB string representation of the problem given as input.
-   * @param {@link SmtProblem} problem
+   * Writes the SMTLIB representation of the given constraints to out: a header, the declarations
+   * of the variables that occur in them, one assertion for each (conjunct of each) constraint,
+   * and the commands to check satisfiability and print the model.
    */
-  public String buildSmtlibString(int boolCounter, int intCounter, Constraint constraint) {
-    StringBuilder ret = new StringBuilder();
+  public void writeSmtlib(Iterable<Constraint> constraints, Writer out) throws IOException {
+    out.write(this.setVersionString());
+    out.write(System.lineSeparator());
+    out.write(this.setLogicString());
+    out.write(System.lineSeparator());
+    writeDeclarations(constraints, out);
+    writeAssertions(constraints, out);
+    out.write("(check-sat)" + System.lineSeparator());
+    out.write("(get-model)" + System.lineSeparator());
+    out.write("(exit)" + System.lineSeparator());
+    out.flush();
+  }
 
-    // Create the SMTLIB file header.
-    ret.append(this.setVersionString()).append(System.lineSeparator());
-    ret.append(this.setLogicString()).append(System.lineSeparator());
+  /** Returns the SMTLIB representation of the given problem as a String; see writeSmtlib. */
+  public String buildSmtlibString(SmtProblem problem) {
+    return writeToString(out -> writeSmtlib(problem, out));
+  }
 
-    // Next, we collect all booleans and integer definitions.
-    for (int i = 1; i <= boolCounter; i++) {
-      ret.append("(declare-fun b").append(i).append("() Bool)").append(System.lineSeparator());
-    }
-    for (int i = 1; i <= intCounter; i++) {
-      ret.append("(declare-fun i").append(i).append("() Int)").append(System.lineSeparator());
+  /** Returns the SMTLIB representation of the given constraint as a String; see writeSmtlib. */
+  public String buildSmtlibString(Constraint constraint) {
+    return writeToString(out -> writeSmtlib(List.of(constraint), out));
+  }
+
+  /**
+   * Returns the header that should be sent once to a solver that is kept alive over multiple
+   * queries (see {@link SmtSession}).  Since the logic can only be set once per session, every
+   * query after this should be enclosed in a push/pop pair; see {@link #buildSessionQuery}.
+   */
+  public String buildSessionHeader() {
+    return "(set-option :produce-models true)" + System.lineSeparator() +
+      this.setLogicString() + System.lineSeparator();
+  }
+
+  /**
+   * Returns the SMTLIB commands to check satisfiability of the given constraint in a running
+   * session: the declarations and assertions are made in a fresh scope, which is popped after the
+   * check, so the session is left in the same state as before.  If withModel is true, then the
+   * model is also requested.
+   */
+  public String buildSessionQuery(Constraint constraint, boolean withModel) {
+    return writeToString(out -> writeSessionQuery(List.of(constraint), withModel, out));
+  }
+
+  /**
+   * Writes the SMTLIB commands to check satisfiability of the conjunction of the given
+   * constraints in a running session to out; see buildSessionQuery.
+   */
+  public void writeSessionQuery(Iterable<Constraint> constraints, boolean withModel, Writer out)
+                                                                            throws IOException {
+    out.write("(push 1)" + System.lineSeparator());
+    writeDeclarations(constraints, out);
+    writeAssertions(constraints, out);
+    out.write("(check-sat)" + System.lineSeparator());
+    if (withModel) out.write("(get-model)" + System.lineSeparator());
+    out.write("(pop 1)" + System.lineSeparator());
+  }
+
+  /** Something that writes SMTLIB text to a Writer. */
+  private interface Job { void write(Writer out) throws IOException; }
+
+  /** Runs the given job on a StringWriter, and returns the result. */
+  private static String writeToString(Job job) {
+    StringWriter out = new StringWriter();
+    try { job.write(out); }
+    catch (IOException e) { throw new UncheckedIOException(e); }  // cannot happen on a StringWriter
+    return out.toString();
+  }
+
+  /** Writes declarations for the variables that occur in the given constraints to out. */
+  private static void writeDeclarations(Iterable<Constraint> constraints, Writer out)
+                                                                         throws IOException {
+    TreeSet<Integer> bools = new TreeSet<Integer>();
+    TreeSet<Integer> ints = new TreeSet<Integer>();
+    for (Constraint c : constraints) collectVariables(c, bools, ints);
+    for (int i : bools) out.write("(declare-fun b" + i + "() Bool)" + System.lineSeparator());
+    for (int i : ints) out.write("(declare-fun i" + i + "() Int)" + System.lineSeparator());
+  }
+
+  /** Adds the indexes of all boolean and integer variables occurring in c to bools and ints. */
+  static void collectVariables(Constraint c, TreeSet<Integer> bools, TreeSet<Integer> ints) {
+    switch (c) {
+      case BVar x: bools.add(x.queryIndex()); break;
+      case NBVar x: bools.add(x.queryIndex()); break;
+      case Not n: collectVariables(n.queryChild(), bools, ints); break;
+      case Iff i:
+        collectVariables(i.queryLeft(), bools, ints);
+        collectVariables(i.queryRight(), bools, ints);
+        break;
+      case Conjunction j:
+        for (int k = 1; k <= j.numChildren(); k++) collectVariables(j.queryChild(k), bools, ints);
+        break;
+      case Disjunction j:
+        for (int k = 1; k <= j.numChildren(); k++) collectVariables(j.queryChild(k), bools, ints);
+        break;
+      case Geq0 g: collectVariables(g.queryExpression(), ints); break;
+      case Is0 g: collectVariables(g.queryExpression(), ints); break;
+      case Neq0 g: collectVariables(g.queryExpression(), ints); break;
+      default: break;   // truth and falsehood have no variables
     }
+  }
 
-    // Split up the constraints into separate clauses for human-readability (in case this is
-    // useful).
-    ArrayList<Constraint> acc = new ArrayList<>();
-    if (constraint instanceof Conjunction c) {
-      for (int i = 1; i <= c.numChildren(); i++) acc.add(c.queryChild(i));
-    } else {
-      acc.add(constraint);
+  /** Adds the indexes of all integer variables occurring in e to ints. */
+  private static void collectVariables(IntegerExpression e, TreeSet<Integer> ints) {
+    switch (e) {
+      case IVar x: ints.add(x.queryIndex()); break;
+      case IValue v: break;
+      case CMult m: collectVariables(m.queryChild(), ints); break;
+      case Addition a:
+        for (int k = 1; k <= a.numChildren(); k++) collectVariables(a.queryChild(k), ints);
+        break;
+      case Multiplication m:
+        for (int k = 1; k <= m.numChildren(); k++) collectVariables(m.queryChild(k), ints);
+        break;
+      case Division d:
+        collectVariables(d.queryNumerator(), ints);
+        collectVariables(d.queryDenominator(), ints);
+        break;
+      case Modulo m:
+        collectVariables(m.queryNumerator(), ints);
+        collectVariables(m.queryDenominator(), ints);
+        break;
     }
+  }
 
-    // Add to the file string the assertions of each one of those constraints
-    for (Constraint c : acc) {
-      ret.append("(assert ");
-      c.addToSmtString(ret);
-      ret.append(")").append(System.lineSeparator());
+  /**
+   * Writes an assert command for each of the conjuncts of the given constraints to out.  Large
+   * conjunctions and disjunctions are written piece by piece, so only one atomic constraint at a
+   * time needs to be converted to a String.
+   */
+  private static void writeAssertions(Iterable<Constraint> constraints, Writer out)
+                                                                       throws IOException {
+    StringBuilder buffer = new StringBuilder();
+    for (Constraint constraint : constraints) {
+      // Split up the constraints into separate clauses for human-readability (in case this is
+      // useful).
+      if (constraint instanceof Conjunction c) {
+        for (int i = 1; i <= c.numChildren(); i++) writeAssertion(c.queryChild(i), out, buffer);
+      }
+      else writeAssertion(constraint, out, buffer);
     }
+  }
 
-    // Check for satisfiability and asks for the file model
-    ret.append("(check-sat)").append(System.lineSeparator());
-    ret.append("(get-model)").append(System.lineSeparator());
-    ret.append("(exit)").append(System.lineSeparator());
+  /** Writes a single assert command for the given constraint to out. */
+  private static void writeAssertion(Constraint constraint, Writer out, StringBuilder buffer)
+                                                                             throws IOException {
+    out.write("(assert ");
+    writeConstraint(constraint, out, buffer);
+    out.write(")");
+    out.write(System.lineSeparator());
+  }
 
-    return ret.toString();
+  /**
+   * Writes the SMTLIB representation of the given constraint to out, in exactly the same way as
+   * Constraint.addToSmtString would, using the given buffer for the atomic parts.
+   */
+  private static void writeConstraint(Constraint constraint, Writer out, StringBuilder buffer)
+                                                                             throws IOException {
+    switch (constraint) {
+      case Conjunction c: writeJunction("and", c.numChildren(), c::queryChild, out, buffer); break;
+      case Disjunction d: writeJunction("or", d.numChildren(), d::queryChild, out, buffer); break;
+      case Not n:
+        out.write("(not ");
+        writeConstraint(n.queryChild(), out, buffer);
+        out.write(")");
+        break;
+      default:
+        buffer.setLength(0);
+        constraint.addToSmtString(buffer);
+        out.append(buffer);
+    }
   }
 
-  public String buildSmtlibString(SmtProblem problem) {
-    return buildSmtlibString(
-      problem.numberBooleanVariables(),
-      problem.numberIntegerVariables(),
-      problem.queryCombinedConstraint()
-    );
+  /** Helper for writeConstraint: writes (symbol child1 ... childn) to out. */
+  private static void writeJunction(String symbol, int n, IntFunction<Constraint> child,
+                                    Writer out, StringBuilder buffer) throws IOException {
+    out.write("(" + symbol);
+    for (int i = 1; i <= n; i++) {
+      out.write(" ");
+      writeConstraint(child.apply(i), out, buffer);
+    }
+    out.write(")");
   }
 }
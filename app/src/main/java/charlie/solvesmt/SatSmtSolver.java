@@ -0,0 +1,243 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import charlie.exceptions.NullStorageException;
+import charlie.smt.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The SatSmtSolver is an SMT solver that runs inside the JVM, and is meant for problems that are
+ * mostly boolean, with integer variables that only need to take small values -- such as the
+ * precedences, statuses and argument selections that HORPO and the subterm criterion look for.
+ * It bit-blasts the problem into clauses for the internal CDCL SatSolver (see BitBlaster).
+ *
+ * Bit-blasting requires every integer variable to have a finite range.  Bounds that the problem
+ * itself imposes (through comparisons such as 1 ≤ x and x ≤ 3 at the top level, or in every
+ * branch of a disjunction) are used as they are.  Other variables are first searched in a small
+ * range, and then in a range of 2^MAX_BITS values: the widening is done by passing assumptions to
+ * the SatSolver, so clauses learned in the small range are kept.  All searches together may use
+ * at most CONFLICT_LIMIT conflicts.  If no solution is found, and some variables were not bounded
+ * by the problem itself, this does not show that there is no solution at all, so the problem is
+ * passed on to a fallback solver; the same happens for problems with division or modulo, and for
+ * problems where the SatSolver runs out of its conflict budget.  Hence, this solver is best used
+ * for problems where all integer variables are bounded.
+ */
+public class SatSmtSolver implements SmtSolver {
+  /** An unbounded variable is searched in a range of 2^MAX_BITS values at most. */
+  static final int MAX_BITS = 8;
+  /** The width that is tried for unbounded variables before MAX_BITS. */
+  private static final int SMALL_WIDTH = 4;
+  /** The number of conflicts that all searches for a single problem may use together. */
+  private static final long CONFLICT_LIMIT = 10000;
+
+  private final SmtSolver _fallback;
+
+  /** Sets up a SAT-based solver that falls back to the default ProcessSmtSolver. */
+  public SatSmtSolver() {
+    this(new ProcessSmtSolver());
+  }
+
+  /** Sets up a SAT-based solver that passes the problems it cannot decide on to fallback. */
+  public SatSmtSolver(@NotNull SmtSolver fallback) {
+    if (fallback == null) throw new NullStorageException("SatSmtSolver",
+      "Cannot initialise with a null fallback solver");
+    _fallback = fallback;
+  }
+
+  /** Returns the solver that is asked about the problems that bit-blasting cannot decide. */
+  public SmtSolver queryFallback() {
+    return _fallback;
+  }
+
+  /**
+   * Tries to find a valuation for the variables in the problem that satisfies all the constraints
+   * stored in the problem.  If this cannot be decided by bit-blasting, the fallback solver is asked
+   * instead.
+   */
+  @Override
+  public Answer checkSatisfiability(SmtProblem problem) {
+    Constraint constraint = problem.queryCombinedConstraint();
+    Answer answer = solve(constraint);
+    if (answer == null) return _fallback.checkSatisfiability(problem);
+    return answer;
+  }
+
+  /**
+   * Tries to prove that the problem is valid, by showing that its negation is unsatisfiable.  If
+   * this cannot be decided by bit-blasting, the fallback solver is asked instead.
+   */
+  @Override
+  public boolean checkValidity(SmtProblem problem) {
+    Answer answer = solve(problem.queryCombinedConstraint().negate());
+    if (answer == null) return _fallback.checkValidity(problem);
+    return answer instanceof Answer.NO;
+  }
+
+  /**
+   * Returns YES or NO if the satisfiability of the given constraint could be decided by
+   * bit-blasting, and null if not.
+   */
+  private Answer solve(Constraint constraint) {
+    if (!BitBlaster.isSupported(constraint)) return null;
+    TreeMap<Integer,long[]> bounds = new TreeMap<Integer,long[]>();
+    TreeSet<Integer> intVars = new TreeSet<Integer>();
+    collectIntegerVariables(constraint, intVars);
+    for (int x : intVars) bounds.put(x, new long[] { Long.MIN_VALUE, Long.MAX_VALUE });
+    collectBounds(constraint, bounds);
+
+    SatSolver solver = new SatSolver();
+    BitBlaster blaster = new BitBlaster(solver);
+    long limit = 1L << (MAX_BITS - 1);
+    ArrayList<Integer> unbounded = new ArrayList<Integer>();
+    for (Map.Entry<Integer,long[]> entry : bounds.entrySet()) {
+      long lo = entry.getValue()[0], hi = entry.getValue()[1];
+      if (lo > hi) return new Answer.NO();
+      if (lo < Integer.MIN_VALUE || hi > Integer.MAX_VALUE) {
+        // a missing bound is replaced by one at distance 2^MAX_BITS from the other
+        unbounded.add(entry.getKey());
+        if (lo < Integer.MIN_VALUE && hi > Integer.MAX_VALUE) { lo = -limit; hi = limit - 1; }
+        else if (lo < Integer.MIN_VALUE) lo = Math.max(hi - 2 * limit + 1, Integer.MIN_VALUE);
+        else hi = Math.min(lo + 2 * limit - 1, Integer.MAX_VALUE);
+      }
+      blaster.setRange(entry.getKey(), lo, hi);
+    }
+    Boolean result;
+    try {
+      blaster.require(constraint);
+      result = null;
+      if (!unbounded.isEmpty()) {
+        result = solver.solve(CONFLICT_LIMIT, blaster.restrictWidth(unbounded, SMALL_WIDTH));
+      }
+      if (result == null || !result) {
+        long budget = CONFLICT_LIMIT - solver.numberConflicts();
+        result = budget > 0 ? solver.solve(budget) : null;
+      }
+    }
+    catch (ArithmeticException e) { return null; }  // some expression is too large to encode
+
+    if (result == null) return null;
+    if (!result) return unbounded.isEmpty() ? new Answer.NO() : null;
+    Valuation valuation = blaster.queryModel();
+    // as a safety net, we give up if the valuation does not actually make sense
+    return constraint.evaluate(valuation) ? new Answer.YES(valuation) : null;
+  }
+
+  private static void collectIntegerVariables(Constraint constraint, TreeSet<Integer> vars) {
+    switch (constraint) {
+      case Not n: collectIntegerVariables(n.queryChild(), vars); break;
+      case Conjunction c:
+        for (int i = 1; i <= c.numChildren(); i++) collectIntegerVariables(c.queryChild(i), vars);
+        break;
+      case Disjunction d:
+        for (int i = 1; i <= d.numChildren(); i++) collectIntegerVariables(d.queryChild(i), vars);
+        break;
+      case Iff iff:
+        collectIntegerVariables(iff.queryLeft(), vars);
+        collectIntegerVariables(iff.queryRight(), vars);
+        break;
+      case Geq0 g: collectIntegerVariables(g.queryExpression(), vars); break;
+      case Is0 i: collectIntegerVariables(i.queryExpression(), vars); break;
+      case Neq0 n: collectIntegerVariables(n.queryExpression(), vars); break;
+      default:
+    }
+  }
+
+  private static void collectIntegerVariables(IntegerExpression expr, TreeSet<Integer> vars) {
+    switch (expr) {
+      case IVar x: vars.add(x.queryIndex()); break;
+      case CMult c: collectIntegerVariables(c.queryChild(), vars); break;
+      case Addition a:
+        for (int i = 1; i <= a.numChildren(); i++) collectIntegerVariables(a.queryChild(i), vars);
+        break;
+      case Multiplication m:
+        for (int i = 1; i <= m.numChildren(); i++) collectIntegerVariables(m.queryChild(i), vars);
+        break;
+      default:
+    }
+  }
+
+  /**
+   * Narrows the given bounds using the bounds that the constraint imposes on single variables (see
+   * boundsOf).
+   */
+  private static void collectBounds(Constraint constraint, TreeMap<Integer,long[]> bounds) {
+    for (Map.Entry<Integer,long[]> entry : boundsOf(constraint).entrySet()) {
+      long[] range = bounds.get(entry.getKey());
+      range[0] = Math.max(range[0], entry.getValue()[0]);
+      range[1] = Math.min(range[1], entry.getValue()[1]);
+    }
+  }
+
+  /**
+   * Returns a map that assigns to variables x a range [lo, hi] such that every valuation that
+   * satisfies the constraint has lo ≤ x ≤ hi.  These bounds are derived from comparisons between a
+   * single variable and a constant, which may occur in conjunctions and disjunctions; a
+   * disjunction only bounds the variables that are bounded in all its children.
+   */
+  private static TreeMap<Integer,long[]> boundsOf(Constraint constraint) {
+    TreeMap<Integer,long[]> ret = new TreeMap<Integer,long[]>();
+    switch (constraint) {
+      case Conjunction c:
+        for (int i = 1; i <= c.numChildren(); i++) {
+          for (Map.Entry<Integer,long[]> entry : boundsOf(c.queryChild(i)).entrySet()) {
+            long[] range = ret.get(entry.getKey());
+            if (range == null) ret.put(entry.getKey(), entry.getValue());
+            else {
+              range[0] = Math.max(range[0], entry.getValue()[0]);
+              range[1] = Math.min(range[1], entry.getValue()[1]);
+            }
+          }
+        }
+        return ret;
+      case Disjunction d:
+        if (d.numChildren() == 0) return ret;
+        ret = boundsOf(d.queryChild(1));
+        for (int i = 2; i <= d.numChildren() && !ret.isEmpty(); i++) {
+          TreeMap<Integer,long[]> other = boundsOf(d.queryChild(i));
+          ret.keySet().retainAll(other.keySet());
+          for (Map.Entry<Integer,long[]> entry : ret.entrySet()) {
+            long[] range = other.get(entry.getKey());
+            entry.getValue()[0] = Math.min(entry.getValue()[0], range[0]);
+            entry.getValue()[1] = Math.max(entry.getValue()[1], range[1]);
+          }
+        }
+        return ret;
+      default:
+    }
+    LinearConstraint lin = LinearConstraint.fromComparison(constraint);
+    if (lin == null || lin.queryCoefficients().size() != 1) return ret;
+    var entry = lin.queryCoefficients().entrySet().iterator().next();
+    long a = entry.getValue(), k = lin.queryConstant();
+    // after normalisation, a single coefficient is 1 or -1: we have x + k R 0 or -x + k R 0
+    if (Math.abs(a) != 1) return ret;
+    long value = a == 1 ? -k : k;
+    switch (lin.queryRelation()) {
+      case EQ: ret.put(entry.getKey(), new long[] { value, value }); break;
+      case GEQ:
+        if (a == 1) ret.put(entry.getKey(), new long[] { value, Long.MAX_VALUE });
+        else ret.put(entry.getKey(), new long[] { Long.MIN_VALUE, value });
+        break;
+      default:
+    }
+    return ret;
+  }
+}
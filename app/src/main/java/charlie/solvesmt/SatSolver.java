@@ -0,0 +1,460 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import charlie.util.Deadline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A SatSolver is a small CDCL solver for propositional formulas in conjunctive normal form.  It
+ * uses the usual ingredients: two watched literals for unit propagation, first-UIP conflict
+ * analysis with clause minimisation, VSIDS-style variable activities, phase saving and restarts
+ * following the Luby sequence.
+ *
+ * The solver is incremental: clauses may be added between calls to solve(), and each call may be
+ * given assumptions, which hold only for that call.  Clauses that are learned are implied by the
+ * clauses alone, so they are kept for later calls.
+ *
+ * Variables are numbered from 1, and literals are given as in the DIMACS format: x for the
+ * variable x and -x for its negation.
+ *
+ * A SatSolver is not thread-safe.
+ */
+final class SatSolver {
+  private static final double VAR_DECAY = 0.95;
+  private static final int RESTART_UNIT = 100;
+  /** How often (in conflicts) we check if we should stop because of a deadline or interrupt. */
+  private static final int CHECK_INTERVAL = 256;
+
+  private static final byte UNDEF = 0;
+  private static final byte TRUE = 1;
+  private static final byte FALSE = -1;
+
+  private int _numVars;
+  /** _assign[x] is the value of variable x (TRUE, FALSE or UNDEF) */
+  private byte[] _assign;
+  private int[] _level;
+  private int[][] _reason;
+  private double[] _activity;
+  private boolean[] _phase;
+  private boolean[] _seen;
+  private double _varInc;
+  /** _watches.get(watchIndex(l)) lists the clauses that should be visited when l becomes false */
+  private final ArrayList<ArrayList<int[]>> _watches;
+  private int[] _trail;
+  private int _trailSize;
+  private int _qhead;
+  private final ArrayList<Integer> _trailLim;
+  /** The variables that may be unassigned, ordered by activity. */
+  private final VarHeap _order;
+  /** False once the clauses are known to be unsatisfiable by themselves. */
+  private boolean _ok;
+  private boolean[] _model;
+  private long _conflicts;
+
+  SatSolver() {
+    _numVars = 0;
+    _assign = new byte[16];
+    _level = new int[16];
+    _reason = new int[16][];
+    _activity = new double[16];
+    _phase = new boolean[16];
+    _seen = new boolean[16];
+    _varInc = 1;
+    _watches = new ArrayList<ArrayList<int[]>>();
+    _watches.add(new ArrayList<int[]>());
+    _watches.add(new ArrayList<int[]>());
+    _trail = new int[16];
+    _trailSize = 0;
+    _qhead = 0;
+    _trailLim = new ArrayList<Integer>();
+    _order = new VarHeap();
+    _ok = true;
+    _model = new boolean[1];
+  }
+
+  /** Creates a new variable, and returns its index. */
+  int newVariable() {
+    _numVars++;
+    if (_numVars >= _assign.length) {
+      int size = 2 * _assign.length;
+      _assign = Arrays.copyOf(_assign, size);
+      _level = Arrays.copyOf(_level, size);
+      _reason = Arrays.copyOf(_reason, size);
+      _activity = Arrays.copyOf(_activity, size);
+      _phase = Arrays.copyOf(_phase, size);
+      _seen = Arrays.copyOf(_seen, size);
+      _trail = Arrays.copyOf(_trail, size);
+    }
+    _watches.add(new ArrayList<int[]>());
+    _watches.add(new ArrayList<int[]>());
+    _order.insert(_numVars);
+    return _numVars;
+  }
+
+  /** Returns the number of variables that have been created. */
+  int numberVariables() {
+    return _numVars;
+  }
+
+  /** Returns the number of conflicts encountered in all calls to solve() so far. */
+  long numberConflicts() {
+    return _conflicts;
+  }
+
+  /**
+   * Adds the clause l1 ∨ ... ∨ ln.  This returns false if the clauses are now known to be
+   * unsatisfiable (for instance because the clause is empty), and true otherwise.
+   */
+  boolean addClause(int ... lits) {
+    cancelUntil(0);
+    if (!_ok) return false;
+    int[] sorted = lits.clone();
+    Arrays.sort(sorted);
+    int n = 0;
+    for (int i = 0; i < sorted.length; i++) {
+      int l = sorted[i];
+      if (l == 0 || Math.abs(l) > _numVars) {
+        throw new IllegalArgumentException("Clause contains unknown literal " + l + ".");
+      }
+      byte v = value(l);
+      if (v == TRUE) return true;
+      if (v == FALSE) continue;
+      if (n > 0 && sorted[n-1] == l) continue;
+      for (int j = 0; j < n; j++) if (sorted[j] == -l) return true;   // a tautology
+      sorted[n++] = l;
+    }
+    if (n == 0) { _ok = false; return false; }
+    if (n == 1) {
+      assign(sorted[0], null);
+      if (propagate() != null) _ok = false;
+      return _ok;
+    }
+    attach(Arrays.copyOf(sorted, n));
+    return true;
+  }
+
+  /**
+   * Checks if the clauses, together with the given assumptions, are satisfiable.  This returns
+   * true if they are (in which case modelValue can be used to query the model), false if they are
+   * not, and null if the search was stopped, because conflictLimit conflicts were encountered or
+   * because the deadline of the current thread expired (or the thread was interrupted).
+   */
+  Boolean solve(long conflictLimit, int ... assumptions) {
+    cancelUntil(0);
+    if (!_ok) return false;
+    if (propagate() != null) { _ok = false; return false; }
+    for (int a : assumptions) {
+      if (a == 0 || Math.abs(a) > _numVars) {
+        throw new IllegalArgumentException("Assumption on unknown literal " + a + ".");
+      }
+    }
+    Deadline deadline = Deadline.current();
+    long start = _conflicts;
+    int restart = 0;
+    long nextRestart = _conflicts + luby(restart) * RESTART_UNIT;
+    while (true) {
+      int[] conflict = propagate();
+      if (conflict != null) {
+        _conflicts++;
+        if (decisionLevel() == 0) { _ok = false; return false; }
+        ArrayList<Integer> learnt = new ArrayList<Integer>();
+        int backLevel = analyse(conflict, learnt);
+        cancelUntil(backLevel);
+        if (learnt.size() == 1) assign(learnt.get(0), null);
+        else {
+          int[] clause = new int[learnt.size()];
+          for (int i = 0; i < clause.length; i++) clause[i] = learnt.get(i);
+          attach(clause);
+          assign(clause[0], clause);
+        }
+        _varInc /= VAR_DECAY;
+        if (_conflicts % CHECK_INTERVAL == 0 &&
+            (deadline.hasExpired() || Thread.currentThread().isInterrupted())) {
+          cancelUntil(0);
+          return null;
+        }
+        if (_conflicts - start >= conflictLimit) { cancelUntil(0); return null; }
+        continue;
+      }
+      if (_conflicts >= nextRestart) {
+        restart++;
+        nextRestart = _conflicts + luby(restart) * RESTART_UNIT;
+        cancelUntil(0);
+        continue;
+      }
+      // first make sure that all assumptions are set, each on its own decision level
+      boolean assumed = false;
+      while (!assumed && decisionLevel() < assumptions.length) {
+        int a = assumptions[decisionLevel()];
+        byte v = value(a);
+        if (v == FALSE) { cancelUntil(0); return false; }
+        _trailLim.add(_trailSize);
+        if (v == UNDEF) { assign(a, null); assumed = true; }
+      }
+      if (assumed) continue;
+      int next = pickBranchLiteral();
+      if (next == 0) {  // everything is assigned without conflict
+        _model = new boolean[_numVars + 1];
+        for (int x = 1; x <= _numVars; x++) _model[x] = _assign[x] == TRUE;
+        cancelUntil(0);
+        return true;
+      }
+      _trailLim.add(_trailSize);
+      assign(next, null);
+    }
+  }
+
+  /** Returns the value of the given literal in the model found by the last successful solve. */
+  boolean modelValue(int lit) {
+    int x = Math.abs(lit);
+    boolean value = x < _model.length && _model[x];
+    return lit > 0 ? value : !value;
+  }
+
+  /** Returns the i-th element (counting from 0) of the Luby sequence 1 1 2 1 1 2 4 1 1 2 ... */
+  private static long luby(int i) {
+    int size = 1, seq = 0;
+    while (size < i + 1) { seq++; size = 2 * size + 1; }
+    while (size - 1 != i) {
+      size = (size - 1) >> 1;
+      seq--;
+      i = i % size;
+    }
+    return 1L << seq;
+  }
+
+  private int decisionLevel() {
+    return _trailLim.size();
+  }
+
+  private byte value(int lit) {
+    byte v = _assign[Math.abs(lit)];
+    return lit > 0 ? v : (byte)-v;
+  }
+
+  private static int watchIndex(int lit) {
+    return lit > 0 ? 2 * lit : -2 * lit + 1;
+  }
+
+  /** Starts watching the first two literals of the given clause. */
+  private void attach(int[] clause) {
+    _watches.get(watchIndex(clause[0])).add(clause);
+    _watches.get(watchIndex(clause[1])).add(clause);
+  }
+
+  private void assign(int lit, int[] reason) {
+    int x = Math.abs(lit);
+    _assign[x] = lit > 0 ? TRUE : FALSE;
+    _level[x] = decisionLevel();
+    _reason[x] = reason;
+    _trail[_trailSize++] = lit;
+  }
+
+  /** Undoes all assignments above the given decision level. */
+  private void cancelUntil(int level) {
+    if (decisionLevel() <= level) return;
+    int bound = _trailLim.get(level);
+    for (int i = _trailSize - 1; i >= bound; i--) {
+      int x = Math.abs(_trail[i]);
+      _phase[x] = _assign[x] == TRUE;
+      _assign[x] = UNDEF;
+      _reason[x] = null;
+      _order.insert(x);
+    }
+    _trailSize = bound;
+    _qhead = bound;
+    while (_trailLim.size() > level) _trailLim.remove(_trailLim.size() - 1);
+  }
+
+  /**
+   * Propagates all assignments on the trail that have not been propagated yet, and returns a
+   * clause that has become false, or null if there is no conflict.
+   */
+  private int[] propagate() {
+    while (_qhead < _trailSize) {
+      int falseLit = -_trail[_qhead++];
+      ArrayList<int[]> watchers = _watches.get(watchIndex(falseLit));
+      int i = 0, j = 0;
+      while (i < watchers.size()) {
+        int[] clause = watchers.get(i++);
+        // make sure that the false literal is at position 1
+        if (clause[0] == falseLit) { clause[0] = clause[1]; clause[1] = falseLit; }
+        if (value(clause[0]) == TRUE) { watchers.set(j++, clause); continue; }
+        boolean moved = false;
+        for (int k = 2; k < clause.length && !moved; k++) {
+          if (value(clause[k]) != FALSE) {
+            clause[1] = clause[k];
+            clause[k] = falseLit;
+            _watches.get(watchIndex(clause[1])).add(clause);
+            moved = true;
+          }
+        }
+        if (moved) continue;
+        watchers.set(j++, clause);
+        if (value(clause[0]) == FALSE) {
+          while (i < watchers.size()) watchers.set(j++, watchers.get(i++));
+          watchers.subList(j, watchers.size()).clear();
+          _qhead = _trailSize;
+          return clause;
+        }
+        assign(clause[0], clause);
+      }
+      watchers.subList(j, watchers.size()).clear();
+    }
+    return null;
+  }
+
+  /**
+   * Derives a first-UIP clause from the given conflict, stores it in learnt (with the asserting
+   * literal first and a literal of the highest remaining level second), and returns the level to
+   * jump back to.
+   */
+  private int analyse(int[] conflict, ArrayList<Integer> learnt) {
+    learnt.add(0);
+    int pathCount = 0;
+    int p = 0;
+    int index = _trailSize - 1;
+    int[] clause = conflict;
+    do {
+      for (int q : clause) {
+        if (q == p) continue;
+        int x = Math.abs(q);
+        if (_seen[x] || _level[x] == 0) continue;
+        bumpActivity(x);
+        _seen[x] = true;
+        if (_level[x] >= decisionLevel()) pathCount++;
+        else learnt.add(q);
+      }
+      while (!_seen[Math.abs(_trail[index])]) index--;
+      p = _trail[index--];
+      clause = _reason[Math.abs(p)];
+      _seen[Math.abs(p)] = false;
+      pathCount--;
+    } while (pathCount > 0);
+    learnt.set(0, -p);
+
+    // remove literals that are implied by the others
+    ArrayList<Integer> all = new ArrayList<Integer>(learnt);
+    int n = 1;
+    for (int i = 1; i < learnt.size(); i++) {
+      int q = learnt.get(i);
+      if (!isRedundant(q)) learnt.set(n++, q);
+    }
+    learnt.subList(n, learnt.size()).clear();
+    for (int q : all) _seen[Math.abs(q)] = false;
+
+    if (learnt.size() == 1) return 0;
+    int max = 1;
+    for (int i = 2; i < learnt.size(); i++) {
+      if (_level[Math.abs(learnt.get(i))] > _level[Math.abs(learnt.get(max))]) max = i;
+    }
+    int q = learnt.get(max);
+    learnt.set(max, learnt.get(1));
+    learnt.set(1, q);
+    return _level[Math.abs(q)];
+  }
+
+  /** Returns whether q is implied by its reason, all of whose other literals are in the clause. */
+  private boolean isRedundant(int q) {
+    int[] reason = _reason[Math.abs(q)];
+    if (reason == null) return false;
+    for (int r : reason) {
+      int x = Math.abs(r);
+      if (x != Math.abs(q) && !_seen[x] && _level[x] > 0) return false;
+    }
+    return true;
+  }
+
+  /** Returns an unassigned literal of maximal activity, or 0 if all variables are assigned. */
+  private int pickBranchLiteral() {
+    while (!_order.isEmpty()) {
+      int x = _order.removeMax();
+      if (_assign[x] == UNDEF) return _phase[x] ? x : -x;
+    }
+    return 0;
+  }
+
+  private void bumpActivity(int x) {
+    _activity[x] += _varInc;
+    if (_activity[x] > 1e100) {
+      for (int y = 1; y <= _numVars; y++) _activity[y] *= 1e-100;
+      _varInc *= 1e-100;
+    }
+    _order.increased(x);
+  }
+
+  /** A binary max-heap of variables, ordered by activity. */
+  private class VarHeap {
+    private int[] _heap = new int[16];
+    private int[] _position = new int[16];   // 1 + index in _heap, or 0 if not in the heap
+    private int _size = 0;
+
+    boolean isEmpty() { return _size == 0; }
+
+    void insert(int x) {
+      if (x >= _position.length) _position = Arrays.copyOf(_position, 2 * x);
+      if (_position[x] != 0) return;
+      if (_size == _heap.length) _heap = Arrays.copyOf(_heap, 2 * _size);
+      _heap[_size] = x;
+      _position[x] = ++_size;
+      up(_size - 1);
+    }
+
+    void increased(int x) {
+      if (x < _position.length && _position[x] != 0) up(_position[x] - 1);
+    }
+
+    int removeMax() {
+      int x = _heap[0];
+      _position[x] = 0;
+      _size--;
+      if (_size > 0) {
+        _heap[0] = _heap[_size];
+        _position[_heap[0]] = 1;
+        down(0);
+      }
+      return x;
+    }
+
+    private void up(int i) {
+      int x = _heap[i];
+      while (i > 0 && _activity[_heap[(i - 1) / 2]] < _activity[x]) {
+        _heap[i] = _heap[(i - 1) / 2];
+        _position[_heap[i]] = i + 1;
+        i = (i - 1) / 2;
+      }
+      _heap[i] = x;
+      _position[x] = i + 1;
+    }
+
+    private void down(int i) {
+      int x = _heap[i];
+      while (2 * i + 1 < _size) {
+        int child = 2 * i + 1;
+        if (child + 1 < _size && _activity[_heap[child + 1]] > _activity[_heap[child]]) child++;
+        if (_activity[_heap[child]] <= _activity[x]) break;
+        _heap[i] = _heap[child];
+        _position[_heap[i]] = i + 1;
+        i = child;
+      }
+      _heap[i] = x;
+      _position[x] = i + 1;
+    }
+  }
+}
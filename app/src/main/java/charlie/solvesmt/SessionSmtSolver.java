@@ -0,0 +1,234 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import charlie.exceptions.NullStorageException;
+import charlie.smt.*;
+import charlie.solvesmt.ProcessSmtSolver.PhysicalSolver;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import charlie.util.Deadline;
+
+import static charlie.solvesmt.SMTLibString.Logic.QFNIA;
+import static charlie.solvesmt.SMTLibString.Version.V26;
+
+/**
+ * A SessionSmtSolver communicates with one of the supported physical solvers like the
+ * ProcessSmtSolver does, but rather than starting a fresh process (and writing a temporary file)
+ * for every query, it keeps the solver running and sends each query in its own push/pop scope.
+ *
+ * The solver keeps a bounded pool of sessions: every query borrows a session that is not in use
+ * (starting a new one only if all existing sessions are busy and the bound has not been reached
+ * yet, and otherwise waiting for one to be returned), and returns it afterwards.  Hence, a
+ * SessionSmtSolver may safely be shared between threads, without starting a solver process for
+ * every thread that ever uses it.  If the solver crashes or does not answer within the time limit,
+ * the query fails (with MAYBE, or false for validity checks), and the session is restarted on the
+ * next query.  All solver processes are stopped when the JVM exits.
+ */
+public class SessionSmtSolver implements SmtSolver {
+  /** The default maximum number of sessions (and hence solver processes) of a single solver. */
+  public static final int DEFAULT_MAX_SESSIONS =
+    Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+  /** All sessions of all SessionSmtSolvers, so they can be stopped by a single shutdown hook. */
+  private static final Set<SmtSession> _allSessions = ConcurrentHashMap.newKeySet();
+  static {
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      for (SmtSession session : _allSessions) session.close();
+    }, "smt-session-shutdown"));
+  }
+
+  private final SMTLibString _smtlib;
+  private final Supplier<SmtSession> _factory;
+  private final int _maxSessions;
+  /** The sessions that are not in use; the most recently used one is taken first. */
+  private final LinkedBlockingDeque<SmtSession> _idle;
+  /** All the sessions of this solver, whether in use or not. */
+  private final ArrayList<SmtSession> _sessions;
+
+  /** Sets up a session solver for the given physical solver, with the default pool size. */
+  public SessionSmtSolver(@NotNull PhysicalSolver physicalSolver) {
+    this(physicalSolver, DEFAULT_MAX_SESSIONS);
+  }
+
+  /**
+   * Sets up a session solver for the given physical solver, which runs at most the given number
+   * of solver processes at the same time.
+   */
+  public SessionSmtSolver(@NotNull PhysicalSolver physicalSolver, int maxSessions) {
+    this(sessionFactory(physicalSolver), maxSessions);
+  }
+
+  /**
+   * Sets up a session solver that creates its sessions using the given factory.  This is default
+   * rather than private for the sake of unit testing.
+   */
+  SessionSmtSolver(Supplier<SmtSession> factory, int maxSessions) {
+    _smtlib = new SMTLibString(V26, QFNIA);
+    _factory = factory;
+    _maxSessions = Math.max(1, maxSessions);
+    _idle = new LinkedBlockingDeque<SmtSession>();
+    _sessions = new ArrayList<SmtSession>();
+  }
+
+  /** Returns a factory for sessions of the given solver, which read commands from stdin. */
+  private static Supplier<SmtSession> sessionFactory(PhysicalSolver physicalSolver) {
+    if (physicalSolver == null) throw new NullStorageException(
+      "SessionSmtSolver",
+      "Cannot initialise a null Physical Solver"
+    );
+    String name = physicalSolver.getCommandName();
+    List<String> command = switch (physicalSolver) {
+      case Z3 -> List.of(name, "-in");
+      case CVC5 -> List.of(name, "--incremental", "--lang=smt2");
+      case YICES2 -> List.of(name, "--incremental");
+    };
+    String header = new SMTLibString(V26, QFNIA).buildSessionHeader();
+    return () -> new SmtSession(command, header);
+  }
+
+  /**
+   * Takes a session that is not in use, creating one if there is none and the maximum has not been
+   * reached yet; otherwise, this waits until a session is returned.  If the deadline of the
+   * current thread passes while waiting, or we are interrupted, null is returned.
+   */
+  private SmtSession borrow() {
+    SmtSession session = _idle.pollFirst();
+    if (session != null) return session;
+    synchronized (_sessions) {
+      if (_sessions.size() < _maxSessions) {
+        session = _factory.get();
+        _sessions.add(session);
+        _allSessions.add(session);
+        return session;
+      }
+    }
+    try {
+      long wait = Deadline.current().limit(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      return _idle.pollFirst(wait, TimeUnit.NANOSECONDS);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+  }
+
+  /**
+   * Sends the given commands to a session from the pool, and returns the response (or
+   * Optional.empty() if no session was available in time, or the session did not respond).
+   */
+  private Optional<String> query(String commands, int timeout) {
+    SmtSession session = borrow();
+    if (session == null) return Optional.empty();
+    try { return session.query(commands, timeout); }
+    finally { _idle.offerFirst(session); }
+  }
+
+  /** Returns the number of sessions this solver has created. */
+  int numberSessions() {
+    synchronized (_sessions) { return _sessions.size(); }
+  }
+
+  /**
+   * Stops the solver processes of all sessions that are not in use; they are restarted if the
+   * solver is used again.
+   */
+  public void close() {
+    ArrayList<SmtSession> idle = new ArrayList<SmtSession>();
+    _idle.drainTo(idle);
+    for (SmtSession session : idle) session.close();
+    _idle.addAll(idle);
+  }
+
+  /**
+   * Given an SmtProblem, this function tries to find a valuation for the variables in the problem
+   * that satisfies all the constraints stored in the problem.
+   * If successful, returns YES(valuation).
+   * If we determine such a valuation cannot exist, returns NO().
+   * If the search for a valuation fails but we cannot prove non-existence, returns MAYBE(reason).
+   */
+  @Override
+  public Answer checkSatisfiability(SmtProblem problem) {
+    String query = _smtlib.buildSessionQuery(problem.queryCombinedConstraint(), true);
+    Optional<String> response = query(query, ProcessSmtSolver.TIMEOUT);
+    if (response.isEmpty()) {
+      return new Answer.MAYBE("SMT solver session did not return an answer within the " +
+                              "time limit.");
+    }
+    List<SExpression> parsedResults = SmtParser.readExpressionsFromString(response.get());
+    Answer ret = SMTLibResponseHandler.expressionsToAnswer(parsedResults);
+
+    // Check if the valuation constructed really makes sense.
+    switch (ret) {
+      case Answer.YES(Valuation val):
+        if (!problem.queryCombinedConstraint().evaluate(val)) {
+          return new Answer.MAYBE("Valuation read from external solver " +
+            "does not satisfy the constraints posed on the smt problem!");
+        }
+      default:
+        return ret;
+    }
+  }
+
+  /**
+   * Given an SmtProblem, this function tries to prove that it is valid.  This either succeeds, in
+   * which case true is returned, or fails, in which case false is returned.
+   * <p>
+   * Note that failure could either be because the problem is NOT valid, or because the SMT solver
+   * simply could not determine whether a solution exists.
+   */
+  @Override
+  public boolean checkValidity(SmtProblem problem) {
+    Constraint negated = SmtFactory.createNegation(problem.queryCombinedConstraint());
+    String query = _smtlib.buildSessionQuery(negated, false);
+    Optional<String> response = query(query, ProcessSmtSolver.TIMEOUT);
+    return response.isPresent() && response.get().trim().equals("unsat");
+  }
+
+  /**
+   * Checks the validity of all the given problems with a single round trip to the session: the
+   * queries are sent together, each in its own push/pop scope, and the answers are read in order.
+   * If the session does not answer in time, no problem is considered valid.
+   */
+  @Override
+  public List<Boolean> checkValidityBatch(List<SmtProblem> problems) {
+    StringBuilder commands = new StringBuilder();
+    for (SmtProblem problem : problems) {
+      Constraint negated = SmtFactory.createNegation(problem.queryCombinedConstraint());
+      commands.append(_smtlib.buildSessionQuery(negated, false));
+    }
+    int timeout =
+      (int)Math.min(Integer.MAX_VALUE, (long)ProcessSmtSolver.TIMEOUT * problems.size());
+    Optional<String> response = query(commands.toString(), timeout);
+    if (response.isEmpty()) {
+      ArrayList<Boolean> ret = new ArrayList<Boolean>();
+      for (int i = 0; i < problems.size(); i++) ret.add(false);
+      return ret;
+    }
+    List<Boolean> ret = SMTLibResponseHandler.readUnsatAnswers(response.get(), problems.size());
+    // if the response cannot be matched to the queries, we ask them one by one after all
+    if (ret == null) return SmtSolver.super.checkValidityBatch(problems);
+    return ret;
+  }
+}
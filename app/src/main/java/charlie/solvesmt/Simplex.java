@@ -0,0 +1,181 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class implements the general Simplex procedure over the rationals, in the form used for
+ * SMT solving (Dutertre and de Moura, "A Fast Linear-Arithmetic Solver for DPLL(T)").
+ *
+ * There are numOriginal original variables, numbered 0..numOriginal-1, and for every row given to
+ * the constructor a slack variable which is defined to be equal to the linear combination of the
+ * original variables given by that row.  All variables may be given a lower and an upper bound;
+ * the check() function then determines whether there is a rational assignment to all variables
+ * that satisfies both the row definitions and the bounds.
+ *
+ * Pivoting follows Bland's rule, so the procedure is guaranteed to terminate.
+ */
+final class Simplex {
+  private final int _numVars;
+  /** _rows[r][k] is the coefficient of variable k in the definition of the basic variable of r */
+  private final Rational[][] _rows;
+  /** _basic[r] is the variable that is defined by row r */
+  private final int[] _basic;
+  /** _rowOf[x] is the row that defines x if x is basic, and -1 otherwise */
+  private final int[] _rowOf;
+  private final Rational[] _lower;
+  private final Rational[] _upper;
+  private final Rational[] _value;
+
+  /**
+   * Sets up a Simplex instance with numOriginal unbounded variables, and one slack variable for
+   * each of the given rows; row i maps original variables to their coefficients, and defines the
+   * slack variable numOriginal + i.
+   */
+  Simplex(int numOriginal, List<Map<Integer,Long>> rows) {
+    _numVars = numOriginal + rows.size();
+    _rows = new Rational[rows.size()][_numVars];
+    _basic = new int[rows.size()];
+    _rowOf = new int[_numVars];
+    _lower = new Rational[_numVars];
+    _upper = new Rational[_numVars];
+    _value = new Rational[_numVars];
+    for (int x = 0; x < _numVars; x++) {
+      _rowOf[x] = -1;
+      _value[x] = Rational.ZERO;
+    }
+    for (int r = 0; r < rows.size(); r++) {
+      for (int k = 0; k < _numVars; k++) _rows[r][k] = Rational.ZERO;
+      for (Map.Entry<Integer,Long> entry : rows.get(r).entrySet()) {
+        _rows[r][entry.getKey()] = Rational.of(entry.getValue());
+      }
+      _basic[r] = numOriginal + r;
+      _rowOf[numOriginal + r] = r;
+    }
+  }
+
+  /** Requires x ≥ bound; if there already is a stronger lower bound, this does nothing. */
+  void setLower(int x, Rational bound) {
+    if (_lower[x] == null || _lower[x].compareTo(bound) < 0) _lower[x] = bound;
+  }
+
+  /** Requires x ≤ bound; if there already is a stronger upper bound, this does nothing. */
+  void setUpper(int x, Rational bound) {
+    if (_upper[x] == null || _upper[x].compareTo(bound) > 0) _upper[x] = bound;
+  }
+
+  /** After a successful check(), returns the value assigned to the given variable. */
+  Rational queryValue(int x) {
+    return _value[x];
+  }
+
+  private boolean belowLower(int x) {
+    return _lower[x] != null && _value[x].compareTo(_lower[x]) < 0;
+  }
+
+  private boolean aboveUpper(int x) {
+    return _upper[x] != null && _value[x].compareTo(_upper[x]) > 0;
+  }
+
+  /**
+   * Returns true if there is an assignment satisfying all rows and bounds (which is then stored,
+   * and may be queried through queryValue), and false if there is not.
+   */
+  boolean check() {
+    for (int x = 0; x < _numVars; x++) {
+      if (_lower[x] != null && _upper[x] != null && _lower[x].compareTo(_upper[x]) > 0) {
+        return false;
+      }
+    }
+    // put all non-basic variables within their bounds, and calculate the basic variables
+    for (int x = 0; x < _numVars; x++) {
+      if (_rowOf[x] >= 0) continue;
+      if (belowLower(x)) _value[x] = _lower[x];
+      else if (aboveUpper(x)) _value[x] = _upper[x];
+    }
+    for (int r = 0; r < _rows.length; r++) {
+      Rational sum = Rational.ZERO;
+      for (int k = 0; k < _numVars; k++) {
+        if (_rows[r][k].signum() != 0) sum = sum.add(_rows[r][k].multiply(_value[k]));
+      }
+      _value[_basic[r]] = sum;
+    }
+
+    while (true) {
+      // find the smallest basic variable that violates its bounds
+      int xi = -1;
+      for (int x = 0; x < _numVars && xi < 0; x++) {
+        if (_rowOf[x] >= 0 && (belowLower(x) || aboveUpper(x))) xi = x;
+      }
+      if (xi < 0) return true;
+      Rational[] row = _rows[_rowOf[xi]];
+      boolean increase = belowLower(xi);
+      // find the smallest non-basic variable that can be moved to repair xi
+      int xj = -1;
+      for (int x = 0; x < _numVars && xj < 0; x++) {
+        int sign = row[x].signum();
+        if (_rowOf[x] >= 0 || sign == 0) continue;
+        boolean up = increase == (sign > 0);
+        if (up && (_upper[x] == null || _value[x].compareTo(_upper[x]) < 0)) xj = x;
+        if (!up && (_lower[x] == null || _value[x].compareTo(_lower[x]) > 0)) xj = x;
+      }
+      if (xj < 0) return false;
+      pivotAndUpdate(xi, xj, increase ? _lower[xi] : _upper[xi]);
+    }
+  }
+
+  /**
+   * Assigns the basic variable xi the value v, by updating the non-basic variable xj, and then
+   * swaps the roles of xi and xj.
+   */
+  private void pivotAndUpdate(int xi, int xj, Rational v) {
+    int r = _rowOf[xi];
+    Rational theta = v.subtract(_value[xi]).divide(_rows[r][xj]);
+    _value[xi] = v;
+    _value[xj] = _value[xj].add(theta);
+    for (int s = 0; s < _rows.length; s++) {
+      if (s != r && _rows[s][xj].signum() != 0) {
+        _value[_basic[s]] = _value[_basic[s]].add(_rows[s][xj].multiply(theta));
+      }
+    }
+    pivot(r, xi, xj);
+  }
+
+  /** Rewrites row r, which defines xi, to define xj instead, and substitutes it in the others. */
+  private void pivot(int r, int xi, int xj) {
+    Rational[] row = _rows[r];
+    Rational a = row[xj];
+    // xi = a * xj + rest  ==>  xj = (1/a) * xi - (1/a) * rest
+    for (int k = 0; k < _numVars; k++) {
+      if (row[k].signum() != 0) row[k] = row[k].negate().divide(a);
+    }
+    row[xj] = Rational.ZERO;
+    row[xi] = Rational.ONE.divide(a);
+    for (int s = 0; s < _rows.length; s++) {
+      Rational c = _rows[s][xj];
+      if (s == r || c.signum() == 0) continue;
+      _rows[s][xj] = Rational.ZERO;
+      for (int k = 0; k < _numVars; k++) {
+        if (row[k].signum() != 0) _rows[s][k] = _rows[s][k].add(c.multiply(row[k]));
+      }
+    }
+    _basic[r] = xj;
+    _rowOf[xj] = r;
+    _rowOf[xi] = -1;
+  }
+}
@@ -0,0 +1,130 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import charlie.util.Deadline;
+
+/**
+ * An SmtSession keeps a single SMT solver process alive, and communicates with it over its
+ * standard input and output.  This avoids paying the start-up cost of the solver (and writing a
+ * temporary file) for every query.
+ *
+ * Every query is terminated by an echo command, so we know exactly where the solver's response to
+ * that query ends.  If the solver does not respond within the time limit, or the process dies, the
+ * process is destroyed, and a fresh one is started when the next query comes in.
+ *
+ * An SmtSession is not thread-safe: it is meant to be used by a single thread at a time.
+ */
+class SmtSession {
+  private static final String MARKER = "cora-query-done";
+  /** Placed on the output queue by the reader thread when the solver closes its output. */
+  private static final String EOF = new String("<eof>");
+
+  private final List<String> _command;
+  private final String _header;
+  private Process _process;
+  private Writer _input;
+  private LinkedBlockingQueue<String> _output;
+
+  /**
+   * Creates a session for the given command, which should start an SMT solver that reads SMTLIB
+   * commands from its standard input.  The header is sent once whenever the process is (re)started.
+   * No process is started until the first query.
+   */
+  SmtSession(List<String> command, String header) {
+    _command = command;
+    _header = header;
+    _process = null;
+  }
+
+  /** Starts the solver process, along with a daemon thread to collect its output. */
+  private void start() throws IOException {
+    ProcessBuilder builder = new ProcessBuilder(_command);
+    builder.redirectErrorStream(true);
+    _process = builder.start();
+    _input = new OutputStreamWriter(_process.getOutputStream(), StandardCharsets.UTF_8);
+    LinkedBlockingQueue<String> output = new LinkedBlockingQueue<>();
+    _output = output;
+    BufferedReader reader = new BufferedReader(
+      new InputStreamReader(_process.getInputStream(), StandardCharsets.UTF_8));
+    Thread thread = new Thread(() -> {
+      try {
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+          output.add(line);
+        }
+      }
+      catch (IOException e) { /* the process was destroyed; nothing more to read */ }
+      output.add(EOF);
+    }, "smt-session-reader");
+    thread.setDaemon(true);
+    thread.start();
+    _input.write(_header);
+  }
+
+  /**
+   * Sends the given SMTLIB commands to the solver, and returns everything the solver printed in
+   * response.  If no complete response is given within the time limit (in seconds), or the
+   * process could not be started or died, then the process is destroyed and Optional.empty() is
+   * returned.  The next query will then be sent to a new process.  The time limit is shortened to
+   * the deadline of the current thread, if that is sooner; if the deadline has already expired,
+   * the query is not sent at all.
+   */
+  Optional<String> query(String commands, int timeout) {
+    if (Deadline.current().hasExpired()) return Optional.empty();
+    try {
+      if (_process == null || !_process.isAlive()) start();
+      _input.write(commands);
+      _input.write("(echo \"" + MARKER + "\")" + System.lineSeparator());
+      _input.flush();
+      StringBuilder response = new StringBuilder();
+      long deadline = System.nanoTime() +
+        Deadline.current().limit(TimeUnit.SECONDS.toNanos(timeout), TimeUnit.NANOSECONDS);
+      while (true) {
+        long remaining = deadline - System.nanoTime();
+        String line = remaining <= 0 ? null : _output.poll(remaining, TimeUnit.NANOSECONDS);
+        if (line == null || line == EOF) break;
+        String trimmed = line.trim();
+        if (trimmed.equals(MARKER) || trimmed.equals("\"" + MARKER + "\"")) {
+          return Optional.of(response.toString());
+        }
+        response.append(line).append(System.lineSeparator());
+      }
+    }
+    catch (IOException e) { /* handled by closing the session below */ }
+    catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    close();
+    return Optional.empty();
+  }
+
+  /** Stops the underlying solver process, if any. */
+  void close() {
+    if (_process == null) return;
+    _process.destroyForcibly();
+    _process = null;
+    _input = null;
+    _output = null;
+  }
+}
@@ -209,6 +209,11 @@ class Abstraction extends TermInherit {
     return null;
   }
 
+  /** Combines the structural hash of the subterm with the type of the binder. */
+  protected int calculateHash() {
+    return 31 * _subterm.structuralHash() + _binder.queryType().hashCode() + 1;
+  }
+
   public boolean alphaEquals(Term term, Map<Variable,Integer> mu, Map<Variable,Integer> xi, int k) {
     if (!term.isAbstraction()) return false;
     Variable x = _binder;
@@ -222,6 +227,7 @@ class Abstraction extends TermInherit {
       throw new IllegalArgumentException("Calling Abstraction::alphaEquals when xi already maps " +
         y.toString() + ".");
     }   
+    if (identicalModulo(term, mu, xi)) return true;
     mu.put(x, k); 
     xi.put(y, k); 
     boolean retval = _subterm.alphaEquals(term.queryAbstractionSubterm(), mu, xi, k + 1); 
@@ -215,7 +215,7 @@ class Application extends TermInherit {
       throw new IndexingException("Application", "queryImmediateHeadSubterm", i, 0, _args.size());
     }   
     if (i == 0) return _head;
-    return new Application(_head, _args.subList(0, i));
+    return TermSharing.share(new Application(_head, _args.subList(0, i)));
   }
 
   /** Returns the abstraction-subterm of the head (if head is an abstraction) */
@@ -340,10 +340,10 @@ class Application extends TermInherit {
         }
         ArrayList<Term> lst = new ArrayList<Term>(_args);
         lst.set(index-1, _args.get(index-1).replaceSubterm(tail, replacement));
-        return new Application(_head, lst);
+        return TermSharing.share(new Application(_head, lst));
       default:
         Term newhead = _head.replaceSubterm(pos, replacement);
-        return new Application(newhead, _args);
+        return TermSharing.share(new Application(newhead, _args));
     }
   }
 
@@ -364,7 +364,7 @@ class Application extends TermInherit {
       args.set(i, t);
     }
 
-    return new Application(h, args);
+    return TermSharing.share(new Application(h, args));
   }
 
   /**
@@ -392,8 +392,16 @@ class Application extends TermInherit {
     return _head.match(other.queryImmediateHeadSubterm(i), gamma);
   }
 
+  /** Combines the structural hashes of the head and the arguments. */
+  protected int calculateHash() {
+    int h = _head.structuralHash();
+    for (int i = 0; i < _args.size(); i++) h = 31 * h + _args.get(i).structuralHash();
+    return h;
+  }
+
   /** This method verifies equality to another Term. */
   public boolean alphaEquals(Term term, Map<Variable,Integer> mu, Map<Variable,Integer> xi, int k) {
+    if (identicalModulo(term, mu, xi)) return true;
     if (!term.isApplication()) return false;
     if (!_head.alphaEquals(term.queryHead(), mu, xi, k)) return false;
     if (_args.size() != term.numberArguments()) return false;
@@ -16,6 +16,7 @@
 package charlie.terms;
 
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import charlie.exceptions.InappropriatePatternDataException;
 import charlie.exceptions.NullStorageException;
 import charlie.types.Type;
@@ -31,7 +32,7 @@ import charlie.types.Type;
  * in the program.
  */
 class Binder extends LeafTermInherit implements Variable {
-  private static int COUNTER = 0;
+  private static final AtomicInteger COUNTER = new AtomicInteger();
   private final String _name;
   private final int _index;
 
@@ -39,8 +40,7 @@ class Binder extends LeafTermInherit implements Variable {
   Binder(String name, Type type) {
     super(type);
     _name = name;
-    _index = COUNTER;
-    COUNTER++;
+    _index = COUNTER.getAndIncrement();
     if (name == null) throw new NullStorageException("Binder", "name");
     setVariables(new ReplaceableList(this));
   }
@@ -48,9 +48,8 @@ class Binder extends LeafTermInherit implements Variable {
   /** Create a binder variable without a name; a name will be automatically generated. */
   Binder(Type type) {
     super(type);
-    _name = "x{" + COUNTER + "}";
-    _index = COUNTER;
-    COUNTER++;
+    _index = COUNTER.getAndIncrement();
+    _name = "x{" + _index + "}";
   }
 
   /** @return true */
@@ -137,6 +136,22 @@ class Binder extends LeafTermInherit implements Variable {
       other.toString() + ".";
   }
 
+  /**
+   * Binder variables may be renamed by alpha-conversion, so in the structural hash they are only
+   * identified by their type.
+   */
+  protected int calculateHash() {
+    return queryType().hashCode();
+  }
+
+  /**
+   * As a term on its own, a binder is only equal to itself, so we use the index for hashCode() to
+   * avoid collisions between binders of the same type (for instance in substitutions).
+   */
+  public int hashCode() {
+    return _index;
+  }
+
   /**
    * Alpha-equality of a binder to another binder holds if either mu[this] = xi[that], or both
    * mu[this] and xi[that] are undefined and they are the same Variable.
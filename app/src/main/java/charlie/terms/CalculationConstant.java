@@ -111,6 +111,11 @@ public class CalculationConstant extends LeafTermInherit implements CalculationS
     return "calculation symbol " + _name + " is not instantiated by " + other.toString() + ".";
   }
 
+  /** Function symbols are hashed by name, since equal symbols have the same name. */
+  protected int calculateHash() {
+    return _name.hashCode();
+  }
+
   /** f =_α^{μ,ξ,k} t if and only if f and t are the same value. */
   public boolean alphaEquals(Term term, Map<Variable,Integer> mu, Map<Variable,Integer> xi, int k) {
     if (!term.isConstant()) return false;
@@ -131,6 +131,11 @@ class Constant extends LeafTermInherit implements FunctionSymbol {
     return "constant " + _name + " is not instantiated by " + other.toString() + ".";
   }
 
+  /** Function symbols are hashed by name, since equal symbols have the same name. */
+  protected int calculateHash() {
+    return _name.hashCode();
+  }
+
   /** f =_α^{μ,ξ,k} t if and only if f and t are the same constant. */
   public boolean alphaEquals(Term term, Map<Variable,Integer> mu, Map<Variable,Integer> xi, int k) {
     if (!term.isConstant()) return false;
@@ -16,6 +16,7 @@
 package charlie.terms;
 
 import com.google.common.collect.ImmutableList;
+import java.util.concurrent.atomic.AtomicInteger;
 import charlie.exceptions.IndexingException;
 import charlie.exceptions.NullStorageException;
 import charlie.types.Type;
@@ -25,7 +26,7 @@ import charlie.types.TypeFactory;
  * This class is for Meta-variables of higher type; that is, arity ≥ 1.
  */
 class HigherMetaVar implements MetaVariable {
-  private static int _COUNTER = 0;
+  private static final AtomicInteger _COUNTER = new AtomicInteger();
   private final String _name;
   private final ImmutableList<Type> _inputs;
   private final Type _output;
@@ -36,8 +37,7 @@ class HigherMetaVar implements MetaVariable {
     _name = name;
     _inputs = inputs;
     _output = output;
-    _index = _COUNTER;
-    _COUNTER++;
+    _index = _COUNTER.getAndIncrement();
     if (name == null) throw new NullStorageException("HigherMetaVar", "name");
     if (inputs == null) throw new NullStorageException("HigherMetaVar", "inputs");
     if (output == null) throw new NullStorageException("HigherMetaVar", "output");
@@ -191,7 +191,7 @@ class MetaApplication extends TermInherit {
         if (index <= _args.size()) {
           ArrayList<Term> newargs = new ArrayList<Term>(_args);
           newargs.set(index-1, _args.get(index-1).replaceSubterm(tail, replacement));
-          return new MetaApplication(_metavar, newargs);
+          return TermSharing.share(new MetaApplication(_metavar, newargs));
         }
       default:
         throw new IndexingException("MetaApplication","replaceSubterm",toString(),pos.toString());
@@ -208,7 +208,7 @@ class MetaApplication extends TermInherit {
     ArrayList<Term> newArgs = new ArrayList<Term>();
     for (int i = 0; i < _args.size(); i++) newArgs.add(_args.get(i).substitute(gamma));
     Term value = gamma.get(_metavar);
-    if (value == null) return new MetaApplication(_metavar, newArgs);
+    if (value == null) return TermSharing.share(new MetaApplication(_metavar, newArgs));
     Substitution delta = new Subst();
     Term v = value;
     for (int i = 0; i < newArgs.size(); i++) {
@@ -280,12 +280,20 @@ class MetaApplication extends TermInherit {
       previous.toString() + " and to " + ret.toString() + ".";
   }
 
+  /** Combines the index of the meta-variable with the structural hashes of the arguments. */
+  protected int calculateHash() {
+    int h = 41 * _metavar.queryIndex() + 2;
+    for (int i = 0; i < _args.size(); i++) h = 31 * h + _args.get(i).structuralHash();
+    return h;
+  }
+
   /**
    * This method verifies equality to another Term.  Since meta-variables are not renamable
    * variables, a meta-application Z⟨s1,...,sk⟩ can only be equivalent to Z⟨t1,...,tk⟩ if each
    * si is α-equal to ti.
    */
   public boolean alphaEquals(Term term, Map<Variable,Integer> mu, Map<Variable,Integer> xi, int k) {
+    if (identicalModulo(term, mu, xi)) return true;
     if (!term.isMetaApplication()) return false;
     if (!_metavar.equals(term.queryMetaVariable())) return false;
     for (int i = 0; i < _args.size(); i++) {
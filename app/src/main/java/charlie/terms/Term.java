@@ -351,4 +351,12 @@ public interface Term {
 
   /** Determines the =_α^{μ,ξ,k} relation as described in the documentation. */
   boolean alphaEquals(Term term, Map<Variable,Integer> mu, Map<Variable,Integer> xi, int k);
+
+  /**
+   * Returns a hash code that respects alpha-equality, even for subterms that occur below a binder:
+   * if s =_α^{μ,ξ,k} t for any μ, ξ, k, then s and t have the same structural hash.  This is
+   * efficient, as the result is cached.  For all terms other than binder variables, this is also
+   * the result of hashCode().
+   */
+  int structuralHash();
 }
@@ -21,6 +21,21 @@ import charlie.exceptions.ArityException;
 import charlie.types.*;
 
 public class TermFactory {
+  /**
+   * Turns hash-consing of terms on or off.  If it is on, then terms without bound variables that
+   * are created by this factory, or by operations on terms such as substitute, are shared: equal
+   * terms are represented by the same object, which saves memory and makes equality checks cheap.
+   * See TermSharing for details.
+   */
+  public static void setHashConsing(boolean value) {
+    TermSharing.setEnabled(value);
+  }
+
+  /** Returns whether hash-consing of terms is currently enabled. */
+  public static boolean queryHashConsing() {
+    return TermSharing.isEnabled();
+  }
+
   /** Create a non-binder variable with the given name and type. */
   public static Variable createVar(String name, Type type) {
     return new Var(name, type);
@@ -64,7 +79,7 @@ public class TermFactory {
   /** Creates a functional term f(args) */
   public static Term createFunctionalTerm(FunctionSymbol f, List<Term> args) {
     if (args == null || args.size() == 0) return f;
-    return new Application(f, args);
+    return TermSharing.share(new Application(f, args));
   }
 
   /** Creates a meta-variable X with arity k */
@@ -112,17 +127,17 @@ public class TermFactory {
 
   /** Creates a tuple with 2 elements */
   public static Term createTuple(Term a, Term b) {
-    return new Tuple(a, b);
+    return TermSharing.share(new Tuple(a, b));
   }
 
   /** Creates a tuple with 3 elements. */
   public static Term createTuple(Term a, Term b, Term c) {
-    return new Tuple(a, b, c);
+    return TermSharing.share(new Tuple(a, b, c));
   }
 
   /** Creates a tuple of arbitrary length ≥ 2. */
   public static Term createTuple(List<Term> elems) {
-    return new Tuple(elems);
+    return TermSharing.share(new Tuple(elems));
   }
 
   /**
@@ -158,17 +173,19 @@ public class TermFactory {
   /** Creates a meta-application Z[args] */
   public static Term createMeta(MetaVariable mv, List<Term> args) {
     if (args != null && args.size() == 0 && (mv instanceof Var)) return (Var)mv;
-    return new MetaApplication(mv, args);
+    return TermSharing.share(new MetaApplication(mv, args));
   }
 
   /** Create a meta-application Z[arg] */
   public static Term createMeta(MetaVariable mv, Term arg) {
-    return new MetaApplication(mv, ImmutableList.<Term>builder().add(arg).build());
+    ImmutableList<Term> args = ImmutableList.<Term>builder().add(arg).build();
+    return TermSharing.share(new MetaApplication(mv, args));
   }
 
   /** Create a meta-application Z[arg2] */
   public static Term createMeta(MetaVariable mv, Term arg1, Term arg2) {
-    return new MetaApplication(mv, ImmutableList.<Term>builder().add(arg1).add(arg2).build());
+    ImmutableList<Term> args = ImmutableList.<Term>builder().add(arg1).add(arg2).build();
+    return TermSharing.share(new MetaApplication(mv, args));
   }
 
   /** Creates an empty substitution. */
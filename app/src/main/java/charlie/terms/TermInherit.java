@@ -18,6 +18,7 @@ package charlie.terms;
 import com.google.common.collect.ImmutableList;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.Set;
@@ -43,6 +44,8 @@ import charlie.terms.position.FinalPos;
 abstract class TermInherit implements Term {
   private ReplaceableList _freeReplaceables;
   private ReplaceableList _boundVariables;
+  private int _hash;        // the structural hash, or 0 if it has not been calculated yet
+  private boolean _shared;  // true if this is the representative for its class in TermSharing
 
   /**
    * Sets the set of all meta-variables and free variables occurring in this term to vs, and the
@@ -294,12 +297,65 @@ abstract class TermInherit implements Term {
    */
   public Term apply(List<Term> args) {
     if (args.size() == 0) return this;
-    return new Application(this, args);
+    return TermSharing.share(new Application(this, args));
   }
 
-  /** This method verifies equality to another Term. */
+  /**
+   * This function should calculate the structural hash of the current term (see structuralHash()).
+   * To make sure that alpha-equal terms have the same hash, binder variables should contribute
+   * only through their type.  Subterms should contribute through their structuralHash(), so that
+   * cached values are reused.
+   */
+  protected abstract int calculateHash();
+
+  /** Returns the (cached) structural hash of this term. */
+  public int structuralHash() {
+    if (_hash == 0) _hash = calculateHash();
+    return _hash;
+  }
+
+  /** Returns a hash code that is consistent with equals (and hence with alpha-equality). */
+  public int hashCode() {
+    return structuralHash();
+  }
+
+  /** Returns whether this term is the representative of its equivalence class in TermSharing. */
+  boolean isShared() {
+    return _shared;
+  }
+
+  /** Marks this term as the representative of its equivalence class in TermSharing. */
+  void markShared() {
+    _shared = true;
+  }
+
+  /**
+   * Returns whether term is the very same object as the current term, and all free binder
+   * variables of the current term are mapped to the same value by mu and xi; if so, then
+   * this =_α^{μ,ξ,k} term certainly holds.  This is used as a shortcut in alphaEquals.
+   */
+  protected boolean identicalModulo(Term term, Map<Variable,Integer> mu,
+                                    Map<Variable,Integer> xi) {
+    if (term != this) return false;
+    if (mu.isEmpty() && xi.isEmpty()) return true;
+    for (Replaceable x : _freeReplaceables) {
+      if (x.queryReplaceableKind() != Replaceable.KIND_BINDER) continue;
+      Integer a = mu.get(x), b = xi.get(x);
+      if (a == null ? b != null : !a.equals(b)) return false;
+    }
+    return true;
+  }
+
+  /**
+   * This method verifies equality to another Term.  Since equal terms have the same structural
+   * hash, and there is only one shared representative for every class of equal terms, we can often
+   * avoid a full comparison.
+   */
   public boolean equals(Term other) {
+    if (other == this) return true;
     if (other == null) return false;
+    if (_shared && other instanceof TermInherit o && o._shared) return false;
+    if (structuralHash() != other.structuralHash()) return false;
     TreeMap<Variable,Integer> mu = new TreeMap<Variable,Integer>();
     TreeMap<Variable,Integer> xi = new TreeMap<Variable,Integer>();
     return alphaEquals(other, mu, xi, 1);
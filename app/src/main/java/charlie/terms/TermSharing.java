@@ -0,0 +1,62 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.terms;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * TermSharing implements the (optional) hash-consing of terms: if it is enabled, then terms that
+ * are built by the TermFactory, or by operations such as substitute, apply and replaceSubterm, are
+ * looked up in a global table, and if an equal term was already built before, that one is returned
+ * instead.  Hence, equal subterms share memory, and two shared terms are equal if and only if they
+ * are the same object (which allows for constant-time equality checks).
+ *
+ * Only terms without bound variables are shared.  This is because functions such as substitute
+ * and refreshBinders guarantee that all binders in the result are fresh, and the well-behavedness
+ * of terms relies on this; returning an existing alpha-equal term would break that guarantee.
+ *
+ * The table holds its terms weakly, so terms that are no longer used elsewhere may be garbage
+ * collected.  It is safe to use from multiple threads.
+ */
+class TermSharing {
+  private static volatile boolean _enabled = false;
+  private static final Interner<Term> _table = Interners.newWeakInterner();
+
+  /** Turns hash-consing on or off; terms that are already shared remain shared. */
+  static void setEnabled(boolean value) {
+    _enabled = value;
+  }
+
+  /** Returns whether hash-consing is currently enabled. */
+  static boolean isEnabled() {
+    return _enabled;
+  }
+
+  /**
+   * If hash-consing is enabled and the given term has no bound variables, this returns the shared
+   * representative of the term (which is the term itself if no equal term was shared before).
+   * Otherwise, the term itself is returned.
+   */
+  static Term share(Term term) {
+    if (!_enabled) return term;
+    if (!(term instanceof TermInherit t) || t.isShared()) return term;
+    if (t.boundVars().size() > 0) return term;
+    Term ret = _table.intern(term);
+    if (ret == term) t.markShared();
+    return ret;
+  }
+}
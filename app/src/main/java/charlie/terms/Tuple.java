@@ -231,7 +231,7 @@ public class Tuple extends TermInherit {
         if (index <= _components.size()) {
           ArrayList<Term> newcomps = new ArrayList<Term>(_components);
           newcomps.set(index - 1, newcomps.get(index - 1).replaceSubterm(tail, replacement));
-          return new Tuple(newcomps);
+          return TermSharing.share(new Tuple(newcomps));
         }
       default:
         throw new IndexingException("Tuple", "replaceSubterm", toString(), pos.toString());
@@ -244,7 +244,8 @@ public class Tuple extends TermInherit {
    */
   @Override
   public Term substitute(Substitution gamma) {
-    return new Tuple(_components.stream().map(t -> t.substitute(gamma)).toList());
+    List<Term> comps = _components.stream().map(t -> t.substitute(gamma)).toList();
+    return TermSharing.share(new Tuple(comps));
   }
 
   /**
@@ -270,9 +271,18 @@ public class Tuple extends TermInherit {
     return null;
   }
 
+  /** Combines the structural hashes of the components. */
+  @Override
+  protected int calculateHash() {
+    int h = 3;
+    for (int i = 0; i < _components.size(); i++) h = 31 * h + _components.get(i).structuralHash();
+    return h;
+  }
+
   /** Determines the =_α^{μ,ξ,k} relation as described in the documentation. */
   @Override
   public boolean alphaEquals(Term term, Map<Variable, Integer> mu, Map<Variable, Integer> xi, int k) {
+    if (identicalModulo(term, mu, xi)) return true;
     if (!term.isTuple() || !_tupleType.equals(term.queryType())) {
       return false;
     }
@@ -98,6 +98,11 @@ public abstract class ValueInherit extends LeafTermInherit implements Value {
     return "value " + toString() + " is not instantiated by " + other.toString() + ".";
   }
 
+  /** Values are hashed by name, since equal values have the same name. */
+  protected int calculateHash() {
+    return queryName().hashCode();
+  }
+
   /** f =_α^{μ,ξ,k} t if and only if f and t are the same value. */
   public boolean alphaEquals(Term term, Map<Variable,Integer> mu, Map<Variable,Integer> xi, int k) {
     if (!term.isValue()) return false;
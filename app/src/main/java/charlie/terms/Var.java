@@ -16,6 +16,7 @@
 package charlie.terms;
 
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import charlie.exceptions.IndexingException;
 import charlie.exceptions.NullStorageException;
 import charlie.types.Type;
@@ -33,7 +34,7 @@ import charlie.types.Type;
  * A non-binder variable is also a meta-variable with arity 0.
  */
 class Var extends LeafTermInherit implements Variable, MetaVariable {
-  private static int COUNTER = 0;
+  private static final AtomicInteger COUNTER = new AtomicInteger();
   private final String _name;
   private final int _index;
 
@@ -41,8 +42,7 @@ class Var extends LeafTermInherit implements Variable, MetaVariable {
   Var(String name, Type type) {
     super(type);
     _name = name;
-    _index = COUNTER;
-    COUNTER++;
+    _index = COUNTER.getAndIncrement();
     if (name == null) throw new NullStorageException("Var", "name");
     setVariables(new ReplaceableList(this));
   }
@@ -50,9 +50,8 @@ class Var extends LeafTermInherit implements Variable, MetaVariable {
   /** Create a non-binder variable without a name; a name will be automatically generated. */
   Var(Type type) {
     super(type);
-    _name = "X{" + COUNTER + "}";
-    _index = COUNTER;
-    COUNTER++;
+    _index = COUNTER.getAndIncrement();
+    _name = "X{" + _index + "}";
     setVariables(new ReplaceableList(this));
   }
 
@@ -158,6 +157,11 @@ class Var extends LeafTermInherit implements Variable, MetaVariable {
     return other == this;
   }
 
+  /** Non-binder variables are hashed by their index, which uniquely identifies them. */
+  protected int calculateHash() {
+    return _index;
+  }
+
   /** Alpha-equality of a non-binder variable to another variable holds iff they are the same. */
   public boolean alphaEquals(Term term, Map<Variable,Integer> mu, Map<Variable,Integer> xi, int k) {
     return term.isVariable() && equals(term.queryVariable());
@@ -15,7 +15,7 @@
 
 package charlie.theorytranslation;
 
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 import charlie.exceptions.UnsupportedTheoryException;
 import charlie.types.Type;
@@ -28,8 +28,6 @@ import charlie.smt.SmtSolver.Answer;
  * This class provides analysis functions on theory terms, by using a translation to SMT.
  */
 public class TermAnalyser {
-  private static Random _rnd = new Random();
-
   public sealed interface Result {
     public record YES(Substitution subts) implements Result {}
     public record NO() implements Result {}
@@ -38,7 +36,7 @@ public class TermAnalyser {
 
   /** Returns a randomly selected value of the given type */
   public static Value chooseRandomValue(Type type) {
-    int r = _rnd.nextInt();
+    int r = ThreadLocalRandom.current().nextInt();
     if (type.equals(TypeFactory.intSort)) return TheoryFactory.createValue(r);
     if (type.equals(TypeFactory.boolSort)) return TheoryFactory.createValue((r % 2) == 0);
     if (type.equals(TypeFactory.stringSort)) return TheoryFactory.createValue("{" + r + "}");
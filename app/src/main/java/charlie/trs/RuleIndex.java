@@ -0,0 +1,148 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.trs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import charlie.terms.FunctionSymbol;
+import charlie.terms.Term;
+
+/**
+ * A RuleIndex is a discrimination tree over the left-hand sides of the rules in a TRS, which can
+ * be used to quickly find the rules that could possibly be applied at the head of a given term.
+ *
+ * Each left-hand side f(l1,...,lm) is flattened into a sequence of keys by a preorder traversal:
+ * every functional subterm g(s1,...,sk) yields the key g, and every other subterm (a variable, an
+ * abstraction, a meta-application, ...) yields a wildcard, and its subterms are not considered.
+ * Since all terms are well-typed, the position reached by following a path in the tree determines
+ * the type of the next subterm, and hence how many arguments a symbol g has there; only at the
+ * root does the number of arguments vary, because a rule f(l1,...,lm) may be applied to a term
+ * f(s1,...,sn) with n ≥ m (with head additions).  Hence, at the root, we use both the name of f and
+ * m as a key.
+ *
+ * The index is an over-approximation: non-linearity, types and constraints are ignored, so the
+ * candidates it returns still need to be matched.  However, any rule that is not returned is
+ * guaranteed not to match.
+ *
+ * A RuleIndex is immutable after construction, and hence may safely be shared.
+ */
+public class RuleIndex {
+  /** A node in the discrimination tree. */
+  private static class Node {
+    TreeMap<String,Node> children = new TreeMap<String,Node>();
+    Node wildcard = null;
+    ArrayList<Integer> rules = new ArrayList<Integer>();
+  }
+
+  private final TreeMap<String,TreeMap<Integer,Node>> _roots;
+  private final ArrayList<Integer> _unrooted;
+  private final TreeMap<String,Integer> _minimalArity;
+
+  /** Builds the index for the rules in the given TRS. */
+  RuleIndex(List<Rule> rules) {
+    _roots = new TreeMap<String,TreeMap<Integer,Node>>();
+    _unrooted = new ArrayList<Integer>();
+    _minimalArity = new TreeMap<String,Integer>();
+    for (int i = 0; i < rules.size(); i++) store(rules.get(i).queryLeftSide(), i);
+  }
+
+  /** Stores the given left-hand side in the tree, with the given rule index. */
+  private void store(Term left, int index) {
+    if (!left.isFunctionalTerm()) { _unrooted.add(index); return; }
+    String name = left.queryRoot().queryName();
+    int m = left.numberArguments();
+    Integer ar = _minimalArity.get(name);
+    if (ar == null || m < ar) _minimalArity.put(name, m);
+    TreeMap<Integer,Node> byArity = _roots.get(name);
+    if (byArity == null) { byArity = new TreeMap<Integer,Node>(); _roots.put(name, byArity); }
+    Node node = byArity.get(m);
+    if (node == null) { node = new Node(); byArity.put(m, node); }
+    for (int i = 1; i <= m; i++) node = storeSubterm(node, left.queryArgument(i));
+    node.rules.add(index);
+  }
+
+  /** Extends the path from node with the keys for s, and returns the node at the end. */
+  private Node storeSubterm(Node node, Term s) {
+    if (!s.isFunctionalTerm()) {
+      if (node.wildcard == null) node.wildcard = new Node();
+      return node.wildcard;
+    }
+    String name = s.queryRoot().queryName();
+    Node child = node.children.get(name);
+    if (child == null) { child = new Node(); node.children.put(name, child); }
+    for (int i = 1; i <= s.numberArguments(); i++) child = storeSubterm(child, s.queryArgument(i));
+    return child;
+  }
+
+  /**
+   * Returns the indexes (in the TRS) of all rules whose left-hand side might match t, or a head
+   * subterm of t (that is, t with some of its final arguments removed).  The indexes are returned
+   * in increasing order.
+   */
+  public List<Integer> queryCandidates(Term t) {
+    ArrayList<Integer> ret = new ArrayList<Integer>(_unrooted);
+    if (t.isFunctionalTerm()) {
+      TreeMap<Integer,Node> byArity = _roots.get(t.queryRoot().queryName());
+      if (byArity != null) {
+        ArrayList<Term> todo = new ArrayList<Term>();
+        for (Map.Entry<Integer,Node> entry : byArity.headMap(t.numberArguments(), true).entrySet()) {
+          for (int i = entry.getKey(); i >= 1; i--) todo.add(t.queryArgument(i));
+          collect(entry.getValue(), todo, ret);
+          todo.clear();
+        }
+      }
+    }
+    Collections.sort(ret);
+    return ret;
+  }
+
+  /**
+   * Adds the rules at all leaves reachable from node, following the subterms on the todo stack
+   * (whose top is its last element), to result.  At the end, todo is the same as at the start.
+   */
+  private void collect(Node node, ArrayList<Term> todo, ArrayList<Integer> result) {
+    if (todo.isEmpty()) { result.addAll(node.rules); return; }
+    Term s = todo.remove(todo.size() - 1);
+    if (node.wildcard != null) collect(node.wildcard, todo, result);
+    if (s.isFunctionalTerm()) {
+      Node child = node.children.get(s.queryRoot().queryName());
+      if (child != null) {
+        int n = s.numberArguments();
+        for (int i = n; i >= 1; i--) todo.add(s.queryArgument(i));
+        collect(child, todo, result);
+        for (int i = 0; i < n; i++) todo.remove(todo.size() - 1);
+      }
+    }
+    todo.add(s);
+  }
+
+  /**
+   * Returns the smallest number of arguments with which f occurs as the root of a left-hand side,
+   * or -1 if f is not the root of any left-hand side.
+   */
+  public int queryMinimalArity(FunctionSymbol f) {
+    Integer ret = _minimalArity.get(f.queryName());
+    return ret == null ? -1 : ret;
+  }
+
+  /** Returns whether there are rules whose left-hand side is not a functional term. */
+  public boolean hasUnrootedRules() {
+    return !_unrooted.isEmpty();
+  }
+}
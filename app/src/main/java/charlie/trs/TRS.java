@@ -88,6 +88,7 @@ public class TRS {
   private boolean _theoriesIncluded;
   private boolean _productsIncluded;
   private RuleRestrictions _rulesProperties;
+  private final RuleIndex _index;
 
   /**
    * Create a TRS with the given settings.  Default because this should only be called by the
@@ -124,6 +125,7 @@ public class TRS {
       if (root != null) _defined.add(root);
     }
     _rules = rulebuilder.build();
+    _index = new RuleIndex(_rules);
 
     // and give an error if we don't satisfy the given restrictions on the rules
     if (restrictions != null) {
@@ -167,6 +169,14 @@ public class TRS {
     return _defined.contains(symbol);
   }
 
+  /**
+   * Returns an index of the left-hand sides of the rules, which can be used to find the rules that
+   * may be applied at the head of a given term.
+   */
+  public RuleIndex queryRuleIndex() {
+    return _index;
+  }
+
   /** @return the number of rules in the TRS that can be queried. */
   public int queryRuleCount() {
     return _rules.size();
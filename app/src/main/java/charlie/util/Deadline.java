@@ -0,0 +1,132 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A Deadline is a point in time by which some work should be finished, or the absence of such a
+ * point (see none()).  Long-running operations, such as calls to an external SMT solver, consult
+ * the deadline that is active for the current thread (see current() and run()), and give up
+ * rather than exceed it.  Thus, running out of time leads to a failed attempt (e.g. MAYBE), rather
+ * than to a run that never ends.
+ *
+ * Deadlines are immutable, so they can freely be shared between threads.
+ */
+public final class Deadline {
+  private static final ThreadLocal<Deadline> _active = new ThreadLocal<Deadline>();
+  private static final Deadline NONE = new Deadline(0, false);
+
+  private final long _end;          // in terms of System.nanoTime()
+  private final boolean _limited;   // if false, _end is meaningless
+
+  private Deadline(long end, boolean limited) {
+    _end = end;
+    _limited = limited;
+  }
+
+  /** Returns the deadline that never expires. */
+  public static Deadline none() {
+    return NONE;
+  }
+
+  /** Returns the deadline that expires after the given amount of time from now. */
+  public static Deadline after(long amount, TimeUnit unit) {
+    return new Deadline(System.nanoTime() + unit.toNanos(Math.max(0, amount)), true);
+  }
+
+  /**
+   * Returns the deadline that is active for the current thread; if none was set using run(), this
+   * is none().
+   */
+  public static Deadline current() {
+    Deadline ret = _active.get();
+    return ret == null ? NONE : ret;
+  }
+
+  /** Returns whether this deadline actually limits the time (so is not none()). */
+  public boolean isLimited() {
+    return _limited;
+  }
+
+  /** Returns whether this deadline has already passed. */
+  public boolean hasExpired() {
+    return _limited && System.nanoTime() - _end >= 0;
+  }
+
+  /**
+   * Returns the time that remains until this deadline, in the given unit (0 if it has expired, and
+   * Long.MAX_VALUE if the deadline is none()).
+   */
+  public long queryRemaining(TimeUnit unit) {
+    if (!_limited) return Long.MAX_VALUE;
+    return unit.convert(Math.max(0, _end - System.nanoTime()), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the given timeout (in the given unit), or the remaining time until this deadline if that
+   * is shorter.
+   */
+  public long limit(long timeout, TimeUnit unit) {
+    return Math.min(timeout, queryRemaining(unit));
+  }
+
+  /** Returns whichever of this deadline and the given one expires first. */
+  public Deadline earliest(Deadline other) {
+    if (!_limited) return other;
+    if (!other._limited) return this;
+    return _end - other._end <= 0 ? this : other;
+  }
+
+  /**
+   * Returns a deadline that expires once the given fraction (between 0 and 1) of the time remaining
+   * until this deadline has passed.  This is used to give part of a time budget to a subtask, so
+   * that some time is left for other work if the subtask fails.  If this deadline is none(), then
+   * so is the result.
+   */
+  public Deadline share(double fraction) {
+    if (!_limited) return this;
+    long remaining = queryRemaining(TimeUnit.NANOSECONDS);
+    return new Deadline(System.nanoTime() + (long)(remaining * fraction), true);
+  }
+
+  /**
+   * Runs the given computation with this deadline active for the current thread, and returns its
+   * result.  Afterwards, the previously active deadline (if any) is restored.
+   */
+  public <T> T run(Supplier<T> computation) {
+    Deadline previous = _active.get();
+    _active.set(this);
+    try { return computation.get(); }
+    finally {
+      if (previous == null) _active.remove();
+      else _active.set(previous);
+    }
+  }
+
+  /** Like run(), but for a task that may throw a checked exception. */
+  public <T> T call(Callable<T> task) throws Exception {
+    Deadline previous = _active.get();
+    _active.set(this);
+    try { return task.call(); }
+    finally {
+      if (previous == null) _active.remove();
+      else _active.set(previous);
+    }
+  }
+}
@@ -16,12 +16,18 @@
 package charlie.util;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -44,48 +50,53 @@ public class ProcessCaller {
 //    _processBuilder.inheritIO();
   }
 
-  /**
-   * This sets a timeout handler and runs the process.  If the process times out, then this is
-   * immediately handled, and null is returned.  Otherwise, the process is returned, so its input
-   * stream can be read.
-   */
-  private Process callProcess() throws IOException, InterruptedException {
-    Process process = null;
-    process = _processBuilder.start();
-
-    final boolean exited = process.waitFor(_timeout, TimeUnit.SECONDS);
-    if (!exited) {
-      // we did not finish within the timeout
-      process.destroy();
-      Runtime.getRuntime().exit(1);
-      return null;
-    }
-
-    return process;
+  /** Something that writes the input for a process. */
+  public interface InputWriter {
+    void write(Writer input) throws IOException;
   }
 
   /**
-   * This function calls the process, waits for it to complete or time out, and returns the result
-   * as an InputStream.
+   * This function starts the process, streams the given input to its standard input, and returns
+   * everything it printed once it completes (or Optional.empty() if it times out, or the deadline
+   * of the current thread passes).  The output is read while the process runs, so a process with
+   * a large output cannot block on a full pipe.
    */
-  public Optional<InputStream> getResultAsInputStream() throws IOException, InterruptedException {
-    Process process = callProcess();
-    if (process == null) return Optional.empty();
-//    process.onExit().get();
-    return Optional.of(process.getInputStream());
-  }
+  public Optional<String> getResultAsString(InputWriter input) throws IOException,
+                                                                      InterruptedException {
+    long millis = Deadline.current().limit(TimeUnit.SECONDS.toMillis(_timeout),
+                                           TimeUnit.MILLISECONDS);
+    if (millis <= 0) return Optional.empty();
+    Process process = _processBuilder.start();
+    try {
+      // the input is written and the output read on helper threads, so that neither can block
+      // us beyond the timeout (if the process is stopped, they fail and end)
+      Thread writer = new Thread(() -> {
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(),
+                                                                  StandardCharsets.UTF_8))) {
+          input.write(w);
+        }
+        catch (IOException e) { /* the process stopped reading; its output tells us more */ }
+      }, "process-input-writer");
+      CompletableFuture<String> output = new CompletableFuture<String>();
+      Thread reader = new Thread(() -> {
+        try { output.complete(bufferToString(process.getInputStream())); }
+        catch (IOException e) { output.completeExceptionally(e); }
+      }, "process-output-reader");
+      writer.setDaemon(true);
+      reader.setDaemon(true);
+      writer.start();
+      reader.start();
 
-  /**
-   * This function calls the process, waits for it to complete or time out, reads the result into a
-   * string and returns it.
-   */
-  public Optional<String> getResultAsString() throws IOException, InterruptedException,
-                                                     ExecutionException {
-    Process process = callProcess();
-    if (process == null) return Optional.empty();
-    process.onExit().get();
-    String processResult = bufferToString(process.getInputStream());
-    return Optional.of(processResult);
+      if (!process.waitFor(millis, TimeUnit.MILLISECONDS)) return Optional.empty();
+      try { return Optional.of(output.get(1, TimeUnit.SECONDS)); }
+      catch (ExecutionException | TimeoutException e) {
+        return Optional.empty();
+      }
+    }
+    finally {
+      // if the process is still running (timeout, cancellation or error), it is no longer needed
+      process.destroyForcibly();
+    }
   }
 
   /** Helper function for getResultAsString: this reads the given input stream into a String. */
@@ -0,0 +1,55 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * The Java Flight Recorder event for a single measurement of the Profiler.  The duration of the
+ * event is the wall time of the measured task; when JFR is not recording, these events are never
+ * committed.
+ */
+@Name("cora.Measurement")
+@Label("Cora Measurement")
+@Category("Cora")
+@Description("A processor invocation, SMT call or other task measured by the profiler")
+class ProfileEvent extends Event {
+  @Label("Category")
+  String category;
+
+  @Label("Name")
+  String name;
+
+  @Label("CPU Time")
+  @Timespan(Timespan.NANOSECONDS)
+  long cpuTime;
+
+  @Label("Allocated")
+  @DataAmount(DataAmount.BYTES)
+  long allocated;
+
+  @Label("Variables")
+  int variables;
+
+  @Label("Constraints")
+  int constraints;
+}
@@ -0,0 +1,162 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * A Profiler records how much wall time, CPU time and memory is spent on tasks such as processor
+ * invocations and SMT calls.  Every measurement is also emitted as a JFR event (cora.Measurement),
+ * so it shows up in flight recordings alongside the JVM's own events.
+ *
+ * CPU time and allocations are those of the thread that runs the task; work that the task hands
+ * to other threads is not included (but may be measured separately).  If the JVM does not support
+ * measuring them, they are recorded as -1.
+ *
+ * The Profiler is thread-safe: tasks may be measured from many threads at the same time.
+ */
+public class Profiler {
+  /**
+   * A single measurement.  The variables and constraints indicate the size of the problem for SMT
+   * calls, and are -1 for other tasks.
+   */
+  public record Measurement(String category, String name, long wallNanos, long cpuNanos,
+                            long allocatedBytes, int variables, int constraints) {}
+
+  private static final ThreadMXBean _threads = ManagementFactory.getThreadMXBean();
+  private final ConcurrentLinkedQueue<Measurement> _measurements;
+
+  /** Creates a profiler without any measurements. */
+  public Profiler() {
+    _measurements = new ConcurrentLinkedQueue<Measurement>();
+  }
+
+  /** Runs the given task, records its costs under the given category and name, and returns it. */
+  public <T> T measure(String category, String name, Supplier<T> task) {
+    return measure(category, name, -1, -1, task);
+  }
+
+  /**
+   * Runs the given task, and records its costs under the given category and name, along with the
+   * given size of the problem it solves.  The result of the task is returned.
+   */
+  public <T> T measure(String category, String name, int variables, int constraints,
+                       Supplier<T> task) {
+    ProfileEvent event = new ProfileEvent();
+    long cpu = cpuTime(), allocated = allocatedBytes();
+    long start = System.nanoTime();
+    event.begin();
+    try { return task.get(); }
+    finally {
+      event.end();
+      long wall = System.nanoTime() - start;
+      cpu = cpu < 0 ? -1 : cpuTime() - cpu;
+      allocated = allocated < 0 ? -1 : allocatedBytes() - allocated;
+      _measurements.add(new Measurement(category, name, wall, cpu, allocated, variables,
+                                        constraints));
+      if (event.shouldCommit()) {
+        event.category = category;
+        event.name = name;
+        event.cpuTime = cpu;
+        event.allocated = allocated;
+        event.variables = variables;
+        event.constraints = constraints;
+        event.commit();
+      }
+    }
+  }
+
+  /** Returns the CPU time of the current thread in nanoseconds, or -1 if this is unsupported. */
+  private static long cpuTime() {
+    if (!_threads.isCurrentThreadCpuTimeSupported()) return -1;
+    return _threads.getCurrentThreadCpuTime();
+  }
+
+  /** Returns the bytes allocated by the current thread so far, or -1 if this is unsupported. */
+  private static long allocatedBytes() {
+    if (_threads instanceof com.sun.management.ThreadMXBean bean &&
+        bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+      return bean.getCurrentThreadAllocatedBytes();
+    }
+    return -1;
+  }
+
+  /** Returns all measurements so far, in the order in which they were completed. */
+  public List<Measurement> queryMeasurements() {
+    return new ArrayList<Measurement>(_measurements);
+  }
+
+  /**
+   * Returns a human-readable summary of the measurements: for every category and name, the number
+   * of measurements and their total costs.
+   */
+  public String printSummary() {
+    TreeMap<String,long[]> totals = new TreeMap<String,long[]>();
+    for (Measurement m : _measurements) {
+      long[] t = totals.computeIfAbsent(m.category() + " " + m.name(), k -> new long[4]);
+      t[0]++;
+      t[1] += m.wallNanos();
+      t[2] += Math.max(0, m.cpuNanos());
+      t[3] += Math.max(0, m.allocatedBytes());
+    }
+    StringBuilder ret = new StringBuilder();
+    ret.append(String.format("%-50s %8s %12s %12s %12s%n", "task", "count", "wall (ms)",
+                             "cpu (ms)", "alloc (KB)"));
+    for (String key : totals.keySet()) {
+      long[] t = totals.get(key);
+      ret.append(String.format("%-50s %8d %12.1f %12.1f %12d%n", key, t[0], t[1] / 1e6,
+                               t[2] / 1e6, t[3] / 1024));
+    }
+    return ret.toString();
+  }
+
+  /** Returns all measurements as a JSON array of objects, one for each measurement. */
+  public String printJson() {
+    StringBuilder ret = new StringBuilder("[");
+    boolean first = true;
+    for (Measurement m : _measurements) {
+      ret.append(first ? "" : ",").append(System.lineSeparator());
+      first = false;
+      ret.append("  {\"category\": \"").append(escape(m.category()))
+         .append("\", \"name\": \"").append(escape(m.name()))
+         .append("\", \"wall_ns\": ").append(m.wallNanos())
+         .append(", \"cpu_ns\": ").append(m.cpuNanos())
+         .append(", \"allocated_bytes\": ").append(m.allocatedBytes());
+      if (m.variables() >= 0) ret.append(", \"variables\": ").append(m.variables());
+      if (m.constraints() >= 0) ret.append(", \"constraints\": ").append(m.constraints());
+      ret.append("}");
+    }
+    ret.append(System.lineSeparator()).append("]").append(System.lineSeparator());
+    return ret.toString();
+  }
+
+  /** Escapes the given string for use inside a JSON string literal. */
+  private static String escape(String str) {
+    StringBuilder ret = new StringBuilder();
+    for (char c : str.toCharArray()) {
+      if (c == '"' || c == '\\') ret.append('\\').append(c);
+      else if (c < 0x20) ret.append(String.format("\\u%04x", (int)c));
+      else ret.append(c);
+    }
+    return ret.toString();
+  }
+}
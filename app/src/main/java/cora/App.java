@@ -18,15 +18,22 @@ package cora;
 import charlie.exceptions.ParseException;
 import charlie.terms.Term;
 import charlie.trs.TRS;
+import charlie.trs.TrsFactory.TrsKind;
+import charlie.util.Profiler;
 import charlie.reader.*;
+import cora.config.ProverContext;
 import cora.io.OutputModule;
 import cora.io.ProofObject;
 import cora.reduction.Reducer;
 import cora.termination.TerminationHandler;
 import cora.Parameters.Request;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.List;
 import java.util.TreeSet;
@@ -39,8 +46,14 @@ public class App {
       Parameters parameters = new Parameters(args);
       parameters.setupSettings();
       Request req = parameters.queryRequest();
+      if (parameters.queryBatch()) { executeBatch(parameters); return; }
+      if (parameters.queryServer()) { executeServer(parameters); return; }
+      if (parameters.queryProfile()) { executeProfiled(parameters); return; }
       TRS trs = readTRS(parameters.querySingleFile());
-      ProofObject pobject = executeRequest(req, trs, parameters.queryModuleInput());
+      ProverContext context =
+        ProverContext.fromSettings().withTimeLimit(parameters.queryTimeout());
+      ProofObject pobject =
+        context.run(() -> executeRequest(req, trs, parameters.queryModuleInput()));
       if (pobject == null) System.exit(1);
       System.out.println(pobject.printAnswer());
       OutputModule om = parameters.queryOutputModule(trs);
@@ -63,6 +76,61 @@ public class App {
     }
   }
 
+  /**
+   * Executes the request on the single input file while recording a profile of the time and memory
+   * spent on reading, on every processor and SMT call, and on printing the proof.  The summary of
+   * the profile is printed after the proof, and the full profile is written as JSON if requested.
+   */
+  private static void executeProfiled(Parameters parameters) throws IOException {
+    Profiler profiler = new Profiler();
+    ProverContext context = ProverContext.fromSettings().withTimeLimit(parameters.queryTimeout())
+                                                        .withProfiler(profiler);
+    String file = parameters.querySingleFile();
+    TRS trs = context.measure("input", "read", () -> readTRS(file));
+    ProofObject pobject = context.run(() -> context.measure("request",
+      parameters.queryRequest().toString(),
+      () -> executeRequest(parameters.queryRequest(), trs, parameters.queryModuleInput())));
+    if (pobject == null) System.exit(1);
+    System.out.println(pobject.printAnswer());
+    OutputModule om = parameters.queryOutputModule(trs);
+    context.measure("output", "justify", () -> { pobject.justify(om); return om; });
+    om.printToStdout();
+    System.out.println();
+    System.out.println("Profile:");
+    System.out.print(profiler.printSummary());
+    String json = parameters.queryProfileFile();
+    if (json != null) Files.writeString(Path.of(json), profiler.printJson());
+  }
+
+  /**
+   * Executes the request on all files (and directories) given in the parameters, and prints a
+   * table of the results, either to the requested file or to standard output.
+   */
+  private static void executeBatch(Parameters parameters) throws IOException {
+    List<String> files = BatchRunner.collectFiles(parameters.queryFiles());
+    BatchRunner runner = new BatchRunner(parameters.queryRequest(),
+      parameters.queryModuleInput(), ProverContext.fromSettings(), parameters.queryTimeout());
+    String table = BatchRunner.printResults(runner.run(files));
+    String out = parameters.queryResultsFile();
+    if (out == null) System.out.print(table);
+    else Files.writeString(Path.of(out), table);
+  }
+
+  /**
+   * Runs Cora as a server, which handles requests from standard input, or from connections to the
+   * requested port, until it is stopped.
+   */
+  private static void executeServer(Parameters parameters) throws IOException {
+    ProverContext context = ProverContext.fromSettings();
+    ProverServer server =
+      new ProverServer(context, context.queryThreads(), parameters.queryTimeout());
+    if (parameters.queryPort() > 0) server.listen(parameters.queryPort());
+    else {
+      server.serve(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)),
+                   new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+    }
+  }
+
   /** Reads the given file as a TRS, and handles errors if they should arise. */
   private static TRS readTRS(String file) {
     try { return readInput(file); }
@@ -85,6 +153,18 @@ public class App {
     else return CoraInputReader.readTrsFromFile(file);
   }
 
+  /**
+   * Reads the given text as a TRS, in the format that is used for files with the given extension
+   * (for instance "itrs" or "lcstrs").
+   */
+  public static TRS readInputString(String text, String extension) {
+    if (extension.equals("trs")) return OCocoInputReader.readTrsFromString(text);
+    else if (extension.equals("itrs")) return ITrsInputReader.readTrsFromString(text);
+    TrsKind kind = CoraInputReader.queryKindForExtension(extension);
+    if (kind == null) throw new IllegalArgumentException("Unknown format: " + extension + ".");
+    return CoraInputReader.readTrsFromString(text, kind);
+  }
+
   /** Determines the extension of a given filename ("" if it has no extension) */
   private static String getExtension(String filename) {
     int i = filename.lastIndexOf('.');
@@ -97,7 +177,7 @@ public class App {
    * object.
    * (This only considers the requests that take a TRS as argument and return a Proof Object.)
    */
-  private static ProofObject executeRequest(Request request, TRS trs, List<String> moduleInput) {
+  static ProofObject executeRequest(Request request, TRS trs, List<String> moduleInput) {
     return switch (request) {
       case Computability -> TerminationHandler.proveComputability(trs);
       case Print -> new ProofObject() {
@@ -0,0 +1,166 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package cora;
+
+import charlie.solvesmt.CountingSmtSolver;
+import charlie.trs.TRS;
+import cora.Parameters.Request;
+import cora.config.ProverContext;
+import cora.io.ProofObject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The BatchRunner executes the same request on many input files inside a single JVM, so the cost
+ * of starting the JVM and warming up the JIT compiler is paid only once.  Files are handled in
+ * parallel (up to the number of threads in the given context), each with its own timeout, and all
+ * of them share the SMT solver of the context.
+ *
+ * For every file, the runner records the answer, the wall-clock time and the number of SMT
+ * queries; these can be printed as a tab-separated table.
+ */
+class BatchRunner {
+  /** The extensions of files that are picked up when a directory is given. */
+  static final Set<String> EXTENSIONS =
+    Set.of("trs", "itrs", "strs", "mstrs", "lctrs", "lcstrs", "cora");
+
+  /** The outcome for a single file. */
+  record Result(String file, String answer, long millis, long smtCalls) {}
+
+  private final Request _request;
+  private final List<String> _moduleInput;
+  private final ProverContext _context;
+  private final int _timeout;
+
+  /**
+   * Creates a runner that executes the given request in the given context, giving up on a file
+   * after timeout seconds (or never, if timeout is 0).
+   */
+  BatchRunner(Request request, List<String> moduleInput, ProverContext context, int timeout) {
+    _request = request;
+    _moduleInput = moduleInput;
+    _context = context;
+    _timeout = timeout;
+  }
+
+  /**
+   * Returns the files to be handled for the given paths: files are included as they are, and
+   * directories are searched (recursively) for files with a known extension, in sorted order.
+   */
+  static List<String> collectFiles(List<String> paths) throws IOException {
+    ArrayList<String> ret = new ArrayList<String>();
+    for (String p : paths) {
+      Path path = Path.of(p);
+      if (!Files.isDirectory(path)) { ret.add(p); continue; }
+      try (Stream<Path> stream = Files.walk(path)) {
+        stream.filter(Files::isRegularFile)
+              .filter(f -> EXTENSIONS.contains(extension(f.toString())))
+              .map(Path::toString)
+              .sorted()
+              .forEach(ret::add);
+      }
+    }
+    return ret;
+  }
+
+  /** Returns the extension of the given filename, in lower case ("" if it has none). */
+  private static String extension(String filename) {
+    int i = filename.lastIndexOf('.');
+    return i >= 0 ? filename.substring(i+1).toLowerCase() : "";
+  }
+
+  /** Handles all the given files, and returns their results in the same order. */
+  List<Result> run(List<String> files) {
+    ExecutorService executor = Executors.newFixedThreadPool(_context.queryThreads());
+    ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    try {
+      ArrayList<Future<Result>> futures = new ArrayList<Future<Result>>();
+      for (String file : files) futures.add(executor.submit(() -> handle(file, timer)));
+      ArrayList<Result> ret = new ArrayList<Result>();
+      for (int i = 0; i < files.size(); i++) {
+        try { ret.add(futures.get(i).get()); }
+        catch (ExecutionException e) { ret.add(new Result(files.get(i), "ERROR", 0, 0)); }
+      }
+      return ret;
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while running batch.", e);
+    }
+    finally {
+      executor.shutdownNow();
+      timer.shutdownNow();
+    }
+  }
+
+  /**
+   * Handles a single file.  The file is proved sequentially, since the files themselves are
+   * already handled in parallel.  The timeout is the deadline of the proof, so techniques give up
+   * when it passes; as a backstop, a timer also interrupts the work if it exceeds the timeout.
+   */
+  private Result handle(String file, ScheduledExecutorService timer) {
+    CountingSmtSolver solver = new CountingSmtSolver(_context.querySolver());
+    ProverContext context = _context.withSolver(solver).withThreads(1).withTimeLimit(_timeout);
+    Thread worker = Thread.currentThread();
+    boolean[] state = new boolean[] { false, false };  // finished, timed out
+    ScheduledFuture<?> alarm = _timeout <= 0 ? null : timer.schedule(() -> {
+      synchronized (state) {
+        if (!state[0]) { state[1] = true; worker.interrupt(); }
+      }
+    }, _timeout, TimeUnit.SECONDS);
+
+    long start = System.nanoTime();
+    String answer;
+    try {
+      TRS trs = App.readInput(file);
+      ProofObject pobject = context.run(() -> App.executeRequest(_request, trs, _moduleInput));
+      answer = pobject == null ? "ERROR" : pobject.printAnswer();
+    }
+    catch (Exception e) { answer = "ERROR"; }
+    finally {
+      synchronized (state) { state[0] = true; }
+      if (alarm != null) alarm.cancel(false);
+      Thread.interrupted();   // clear the flag, in case the alarm went off
+    }
+    long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    if (state[1]) answer = "TIMEOUT";
+    return new Result(file, answer, millis, solver.queryCalls());
+  }
+
+  /** Prints the given results as a tab-separated table, with a header line. */
+  static String printResults(List<Result> results) {
+    StringBuilder ret = new StringBuilder();
+    ret.append("file\tanswer\ttime_ms\tsmt_calls").append(System.lineSeparator());
+    for (Result r : results) {
+      ret.append(r.file()).append("\t").append(r.answer()).append("\t").append(r.millis())
+         .append("\t").append(r.smtCalls()).append(System.lineSeparator());
+    }
+    return ret.toString();
+  }
+}
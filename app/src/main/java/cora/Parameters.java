@@ -18,12 +18,22 @@ package cora;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Collections;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.io.IOException;
+import java.nio.file.Path;
 import charlie.trs.TRS;
 import charlie.smt.SmtSolver;
+import charlie.solvesmt.CachingSmtSolver;
 import charlie.solvesmt.ExternalSmtSolver;
+import charlie.solvesmt.LinearSmtSolver;
 import charlie.solvesmt.ProcessSmtSolver;
 import charlie.solvesmt.ProcessSmtSolver.PhysicalSolver;
+import charlie.solvesmt.RacingSmtSolver;
+import charlie.solvesmt.RecordingSmtSolver;
+import charlie.solvesmt.ReplayingSmtSolver;
+import charlie.solvesmt.SatSmtSolver;
+import charlie.solvesmt.SessionSmtSolver;
 import cora.io.OutputModule;
 import cora.io.DefaultOutputModule;
 import cora.config.Settings;
@@ -38,6 +48,19 @@ public class Parameters {
   private OutputModule.Style _style;
   private Request _request;
   private SmtSolver _solver;
+  private String _smtCache;
+  private String _smtRecord;
+  private String _smtReplay;
+  private int _threads;
+  private boolean _portfolio;
+  private boolean _batch;
+  private int _timeout;
+  private String _results;
+  private boolean _server;
+  private int _port;
+  private boolean _profile;
+  private String _profileFile;
+  private TreeMap<String,Integer> _limits;
 
   public enum Request { Print, Reduce, Termination, Computability };
 
@@ -89,6 +112,7 @@ public class Parameters {
     _files = new ArrayList<String>();
     _input = new ArrayList<String>();
     _disable = new TreeSet<String>();
+    _limits = new TreeMap<String,Integer>();
     _style = null;
     _request = null;
 
@@ -108,6 +132,9 @@ public class Parameters {
     String arg = args[index];
 
     switch (arg) {
+      case "-b": case "--batch":
+        _batch = true;
+        return index+1;
       case "-c": case "--computability":
         setRequest(Request.Computability);
         return index+1;
@@ -117,6 +144,21 @@ public class Parameters {
         }
         for (String s : args[index+1].split(",")) _disable.add(s);
         return index+2;
+      case "-l": case "--limit":
+        if (index + 1 == args.length) {
+          throw new WrongParametersException("Parameter " + arg + " without any limits!");
+        }
+        for (String s : args[index+1].split(",")) {
+          String[] parts = s.split("=");
+          int limit = 0;
+          if (parts.length == 2) {
+            try { limit = Integer.parseInt(parts[1]); }
+            catch (NumberFormatException e) { limit = 0; }
+          }
+          if (limit <= 0) throw new WrongParametersException("Illegal limit: " + s + "!");
+          _limits.put(parts[0], limit);
+        }
+        return index+2;
       case "-p": case "--print":
         setRequest(Request.Print);
         return index+1;
@@ -130,15 +172,82 @@ public class Parameters {
         if (index + 1 == args.length) {
           throw new WrongParametersException("Parameter " + arg + " without given solver!");
         }
-        PhysicalSolver ps = ProcessSmtSolver.stringToSolver(args[index+1]);
-        if (ps != null) _solver = new ProcessSmtSolver(ps);
-        else if (args[index+1].length() > 10 && args[index+1].substring(0,9).equals("external:")) {
-          _solver = new ExternalSmtSolver(args[index+1].substring(9));
-        }
+        _solver = readSolver(args[index+1]);
         if (_solver == null) {
           throw new WrongParametersException("Unknown SMT solver: " + args[index+1] + "!");
         }
         return index + 2;
+      case "--portfolio":
+        _portfolio = true;
+        return index+1;
+      case "--smt-cache":
+        if (index + 1 == args.length) {
+          throw new WrongParametersException("Parameter " + arg + " without given file!");
+        }
+        _smtCache = args[index+1];
+        return index + 2;
+      case "--smt-record":
+        if (index + 1 == args.length) {
+          throw new WrongParametersException("Parameter " + arg + " without given file!");
+        }
+        _smtRecord = args[index+1];
+        return index + 2;
+      case "--smt-replay":
+        if (index + 1 == args.length) {
+          throw new WrongParametersException("Parameter " + arg + " without given file!");
+        }
+        _smtReplay = args[index+1];
+        return index + 2;
+      case "--threads":
+        if (index + 1 == args.length) {
+          throw new WrongParametersException("Parameter " + arg + " without given number!");
+        }
+        try { _threads = Integer.parseInt(args[index+1]); }
+        catch (NumberFormatException e) { _threads = 0; }
+        if (_threads <= 0) {
+          throw new WrongParametersException("Illegal number of threads: " + args[index+1] + "!");
+        }
+        return index + 2;
+      case "--port":
+        if (index + 1 == args.length) {
+          throw new WrongParametersException("Parameter " + arg + " without given number!");
+        }
+        try { _port = Integer.parseInt(args[index+1]); }
+        catch (NumberFormatException e) { _port = 0; }
+        if (_port <= 0 || _port > 65535) {
+          throw new WrongParametersException("Illegal port: " + args[index+1] + "!");
+        }
+        _server = true;
+        return index + 2;
+      case "--profile":
+        _profile = true;
+        return index+1;
+      case "--profile-json":
+        if (index + 1 == args.length) {
+          throw new WrongParametersException("Parameter " + arg + " without given file!");
+        }
+        _profile = true;
+        _profileFile = args[index+1];
+        return index + 2;
+      case "--results":
+        if (index + 1 == args.length) {
+          throw new WrongParametersException("Parameter " + arg + " without given file!");
+        }
+        _results = args[index+1];
+        return index + 2;
+      case "--server":
+        _server = true;
+        return index+1;
+      case "--timeout":
+        if (index + 1 == args.length) {
+          throw new WrongParametersException("Parameter " + arg + " without given number!");
+        }
+        try { _timeout = Integer.parseInt(args[index+1]); }
+        catch (NumberFormatException e) { _timeout = -1; }
+        if (_timeout < 0) {
+          throw new WrongParametersException("Illegal timeout: " + args[index+1] + "!");
+        }
+        return index + 2;
       case "-t": case "--termination":
         setRequest(Request.Termination);
         return index+1;
@@ -162,6 +271,41 @@ public class Parameters {
       }
   }
 
+  /**
+   * Returns the SMT solver described by the given argument of -s, or null if there is no such
+   * solver.
+   */
+  private SmtSolver readSolver(String name) {
+    PhysicalSolver ps = ProcessSmtSolver.stringToSolver(name);
+    if (ps != null) return new ProcessSmtSolver(ps);
+    if (name.equals("linear")) return new LinearSmtSolver();
+    if (name.equals("sat")) return new SatSmtSolver(new LinearSmtSolver());
+    if (name.startsWith("sat:")) {
+      SmtSolver fallback = readSolver(name.substring(4));
+      return fallback == null ? null : new SatSmtSolver(fallback);
+    }
+    if (name.startsWith("session:")) {
+      ps = ProcessSmtSolver.stringToSolver(name.substring(8));
+      return ps == null ? null : new SessionSmtSolver(ps);
+    }
+    if (name.equals("race")) return RacingSmtSolver.create(List.of(PhysicalSolver.values()));
+    if (name.startsWith("race:")) {
+      ArrayList<PhysicalSolver> racers = new ArrayList<PhysicalSolver>();
+      for (String racer : name.substring(5).split(",")) {
+        ps = ProcessSmtSolver.stringToSolver(racer);
+        if (ps == null) {
+          throw new WrongParametersException("Unknown SMT solver to race: " + racer + "!");
+        }
+        racers.add(ps);
+      }
+      return RacingSmtSolver.create(racers);
+    }
+    if (name.length() > 10 && name.substring(0,9).equals("external:")) {
+      return new ExternalSmtSolver(name.substring(9));
+    }
+    return null;
+  }
+
   /**
    * Sets the given request, if none has been set yet.  If one has already been set, a
    * WrongParametersException is thrown instead.
@@ -183,7 +327,43 @@ public class Parameters {
       }
     }
     Settings.setDisabled(new TreeSet<String>(_disable));
-    if (_solver != null) Settings.setSolver(_solver);
+    for (String l : _limits.keySet()) {
+      if (!codes.contains(l)) {
+        throw new WrongParametersException("Unknown code for technique to limit: " + l);
+      }
+    }
+    Settings.setLimits(new TreeMap<String,Integer>(_limits));
+    Settings.setPortfolio(_portfolio);
+    if (_threads > 0) Settings.setThreads(_threads);
+    if (_smtReplay != null) {
+      if (_solver != null || _smtCache != null || _smtRecord != null) {
+        throw new WrongParametersException("When replaying an SMT log, no other SMT options " +
+          "can be given.");
+      }
+      try { Settings.setSolver(new ReplayingSmtSolver(Path.of(_smtReplay))); }
+      catch (IOException e) {
+        throw new WrongParametersException("Cannot read SMT log: " + e.getMessage());
+      }
+    }
+    else if (_solver != null || _smtCache != null) {
+      SmtSolver solver = _solver == null ? new LinearSmtSolver() : _solver;
+      CachingSmtSolver cache = new CachingSmtSolver(solver, CachingSmtSolver.DEFAULT_CAPACITY,
+        _smtCache == null ? null : Path.of(_smtCache));
+      if (_smtCache != null) Runtime.getRuntime().addShutdownHook(new Thread(cache::save));
+      Settings.setSolver(cache);
+    }
+    if (_smtRecord != null) {
+      // the recorder goes outside the cache, so also answers from a persistent cache are logged
+      try {
+        RecordingSmtSolver recorder =
+          new RecordingSmtSolver(Settings.querySolver(), Path.of(_smtRecord));
+        Runtime.getRuntime().addShutdownHook(new Thread(recorder::close));
+        Settings.setSolver(recorder);
+      }
+      catch (IOException e) {
+        throw new WrongParametersException("Cannot write SMT log: " + e.getMessage());
+      }
+    }
   }
 
   /** Returns the task Cora is set to do. */
@@ -191,6 +371,50 @@ public class Parameters {
     return _request;
   }
 
+  /** Returns whether the request should be executed on many files, as a batch. */
+  public boolean queryBatch() {
+    return _batch;
+  }
+
+  /**
+   * Returns whether the time and memory spent on each processor and SMT call should be recorded,
+   * and a summary printed after the proof.
+   */
+  public boolean queryProfile() {
+    return _profile;
+  }
+
+  /** Returns the file to write the full profile to, as JSON, or null if this is not needed. */
+  public String queryProfileFile() {
+    return _profileFile;
+  }
+
+  /**
+   * Returns whether Cora should run as a server, reading requests from standard input (or from a
+   * socket, if a port is given) rather than handling a single file.
+   */
+  public boolean queryServer() {
+    return _server;
+  }
+
+  /** Returns the port the server should listen on, or 0 to use standard input and output. */
+  public int queryPort() {
+    return _port;
+  }
+
+  /**
+   * Returns the time limit (in seconds) for the proof, or per file in batch mode, or the default
+   * time limit per request in server mode; 0 if there is no limit.
+   */
+  public int queryTimeout() {
+    return _timeout;
+  }
+
+  /** Returns the file to write the results table to in batch mode, or null for stdout. */
+  public String queryResultsFile() {
+    return _results;
+  }
+
   /** 
    * This verifies that the user supplied exactly one file (if not, a WrongParameterException is
    * thrown) and if so, returns it.
@@ -347,6 +571,36 @@ public class Parameters {
         "z3 | cvc5 | yices2    To use any of those, please install locally.")
       .append(System.lineSeparator());
 
+    str.append("    " +
+        "    " +
+        "    " +
+        "session:z3 | session:cvc5 | session:yices2    As above, but the solver is kept " +
+        "running between queries rather than restarted for each of them.")
+      .append(System.lineSeparator());
+
+    str.append("    " +
+        "    " +
+        "    " +
+        "race | race:z3,cvc5,...    Start all (or the given) solvers on every query, and use " +
+        "the first answer; once it is clear which solver is best for a kind of problem, only " +
+        "that one is started.")
+      .append(System.lineSeparator());
+
+    str.append("    " +
+        "    " +
+        "    " +
+        "linear    Solve linear problems inside Cora, and pass only the others on to z3.  " +
+        "This is the default.")
+      .append(System.lineSeparator());
+
+    str.append("    " +
+        "    " +
+        "    " +
+        "sat | sat:<solver>    Bit-blast problems with small integers (such as those of HORPO " +
+        "and the subterm criterion) for a SAT solver inside Cora, and pass the problems it " +
+        "cannot decide on to the given solver (by default linear).")
+      .append(System.lineSeparator());
+
     str.append("    " +
         "    " +
         "    " +
@@ -354,6 +608,80 @@ public class Parameters {
         "example, a bash script, that calls an SMT solver in exactly the way you want.")
       .append(System.lineSeparator());
 
+    str.append("    --threads <n>  " +
+      "   " +
+      "Use at most n worker threads for computations that can be parallelised.")
+      .append(System.lineSeparator());
+
+    str.append("    -b | --batch" +
+      "        " +
+      "        " +
+      "Execute the request on all the given files and directories, in parallel, and print " +
+      "a table with the answer, time (in ms) and number of SMT calls for each file.")
+      .append(System.lineSeparator());
+
+    str.append("    --timeout <s>  " +
+      "   " +
+      "Give up after s seconds: techniques that are still running then fail, and the answer " +
+      "is MAYBE.  In batch mode, this limit applies to each file; in server mode, it is the " +
+      "default time limit for each request.")
+      .append(System.lineSeparator());
+
+    str.append("    --results <file>  " +
+      "   " +
+      "In batch mode, write the results table to the given file rather than standard output.")
+      .append(System.lineSeparator());
+
+    str.append("    --profile  " +
+      "   " +
+      "Record the time and memory spent on each processor and SMT call, and print a summary " +
+      "after the proof.")
+      .append(System.lineSeparator());
+
+    str.append("    --profile-json <file>  " +
+      "   " +
+      "As --profile, and also write every measurement to the given file, in JSON format.")
+      .append(System.lineSeparator());
+
+    str.append("    --server  " +
+      "   " +
+      "Keep running, and handle requests that are read from standard input; see the " +
+      "documentation of cora.ProverServer for the protocol.")
+      .append(System.lineSeparator());
+
+    str.append("    --port <n>  " +
+      "   " +
+      "Run as a server (as with --server), but listen on port n of the local machine instead.")
+      .append(System.lineSeparator());
+
+    str.append("    --portfolio  " +
+      "   " +
+      "Run the processors of the DP framework on each DP problem at the same time, rather than " +
+      "one after the other; the first to succeed is used.")
+      .append(System.lineSeparator());
+
+    str.append("    -l | --limit <tech>=<n>[,...]  " +
+      "   " +
+      "Run at most n instances of the given technique at the same time (for example imap=2); " +
+      "the techniques are named as for --disable.")
+      .append(System.lineSeparator());
+
+    str.append("    --smt-cache <file>  " +
+      "   " +
+      "Store the answers of the SMT solver in the given file, and reuse them in later runs.")
+      .append(System.lineSeparator());
+
+    str.append("    --smt-record <file>  " +
+      "   " +
+      "Write every question to the SMT solver, and its answer, to the given log file.")
+      .append(System.lineSeparator());
+
+    str.append("    --smt-replay <file>  " +
+      "   " +
+      "Answer SMT questions from a log written by --smt-record, without calling any SMT " +
+      "solver; if the run is otherwise the same, the proof search is identical.")
+      .append(System.lineSeparator());
+
     return str.toString();
   }
 
@@ -0,0 +1,274 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package cora;
+
+import charlie.trs.TRS;
+import cora.Parameters.Request;
+import cora.config.ProverContext;
+import cora.io.DefaultOutputModule;
+import cora.io.OutputModule;
+import cora.io.ProofObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The ProverServer keeps Cora running to handle many requests, so that the parsers, the
+ * JIT-compiled code and the SMT solver (sessions) stay warm.  Requests are read from a stream,
+ * using a simple line-based protocol, and may be handled concurrently (up to a given limit).
+ *
+ * A request has the following form, where the options are of the form key=value:
+ *
+ *   REQUEST id (termination|computability|print|reduce) [format=ext] [timeout=sec] [style=st]
+ *   ...the TRS, in the format for files with extension ext (default: cora)...
+ *   TERM term         (only for reduce: the term to be reduced)
+ *   END
+ *
+ * Other commands are "CANCEL id", which abandons the given request, and "QUIT", which stops
+ * reading further requests (the server does wait for the ongoing requests to complete).
+ *
+ * Every request is answered exactly once, with the following block:
+ *
+ *   RESULT id answer time_ms
+ *   ...the proof, or an error message...
+ *   END id
+ *
+ * Here, the answer is YES, NO or MAYBE, or TIMEOUT, CANCELLED or ERROR.  Since requests are
+ * handled concurrently, their answers do not necessarily arrive in the order of the requests.
+ */
+class ProverServer {
+  private final ProverContext _context;
+  private final int _maxConcurrent;
+  private final int _defaultTimeout;
+
+  /** The information on a single request that is being handled. */
+  private static class Job {
+    final String id;
+    final long start = System.nanoTime();
+    final AtomicBoolean answered = new AtomicBoolean(false);
+    Future<?> future;
+    Job(String i) { id = i; }
+  }
+
+  /**
+   * Creates a server that handles requests in the given context, with at most maxConcurrent at the
+   * same time.  Requests without a timeout option are abandoned after defaultTimeout seconds (or
+   * never, if this is 0).
+   */
+  ProverServer(ProverContext context, int maxConcurrent, int defaultTimeout) {
+    _context = context;
+    _maxConcurrent = Math.max(1, maxConcurrent);
+    _defaultTimeout = defaultTimeout;
+  }
+
+  /**
+   * Listens on the given port of the loopback interface, and serves every connection (on its own
+   * thread) until the process is stopped.
+   */
+  void listen(int port) throws IOException {
+    try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+      while (true) {
+        Socket socket = server.accept();
+        Thread thread = new Thread(() -> {
+          try (socket) {
+            serve(new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                                                           StandardCharsets.UTF_8)),
+                  new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+          }
+          catch (IOException e) { /* the connection was closed; nothing more to do */ }
+        }, "cora-server-connection");
+        thread.setDaemon(true);
+        thread.start();
+      }
+    }
+  }
+
+  /**
+   * Reads requests from the given input until QUIT or the end of the input, and writes the answers
+   * to the given output.  This returns once all requests have been answered.
+   */
+  void serve(BufferedReader in, Writer out) throws IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(_maxConcurrent);
+    ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    ConcurrentHashMap<String,Job> jobs = new ConcurrentHashMap<String,Job>();
+    try {
+      for (String line = in.readLine(); line != null; line = in.readLine()) {
+        String[] parts = line.trim().split("\\s+");
+        if (parts[0].equals("QUIT")) break;
+        else if (parts[0].equals("CANCEL") && parts.length == 2) {
+          Job job = jobs.get(parts[1]);
+          if (job != null) abandon(job, "CANCELLED", "The request was cancelled.", out);
+        }
+        else if (parts[0].equals("REQUEST") && parts.length >= 3) {
+          startRequest(parts, readBody(in), executor, timer, jobs, out);
+        }
+        else if (!parts[0].equals("")) {
+          respond(new Job("-"), "ERROR", "Unknown command: " + line, out);
+        }
+      }
+      executor.shutdown();
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    finally {
+      executor.shutdownNow();
+      timer.shutdownNow();
+    }
+  }
+
+  /** Reads the lines up to (not including) END. */
+  private static List<String> readBody(BufferedReader in) throws IOException {
+    ArrayList<String> ret = new ArrayList<String>();
+    for (String line = in.readLine(); line != null && !line.trim().equals("END");
+         line = in.readLine()) {
+      ret.add(line);
+    }
+    return ret;
+  }
+
+  /** Schedules the request with the given header and body. */
+  private void startRequest(String[] header, List<String> body, ExecutorService executor,
+                            ScheduledExecutorService timer, Map<String,Job> jobs, Writer out)
+                                                                           throws IOException {
+    Job job = new Job(header[1]);
+    Request request;
+    String format = "cora", style = "plain";
+    int timeout = _defaultTimeout;
+    try {
+      request = parseRequest(header[2]);
+      for (int i = 3; i < header.length; i++) {
+        String[] option = header[i].split("=", 2);
+        if (option.length != 2) throw new IllegalArgumentException("Illegal option: " + header[i]);
+        switch (option[0]) {
+          case "format": format = option[1].toLowerCase(); break;
+          case "style": style = option[1].toLowerCase(); break;
+          case "timeout": timeout = Integer.parseInt(option[1]); break;
+          default: throw new IllegalArgumentException("Unknown option: " + option[0]);
+        }
+      }
+    }
+    catch (IllegalArgumentException e) {
+      respond(job, "ERROR", e.getMessage(), out);
+      return;
+    }
+
+    // the TERM line (if any) is the input for a reduce request; the rest is the TRS
+    ArrayList<String> input = new ArrayList<String>();
+    StringBuilder text = new StringBuilder();
+    for (String line : body) {
+      if (line.startsWith("TERM ")) input.add(line.substring(5));
+      else text.append(line).append(System.lineSeparator());
+    }
+
+    String fmt = format, st = style;
+    int time = timeout;
+    jobs.put(job.id, job);
+    synchronized (job) {
+      job.future = executor.submit(() -> {
+        try { handle(job, request, fmt, st, time, text.toString(), input, out); }
+        finally { jobs.remove(job.id, job); }
+      });
+    }
+    if (time > 0) {
+      timer.schedule(() -> abandon(job, "TIMEOUT", "The time limit was exceeded.", out),
+                     time, TimeUnit.SECONDS);
+    }
+  }
+
+  /** Returns the request with the given (case-insensitive) name. */
+  private static Request parseRequest(String name) {
+    for (Request r : Request.values()) {
+      if (r.toString().equalsIgnoreCase(name)) return r;
+    }
+    throw new IllegalArgumentException("Unknown request: " + name);
+  }
+
+  /**
+   * Executes a single request, and writes the answer (unless it was already abandoned).  The
+   * timeout is the deadline of the request, so techniques give up when it passes.
+   */
+  private void handle(Job job, Request request, String format, String style, int timeout,
+                      String text, List<String> input, Writer out) {
+    String answer, details;
+    try {
+      TRS trs = App.readInputString(text, format);
+      ProverContext context = _context.newRun().withTimeLimit(timeout);
+      ProofObject pobject = context.run(() -> App.executeRequest(request, trs, input));
+      if (pobject == null) { answer = "ERROR"; details = "The request could not be executed."; }
+      else {
+        OutputModule module = style.equals("unicode") ? DefaultOutputModule.createUnicodeModule(trs)
+                                                      : DefaultOutputModule.createPlainModule(trs);
+        pobject.justify(module);
+        answer = pobject.queryAnswer().toString();
+        details = module.toString();
+      }
+    }
+    catch (Exception e) {
+      answer = "ERROR";
+      details = e.getMessage() == null ? e.toString() : e.getMessage();
+    }
+    respond(job, answer, details, out);
+  }
+
+  /** Answers the given job with the given response, and interrupts the work on it. */
+  private void abandon(Job job, String answer, String details, Writer out) {
+    if (!respond(job, answer, details, out)) return;
+    synchronized (job) {
+      if (job.future != null) job.future.cancel(true);
+    }
+  }
+
+  /**
+   * Writes the answer block for the given job, unless it was already answered.  Returns whether
+   * anything was written.
+   */
+  private boolean respond(Job job, String answer, String details, Writer out) {
+    if (!job.answered.compareAndSet(false, true)) return false;
+    long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - job.start);
+    StringBuilder block = new StringBuilder();
+    block.append("RESULT ").append(job.id).append(" ").append(answer).append(" ")
+         .append(millis).append(System.lineSeparator());
+    if (!details.isEmpty()) {
+      block.append(details);
+      if (!details.endsWith(System.lineSeparator())) block.append(System.lineSeparator());
+    }
+    block.append("END ").append(job.id).append(System.lineSeparator());
+    synchronized (out) {
+      try { out.write(block.toString()); out.flush(); }
+      catch (IOException e) { /* the client is gone; there is nobody to answer */ }
+    }
+    return true;
+  }
+}
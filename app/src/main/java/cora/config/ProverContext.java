@@ -0,0 +1,266 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package cora.config;
+
+import charlie.smt.SmtSolver;
+import charlie.solvesmt.ProfilingSmtSolver;
+import charlie.util.Deadline;
+import charlie.util.Profiler;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A ProverContext holds the settings for a single run of Cora: the SMT solver, the techniques that
+ * are disabled, and the limits on parallelism.  Unlike the global defaults in Settings, several
+ * contexts can be in use at the same time, so that a single JVM can handle many termination or
+ * reduction requests concurrently.
+ *
+ * A context is passed explicitly to the entry points (such as TerminationHandler and Reducer),
+ * which make it the active context of their thread while they run.  The functions in Settings
+ * query the active context, so the techniques themselves do not need to be aware of it.  Code
+ * that hands work to other threads should wrap it using bind(), so the workers use the same
+ * context.
+ *
+ * A context also holds the permits that limit how many instances of a technique may run at the
+ * same time (see queryPermits).  Copies that refine a run -- with a different solver, profiler,
+ * deadline or set of disabled techniques -- share these permits with the original, while a copy
+ * made by withThreads or newRun has its own, so separate runs do not wait for each other.
+ */
+public class ProverContext {
+  private static final ThreadLocal<ProverContext> _active = new ThreadLocal<ProverContext>();
+  /**
+   * The threads that run the tasks given to queryExecutor(); these are shared by all contexts, and
+   * are daemon threads so they do not keep the JVM alive.
+   */
+  private static final ExecutorService _workers = Executors.newCachedThreadPool(runnable -> {
+    Thread thread = new Thread(runnable, "cora-worker");
+    thread.setDaemon(true);
+    return thread;
+  });
+  /** The context with the global defaults; this is rebuilt when Settings changes the defaults. */
+  private static volatile ProverContext _defaultContext = null;
+
+  private final SmtSolver _solver;
+  private final Set<String> _disabled;
+  private final int _threads;
+  private final boolean _portfolio;
+  private final Map<String,Integer> _limits;
+  private final Profiler _profiler;
+  private final Deadline _deadline;
+  private final ConcurrentHashMap<String,Semaphore> _permits;
+
+  /** Creates a context with the given settings, which does not record a profile. */
+  public ProverContext(SmtSolver solver, Set<String> disabled, int threads, boolean portfolio,
+                       Map<String,Integer> limits) {
+    this(solver, disabled, threads, portfolio, limits, null, Deadline.none(),
+         new ConcurrentHashMap<String,Semaphore>());
+  }
+
+  /** Creates a context with the given settings; the profiler may be null. */
+  private ProverContext(SmtSolver solver, Set<String> disabled, int threads, boolean portfolio,
+                        Map<String,Integer> limits, Profiler profiler, Deadline deadline,
+                        ConcurrentHashMap<String,Semaphore> permits) {
+    _solver = solver;
+    _disabled = Set.copyOf(disabled);
+    _threads = Math.max(1, threads);
+    _portfolio = portfolio;
+    _limits = Map.copyOf(limits);
+    _profiler = profiler;
+    _deadline = deadline;
+    _permits = permits;
+  }
+
+  /** Creates a context with the current global defaults from Settings. */
+  public static ProverContext fromSettings() {
+    return Settings.createDefaultContext();
+  }
+
+  /**
+   * Returns the context that is active for the current thread; if none is active, this is a
+   * context with the global defaults.
+   */
+  public static ProverContext current() {
+    ProverContext ctx = _active.get();
+    if (ctx != null) return ctx;
+    ctx = _defaultContext;
+    if (ctx != null) return ctx;
+    synchronized (ProverContext.class) {
+      if (_defaultContext == null) _defaultContext = fromSettings();
+      return _defaultContext;
+    }
+  }
+
+  /**
+   * Discards the cached context with the global defaults, so the next call to current() (on a
+   * thread without an active context) sees the new values.  This is called by the setters in
+   * Settings.
+   */
+  static synchronized void invalidateDefault() {
+    _defaultContext = null;
+  }
+
+  /** Returns a copy of this context that uses the given SMT solver. */
+  public ProverContext withSolver(SmtSolver solver) {
+    return new ProverContext(solver, _disabled, _threads, _portfolio, _limits, _profiler,
+                             _deadline, _permits);
+  }
+
+  /** Returns a copy of this context where exactly the given techniques are disabled. */
+  public ProverContext withDisabled(Set<String> disabled) {
+    return new ProverContext(_solver, disabled, _threads, _portfolio, _limits, _profiler,
+                             _deadline, _permits);
+  }
+
+  /**
+   * Returns a copy of this context that uses at most the given number of threads.  Since the
+   * default limits depend on the number of threads, the copy has its own permits.
+   */
+  public ProverContext withThreads(int threads) {
+    return new ProverContext(_solver, _disabled, threads, _portfolio, _limits, _profiler,
+                             _deadline, new ConcurrentHashMap<String,Semaphore>());
+  }
+
+  /**
+   * Returns a copy of this context for a separate run: it has the same settings, but its own
+   * permits, so the techniques it runs are not limited by those running in this context.
+   */
+  public ProverContext newRun() {
+    return new ProverContext(_solver, _disabled, _threads, _portfolio, _limits, _profiler,
+                             _deadline, new ConcurrentHashMap<String,Semaphore>());
+  }
+
+  /**
+   * Returns a copy of this context that records the costs of processors, SMT calls and other
+   * measured tasks in the given profiler.  For the SMT calls, the solver is wrapped in a
+   * ProfilingSmtSolver, so if the solver is to be replaced, do that first.
+   */
+  public ProverContext withProfiler(Profiler profiler) {
+    return new ProverContext(new ProfilingSmtSolver(_solver, profiler), _disabled, _threads,
+                             _portfolio, _limits, profiler, _deadline, _permits);
+  }
+
+  /**
+   * Returns a copy of this context where all work should be finished by the given deadline (or by
+   * the current deadline of this context, if that is sooner).
+   */
+  public ProverContext withDeadline(Deadline deadline) {
+    return new ProverContext(_solver, _disabled, _threads, _portfolio, _limits, _profiler,
+                             _deadline.earliest(deadline), _permits);
+  }
+
+  /**
+   * Returns a copy of this context where all work should be finished within the given number of
+   * seconds from now.  If seconds is 0 or less, the time is not limited (beyond any deadline this
+   * context already has).
+   */
+  public ProverContext withTimeLimit(int seconds) {
+    if (seconds <= 0) return this;
+    return withDeadline(Deadline.after(seconds, TimeUnit.SECONDS));
+  }
+
+  /** Returns the SMT solver to be used in this run. */
+  public SmtSolver querySolver() { return _solver; }
+
+  /** Returns whether the given technique is disabled in this run. */
+  public boolean isDisabled(String technique) { return _disabled.contains(technique); }
+
+  /** Returns the set of disabled techniques. */
+  public Set<String> queryDisabled() { return _disabled; }
+
+  /** Returns the maximum number of worker threads used for parallel computations. */
+  public int queryThreads() { return _threads; }
+
+  /** Returns whether DP processors should be run as a portfolio. */
+  public boolean queryPortfolio() { return _portfolio; }
+
+  /**
+   * Returns how many instances of the given technique may run at the same time; if no limit was
+   * set, this is the number of threads.
+   */
+  public int queryLimit(String technique) { return _limits.getOrDefault(technique, _threads); }
+
+  /**
+   * Returns the semaphore that limits how many instances of the given technique may run at the
+   * same time in this run; it has queryLimit(technique) permits.
+   */
+  public Semaphore queryPermits(String technique) {
+    return _permits.computeIfAbsent(technique, code -> new Semaphore(queryLimit(code), true));
+  }
+
+  /** Returns the deadline by which all work in this run should be finished. */
+  public Deadline queryDeadline() { return _deadline; }
+
+  /** Returns the profiler that measurements are recorded in, or null if there is none. */
+  public Profiler queryProfiler() { return _profiler; }
+
+  /**
+   * Runs the given task, and returns its result.  If this context has a profiler, the costs of the
+   * task are recorded under the given category and name.
+   */
+  public <T> T measure(String category, String name, Supplier<T> task) {
+    if (_profiler == null) return task.get();
+    return _profiler.measure(category, name, task);
+  }
+
+  /**
+   * Runs the given computation with this context (and its deadline) active for the current thread,
+   * and returns its result.  Afterwards, the previously active context (if any) is restored.
+   */
+  public <T> T run(Supplier<T> computation) {
+    ProverContext previous = _active.get();
+    _active.set(this);
+    try { return _deadline.run(computation); }
+    finally {
+      if (previous == null) _active.remove();
+      else _active.set(previous);
+    }
+  }
+
+  /**
+   * Returns an executor that runs tasks with this context active, on worker threads that are
+   * shared between all contexts.  Since the threads are shared, the executor cannot be shut down;
+   * to stop a task, cancel its future (which interrupts the task).
+   */
+  public Executor queryExecutor() {
+    return task -> _workers.execute(bind(task));
+  }
+
+  /** Returns a task that runs the given task with this context active. */
+  public Runnable bind(Runnable task) {
+    return () -> run(() -> { task.run(); return null; });
+  }
+
+  /** Returns a task that runs the given task with this context active. */
+  public <T> Callable<T> bind(Callable<T> task) {
+    return () -> {
+      ProverContext previous = _active.get();
+      _active.set(this);
+      try { return _deadline.call(task); }
+      finally {
+        if (previous == null) _active.remove();
+        else _active.set(previous);
+      }
+    };
+  }
+}
@@ -16,30 +16,94 @@
 package cora.config;
 
 import charlie.smt.SmtSolver;
+import charlie.solvesmt.CachingSmtSolver;
+import charlie.solvesmt.LinearSmtSolver;
 import charlie.solvesmt.ProcessSmtSolver;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * This class collects a number of settings that are global to the execution of Cora or any of its
  * submodules.  The values are meant to be set by the main class (with defaults provided for
  * settings that are not set), and can be queried from any class outside of the cora library.
+ *
+ * The static fields are only defaults, which are changed through the setters: the query
+ * functions return the settings of the ProverContext that is active for the current thread, which
+ * are these defaults if no context has been activated.
  */
 public class Settings {
-  public static SmtSolver smtSolver = new ProcessSmtSolver(ProcessSmtSolver.PhysicalSolver.Z3);
-  public static Set<String> disabled = Set.of();
+  private static SmtSolver _smtSolver = new CachingSmtSolver(
+    new LinearSmtSolver(new ProcessSmtSolver(ProcessSmtSolver.PhysicalSolver.Z3)));
+  private static Set<String> _disabled = Set.of();
+  private static int _threads = Runtime.getRuntime().availableProcessors();
+  private static boolean _portfolio = false;
+  private static Map<String,Integer> _limits = Map.of();
+
+  /** Returns a new context with the current defaults; see ProverContext.fromSettings. */
+  static ProverContext createDefaultContext() {
+    return new ProverContext(_smtSolver, _disabled, _threads, _portfolio, _limits);
+  }
 
   /** Use this to check if a technique is diabled (by name). */
   public static boolean isDisabled(String technique) {
-    return disabled.contains(technique);
+    return ProverContext.current().isDisabled(technique);
+  }
+
+  /** Returns the SMT solver to be used. */
+  public static SmtSolver querySolver() {
+    return ProverContext.current().querySolver();
+  }
+
+  /** Returns the maximum number of worker threads that may be used for parallel computations. */
+  public static int queryThreads() {
+    return ProverContext.current().queryThreads();
+  }
+
+  /** Returns whether DP processors should be run at the same time, rather than in order. */
+  public static boolean queryPortfolio() {
+    return ProverContext.current().queryPortfolio();
+  }
+
+  /** Use this to check whether the time for the current run is up. */
+  public static boolean isTimeUp() {
+    return ProverContext.current().queryDeadline().hasExpired();
   }
 
   /** Used to set up the SMT solver. */
   public static void setSolver(SmtSolver solver) {
-    smtSolver = solver;
+    _smtSolver = solver;
+    ProverContext.invalidateDefault();
+  }
+
+  /** Used to limit the number of worker threads that may be used for parallel computations. */
+  public static void setThreads(int number) {
+    _threads = Math.max(1, number);
+    ProverContext.invalidateDefault();
+  }
+
+  /** Used to choose whether DP processors are run at the same time, rather than in order. */
+  public static void setPortfolio(boolean enabled) {
+    _portfolio = enabled;
+    ProverContext.invalidateDefault();
+  }
+
+  /** Used to limit how many instances of each technique (by name) may run at the same time. */
+  public static void setLimits(Map<String,Integer> techniqueLimits) {
+    _limits = techniqueLimits;
+    ProverContext.invalidateDefault();
+  }
+
+  /**
+   * Returns how many instances of the given technique may run at the same time; if no limit was
+   * set, this is the number of threads.
+   */
+  public static int queryLimit(String technique) {
+    return ProverContext.current().queryLimit(technique);
   }
 
   /** Used to set up which techniques are disabled. */
   public static void setDisabled(Set<String> disabledTechniques) {
-    disabled = disabledTechniques;
+    _disabled = disabledTechniques;
+    ProverContext.invalidateDefault();
   }
 }
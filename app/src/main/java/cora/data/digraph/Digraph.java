@@ -17,12 +17,14 @@ package cora.data.digraph;
 
 import charlie.exceptions.IndexingException;
 
+import java.util.AbstractSet;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.TreeSet;
-import java.util.TreeMap;
 
 /**
  * <p>This class implements a data structure for directed graphs, without parallel edges.
@@ -34,11 +36,15 @@ import java.util.TreeMap;
  * Users then are allowed to add edges via the method {@code addEdges(int sourceVertex, int
  * destinationVertex)}.
  * </p>
+ *
+ * <p>Internally, the outgoing edges of each vertex are stored in a BitSet, so edge checks do not
+ * box integers, and algorithms that traverse the graph can iterate over the neighbours of a
+ * vertex using the primitive methods {@code getOutDegree} and {@code nextNeighbour}.</p>
  */
 public class Digraph {
   private int _numberOfVertices;
   private int _numberOfEdges;
-  private final List< Set<Integer> > _adjacencyList;
+  private final List<BitSet> _adjacencyList;
 
   /**
    * <p>Initializes a digraph with {@code numberOfVertices} vertices.</p>
@@ -53,10 +59,10 @@ public class Digraph {
 
     _numberOfVertices = numberOfVertices;
     _numberOfEdges = 0;
-    _adjacencyList = new ArrayList< Set<Integer> >(_numberOfEdges);
+    _adjacencyList = new ArrayList<BitSet>(_numberOfVertices);
 
     for (int i = 0; i < _numberOfVertices; i++) {
-      _adjacencyList.add(new TreeSet<Integer>());
+      _adjacencyList.add(new BitSet(_numberOfVertices));
     }
   }
 
@@ -85,7 +91,7 @@ public class Digraph {
   /** Adds a vertex to the digraph. Its index is set as {@code getNumberOfVertices()}. */
   public void addVertex() {
     _numberOfVertices++;
-    _adjacencyList.add(new TreeSet<>());
+    _adjacencyList.add(new BitSet(_numberOfVertices));
   }
 
   /**
@@ -102,9 +108,9 @@ public class Digraph {
     validateVertex(originVertex, "addEdge");
     validateVertex(destinationVertex, "addEdge");
     // We only add the edge originVertex -> destinationVertex if it is not there already.
-    Set<Integer> targets = _adjacencyList.get(originVertex);
-    if (!targets.contains(destinationVertex)) {
-      targets.add(destinationVertex);
+    BitSet targets = _adjacencyList.get(originVertex);
+    if (!targets.get(destinationVertex)) {
+      targets.set(destinationVertex);
       _numberOfEdges++;
     }
   }
@@ -120,9 +126,9 @@ public class Digraph {
   public void removeEdge(int originVertex, int destinationVertex) {
     validateVertex(originVertex, "removeEdge");
     validateVertex(destinationVertex, "removeEdge");
-    Set<Integer> targets = _adjacencyList.get(originVertex);
-    if (targets.contains(destinationVertex)) {
-      targets.remove(destinationVertex);
+    BitSet targets = _adjacencyList.get(originVertex);
+    if (targets.get(destinationVertex)) {
+      targets.clear(destinationVertex);
       _numberOfEdges--;
     }
   }
@@ -137,7 +143,7 @@ public class Digraph {
   public boolean isAdjacent(int originVertex, int destinationVertex) {
     validateVertex(originVertex,"isAdjacent");
     validateVertex(destinationVertex, "isAdjacent");
-    return _adjacencyList.get(originVertex).contains(destinationVertex);
+    return _adjacencyList.get(originVertex).get(destinationVertex);
   }
 
   /**
@@ -146,11 +152,32 @@ public class Digraph {
    * </p>
    *
    * <p>The caller cannot modify tihs set.  To add a neighbour, instead use addEdge.</p>
+   * <p>The set is a view of the graph, so it changes when edges are added or removed.  Algorithms
+   * that should not allocate can use nextNeighbour instead.</p>
    * @param originVertex the origin vertex
    */
   public Set<Integer> getNeighbours(int originVertex) {
     validateVertex(originVertex, "getNeighbours");
-    return Collections.unmodifiableSet(_adjacencyList.get(originVertex));
+    return new NeighbourSet(_adjacencyList.get(originVertex));
+  }
+
+  /** Returns the number of edges that start in {@code originVertex}. */
+  public int getOutDegree(int originVertex) {
+    validateVertex(originVertex, "getOutDegree");
+    return _adjacencyList.get(originVertex).cardinality();
+  }
+
+  /**
+   * Returns the smallest vertex {@code y >= from} such that there is an edge from
+   * {@code originVertex} to {@code y}, or -1 if there is no such vertex.  Hence, all neighbours
+   * can be traversed without allocation as follows:
+   * {@code for (int y = g.nextNeighbour(x, 0); y >= 0; y = g.nextNeighbour(x, y + 1))}.
+   * @throws IndexingException if {@code originVertex} is out of bounds
+   */
+  public int nextNeighbour(int originVertex, int from) {
+    validateVertex(originVertex, "nextNeighbour");
+    if (from >= _numberOfVertices) return -1;
+    return _adjacencyList.get(originVertex).nextSetBit(from);
   }
 
 
@@ -169,24 +196,29 @@ public class Digraph {
     // We want to construct the subgraph H of G using the indexes in [vertices], but note that in
     // H, those vertices will be renamed 0..vertices.size()-1.
     Digraph subGraph = new Digraph(vertices.size());
-    TreeMap<Integer,Integer> newindex = new TreeMap<Integer,Integer>();
+    int[] newindex = new int[_numberOfVertices];
+    Arrays.fill(newindex, -1);
 
     // Determine the new name for each of the given vertices, and store it in newindex.
     for (int i = 0; i < vertices.size(); i++) {
       int v = vertices.get(i);
       validateVertex(v, "getSubgraph");
-      newindex.put(v, i);
+      newindex[v] = i;
     }
 
     // Now, we have to correctly add the edges back, even though the names changed in the subgraph.
     // What we need to guarantee is that the {@code subGraph} is isomorphic to H.
     for (int v : vertices) {
-      int id = newindex.get(v);
-      // Then we get all neighbours, in G, of this vertex v.
-      Set<Integer> neighbours = _adjacencyList.get(v);
+      int id = newindex[v];
+      // Then we go over all neighbours, in G, of this vertex v.
+      BitSet neighbours = _adjacencyList.get(v);
+      BitSet subNeighbours = subGraph._adjacencyList.get(id);
       // For each of the neigbhours that occurs in H, also add the edge in H
-      for (int n : neighbours) {
-        if (newindex.containsKey(n)) subGraph.addEdge(id, newindex.get(n));
+      for (int n = neighbours.nextSetBit(0); n >= 0; n = neighbours.nextSetBit(n + 1)) {
+        if (newindex[n] >= 0 && !subNeighbours.get(newindex[n])) {
+          subNeighbours.set(newindex[n]);
+          subGraph._numberOfEdges++;
+        }
       }
     }
     return subGraph;
@@ -196,8 +228,38 @@ public class Digraph {
   public String toString() {
     StringBuilder ret = new StringBuilder();
     for (int i = 0; i < _numberOfVertices; i++) {
-      ret.append(i).append(" |-> ").append(_adjacencyList.get(i)).append("\n");
+      ret.append(i).append(" |-> ").append(new NeighbourSet(_adjacencyList.get(i)))
+         .append("\n");
     }
     return ret.toString();
   }
+
+  /** An unmodifiable view of the neighbours of a vertex, as returned by getNeighbours. */
+  private static class NeighbourSet extends AbstractSet<Integer> {
+    private final BitSet _bits;
+
+    NeighbourSet(BitSet bits) { _bits = bits; }
+
+    @Override
+    public int size() { return _bits.cardinality(); }
+
+    @Override
+    public boolean contains(Object o) {
+      return o instanceof Integer i && i >= 0 && _bits.get(i);
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+      return new Iterator<Integer>() {
+        private int _next = _bits.nextSetBit(0);
+        public boolean hasNext() { return _next >= 0; }
+        public Integer next() {
+          if (_next < 0) throw new NoSuchElementException();
+          int ret = _next;
+          _next = _bits.nextSetBit(ret + 1);
+          return ret;
+        }
+      };
+    }
+  }
 }
@@ -65,7 +65,7 @@ public class Reachability {
    */
   private void reachabilitySearch(Digraph graph, int source) {
     _isReachable[source] = true;
-    for(int v : graph.getNeighbours(source))
+    for (int v = graph.nextNeighbour(source, 0); v >= 0; v = graph.nextNeighbour(source, v + 1))
       if (!_isReachable[v]) reachabilitySearch(graph,v);
   }
 
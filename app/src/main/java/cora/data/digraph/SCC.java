@@ -4,54 +4,87 @@ import charlie.exceptions.IndexingException;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Stack;
 
+/**
+ * This class computes the strongly connected components of a Digraph, using an iterative version
+ * of Tarjan's algorithm: the recursion is simulated on primitive arrays, so that very long paths
+ * in the graph do not cause a stack overflow.
+ *
+ * Components are numbered in the order in which they are completed.  In Tarjan's algorithm this
+ * is a reverse topological order of the condensation: if there is an edge from a vertex in
+ * component i to a vertex in component j != i, then j < i.
+ */
 public class SCC {
 
   private final boolean[] _visided;
   private final int[] _sccId;
   private final int[] _low;
-  private final Stack<Integer> stack;
+  /** The vertices that have been visited but not yet assigned to a component. */
+  private final int[] _stack;
+  private int _stackSize;
+  /** The simulated call stack: for each depth the vertex, its next neighbour and its minimum. */
+  private final int[] _callVertex;
+  private final int[] _callNext;
+  private final int[] _callMin;
   private int _pre;
   private int _numberOfSCCs;
 
   public SCC(Digraph graph) {
-    _visided = new boolean[graph.getNumberOfVertices()];
-    stack = new Stack<>();
-    _sccId = new int[graph.getNumberOfVertices()];
-    _low = new int[graph.getNumberOfVertices()];
-    for (int i = 0; i < graph.getNumberOfVertices(); i++) {
+    int n = graph.getNumberOfVertices();
+    _visided = new boolean[n];
+    _sccId = new int[n];
+    _low = new int[n];
+    _stack = new int[n];
+    _callVertex = new int[n];
+    _callNext = new int[n];
+    _callMin = new int[n];
+    for (int i = 0; i < n; i++) {
       if (!_visided[i]) sccSearch(graph, i);
     }
   }
 
+  /** Marks the given vertex as visited, and pushes it on the call stack at the given depth. */
+  private void enter(Digraph graph, int vertex, int depth) {
+    _visided[vertex] = true;
+    _low[vertex] = _pre++;
+    _stack[_stackSize++] = vertex;
+    _callVertex[depth] = vertex;
+    _callNext[depth] = graph.nextNeighbour(vertex, 0);
+    _callMin[depth] = _low[vertex];
+  }
+
   private void sccSearch(Digraph graph, int source) {
-    _visided[source] = true;
-    _low[source] = _pre++;
-    int minValue = _low[source];
-    stack.push(source);
-
-    for (int neighbor : graph.getNeighbours(source)) {
-      if (!_visided[neighbor]) {
-        sccSearch(graph, neighbor);
+    int depth = 0;
+    enter(graph, source, 0);
+
+    while (depth >= 0) {
+      int vertex = _callVertex[depth];
+      int neighbor = _callNext[depth];
+
+      if (neighbor >= 0) {
+        // "recursive call": we come back to this neighbour once its search is completed
+        if (!_visided[neighbor]) { enter(graph, neighbor, ++depth); continue; }
+        if (_low[neighbor] < _callMin[depth]) _callMin[depth] = _low[neighbor];
+        _callNext[depth] = graph.nextNeighbour(vertex, neighbor + 1);
+        continue;
       }
-      if (_low[neighbor] < minValue) {
-        minValue = _low[neighbor];
+
+      // all neighbours have been handled: "return" from the search for vertex
+      int minValue = _callMin[depth];
+      depth--;
+      if (minValue < _low[vertex]) {
+        _low[vertex] = minValue;
+        continue;
       }
-    }
 
-    if (minValue < _low[source]) {
-      _low[source] = minValue;
-      return;
+      int temp;
+      do {
+        temp = _stack[--_stackSize];
+        _sccId[temp] = _numberOfSCCs;
+        _low[temp] = _visided.length;
+      } while (temp != vertex);
+      _numberOfSCCs++;
     }
-
-    int temp;
-    do {
-      temp = stack.pop();
-      _sccId[temp] = _numberOfSCCs;
-      _low[temp] = graph.getNumberOfVertices();
-    } while (temp != source);
-    _numberOfSCCs++;
   }
 
   private void validateVertex(int vertex, String method) {
@@ -116,6 +149,17 @@ public class SCC {
     return components;
   }
 
+  /**
+   * Returns the identifiers of all strongly connected components in a topological order of the
+   * condensation of the graph: if there is an edge from a vertex in component i to a vertex in
+   * a different component j, then i occurs before j in the returned list.
+   */
+  public List<Integer> getTopologicalOrder() {
+    List<Integer> order = new ArrayList<>(_numberOfSCCs);
+    for (int i = _numberOfSCCs - 1; i >= 0; i--) order.add(i);
+    return order;
+  }
+
   @Override
   public String toString() {
     StringBuilder ret = new StringBuilder();
@@ -0,0 +1,127 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package cora.reduction;
+
+import java.util.ArrayList;
+import charlie.terms.Term;
+import charlie.terms.position.*;
+
+/**
+ * A Normaliser reduces a term to normal form with respect to a given Reducer, using a leftmost,
+ * innermost strategy.
+ *
+ * Rather than searching the whole term for a redex after every step, the Normaliser works
+ * recursively: to normalise a term, it first normalises its immediate subterms from left to
+ * right, and then tries to reduce at the head; if this succeeds, the reduct is normalised in the
+ * same way.  Subterms that are in normal form are therefore never scanned again.  To still
+ * produce the full reduction, the Normaliser keeps track of the path from the root to the subterm
+ * it is currently working on, so that after every step the full term can be rebuilt along only
+ * that path.
+ *
+ * This yields exactly the same reductions as repeatedly calling leftmostInnermostReduce.
+ *
+ * A Normaliser is meant to be used only once, and is not thread-safe.
+ */
+class Normaliser {
+  private Reducer _reducer;
+  private ArrayList<Term> _steps;
+  /** The terms on the path from the root to the current subterm (excluding the latter). */
+  private ArrayList<Term> _context;
+  /** For each term in _context, the (one-step) position of the next term on the path. */
+  private ArrayList<Position> _holes;
+
+  Normaliser(Reducer reducer) {
+    _reducer = reducer;
+    _steps = new ArrayList<Term>();
+    _context = new ArrayList<Term>();
+    _holes = new ArrayList<Position>();
+  }
+
+  /** Reduces s to normal form, and returns the reduction. */
+  Reduction normalise(Term s) {
+    _steps.add(s);
+    normaliseHere(s);
+    return new Reduction(_steps);
+  }
+
+  /**
+   * Normalises s, which is the subterm at the end of the current path, and returns its normal
+   * form.  Every step that is done is stored (in the context of the full term) in _steps.
+   */
+  private Term normaliseHere(Term s) {
+    while (true) {
+      s = normaliseChildren(s);
+      Term reduct = _reducer.reduceAtHead(s);
+      if (reduct == null) return s;
+      s = reduct;
+      storeStep(s);
+    }
+  }
+
+  /**
+   * Normalises all the immediate subterms of s (that is, the subterms at a full position of length
+   * 1) from left to right, and returns the resulting term.
+   */
+  private Term normaliseChildren(Term s) {
+    ArrayList<Position> children = immediatePositions(s);
+    if (children.isEmpty()) return s;
+    int depth = _context.size();
+    _context.add(s);
+    _holes.add(null);
+    for (Position pos : children) {
+      _holes.set(depth, pos);
+      Term child = _context.get(depth).querySubterm(pos);
+      Term nf = normaliseHere(child);
+      if (nf != child) _context.set(depth, _context.get(depth).replaceSubterm(pos, nf));
+    }
+    _holes.remove(depth);
+    return _context.remove(depth);
+  }
+
+  /**
+   * Stores the full term obtained by placing s at the end of the current path as the next step in
+   * the reduction.
+   */
+  private void storeStep(Term s) {
+    for (int i = _context.size() - 1; i >= 0; i--) {
+      s = _context.get(i).replaceSubterm(_holes.get(i), s);
+    }
+    _steps.add(s);
+  }
+
+  /**
+   * Returns the full positions of length 1 in s, in the order in which Term::querySubterms lists
+   * the corresponding subterms.
+   */
+  private ArrayList<Position> immediatePositions(Term s) {
+    ArrayList<Position> ret = new ArrayList<Position>();
+    if (s.isTuple()) {
+      for (int i = 1; i <= s.numberTupleArguments(); i++) {
+        ret.add(new ArgumentPos(i, Position.empty));
+      }
+      return ret;
+    }
+    Term head = s.queryHead();
+    if (head.isAbstraction()) ret.add(new LambdaPos(Position.empty));
+    else if (head.isMetaApplication()) {
+      for (int i = 1; i <= head.numberMetaArguments(); i++) {
+        ret.add(new MetaPos(i, Position.empty));
+      }
+    }
+    for (int i = 1; i <= s.numberArguments(); i++) ret.add(new ArgumentPos(i, Position.empty));
+    return ret;
+  }
+}
@@ -15,46 +15,99 @@
 
 package cora.reduction;
 
-import java.util.List;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 
 import charlie.util.Pair;
 import charlie.terms.Term;
 import charlie.terms.position.Position;
+import charlie.trs.RuleIndex;
 import charlie.trs.TRS;
 import charlie.trs.TRS.RuleScheme;
+import cora.config.ProverContext;
 
-/** A Reducer is a straightforward class to reduce terms for a given TRS. */
+/**
+ * A Reducer is a straightforward class to reduce terms for a given TRS.
+ *
+ * To avoid trying every rule at every position, the Reducer uses the RuleIndex of the TRS: only
+ * the rules that the index returns for a given subterm (along with the rule schemes) are
+ * considered as candidates to reduce that subterm.
+ */
 public class Reducer {
-  private ArrayList<ReduceObject> _components;
+  private ArrayList<ReduceObject> _schemes;
+  private ArrayList<ReduceObject> _rules;
+  private RuleIndex _index;
+  private Random _rnd;
+  private ProverContext _context;
 
+  /** Creates a Reducer for the given TRS, which uses the currently active ProverContext. */
   public Reducer(TRS trs) {
-    _components = new ArrayList<ReduceObject>();
+    this(trs, ProverContext.current());
+  }
+
+  /**
+   * Creates a Reducer for the given TRS, which uses the given context (for instance to choose the
+   * SMT solver that checks constraints).
+   */
+  public Reducer(TRS trs, ProverContext context) {
+    _context = context;
+    _schemes = new ArrayList<ReduceObject>();
+    _rules = new ArrayList<ReduceObject>();
+    _index = trs.queryRuleIndex();
+    _rnd = new Random();
     for (int i = 0; i < trs.querySchemeCount(); i++) {
       switch (trs.queryScheme(i)) {
-        case RuleScheme.Eta: _components.add(new EtaReducer()); break;
-        case RuleScheme.Beta: _components.add(new BetaReducer()); break;
-        case RuleScheme.Calc: _components.add(new CalcReducer()); break;
+        case RuleScheme.Eta: _schemes.add(new EtaReducer()); break;
+        case RuleScheme.Beta: _schemes.add(new BetaReducer()); break;
+        case RuleScheme.Calc: _schemes.add(new CalcReducer()); break;
         case RuleScheme.Projection: break; // TODO: implement projection
       }
     }
     for (int i = 0; i < trs.queryRuleCount(); i++) {
-      _components.add(new RuleReducer(trs.queryRule(i)));
+      _rules.add(new RuleReducer(trs.queryRule(i)));
     }
   }
 
+  /** Returns whether some rule or scheme may be applied at the head of s. */
+  boolean applicableAtHead(Term s) {
+    for (ReduceObject scheme : _schemes) {
+      if (scheme.applicable(s)) return true;
+    }
+    for (int index : _index.queryCandidates(s)) {
+      if (_rules.get(index).applicable(s)) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Reduces s at the head, and returns the result; if no rule or scheme can be applied at the
+   * head, then null is returned instead.
+   * If multiple rules match, an arbitrary one is chosen: we start looking at a random offset in
+   * the list of candidate rules, to get some randomness without shuffling.
+   */
+  Term reduceAtHead(Term s) {
+    List<Integer> candidates = _index.queryCandidates(s);
+    int n = candidates.size();
+    int offset = n <= 1 ? 0 : _rnd.nextInt(n);
+    for (int i = 0; i < n; i++) {
+      Term result = _rules.get(candidates.get((offset + i) % n)).apply(s);
+      if (result != null) return result;
+    }
+    for (ReduceObject scheme : _schemes) {
+      Term result = scheme.apply(s);
+      if (result != null) return result;
+    }
+    return null;
+  }
+
   /**
    * Returns the leftmost, innermost position where a rule or scheme may be applied, or null if no
    * such position exists.
    */
   public Position leftmostInnermostRedexPosition(Term s) {
-    Pair<Term,Position> p = s.findSubterm((sub,pos) -> {
-      for (int j = 0; j < _components.size(); j++) {
-        if (_components.get(j).applicable(sub)) return true;
-      }
-      return false;
-    });
+    Pair<Term,Position> p =
+      _context.run(() -> s.findSubterm((sub,pos) -> applicableAtHead(sub)));
     if (p == null) return null;
     return p.snd();
   }
@@ -65,28 +118,22 @@ public class Reducer {
    * If multiple rules or schemes match, an arbitrary one is chosen.
    */
   public Term leftmostInnermostReduce(Term s) {
-    // shuffle the list of all rules and rule schemes to get some randomness
-    Collections.shuffle(_components);
-
-    List<Pair<Term,Position>> subterms = s.querySubterms();
-    for (int i = 0; i < subterms.size(); i++) {
-      Term sub = subterms.get(i).fst();
-      Position pos = subterms.get(i).snd();
-      Term result = null;
-      for (int j = 0; j < _components.size() && result == null; j++) {
-        result = _components.get(j).apply(sub);
-      }
-      if (result != null) return s.replaceSubterm(pos, result);
-    }
-    return null;
+    ArrayList<Term> result = new ArrayList<Term>(1);
+    Pair<Term,Position> p = _context.run(() -> s.findSubterm((sub,pos) -> {
+      Term reduct = reduceAtHead(sub);
+      if (reduct == null) return false;
+      result.add(reduct);
+      return true;
+    }));
+    if (p == null) return null;
+    return s.replaceSubterm(p.snd(), result.get(0));
   }
 
+  /**
+   * Reduces s to normal form using a leftmost, innermost strategy, and returns the full
+   * reduction.  Subterms that have been normalised once are not scanned again; see Normaliser.
+   */
   public Reduction normalise(Term s) {
-    ArrayList<Term> steps = new ArrayList<Term>();
-    do {
-      steps.add(s);
-      s = leftmostInnermostReduce(s);
-    } while (s != null);
-    return new Reduction(steps);
+    return _context.run(() -> new Normaliser(this).normalise(s));
   }
 }
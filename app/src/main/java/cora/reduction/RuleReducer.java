@@ -61,7 +61,7 @@ class RuleReducer implements ReduceObject {
     }
     Term csub = _rule.queryConstraint().substitute(subst);
     if (csub.isGround()) return TermAnalyser.evaluate(csub).getBool();
-    else return TermAnalyser.satisfy(csub, Settings.smtSolver) instanceof TermAnalyser.Result.YES;
+    else return TermAnalyser.satisfy(csub, Settings.querySolver()) instanceof TermAnalyser.Result.YES;
   }
 
   /**
@@ -86,7 +86,7 @@ class RuleReducer implements ReduceObject {
     }
     else {
       Substitution result = null;
-      switch (TermAnalyser.satisfy(csub, Settings.smtSolver)) {
+      switch (TermAnalyser.satisfy(csub, Settings.querySolver())) {
         case TermAnalyser.Result.NO(): return null;
         case TermAnalyser.Result.MAYBE(String reason): return null;
         case TermAnalyser.Result.YES(Substitution gamma): result = gamma;
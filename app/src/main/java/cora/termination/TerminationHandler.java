@@ -18,6 +18,7 @@ package cora.termination;
 import charlie.trs.TRS;
 import cora.io.OutputModule;
 import cora.io.ProofObject;
+import cora.config.ProverContext;
 import cora.config.Settings;
 import cora.termination.reduction_pairs.Horpo;
 import cora.termination.dependency_pairs.DPFramework;
@@ -25,24 +26,51 @@ import cora.termination.dependency_pairs.DPFramework;
 import java.util.Optional;
 
 public class TerminationHandler {
+  /** Tries to prove termination of the given TRS, using the active (or global) settings. */
   public static ProofObject proveTermination(TRS trs) {
-    DPFramework dpF = new DPFramework();
-    if (!Settings.isDisabled(dpF.queryDisabledCode())) return wrap(dpF.proveTermination(trs), trs);
-    return Horpo.proveTermination(trs);
+    return proveTermination(trs, ProverContext.current());
   }
 
+  /**
+   * Tries to prove termination of the given TRS, using the settings of the given context.  This
+   * may safely be called from several threads at once, each with their own context.
+   */
+  public static ProofObject proveTermination(TRS trs, ProverContext context) {
+    return context.run(() -> {
+      DPFramework dpF = new DPFramework(context);
+      if (!Settings.isDisabled(dpF.queryDisabledCode())) {
+        return wrap(dpF.proveTermination(trs), trs);
+      }
+      return Horpo.proveTermination(trs);
+    });
+  }
+
+  /**
+   * Tries to prove universal computability of the given TRS, using the active (or global)
+   * settings.
+   */
   public static ProofObject proveComputability(TRS trs) {
-    DPFramework dpF = new DPFramework();
-    if (!Settings.isDisabled(dpF.queryDisabledCode())) {
-      return wrap(dpF.proveComputability(trs), trs);
-    }
-    return new ProofObject() {
-      public Answer queryAnswer() { return Answer.MAYBE; }
-      public void justify(OutputModule o) {
-        o.println("Dependency pairs were disabled, and this is currently the only appraoch " +
-          "to prove universal/public computability.");
+    return proveComputability(trs, ProverContext.current());
+  }
+
+  /**
+   * Tries to prove universal computability of the given TRS, using the settings of the given
+   * context.
+   */
+  public static ProofObject proveComputability(TRS trs, ProverContext context) {
+    return context.run(() -> {
+      DPFramework dpF = new DPFramework(context);
+      if (!Settings.isDisabled(dpF.queryDisabledCode())) {
+        return wrap(dpF.proveComputability(trs), trs);
       }
-    };
+      return new ProofObject() {
+        public Answer queryAnswer() { return Answer.MAYBE; }
+        public void justify(OutputModule o) {
+          o.println("Dependency pairs were disabled, and this is currently the only appraoch " +
+            "to prove universal/public computability.");
+        }
+      };
+    });
   }
 
   private static ProofObject wrap(ProofObject ob, TRS trs) {
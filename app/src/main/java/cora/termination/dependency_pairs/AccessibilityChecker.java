@@ -197,7 +197,7 @@ public class AccessibilityChecker {
 
   public ProofObject checkAccessibility() {
     generateTrsConstraints();
-    return switch (Settings.smtSolver.checkSatisfiability(_problem)) {
+    return switch (Settings.querySolver().checkSatisfiability(_problem)) {
       case SmtSolver.Answer.YES(Valuation solution) -> new AccessibilityProofObject(solution);
       case SmtSolver.Answer.MAYBE(String reason) -> new AccessibilityProofObject(reason);
       case SmtSolver.Answer.NO() -> new AccessibilityProofObject();
@@ -2,16 +2,30 @@ package cora.termination.dependency_pairs;
 
 import charlie.trs.TRS;
 import charlie.trs.TrsProperties.*;
+import charlie.util.Pair;
+import cora.config.ProverContext;
 import cora.config.Settings;
 import cora.io.OutputModule;
 import cora.io.ProofObject;
 import cora.termination.dependency_pairs.processors.*;
+import cora.termination.reduction_pairs.Horpo;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Stack;
 
 public class DPFramework {
+  private final ProverContext _context;
+
+  /** Creates a DP framework that uses the currently active ProverContext. */
+  public DPFramework() {
+    this(ProverContext.current());
+  }
+
+  /** Creates a DP framework that runs all its techniques in the given context. */
+  public DPFramework(ProverContext context) {
+    _context = context;
+  }
+
   public static String queryDisabledCode() {
     return "dp";
   }
@@ -41,28 +55,22 @@ public class DPFramework {
   }
 
   public DPProofObject proveTermination(TRS trs, boolean ruleExtensionPresent) {
+    return _context.run(() -> proveTerminationInContext(trs, ruleExtensionPresent));
+  }
+
+  private DPProofObject proveTerminationInContext(TRS trs, boolean ruleExtensionPresent) {
     ProofObject appl = isTRSApplicable(trs);
     if (appl.queryAnswer() != ProofObject.Answer.YES) return new DPProofObject(appl);
 
     ReachabilityProcessor reachProcessor = new ReachabilityProcessor();
-    GraphProcessor   graphProcessor   = new GraphProcessor();
-    SubtermProcessor subtermProcessor = new SubtermProcessor();
-    IntegerMappingProcessor imapProcessor  = new IntegerMappingProcessor();
     TheoryArgumentsProcessor targProcessor = new TheoryArgumentsProcessor();
     SplittingProcessor splitProcessor = new SplittingProcessor();
-    HorpoProcessor horpoProcessor = new HorpoProcessor();
-    List<Processor> proclist;
-    if (!ruleExtensionPresent) {
-      proclist = List.of(graphProcessor, subtermProcessor, imapProcessor, targProcessor,
-                         horpoProcessor);
-    }
-    else proclist = List.of(graphProcessor, subtermProcessor, imapProcessor, targProcessor);
 
     Problem initialProblem = DPFramework.computeInitialProblem(trs);
     DPProofObject ret = new DPProofObject(appl, initialProblem);
 
     // we start with the processors that preserve the "public" nature of a chain
-    if (!Settings.isDisabled(queryPrivateDisabledCode())) {
+    if (!Settings.isDisabled(queryPrivateDisabledCode()) && !Settings.isTimeUp()) {
       ProcessorProofObject tmp;
       if (splitProcessor.isApplicable(initialProblem)) {
         tmp = splitProcessor.transform(initialProblem);
@@ -79,35 +87,37 @@ public class DPFramework {
     }
 
     // At this point, we are looking for the absence of any chains, not just public chains;
-    // this is handled by the main loop.
-
-    ArrayList<Problem> toBeSolved = new ArrayList<Problem>();
-    toBeSolved.add(initialProblem);
-    // Trying to solve each problem in toBeSolved
-    while (!toBeSolved.isEmpty()) {
-      // Get the first problem in the list of problems to be solved
-      Problem p = toBeSolved.removeFirst();
-      boolean success = false;
-      for (Processor proc : proclist) {
-        if (!proc.isApplicable(p)) continue;
-        ProcessorProofObject ppo = proc.processDPP(p);
-        if (ppo.applicable()) {
-          toBeSolved.addAll(ppo.queryResults());
-          ret.addProcessorProof(ppo);
-          success = true;
-          break;
-        }
-      }
-      if (!success) {
-        // Here the problem failed in all processors and couldn't be solved
-        ret.setFailedProof(p);
-        return ret;
-      }
-    }
-    ret.setTerminating();
+    // this is handled by the main loop, where independent subproblems may be solved in parallel.
+
+    ProofScheduler scheduler =
+      new ProofScheduler(() -> createProcessorList(ruleExtensionPresent), Settings.queryThreads());
+    if (scheduler.solve(initialProblem, ret)) ret.setTerminating();
     return ret;
   }
 
+  /**
+   * Returns the processors used in the main loop, in the order in which they should be tried.
+   * Since processors may keep state while they run, a fresh list is created for every use.
+   * In portfolio mode, the list consists of a single processor that runs all the others at the
+   * same time.
+   */
+  private static List<Processor> createProcessorList(boolean ruleExtensionPresent) {
+    ArrayList<Pair<String,Processor>> procs = new ArrayList<Pair<String,Processor>>();
+    procs.add(new Pair<String,Processor>(GraphProcessor.queryDisabledCode(),
+                                         new GraphProcessor()));
+    procs.add(new Pair<String,Processor>(SubtermProcessor.queryDisabledCode(),
+                                         new SubtermProcessor()));
+    procs.add(new Pair<String,Processor>(IntegerMappingProcessor.queryDisabledCode(),
+                                         new IntegerMappingProcessor()));
+    procs.add(new Pair<String,Processor>(TheoryArgumentsProcessor.queryDisabledCode(),
+                                         new TheoryArgumentsProcessor()));
+    if (!ruleExtensionPresent) {
+      procs.add(new Pair<String,Processor>(Horpo.queryDisabledCode(), new HorpoProcessor()));
+    }
+    if (Settings.queryPortfolio()) return List.of(new PortfolioProcessor(procs));
+    return procs.stream().map(Pair::snd).toList();
+  }
+
   public DPProofObject proveTermination(TRS trs) {
     return proveTermination(trs, false);
   }
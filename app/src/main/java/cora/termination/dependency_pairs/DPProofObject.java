@@ -17,6 +17,7 @@ package cora.termination.dependency_pairs;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import charlie.util.Pair;
 import charlie.terms.Term;
 import charlie.terms.Variable;
@@ -99,6 +100,12 @@ class DPProofObject implements ProofObject {
     _processorProofs.add(procproof);
   }
 
+  /** Returns the DP problem that could not be simplified, or null if there is none. */
+  Problem queryFailedProblem() { return _failure; }
+
+  /** Returns the processor proofs that were added so far, in order. */
+  List<ProcessorProofObject> queryProcessorProofs() { return _processorProofs; }
+
   /**
    * Returns the termination status we have thus far stored.
    * If neither setTerminating() nor setNonTerminating() has been called, this yields MAYBE.
@@ -9,6 +9,7 @@ import charlie.types.Type;
 import charlie.types.TypeFactory;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -61,6 +62,23 @@ public class Problem {
     return _trs;
   }
 
+  /**
+   * Returns the problem obtained by removing the DPs with the given (0-based) indexes in
+   * getDPList().  If this problem has a graph, then the new problem is given the corresponding
+   * subgraph, so processors that only remove DPs do not force the graph to be recomputed.
+   */
+  public Problem removeDPs(Set<Integer> indexes) {
+    List<DP> remaining = new ArrayList<DP>();
+    List<Integer> kept = new ArrayList<Integer>();
+    for (int i = 0; i < _dps.size(); i++) {
+      if (indexes.contains(i)) continue;
+      remaining.add(_dps.get(i));
+      kept.add(i);
+    }
+    if (_graph == null) return new Problem(remaining, _trs);
+    return new Problem(remaining, _trs, _graph.getSubgraph(kept));
+  }
+
   public Set<FunctionSymbol> getSharpHeads() {
     Set<FunctionSymbol> allFns = new TreeSet<>();
     Type dpSort = TypeFactory.createSort("DP_SORT");
@@ -0,0 +1,209 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package cora.termination.dependency_pairs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import cora.config.ProverContext;
+import cora.termination.dependency_pairs.processors.Processor;
+import cora.termination.dependency_pairs.processors.ProcessorProofObject;
+
+/**
+ * The ProofScheduler handles the main loop of the DP framework: it repeatedly applies the first
+ * applicable processor to every DP problem that still needs to be solved, until either all
+ * problems have been removed, or one of them cannot be simplified any further.
+ *
+ * The subproblems produced by a processor are independent, so they can be solved at the same
+ * time.  If more than one thread is allowed, each problem is handled as a separate task on a
+ * bounded work-stealing pool, and as soon as one of them fails, no new work is started and the
+ * running tasks are interrupted.  The outcome is nevertheless the same as that of the sequential
+ * loop, which handles the problems breadth-first and stops at the first failure: the proofs are
+ * reported in breadth-first order, up to the first problem in that order that cannot be
+ * simplified, and any problem before it that the pool did not finish is handled afterwards on the
+ * calling thread.  (Results that may have been affected by the interruption are discarded.)
+ *
+ * Since processors may store state while they are running, every task obtains its own processor
+ * list from the given supplier.  All tasks run in the ProverContext of the thread calling solve.
+ * If that context has a deadline, then a single processor invocation may use only part of the
+ * remaining time, and once the deadline has passed, no more processors are started (so the
+ * remaining problems fail).
+ */
+class ProofScheduler {
+  /** The part of the remaining time (if limited) that a single processor invocation may use. */
+  static final double PROCESSOR_TIME_SHARE = 0.5;
+
+  private final Supplier<List<Processor>> _processors;
+  private final int _threads;
+
+  /**
+   * The outcome of a single problem: either the proof that simplified it, and the problems it led
+   * to, or the fact that it could not be simplified; if neither is set, the problem has not been
+   * handled yet.  The children are always set before the proof, so a node with a proof is
+   * complete.
+   */
+  private static class Node {
+    final Problem problem;
+    volatile ProcessorProofObject proof;
+    volatile List<Node> children;
+    volatile boolean failed;
+    Node(Problem p) { problem = p; proof = null; children = List.of(); failed = false; }
+  }
+
+  /** The combined state of a parallel run. */
+  private class Run {
+    final ProverContext context = ProverContext.current();
+    final ForkJoinPool pool;
+    final AtomicInteger pending = new AtomicInteger(0);
+    final AtomicBoolean stopped = new AtomicBoolean(false);
+    final CompletableFuture<Void> done = new CompletableFuture<Void>();
+
+    Run(ForkJoinPool p) { pool = p; }
+
+    void schedule(Node node) {
+      if (stopped.get()) return;
+      pending.incrementAndGet();
+      try {
+        pool.execute(context.bind(() -> {
+          try { handle(node); }
+          catch (Throwable e) { done.completeExceptionally(e); return; }
+          if (pending.decrementAndGet() == 0) done.complete(null);
+        }));
+      }
+      catch (RejectedExecutionException e) { /* the pool was shut down because we stopped */ }
+    }
+
+    void handle(Node node) {
+      if (stopped.get()) return;
+      ProcessorProofObject ppo = findProof(node.problem);
+      // once we have stopped, running processors are interrupted, so their results are unreliable
+      // (we only set stopped after the last reliable result has been recorded)
+      synchronized (this) {
+        if (stopped.get()) return;
+        if (ppo == null) {
+          node.failed = true;
+          stopped.set(true);
+          done.complete(null);
+          return;
+        }
+        record(node, ppo);
+      }
+      for (Node child : node.children) schedule(child);
+    }
+  }
+
+  /**
+   * Creates a scheduler which uses the processors given by the supplier (in the given order), and
+   * at most the given number of worker threads.
+   */
+  ProofScheduler(Supplier<List<Processor>> processors, int threads) {
+    _processors = processors;
+    _threads = Math.max(1, threads);
+  }
+
+  /**
+   * Tries to simplify the given problem with the first applicable processor, and returns the
+   * resulting proof; null is returned if no processor was applicable.
+   */
+  private ProcessorProofObject findProof(Problem problem) {
+    ProverContext context = ProverContext.current();
+    for (Processor proc : _processors.get()) {
+      if (Thread.currentThread().isInterrupted() || context.queryDeadline().hasExpired()) {
+        return null;
+      }
+      if (!proc.isApplicable(problem)) continue;
+      // a processor may only use part of the remaining time, so if it runs out, there is still
+      // time left for the processors after it
+      ProverContext budget =
+        context.withDeadline(context.queryDeadline().share(PROCESSOR_TIME_SHARE));
+      ProcessorProofObject ppo = budget.run(() -> budget.measure("processor",
+        proc.getClass().getSimpleName(), () -> proc.processDPP(problem)));
+      if (ppo.applicable()) return ppo;
+    }
+    return null;
+  }
+
+  /** Stores the given proof for the given node, along with the subproblems it leads to. */
+  private static void record(Node node, ProcessorProofObject ppo) {
+    List<Node> children = new ArrayList<Node>(ppo.queryResults().size());
+    for (Problem p : ppo.queryResults()) children.add(new Node(p));
+    node.children = children;
+    node.proof = ppo;
+  }
+
+  /**
+   * Solves the given problem and all subproblems it gives rise to, storing every processor proof
+   * in the given proof object.  If some problem cannot be simplified, it is stored as the failed
+   * proof and false is returned; otherwise true is returned.
+   */
+  boolean solve(Problem initial, DPProofObject proof) {
+    Node root = new Node(initial);
+    if (_threads > 1) solveInParallel(root);
+    // we go through the nodes breadth-first, which is how the sequential loop handles them; any
+    // node that was not (reliably) handled in parallel is handled now
+    ArrayList<Node> queue = new ArrayList<Node>();
+    queue.add(root);
+    for (int i = 0; i < queue.size(); i++) {
+      Node node = queue.get(i);
+      if (node.proof == null && !node.failed) {
+        ProcessorProofObject ppo = findProof(node.problem);
+        if (ppo == null) node.failed = true;
+        else record(node, ppo);
+      }
+      if (node.failed) {
+        proof.setFailedProof(node.problem);
+        return false;
+      }
+      proof.addProcessorProof(node.proof);
+      queue.addAll(node.children);
+    }
+    return true;
+  }
+
+  /**
+   * Handles the nodes on a pool of worker threads, until all of them are done or one of them
+   * fails.  The results are stored in the nodes.
+   */
+  private void solveInParallel(Node root) {
+    ForkJoinPool pool = new ForkJoinPool(_threads);
+    Run run = new Run(pool);
+    try {
+      run.schedule(root);
+      run.done.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while solving DP problems.", e);
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException r) throw r;
+      if (e.getCause() instanceof Error r) throw r;
+      throw new RuntimeException(e.getCause());
+    }
+    finally {
+      // if a problem failed, this cancels all remaining work
+      synchronized (run) { run.stopped.set(true); }
+      pool.shutdownNow();
+    }
+  }
+}
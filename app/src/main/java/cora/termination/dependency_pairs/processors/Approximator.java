@@ -1,5 +1,7 @@
 package cora.termination.dependency_pairs.processors;
 
+import cora.config.ProverContext;
+import cora.config.Settings;
 import cora.data.digraph.Digraph;
 import cora.termination.dependency_pairs.DP;
 import cora.termination.dependency_pairs.Problem;
@@ -7,15 +9,18 @@ import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 public class Approximator {
 
   // This function implements an over approximation algorithm needed to turn a
   // DP problem into a Digraph.
-  private static boolean isDpConnected(Problem dpp, DP u, DP v) {
-    OverApproximation overApproximation = new OverApproximation(dpp.getTRS());
-    return overApproximation.mayReduce(u, v);
-  }
+  /** Below this number of DPs, the graph is computed sequentially. */
+  private static final int PARALLEL_THRESHOLD = 8;
 
   @Contract("_ -> new")
   @NotNull
@@ -23,16 +28,58 @@ public class Approximator {
     // Java is smart enough to realize a copy of dpp.getDPList() isn't really necessary,
     // so it will copy a reference of it to the local variable dps.
     List<DP> dps = dpp.getDPList();
+    int n = dps.size();
+
+    // a single OverApproximation is shared by all the pairs, and the DPs are renamed only once
+    // (rather than once for every pair), since the renamed copies have fresh variables anyway
+    OverApproximation overApproximation = new OverApproximation(dpp.getTRS());
+    List<DP> renamed = dps.stream().map(OverApproximation::rename).toList();
 
-    Digraph graphOfProblem = new Digraph(dpp.getDPList().size());
+    // row i of the adjacency matrix lists the edges from DP i; rows are computed independently
+    boolean[][] edges = new boolean[n][];
+    IntConsumer computeRow = i -> {
+      edges[i] = new boolean[n];
+      for (int j = 0; j < n; j++) {
+        edges[i][j] = overApproximation.mayReduceRenamed(dps.get(i), renamed.get(j));
+      }
+    };
+
+    int workers = Math.min(Settings.queryThreads(), n);
+    ProverContext context = ProverContext.current();
+    IntConsumer boundRow = i -> context.bind(() -> computeRow.accept(i)).run();
+    if (workers <= 1 || n < PARALLEL_THRESHOLD) {
+      for (int i = 0; i < n; i++) computeRow.accept(i);
+    }
+    else if (ForkJoinTask.inForkJoinPool()) {
+      // we are already running on a pool (e.g., that of the ProofScheduler), so rather than
+      // starting more threads, the rows are computed by the workers of that pool
+      IntStream.range(0, n).parallel().forEach(boundRow);
+    }
+    else {
+      ForkJoinPool pool = new ForkJoinPool(workers);
+      try {
+        pool.submit(() -> IntStream.range(0, n).parallel().forEach(boundRow)).get();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("Interrupted while computing the dependency graph.", e);
+      }
+      catch (ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException r) throw r;
+        throw new RuntimeException(e.getCause());
+      }
+      finally {
+        pool.shutdown();
+      }
+    }
+
+    Digraph graphOfProblem = new Digraph(n);
     // Notice that in this graph, each vertex represents i represent exactly
     // the DP at index i in the list dps.
     // This is not enforced by code (which would use memory/time).
-
-    for(int i = 0; i < dps.size(); i++) {
-      for (int j = 0; j < dps.size(); j++) {
-        if (isDpConnected(dpp, dps.get(i), dps.get(j)))
-          graphOfProblem.addEdge(i, j);
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < n; j++) {
+        if (edges[i][j]) graphOfProblem.addEdge(i, j);
       }
     }
     return graphOfProblem;
@@ -20,16 +20,21 @@ public class GraphProcessor implements Processor {
   public boolean isApplicable(Problem dp) { return !Settings.isDisabled(queryDisabledCode()); }
 
   private List<Problem> computeAllSubproblems(@NotNull Problem dpp) {
-    Digraph graphOfDPP = Approximator.problemToGraph(dpp);
+    // if the graph was already computed for a problem this one was derived from, it is reused
+    Digraph graphOfDPP = dpp.getGraph().orElseGet(() -> Approximator.problemToGraph(dpp));
 
     SCC scc = new SCC(graphOfDPP);
-    // We need to filter out the nontrivial SCCs from the SCC data in the scc object.
-    List< List<Integer> > nonTrivalSCCs = scc.getSccData()
+    // We need to filter out the nontrivial SCCs from the SCC data in the scc object.  They are
+    // listed in dependency order, so that earlier subproblems may reach later ones but not vice
+    // versa.
+    List< List<Integer> > sccData = scc.getSccData();
+    List< List<Integer> > nonTrivalSCCs = scc.getTopologicalOrder()
       .stream()
+      .map(sccData::get)
       .filter ( component ->
         component.size() > 1
           ||
-          (component.size() == 1 && graphOfDPP.getNeighbours(component.getFirst()).contains(component.getFirst()))
+          (component.size() == 1 && graphOfDPP.isAdjacent(component.getFirst(), component.getFirst()))
       ).toList();
 
     int numberOfNontrivialSCCs = nonTrivalSCCs.size();
@@ -2,6 +2,8 @@ package cora.termination.dependency_pairs.processors;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Set;
+import java.util.TreeSet;
 import cora.io.OutputModule;
 import cora.io.ProofObject;
 import cora.termination.reduction_pairs.*;
@@ -24,14 +26,14 @@ public class HorpoProcessor implements Processor {
     }
 
     /** Used for a successful proof */
-    public HorpoProofObject(Problem in, List<DP> remaining, ReductionPairProofObject result) {
-      super(in, makeDPList(in, remaining));
+    public HorpoProofObject(Problem in, Set<Integer> removed, ReductionPairProofObject result) {
+      super(in, makeDPList(in, removed));
       _result = result;
     }
 
-    private static List<Problem> makeDPList(Problem input, List<DP> lst) {
-      if (lst.size() == 0) return List.of();
-      return List.of(new Problem(lst, input.getTRS()));
+    private static List<Problem> makeDPList(Problem input, Set<Integer> removed) {
+      if (removed.size() == input.getDPList().size()) return List.of();
+      return List.of(input.removeDPs(removed));
     }
 
     public String queryProcessorName() { return "horpo"; }
@@ -55,11 +57,11 @@ public class HorpoProcessor implements Processor {
     Horpo horpo = new Horpo(false);
     ReductionPairProofObject result = horpo.orient(problem);
     if (result.queryAnswer() == ProofObject.Answer.YES) {
-      ArrayList<DP> lst = new ArrayList<DP>();
+      TreeSet<Integer> removed = new TreeSet<Integer>();
       for (int i = 0; i < dps.size(); i++) {
-        if (!result.isStrictlyOriented(i)) lst.add(dps.get(i));
+        if (result.isStrictlyOriented(i)) removed.add(i);
       }
-      return new HorpoProofObject(dpp, lst, result);
+      return new HorpoProofObject(dpp, removed, result);
     }
     else return new HorpoProofObject(dpp, result);
   }
@@ -243,6 +243,40 @@ public class IntegerMappingProcessor implements Processor {
     _smt.require(SmtFactory.createDisjunction(disj));
   }
 
+  /**
+   * Returns the problem stating that ctr implies left ≥ right (if strict is false), or that it
+   * implies left ≥ 0 ∧ left > right (if strict is true).
+   */
+  private SmtProblem createValidityProblem(Term ctr, Term left, Term right, boolean strict) {
+    SmtProblem validityProblem = new SmtProblem();
+    TermSmtTranslator tst = new TermSmtTranslator(validityProblem);
+
+    // translate the constraint and instantiated candidates to smt language
+    Constraint constraintTranslation = tst.translateConstraint(ctr);
+    IntegerExpression candLiExpr = tst.translateIntegerExpression(left);
+    IntegerExpression candRjExpr = tst.translateIntegerExpression(right);
+
+    if (strict) {
+      validityProblem.requireImplication (
+        constraintTranslation,
+        SmtFactory.createConjunction (
+          SmtFactory.createGeq(candLiExpr, SmtFactory.createValue(0)),
+          SmtFactory.createGreater(candLiExpr, candRjExpr)
+        ));
+    }
+    else {
+      validityProblem
+        .requireImplication(constraintTranslation, SmtFactory.createGeq(candLiExpr, candRjExpr));
+    }
+    return validityProblem;
+  }
+
+  /**
+   * For every DP, and every pair (i, j) of candidates for its left and right root, this requires
+   * that if the choice of candidates is (i, j), then left ≥ right holds, and the DP is oriented
+   * strictly only if left > right.  To avoid a solver call for each of the checks, the validity
+   * problems for a single DP are all passed to the solver in a single batch.
+   */
   private void putDpRequirements(Map<FunctionSymbol, IVar> intMap, Map<DP, BVar> boolMap, Problem dpp) {
     for (DP dp : dpp.getDPList()) {
       Term lhs = dp.lhs();
@@ -252,60 +286,55 @@ public class IntegerMappingProcessor implements Processor {
       FunctionSymbol lhsHead = lhs.queryRoot();
       FunctionSymbol rhsHead = rhs.queryRoot();
 
+      // for each pair (i, j), the batch holds the problem for left ≥ right at position 2k, and
+      // the one for left > right at position 2k+1
+      ArrayList<int[]> pairs = new ArrayList<int[]>();
+      ArrayList<SmtProblem> batch = new ArrayList<SmtProblem>();
       for (int i = 0; i < _candidates.get(lhsHead).size(); i++) {
         for (int j = 0; j < _candidates.get(rhsHead).size(); j++) {
           if (lhsHead.equals(rhsHead) && i != j) continue;
 
           Term instLi = instantiateCandidate(_candidates.get(lhsHead).get(i), lhs);
           Term instRj = instantiateCandidate(_candidates.get(rhsHead).get(j), rhs);
+          pairs.add(new int[] { i, j });
+          batch.add(createValidityProblem(ctr, instLi, instRj, false));
+          batch.add(createValidityProblem(ctr, instLi, instRj, true));
+        }
+      }
+      if (batch.isEmpty()) continue;
+      List<Boolean> valid = Settings.querySolver().checkValidityBatch(batch);
+
+      for (int k = 0; k < pairs.size(); k++) {
+        int i = pairs.get(k)[0], j = pairs.get(k)[1];
+
+        // fSharpDisjunction = nu(leftroot) != i \/ nu(rightroot) != j
+        Constraint fSharpDisjunction =
+          SmtFactory.createDisjunction (
+            SmtFactory.createUnequal(intMap.get(lhsHead), SmtFactory.createValue(i)),
+            SmtFactory.createUnequal(intMap.get(rhsHead), SmtFactory.createValue(j))
+          );
+
+        // check one: if left ≥ right doesn't even hold, then we can't have that choice of
+        // candidates
+        if (!valid.get(2 * k)) {
+          _smt.require(fSharpDisjunction);
+          continue;
+        }
 
-          SmtProblem validityProblem = new SmtProblem();
-          TermSmtTranslator tst = new TermSmtTranslator(validityProblem);
-
-          // translate the constraint and instantiated candidates to smt language
-          Constraint constraintTranslation = tst.translateConstraint(ctr);
-          IntegerExpression candLiExpr = tst.translateIntegerExpression(instLi);
-          IntegerExpression candRjExpr = tst.translateIntegerExpression(instRj);
-          
-          // fSharpDisjunction = nu(leftroot) != i \/ nu(rightroot) != j
-          Constraint fSharpDisjunction =
-            SmtFactory.createDisjunction (
-              SmtFactory.createUnequal(intMap.get(lhsHead), SmtFactory.createValue(i)),
-              SmtFactory.createUnequal(intMap.get(rhsHead), SmtFactory.createValue(j))
-            );
-
-          // check one: if left ≥ right doesn't even hold, then we can't have that choice of
-          // candidates
-          validityProblem
-            .requireImplication(constraintTranslation, SmtFactory.createGeq(candLiExpr, candRjExpr));
-          if (!Settings.smtSolver.checkValidity(validityProblem)) {
-            _smt.require(fSharpDisjunction);
-            continue;
-          }
-
-          // check two: if left > right holds, then having this choice of candidates means that the
-          // DP is oriented strictly; if it doesn't, then it means the DP is not oriented strictly
-          validityProblem.clear();
-          validityProblem.requireImplication (
-            constraintTranslation,
-            SmtFactory.createConjunction (
-              SmtFactory.createGeq(candLiExpr, SmtFactory.createValue(0)),
-              SmtFactory.createGreater(candLiExpr, candRjExpr)
+        // check two: if left > right holds, then having this choice of candidates means that the
+        // DP is oriented strictly; if it doesn't, then it means the DP is not oriented strictly
+        if (valid.get(2 * k + 1)) {
+          _smt.require(
+            SmtFactory.createDisjunction(
+              fSharpDisjunction,
+              boolMap.get(dp)
+            ));
+        } else {
+          _smt.require (
+            SmtFactory.createDisjunction(
+              fSharpDisjunction,
+              SmtFactory.createNegation(boolMap.get(dp))
             ));
-
-          if (Settings.smtSolver.checkValidity(validityProblem)) {
-            _smt.require(
-              SmtFactory.createDisjunction(
-                fSharpDisjunction,
-                boolMap.get(dp)
-              ));
-          } else {
-            _smt.require (
-              SmtFactory.createDisjunction(
-                fSharpDisjunction,
-                SmtFactory.createNegation(boolMap.get(dp))
-              ));
-          }
         }
       }
     }
@@ -329,7 +358,7 @@ public class IntegerMappingProcessor implements Processor {
     requireAtLeastOneStrict(boolMap);
     putDpRequirements(intMap, boolMap, dpp);
 
-    Valuation result = switch (Settings.smtSolver.checkSatisfiability(_smt)) {
+    Valuation result = switch (Settings.querySolver().checkSatisfiability(_smt)) {
       case SmtSolver.Answer.YES(Valuation val) -> val;
       default -> null;
     };
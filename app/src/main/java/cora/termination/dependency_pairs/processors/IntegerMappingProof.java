@@ -15,7 +15,6 @@
 
 package cora.termination.dependency_pairs.processors;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.Map;
@@ -53,13 +52,8 @@ class IntegerMappingProof extends ProcessorProofObject {
 
   /** Helper function for the constructor */
   private static List<Problem> removeDPs(Set<Integer> oriented, Problem original) {
-    List<DP> originalDPs = original.getDPList();
-    List<DP> remainingDPs = new ArrayList<DP>();
-    for (int index = 0; index < originalDPs.size(); index++) {
-      if (!oriented.contains(index)) remainingDPs.add(originalDPs.get(index));
-    }
-    if (remainingDPs.size() == 0) return List.of();
-    else return List.of(new Problem(remainingDPs, original.getTRS()));
+    if (oriented.size() == original.getDPList().size()) return List.of();
+    else return List.of(original.removeDPs(oriented));
   }
  
   public String queryProcessorName() { return "Integer Function"; }
@@ -71,13 +71,8 @@ class OverApproximation {
    */
   int ruleArity(FunctionSymbol f) {
     if (f.isValue()) return 1;
-    int ret = f.queryArity() + 1;
-    for (int i = 0; i < _trs.queryRuleCount(); i++) {
-      if (f.equals(_trs.queryRule(i).queryLeftSide().queryRoot())) {
-        int ar = _trs.queryRule(i).queryLeftSide().numberArguments();
-        if (ar < ret) ret = ar;
-      }
-    }
+    int ret = _trs.queryRuleIndex().queryMinimalArity(f);
+    if (ret == -1) return f.queryArity() + 1;
     return ret;
   }
 
@@ -98,7 +93,18 @@ class OverApproximation {
    */
   public boolean mayReduce(DP dp1, DP dp2) {
     // it's easier to use a single substitution, so make sure they have disjoint variables!
-    dp2 = rename(dp2);
+    return mayReduceRenamed(dp1, rename(dp2));
+  }
+
+  /**
+   * This function behaves like mayReduce, but assumes that dp2 has already been renamed so that
+   * its variables are disjoint from those of dp1 (for instance by calling rename).  This allows
+   * a renamed copy of a DP to be reused when it is compared against many others.
+   *
+   * The OverApproximation itself is not modified, so this may be called from multiple threads at
+   * once (provided the SMT solver in the Settings is thread-safe).
+   */
+  boolean mayReduceRenamed(DP dp1, DP dp2) {
     // invariant: for the requirement to hold, all the pairs on the stack must be equal, and
     // requirements must be satisfiable
     Stack<Pair<Term,Term>> todo = new Stack<Pair<Term,Term>>();
@@ -171,7 +177,7 @@ class OverApproximation {
         todo.push(new Pair<Term,Term>(a, b));
       }
     }
-    return !(TermAnalyser.satisfy(requirements, Settings.smtSolver)
+    return !(TermAnalyser.satisfy(requirements, Settings.querySolver())
              instanceof TermAnalyser.Result.NO);
   }
 }
@@ -0,0 +1,103 @@
+package cora.termination.dependency_pairs.processors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import charlie.util.ExceptionLogger;
+import charlie.util.Pair;
+import cora.config.ProverContext;
+import cora.io.OutputModule;
+import cora.termination.dependency_pairs.Problem;
+
+/**
+ * The PortfolioProcessor runs a number of processors on the same DP problem at the same time,
+ * rather than trying them one after the other.  The first processor to successfully simplify the
+ * problem wins, and all others are cancelled (which also kills any external SMT solver processes
+ * they are waiting on).  This way, an expensive processor that eventually fails does not delay a
+ * cheap one that would succeed.
+ *
+ * Each processor is identified by its code (the same code that is used to disable it).  The number
+ * of instances of a given processor that may run at the same time -- across all portfolios in the
+ * same run -- is limited by Settings.queryLimit for that code (see ProverContext.queryPermits).
+ */
+public class PortfolioProcessor implements Processor {
+  private final List<Pair<String,Processor>> _processors;
+
+  /** Creates a portfolio for the given processors, each paired with its code. */
+  public PortfolioProcessor(List<Pair<String,Processor>> processors) {
+    _processors = processors;
+  }
+
+  /** The portfolio is applicable if any of its processors is. */
+  @Override
+  public boolean isApplicable(Problem dpp) {
+    for (Pair<String,Processor> p : _processors) {
+      if (p.snd().isApplicable(dpp)) return true;
+    }
+    return false;
+  }
+
+  /** Runs the given processor on the given problem, once a permit to do so is available. */
+  private static ProcessorProofObject runLimited(Pair<String,Processor> proc, Problem dpp)
+                                                                   throws InterruptedException {
+    Semaphore permits = ProverContext.current().queryPermits(proc.fst());
+    permits.acquire();
+    try {
+      Processor p = proc.snd();
+      return ProverContext.current().measure("processor", p.getClass().getSimpleName(),
+                                             () -> p.processDPP(dpp));
+    }
+    finally { permits.release(); }
+  }
+
+  @Override
+  public ProcessorProofObject processDPP(Problem dpp) {
+    ArrayList<Pair<String,Processor>> applicable = new ArrayList<Pair<String,Processor>>();
+    for (Pair<String,Processor> p : _processors) {
+      if (p.snd().isApplicable(dpp)) applicable.add(p);
+    }
+    if (applicable.isEmpty()) return new PortfolioFailure(dpp);
+
+    ProverContext context = ProverContext.current();
+    CompletionService<ProcessorProofObject> service =
+      new ExecutorCompletionService<ProcessorProofObject>(context.queryExecutor());
+    ArrayList<Future<ProcessorProofObject>> futures =
+      new ArrayList<Future<ProcessorProofObject>>();
+    try {
+      for (Pair<String,Processor> p : applicable) {
+        futures.add(service.submit(() -> runLimited(p, dpp)));
+      }
+      for (int i = 0; i < applicable.size(); i++) {
+        ProcessorProofObject ppo;
+        try { ppo = service.take().get(); }
+        catch (ExecutionException e) {
+          // a crashed processor is treated as not applicable, so the others can still succeed
+          ExceptionLogger.log("Processor in portfolio crashed: " + e.getCause(), e);
+          continue;
+        }
+        if (ppo.applicable()) return ppo;
+      }
+      return new PortfolioFailure(dpp);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return new PortfolioFailure(dpp);
+    }
+    finally {
+      // interrupting the remaining processors also destroys their SMT solver processes
+      for (Future<ProcessorProofObject> future : futures) future.cancel(true);
+    }
+  }
+
+  private class PortfolioFailure extends ProcessorProofObject {
+    public PortfolioFailure(Problem inp) { super(inp); }
+    public String queryProcessorName() { return "Portfolio"; }
+    public void justify(OutputModule module) {
+      module.println("None of the processors in the portfolio could simplify this DP problem.");
+    }
+  }
+}
@@ -122,7 +122,7 @@ public class SubtermProcessor implements Processor {
 
     // Ask the SMT-solver to find the projection function for us.
     Valuation valuation = null;
-    switch (Settings.smtSolver.checkSatisfiability(_smt)) {
+    switch (Settings.querySolver().checkSatisfiability(_smt)) {
       case SmtSolver.Answer.YES(Valuation val): valuation = val; break;
       default: return new SubcritProofObject(dpp); // this processor cannot do anything
     };
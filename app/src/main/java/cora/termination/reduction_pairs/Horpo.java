@@ -83,6 +83,7 @@ public class Horpo {
     HorpoConstraintList lst = new HorpoConstraintList(param, printer);
     TreeMap<Integer,BVar> choices = setupConstraintList(lst, param.queryProblem(), problem);
     while (!lst.isFullySimplified()) lst.simplify();
+    param.boundPrecedence();
     return solve(problem, choices, param, lst);
   }
 
@@ -171,7 +172,7 @@ public class Horpo {
   private HorpoResult solve(OrderingProblem orderingProblem, TreeMap<Integer,BVar> choices,
                             HorpoParameters param, HorpoConstraintList lst) {
     Valuation valuation = null;
-    switch (Settings.smtSolver.checkSatisfiability(param.queryProblem())) {
+    switch (Settings.querySolver().checkSatisfiability(param.queryProblem())) {
       case SmtSolver.Answer.YES(Valuation val): valuation = val; break;
       default:  // no solution => let's return a MAYBE
         return new HorpoResult(orderingProblem, "Could not find a HORPO proof.");
@@ -17,6 +17,7 @@ package cora.termination.reduction_pairs;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.Set;
@@ -59,12 +60,22 @@ class HorpoConstraintList {
   private record HorpoRequirement(Term left, Relation relation, Term right, Term constraint,
                                   TreeSet<Variable> theoryVariables, BVar variable) { }
 
+  /**
+   * A RequirementKey identifies a requirement by its structure, for the sake of caching.  Terms
+   * are compared with equals and hashed with their (cached) structural hash, so lookup does not
+   * require any printing.  Requirements that are the same modulo renaming of variables have
+   * different keys; these are identified through _requirementsByShape instead.
+   */
+  private record RequirementKey(Term left, Relation relation, Term right, Term constraint,
+                                TreeSet<Variable> theoryVariables) { }
+
   private final HorpoParameters _parameters;
   private SmtProblem _problem;
   private final TermPrinter _printer;
   private ArrayList<HorpoRequirement> _constraints;
   private int _handled;
-  private TreeMap<String,BVar> _definingVariables;
+  private HashMap<RequirementKey,BVar> _definingVariables;
+  private HashMap<Integer,ArrayList<HorpoRequirement>> _requirementsByShape;
 
   /**
    * Sets up a fresh list, with no requirements yet.
@@ -72,11 +83,10 @@ class HorpoConstraintList {
    * The given HorpoParameters are used for simplifying the requirements, and for its SmtProblem
    * (which is used both to generate variables and to store defining formulas).
    *
-   * The given TermPrinter is used to print the requirements, which is important internally since
-   * it is used for requirements caching.  Hence, it is essential that two requiements cannot be
-   * printed the same if they are actually different.  Thus, the caller should ensure that all the
-   * function symbols that might occur in any requirement passed to the HorpoConstraintList are
-   * registered as "avoid" symbols in the given printer.
+   * The given TermPrinter is used to print the requirements, which is done only when the name of a
+   * defining variable is needed (e.g., for the proof output).  For this output to be unambiguous,
+   * the caller should ensure that all the function symbols that might occur in any requirement
+   * passed to the HorpoConstraintList are registered as "avoid" symbols in the given printer.
    */
   public HorpoConstraintList(HorpoParameters parameters, TermPrinter printer) {
     _parameters = parameters;
@@ -85,7 +95,8 @@ class HorpoConstraintList {
 
     _constraints = new ArrayList<HorpoRequirement>();
     _handled = 0;
-    _definingVariables = new TreeMap<String,BVar>();
+    _definingVariables = new HashMap<RequirementKey,BVar>();
+    _requirementsByShape = new HashMap<Integer,ArrayList<HorpoRequirement>>();
   }
 
   /**
@@ -141,18 +152,108 @@ class HorpoConstraintList {
       if (left.vars().contains(x) || right.vars().contains(x)) myvars.add(x);
     }
     if (myvars.size() != tvar.size()) tvar = myvars;
-    // find the defining variable, or create a new one (in which case the constraint is stored
-    String representation = reqToString(left, relation, right, constraint, tvar);
-    BVar ret = _definingVariables.get(representation);
+    // find the defining variable, or create a new one (in which case the constraint is stored)
+    RequirementKey key = new RequirementKey(left, relation, right, constraint, tvar);
+    BVar ret = _definingVariables.get(key);
     if (ret != null) return ret;
-    ret = _problem.createBooleanVariable(representation);
-    _definingVariables.put(representation, ret);
+    // the requirement may still be stored with different variables (e.g., from a copy of a rule)
+    int shape = 31 * (31 * (31 * relation.ordinal() + shapeHash(left)) + shapeHash(right)) +
+                shapeHash(constraint);
+    ArrayList<HorpoRequirement> candidates =
+      _requirementsByShape.computeIfAbsent(shape, k -> new ArrayList<HorpoRequirement>());
+    for (HorpoRequirement other : candidates) {
+      if (isRenaming(other, left, relation, right, constraint, tvar)) {
+        _definingVariables.put(key, other.variable());
+        return other.variable();
+      }
+    }
+    TreeSet<Variable> theoryVariables = tvar;
+    ret = _problem.createBooleanVariable(() ->
+      reqToString(left, relation, right, constraint, theoryVariables));
+    _definingVariables.put(key, ret);
     HorpoRequirement req = new HorpoRequirement(left, relation, right, constraint, tvar, ret);
+    candidates.add(req);
     _constraints.add(req);
     return ret;
   }
 
-  /** Returns a string representation that uniquely identifies the given constraint */
+  /** Returns a hash of the given term that does not depend on the identity of its variables. */
+  private static int shapeHash(Term term) {
+    int h;
+    if (term.isFunctionalTerm()) h = term.queryRoot().hashCode();
+    else if (term.isVariable()) h = term.queryVariable().queryName().hashCode();
+    else h = term.queryType().hashCode();
+    for (int i = 1; i <= term.numberArguments(); i++) {
+      h = 31 * h + shapeHash(term.queryArgument(i));
+    }
+    return h;
+  }
+
+  /**
+   * Returns whether the given requirement is the same as left relation right | constraint, tvar
+   * modulo a bijective mapping between variables with the same names.  This is the case if and
+   * only if both requirements are printed the same way.
+   */
+  private static boolean isRenaming(HorpoRequirement req, Term left, Relation relation,
+                                    Term right, Term constraint, TreeSet<Variable> tvar) {
+    if (req.relation() != relation) return false;
+    if (req.theoryVariables().size() != tvar.size()) return false;
+    TreeMap<Variable,Variable> forward = new TreeMap<Variable,Variable>();
+    TreeMap<Variable,Variable> backward = new TreeMap<Variable,Variable>();
+    if (!renames(req.left(), left, forward, backward)) return false;
+    if (!renames(req.right(), right, forward, backward)) return false;
+    if (!renames(req.constraint(), constraint, forward, backward)) return false;
+    // theory variables should be mapped to theory variables
+    for (Variable x : req.theoryVariables()) {
+      Variable y = forward.get(x);
+      if (y == null || !tvar.contains(y)) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Helper function for isRenaming: returns whether b can be obtained from a by renaming variables
+   * along the bijection given by forward (and its inverse backward), which is extended where
+   * needed.  Free variables may only be renamed to variables with the same name; binders may be
+   * renamed freely.  Unlike Term.match, this does not build an explanation when it fails.
+   */
+  private static boolean renames(Term a, Term b, TreeMap<Variable,Variable> forward,
+                                 TreeMap<Variable,Variable> backward) {
+    if (a.numberArguments() != b.numberArguments()) return false;
+    if (!a.queryType().equals(b.queryType())) return false;
+    Term ha = a.queryHead(), hb = b.queryHead();
+    if (ha.isVariable()) {
+      if (!hb.isVariable()) return false;
+      Variable x = ha.queryVariable(), y = hb.queryVariable();
+      Variable fx = forward.get(x), by = backward.get(y);
+      if (fx == null && by == null) {
+        if (!x.queryName().equals(y.queryName())) return false;
+        forward.put(x, y);
+        backward.put(y, x);
+      }
+      else if (fx == null || by == null || !fx.equals(y) || !by.equals(x)) return false;
+    }
+    else if (ha.isFunctionalTerm()) {
+      if (!hb.isFunctionalTerm() || !ha.queryRoot().equals(hb.queryRoot())) return false;
+    }
+    else if (ha.isAbstraction()) {
+      if (!hb.isAbstraction()) return false;
+      Variable x = ha.queryVariable(), y = hb.queryVariable();
+      Variable oldx = forward.put(x, y), oldy = backward.put(y, x);
+      boolean ok = renames(ha.queryAbstractionSubterm(), hb.queryAbstractionSubterm(),
+                           forward, backward);
+      if (oldx == null) forward.remove(x); else forward.put(x, oldx);
+      if (oldy == null) backward.remove(y); else backward.put(y, oldy);
+      if (!ok) return false;
+    }
+    else return false;  // meta-applications and tuples do not occur in HORPO requirements
+    for (int i = 1; i <= a.numberArguments(); i++) {
+      if (!renames(a.queryArgument(i), b.queryArgument(i), forward, backward)) return false;
+    }
+    return true;
+  }
+
+  /** Returns a string representation of the given constraint, used as the name of its variable */
   private String reqToString(Term left, Relation relation, Term right, Term constraint,
                              TreeSet<Variable> theorvar) {
     Renaming naming = _printer.generateUniqueNaming(constraint, left, right);
@@ -461,10 +562,10 @@ class HorpoConstraintList {
     }
 
     validityProblem.requireImplication(c, downProblem);
-    boolean downValid = Settings.smtSolver.checkValidity(validityProblem);
+    boolean downValid = Settings.querySolver().checkValidity(validityProblem);
     validityProblem.clear();
     validityProblem.requireImplication(c, upProblem);
-    boolean upValid = Settings.smtSolver.checkValidity(validityProblem);
+    boolean upValid = Settings.querySolver().checkValidity(validityProblem);
 
     if (downValid && upValid) _problem.require(x);
     else if (downValid) {
@@ -497,7 +598,7 @@ class HorpoConstraintList {
     else constr = SmtFactory.createDisjunction(cl, negr);
     validityProblem.requireImplication(cp, constr);
 
-    if (Settings.smtSolver.checkValidity(validityProblem)) _problem.require(x);
+    if (Settings.querySolver().checkValidity(validityProblem)) _problem.require(x);
     else _problem.require(x.negate());
   }
 
@@ -18,6 +18,7 @@ package cora.termination.reduction_pairs;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.Collections;
 import charlie.util.Pair;
 import charlie.terms.FunctionSymbol;
@@ -33,6 +34,7 @@ import charlie.smt.*;
 class HorpoParameters {
   private final SmtProblem _problem;
   private final TreeMap<String,IVar> _precedence;
+  private final TreeSet<String> _theorySymbols;
   private final TreeMap<String,IVar> _status;
   private final TreeMap<String,TreeMap<Integer,BVar>> _regards;
   private final BVar _down;
@@ -50,6 +52,7 @@ class HorpoParameters {
   HorpoParameters(int bound, boolean strict) {
     _problem = new SmtProblem();
     _precedence = new TreeMap<String,IVar>();
+    _theorySymbols = new TreeSet<String>();
     _status = new TreeMap<String,IVar>();
     _regards = new TreeMap<String,TreeMap<Integer,BVar>>();
     _strict = strict;
@@ -82,12 +85,34 @@ class HorpoParameters {
     if (_precedence.containsKey(name)) return _precedence.get(name);
     IVar x = _problem.createIntegerVariable("pred(" + name + ")");
     // theory symbols have values < 0, non-theory symbols ≥ 0
-    if (f.isTheorySymbol()) _problem.require(SmtFactory.createSmaller(x, SmtFactory.createValue(0)));
+    if (f.isTheorySymbol()) {
+      _problem.require(SmtFactory.createSmaller(x, SmtFactory.createValue(0)));
+      _theorySymbols.add(name);
+    }
     else _problem.require(SmtFactory.createGeq(x, SmtFactory.createValue(0)));
     _precedence.put(name, x);
     return x;
   }
 
+  /**
+   * Since precedence variables are only ever compared to each other, a precedence over k term
+   * symbols and m theory symbols can always be expressed with values in 0..k-1 and -m..-1
+   * respectively.  This function adds the corresponding upper and lower bounds to the underlying
+   * SMT problem, so that every precedence variable has a finite range; it should be called once
+   * all precedence variables have been created.
+   */
+  public void boundPrecedence() {
+    int theory = _theorySymbols.size();
+    int term = _precedence.size() - theory;
+    for (String name : _precedence.keySet()) {
+      IVar x = _precedence.get(name);
+      if (_theorySymbols.contains(name)) {
+        _problem.require(SmtFactory.createGeq(x, SmtFactory.createValue(-theory)));
+      }
+      else _problem.require(SmtFactory.createSmaller(x, SmtFactory.createValue(term)));
+    }
+  }
+
   /**
    * The status is represented by an integer: a number 1 for Lex status, and k ≥ 2 for Mul_k.
    *
@@ -83,5 +83,19 @@ public class SmtProblemTest {
     assertTrue(d.queryName().equals("[x]"));
     assertTrue(e.queryName().equals("[y]"));
   }
-}
 
+  @Test
+  public void testLazilyNamedVariable() {
+    SmtProblem problem = new SmtProblem();
+    int[] calls = new int[] { 0 };
+    BVar a = problem.createBooleanVariable(() -> { calls[0]++; return "expensive"; });
+    BVar b = problem.createBooleanVariable();
+    assertTrue(a.queryIndex() == 1);
+    assertTrue(b.queryIndex() == 2);
+    problem.require(SmtFactory.createDisjunction(a, b));
+    assertTrue(calls[0] == 0);
+    assertTrue(problem.toString().equals("[expensive] or b2\n"));
+    assertTrue(a.queryName().equals("[expensive]"));
+    assertTrue(calls[0] == 1);
+  }
+}
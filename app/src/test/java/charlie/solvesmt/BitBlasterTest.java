@@ -0,0 +1,143 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import charlie.smt.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+public class BitBlasterTest {
+  /** Returns the number of solutions of the constraint with x in xmin..xmax, y in ymin..ymax. */
+  private int countByEncoding(Constraint constraint, IVar x, IVar y, int xmin, int xmax,
+                              int ymin, int ymax) {
+    SatSolver solver = new SatSolver();
+    BitBlaster blaster = new BitBlaster(solver);
+    blaster.setRange(x.queryIndex(), xmin, xmax);
+    blaster.setRange(y.queryIndex(), ymin, ymax);
+    blaster.require(constraint);
+    // make sure that both variables are encoded, even if they do not occur in the constraint
+    blaster.require(SmtFactory.createGeq(SmtFactory.createAddition(x, y),
+      SmtFactory.createValue(xmin + ymin)));
+    TreeSet<String> found = new TreeSet<String>();
+    while (solver.solve(100000)) {
+      Valuation val = blaster.queryModel();
+      int vx = val.queryAssignment(x), vy = val.queryAssignment(y);
+      assertTrue(xmin <= vx && vx <= xmax && ymin <= vy && vy <= ymax);
+      assertTrue(constraint.evaluate(val));
+      assertTrue(found.add(vx + "," + vy));
+      blaster.require(SmtFactory.createDisjunction(
+        SmtFactory.createUnequal(x, SmtFactory.createValue(vx)),
+        SmtFactory.createUnequal(y, SmtFactory.createValue(vy))));
+    }
+    return found.size();
+  }
+
+  private int countByEnumeration(Constraint constraint, IVar x, IVar y, int xmin, int xmax,
+                                 int ymin, int ymax) {
+    int count = 0;
+    for (int vx = xmin; vx <= xmax; vx++) {
+      for (int vy = ymin; vy <= ymax; vy++) {
+        Valuation val = new Valuation();
+        val.setInt(x.queryIndex(), vx);
+        val.setInt(y.queryIndex(), vy);
+        if (constraint.evaluate(val)) count++;
+      }
+    }
+    return count;
+  }
+
+  private IntegerExpression randomExpression(Random random, IVar x, IVar y, int depth) {
+    int choice = random.nextInt(depth == 0 ? 3 : 6);
+    return switch (choice) {
+      case 0 -> x;
+      case 1 -> y;
+      case 2 -> SmtFactory.createValue(random.nextInt(11) - 5);
+      case 3 -> SmtFactory.createMultiplication(random.nextInt(7) - 3,
+                  randomExpression(random, x, y, depth - 1));
+      case 4 -> SmtFactory.createMultiplication(randomExpression(random, x, y, depth - 1),
+                  randomExpression(random, x, y, depth - 1));
+      default -> SmtFactory.createAddition(randomExpression(random, x, y, depth - 1),
+                   randomExpression(random, x, y, depth - 1));
+    };
+  }
+
+  @Test
+  public void testRandomArithmetic() {
+    Random random = new Random(17);
+    SmtProblem problem = new SmtProblem();
+    IVar x = problem.createIntegerVariable();
+    IVar y = problem.createIntegerVariable();
+    for (int round = 0; round < 150; round++) {
+      IntegerExpression left = randomExpression(random, x, y, 3);
+      IntegerExpression right = randomExpression(random, x, y, 2);
+      Constraint constraint = switch (random.nextInt(4)) {
+        case 0 -> SmtFactory.createGeq(left, right);
+        case 1 -> SmtFactory.createEqual(left, right);
+        case 2 -> SmtFactory.createUnequal(left, right);
+        default -> SmtFactory.createDisjunction(SmtFactory.createGreater(left, right),
+                     SmtFactory.createEqual(x, y));
+      };
+      int xmin = random.nextInt(9) - 6, ymin = random.nextInt(9) - 6;
+      int xmax = xmin + random.nextInt(7), ymax = ymin + random.nextInt(7);
+      assertTrue(countByEncoding(constraint, x, y, xmin, xmax, ymin, ymax) ==
+                 countByEnumeration(constraint, x, y, xmin, xmax, ymin, ymax));
+    }
+  }
+
+  @Test
+  public void testRestrictWidth() {
+    SmtProblem problem = new SmtProblem();
+    IVar x = problem.createIntegerVariable();
+    SatSolver solver = new SatSolver();
+    BitBlaster blaster = new BitBlaster(solver);
+    blaster.setRange(x.queryIndex(), 0, 1000);
+    blaster.require(SmtFactory.createGreater(x, SmtFactory.createValue(20)));
+    int small = blaster.restrictWidth(List.of(x.queryIndex()), 4);
+    int medium = blaster.restrictWidth(List.of(x.queryIndex()), 6);
+    assertFalse(solver.solve(1000, small));
+    assertTrue(solver.solve(1000, medium));
+    int value = blaster.queryModel().queryAssignment(x);
+    assertTrue(value > 20 && value < 32);
+    assertTrue(solver.solve(1000));
+  }
+
+  @Test
+  public void testGatesAreShared() {
+    SmtProblem problem = new SmtProblem();
+    BVar a = problem.createBooleanVariable();
+    BVar b = problem.createBooleanVariable();
+    BVar c = problem.createBooleanVariable();
+    SatSolver solver = new SatSolver();
+    BitBlaster blaster = new BitBlaster(solver);
+    blaster.require(SmtFactory.createDisjunction(SmtFactory.createConjunction(a, b), c));
+    int before = solver.numberVariables();
+    // the same conjunction in a different order, and with a duplicate, gives the same gate
+    blaster.require(SmtFactory.createDisjunction(SmtFactory.createConjunction(b,
+      SmtFactory.createConjunction(a, b)), SmtFactory.createNegation(c)));
+    assertTrue(solver.numberVariables() == before);
+    // but a ∧ ¬a is simply false
+    blaster.require(SmtFactory.createDisjunction(SmtFactory.createConjunction(a,
+      SmtFactory.createNegation(a)), b));
+    assertTrue(solver.numberVariables() == before);
+    assertTrue(solver.solve(1000));
+    assertTrue(blaster.queryModel().queryBoolAssignment(a.queryIndex()));
+    assertTrue(blaster.queryModel().queryBoolAssignment(b.queryIndex()));
+  }
+}
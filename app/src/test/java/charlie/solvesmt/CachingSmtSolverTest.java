@@ -0,0 +1,167 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import charlie.smt.*;
+import charlie.smt.SmtSolver.Answer;
+
+public class CachingSmtSolverTest {
+  /** A solver that counts its calls, and answers using the LinearSmtSolver. */
+  private static class CountingSolver implements SmtSolver {
+    int calls = 0;
+    LinearSmtSolver solver = new LinearSmtSolver(new ProcessSmtSolver());
+    public Answer checkSatisfiability(SmtProblem problem) {
+      calls++;
+      return solver.checkSatisfiability(problem);
+    }
+    public boolean checkValidity(SmtProblem problem) {
+      calls++;
+      return solver.checkValidity(problem);
+    }
+  }
+
+  /** Creates the problem x > y ∧ (y ≥ 3 ∨ b), using the given number of dummy variables first. */
+  private SmtProblem makeProblem(int offset, boolean swap) {
+    SmtProblem problem = new SmtProblem();
+    for (int i = 0; i < offset; i++) {
+      problem.createIntegerVariable();
+      problem.createBooleanVariable();
+    }
+    IVar x = problem.createIntegerVariable();
+    IVar y = problem.createIntegerVariable();
+    BVar b = problem.createBooleanVariable();
+    Constraint geq = SmtFactory.createGeq(y, SmtFactory.createValue(3));
+    Constraint disj = swap ? SmtFactory.createDisjunction(b, geq)
+                           : SmtFactory.createDisjunction(geq, b);
+    problem.require(SmtFactory.createGreater(x, y));
+    problem.require(disj);
+    return problem;
+  }
+
+  @Test
+  public void testCanonicalKeyModuloRenaming() {
+    String key1 = new CanonicalConstraint(makeProblem(0, false).queryCombinedConstraint())
+      .queryKey();
+    String key2 = new CanonicalConstraint(makeProblem(3, true).queryCombinedConstraint())
+      .queryKey();
+    assertEquals(key1, key2);
+    SmtProblem other = makeProblem(0, false);
+    other.require(SmtFactory.createValue(false));
+    assertNotEquals(key1, new CanonicalConstraint(other.queryCombinedConstraint()).queryKey());
+  }
+
+  @Test
+  public void testSatisfiabilityIsCached() {
+    CountingSolver inner = new CountingSolver();
+    CachingSmtSolver solver = new CachingSmtSolver(inner);
+    assertTrue(solver.checkSatisfiability(makeProblem(0, false)) instanceof Answer.YES);
+    SmtProblem renamed = makeProblem(2, true);
+    Answer answer = solver.checkSatisfiability(renamed);
+    assertTrue(inner.calls == 1);
+    assertTrue(solver.queryHits() == 1);
+    assertTrue(solver.queryMisses() == 1);
+    // the valuation must be translated to the variables of the second problem
+    if (answer instanceof Answer.YES(Valuation val)) {
+      assertTrue(renamed.queryCombinedConstraint().evaluate(val));
+    }
+    else assertTrue(false);
+  }
+
+  @Test
+  public void testValidityIsCached() {
+    CountingSolver inner = new CountingSolver();
+    CachingSmtSolver solver = new CachingSmtSolver(inner);
+    SmtProblem problem = new SmtProblem();
+    IVar x = problem.createIntegerVariable();
+    problem.requireImplication(SmtFactory.createGreater(x, SmtFactory.createValue(1)),
+                               SmtFactory.createGreater(x, SmtFactory.createValue(0)));
+    assertTrue(solver.checkValidity(problem));
+    assertTrue(solver.checkValidity(problem));
+    assertTrue(inner.calls == 1);
+    // invalid problems are not stored, as they might be caused by a timeout
+    problem.clear();
+    problem.requireImplication(SmtFactory.createGreater(x, SmtFactory.createValue(0)),
+                               SmtFactory.createGreater(x, SmtFactory.createValue(1)));
+    assertFalse(solver.checkValidity(problem));
+    assertFalse(solver.checkValidity(problem));
+    assertTrue(inner.calls == 3);
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEviction() {
+    CountingSolver inner = new CountingSolver();
+    CachingSmtSolver solver = new CachingSmtSolver(inner, 1, null);
+    SmtProblem problem = makeProblem(0, false);
+    SmtProblem other = new SmtProblem();
+    other.require(SmtFactory.createGreater(other.createIntegerVariable(),
+      SmtFactory.createValue(7)));
+    solver.checkSatisfiability(problem);
+    solver.checkSatisfiability(other);
+    solver.checkSatisfiability(problem);
+    assertTrue(inner.calls == 3);
+  }
+
+  @Test
+  public void testPersistence() throws Exception {
+    Path file = Files.createTempFile("coraSmtCacheTest", null);
+    Files.delete(file);
+    CountingSolver inner = new CountingSolver();
+    CachingSmtSolver solver = new CachingSmtSolver(inner, 100, file);
+    SmtProblem unsat = new SmtProblem();
+    IVar x = unsat.createIntegerVariable();
+    unsat.require(SmtFactory.createGreater(x, SmtFactory.createValue(2)));
+    unsat.require(SmtFactory.createSmaller(x, SmtFactory.createValue(1)));
+    solver.checkSatisfiability(makeProblem(0, false));
+    solver.checkSatisfiability(unsat);
+    solver.save();
+
+    CountingSolver inner2 = new CountingSolver();
+    CachingSmtSolver solver2 = new CachingSmtSolver(inner2, 100, file);
+    assertTrue(solver2.checkSatisfiability(unsat) instanceof Answer.NO);
+    assertTrue(solver2.checkSatisfiability(makeProblem(1, true)) instanceof Answer.YES);
+    assertTrue(inner2.calls == 0);
+    Files.delete(file);
+  }
+
+  @Test
+  public void testValidityBatchUsesCache() {
+    CountingSolver inner = new CountingSolver();
+    CachingSmtSolver solver = new CachingSmtSolver(inner);
+    // x > y ⇒ x ≥ y is valid, x ≥ y is not
+    SmtProblem valid = new SmtProblem();
+    IVar x = valid.createIntegerVariable();
+    IVar y = valid.createIntegerVariable();
+    valid.requireImplication(SmtFactory.createGreater(x, y), SmtFactory.createGeq(x, y));
+    SmtProblem invalid = new SmtProblem();
+    IVar z = invalid.createIntegerVariable();
+    IVar u = invalid.createIntegerVariable();
+    invalid.require(SmtFactory.createGeq(z, u));
+
+    assertTrue(solver.checkValidityBatch(List.of(valid, invalid)).equals(List.of(true, false)));
+    assertTrue(inner.calls == 2);
+    // the valid answer is remembered; the invalid one is asked again
+    assertTrue(solver.checkValidityBatch(List.of(invalid, valid)).equals(List.of(false, true)));
+    assertTrue(inner.calls == 3);
+    assertTrue(solver.queryHits() == 1);
+  }
+}
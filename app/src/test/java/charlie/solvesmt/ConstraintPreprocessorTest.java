@@ -0,0 +1,154 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import charlie.smt.*;
+import charlie.smt.SmtSolver.Answer;
+
+import java.util.List;
+
+public class ConstraintPreprocessorTest {
+  /** Solves a group using the LinearSmtSolver. */
+  private static Answer solveLinear(ConstraintPreprocessor.Group group) {
+    SmtProblem problem = new SmtProblem();
+    for (Constraint c : group.constraints()) problem.require(c);
+    return new LinearSmtSolver().checkSatisfiability(problem);
+  }
+
+  @Test
+  public void testUnitPropagation() {
+    SmtProblem problem = new SmtProblem();
+    // b1 ∧ (¬b1 ∨ b2) ∧ (¬b2 ∨ x > 3) ∧ (b3 ∨ b4)
+    BVar b1 = problem.createBooleanVariable();
+    BVar b2 = problem.createBooleanVariable();
+    BVar b3 = problem.createBooleanVariable();
+    BVar b4 = problem.createBooleanVariable();
+    IVar x = problem.createIntegerVariable();
+    problem.require(b1);
+    problem.require(SmtFactory.createImplication(b1, b2));
+    problem.require(SmtFactory.createImplication(b2,
+      SmtFactory.createGreater(x, SmtFactory.createValue(3))));
+    problem.require(SmtFactory.createDisjunction(b3, b4));
+    ConstraintPreprocessor pre = new ConstraintPreprocessor(problem.queryCombinedConstraint());
+    assertFalse(pre.isUnsatisfiable());
+    List<ConstraintPreprocessor.Group> groups = pre.queryGroups();
+    assertTrue(groups.size() == 2);
+    assertTrue(groups.get(0).logic() == SMTLibString.Logic.QFUF);
+    assertTrue(groups.get(0).constraints().toString().equals("[b3 or b4]"));
+    assertTrue(groups.get(1).logic() == SMTLibString.Logic.QFLIA);
+    assertTrue(groups.get(1).constraints().size() == 1);
+
+    Answer answer = pre.solve(ConstraintPreprocessorTest::solveLinear);
+    if (answer instanceof Answer.YES(Valuation val)) {
+      assertTrue(problem.queryCombinedConstraint().evaluate(val));
+    }
+    else assertTrue(false);
+  }
+
+  @Test
+  public void testEqualitySubstitution() {
+    SmtProblem problem = new SmtProblem();
+    // x = y + 1 ∧ z = 2 * x ∧ y ≥ 4 ∧ z ≤ 12
+    IVar x = problem.createIntegerVariable();
+    IVar y = problem.createIntegerVariable();
+    IVar z = problem.createIntegerVariable();
+    problem.require(SmtFactory.createEqual(x, SmtFactory.createAddition(y,
+      SmtFactory.createValue(1))));
+    problem.require(SmtFactory.createEqual(z, SmtFactory.createMultiplication(2, x)));
+    problem.require(SmtFactory.createGeq(y, SmtFactory.createValue(4)));
+    problem.require(SmtFactory.createLeq(z, SmtFactory.createValue(12)));
+    ConstraintPreprocessor pre = new ConstraintPreprocessor(problem.queryCombinedConstraint());
+    assertTrue(pre.queryGroups().size() == 1);
+    // only y remains
+    for (Constraint c : pre.queryGroups().get(0).constraints()) {
+      assertFalse(c.toString().contains("i1"));
+      assertFalse(c.toString().contains("i3"));
+    }
+    Answer answer = pre.solve(ConstraintPreprocessorTest::solveLinear);
+    if (answer instanceof Answer.YES(Valuation val)) {
+      assertTrue(val.queryAssignment(y) == 4);
+      assertTrue(val.queryAssignment(x) == 5);
+      assertTrue(val.queryAssignment(z) == 10);
+    }
+    else assertTrue(false);
+  }
+
+  @Test
+  public void testUnsatisfiableByPreprocessing() {
+    SmtProblem problem = new SmtProblem();
+    IVar x = problem.createIntegerVariable();
+    IVar y = problem.createIntegerVariable();
+    // x = 3 ∧ y = x + 1 ∧ y ≠ 4
+    problem.require(SmtFactory.createEqual(x, SmtFactory.createValue(3)));
+    problem.require(SmtFactory.createEqual(y, SmtFactory.createAddition(x,
+      SmtFactory.createValue(1))));
+    problem.require(SmtFactory.createUnequal(y, SmtFactory.createValue(4)));
+    ConstraintPreprocessor pre = new ConstraintPreprocessor(problem.queryCombinedConstraint());
+    assertTrue(pre.isUnsatisfiable());
+    assertTrue(pre.solve(g -> { throw new RuntimeException("should not be called"); })
+               instanceof Answer.NO);
+    assertTrue(pre.refute(g -> false));
+
+    SmtProblem problem2 = new SmtProblem();
+    BVar b = problem2.createBooleanVariable();
+    problem2.require(SmtFactory.createConjunction(b, SmtFactory.createNegation(b)));
+    assertTrue(new ConstraintPreprocessor(problem2.queryCombinedConstraint()).isUnsatisfiable());
+  }
+
+  @Test
+  public void testSplitByLogic() {
+    SmtProblem problem = new SmtProblem();
+    IVar x = problem.createIntegerVariable();
+    IVar y = problem.createIntegerVariable();
+    IVar z = problem.createIntegerVariable();
+    BVar a = problem.createBooleanVariable();
+    BVar b = problem.createBooleanVariable();
+    // x ≥ 1 ∧ x * y ≥ 5 ∧ (a ∨ z ≥ 0) ∧ (a ∨ b) ∧ (¬a ∨ ¬b)
+    problem.require(SmtFactory.createGeq(x, SmtFactory.createValue(1)));
+    problem.require(SmtFactory.createGeq(SmtFactory.createMultiplication(x, y),
+      SmtFactory.createValue(5)));
+    problem.require(SmtFactory.createDisjunction(a, SmtFactory.createGeq(z,
+      SmtFactory.createValue(0))));
+    problem.require(SmtFactory.createDisjunction(a, b));
+    problem.require(SmtFactory.createDisjunction(SmtFactory.createNegation(a),
+      SmtFactory.createNegation(b)));
+    ConstraintPreprocessor pre = new ConstraintPreprocessor(problem.queryCombinedConstraint());
+    List<ConstraintPreprocessor.Group> groups = pre.queryGroups();
+    assertTrue(groups.size() == 2);
+    // a is shared with the linear constraint on z, so the boolean clauses are linear as well
+    assertTrue(groups.get(0).logic() == SMTLibString.Logic.QFLIA);
+    assertTrue(groups.get(0).constraints().size() == 3);
+    assertTrue(groups.get(1).logic() == SMTLibString.Logic.QFNIA);
+    assertTrue(groups.get(1).constraints().size() == 2);
+  }
+
+  @Test
+  public void testRefuteNegation() {
+    SmtProblem problem = new SmtProblem();
+    IVar x = problem.createIntegerVariable();
+    // the negation of x > 2 ⇒ x ≥ 3 is x > 2 ∧ x < 3, which the solver should refute
+    problem.require(SmtFactory.createImplication(
+      SmtFactory.createGreater(x, SmtFactory.createValue(2)),
+      SmtFactory.createGeq(x, SmtFactory.createValue(3))));
+    ConstraintPreprocessor pre =
+      new ConstraintPreprocessor(SmtFactory.createNegation(problem.queryCombinedConstraint()));
+    assertFalse(pre.isUnsatisfiable());
+    assertTrue(pre.queryGroups().size() == 1);
+    assertTrue(pre.refute(g -> solveLinear(g) instanceof Answer.NO));
+  }
+}
@@ -0,0 +1,179 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import charlie.smt.*;
+import charlie.smt.SmtSolver.Answer;
+
+import java.util.List;
+
+public class LinearSmtSolverTest {
+  /** A fallback solver that just records whether it was called. */
+  private static class FakeSolver implements SmtSolver {
+    int calls = 0;
+    public Answer checkSatisfiability(SmtProblem problem) {
+      calls++;
+      return new Answer.MAYBE("fake");
+    }
+    public boolean checkValidity(SmtProblem problem) {
+      calls++;
+      return false;
+    }
+    int batches = 0;
+    public List<Boolean> checkValidityBatch(List<SmtProblem> problems) {
+      batches++;
+      return SmtSolver.super.checkValidityBatch(problems);
+    }
+  }
+
+  @Test
+  public void testSatisfiableLinearProblem() {
+    FakeSolver fallback = new FakeSolver();
+    LinearSmtSolver solver = new LinearSmtSolver(fallback);
+    SmtProblem problem = new SmtProblem();
+    // x > 0 ∧ y = x + 3 ∧ (b ∨ x > 5) ∧ ¬b
+    IVar x = problem.createIntegerVariable();
+    IVar y = problem.createIntegerVariable();
+    BVar b = problem.createBooleanVariable();
+    problem.require(SmtFactory.createGreater(x, SmtFactory.createValue(0)));
+    problem.require(SmtFactory.createEqual(y, SmtFactory.createAddition(x,
+      SmtFactory.createValue(3))));
+    problem.require(SmtFactory.createDisjunction(b,
+      SmtFactory.createGreater(x, SmtFactory.createValue(5))));
+    problem.require(SmtFactory.createNegation(b));
+    if (solver.checkSatisfiability(problem) instanceof Answer.YES(Valuation val)) {
+      assertFalse(val.queryAssignment(b));
+      assertTrue(val.queryAssignment(x) > 5);
+      assertTrue(val.queryAssignment(y) == val.queryAssignment(x) + 3);
+    }
+    else assertTrue(false);
+    assertTrue(fallback.calls == 0);
+  }
+
+  @Test
+  public void testUnsatisfiableOverIntegers() {
+    FakeSolver fallback = new FakeSolver();
+    LinearSmtSolver solver = new LinearSmtSolver(fallback);
+    SmtProblem problem = new SmtProblem();
+    // 2x + 2y ≥ 1 ∧ 2x + 2y ≤ 1 has rational solutions, but no integer ones
+    IVar x = problem.createIntegerVariable();
+    IVar y = problem.createIntegerVariable();
+    IntegerExpression sum = SmtFactory.createAddition(SmtFactory.createMultiplication(2, x),
+      SmtFactory.createMultiplication(2, y));
+    problem.require(SmtFactory.createGeq(sum, SmtFactory.createValue(1)));
+    problem.require(SmtFactory.createLeq(sum, SmtFactory.createValue(1)));
+    assertTrue(solver.checkSatisfiability(problem) instanceof Answer.NO);
+    assertTrue(fallback.calls == 0);
+  }
+
+  @Test
+  public void testBranchAndBound() {
+    LinearSmtSolver solver = new LinearSmtSolver(new FakeSolver());
+    SmtProblem problem = new SmtProblem();
+    // 3x - 2y = 1 ∧ 0 ≤ x ≤ 4 ∧ y ≠ 1
+    IVar x = problem.createIntegerVariable();
+    IVar y = problem.createIntegerVariable();
+    problem.require(SmtFactory.createEqual(SmtFactory.createAddition(
+      SmtFactory.createMultiplication(3, x), SmtFactory.createMultiplication(-2, y)),
+      SmtFactory.createValue(1)));
+    problem.require(SmtFactory.createGeq(x, SmtFactory.createValue(0)));
+    problem.require(SmtFactory.createLeq(x, SmtFactory.createValue(4)));
+    problem.require(SmtFactory.createUnequal(y, SmtFactory.createValue(1)));
+    if (solver.checkSatisfiability(problem) instanceof Answer.YES(Valuation val)) {
+      assertTrue(val.queryAssignment(x) == 3);
+      assertTrue(val.queryAssignment(y) == 4);
+    }
+    else assertTrue(false);
+  }
+
+  @Test
+  public void testValidity() {
+    FakeSolver fallback = new FakeSolver();
+    LinearSmtSolver solver = new LinearSmtSolver(fallback);
+    SmtProblem problem = new SmtProblem();
+    IVar x = problem.createIntegerVariable();
+    Constraint gr1 = SmtFactory.createGreater(x, SmtFactory.createValue(1));
+    Constraint gr0 = SmtFactory.createGreater(x, SmtFactory.createValue(0));
+    problem.requireImplication(gr1, gr0);
+    assertTrue(solver.checkValidity(problem));
+    problem.clear();
+    problem.requireImplication(gr0, gr1);
+    assertFalse(solver.checkValidity(problem));
+    assertTrue(fallback.calls == 0);
+  }
+
+  @Test
+  public void testIffAndNegation() {
+    LinearSmtSolver solver = new LinearSmtSolver(new FakeSolver());
+    SmtProblem problem = new SmtProblem();
+    // (b ⇔ x ≥ 3) ∧ b ∧ x ≠ 3 ∧ ¬(x > 4)
+    IVar x = problem.createIntegerVariable();
+    BVar b = problem.createBooleanVariable();
+    problem.require(SmtFactory.createIff(b, SmtFactory.createGeq(x, SmtFactory.createValue(3))));
+    problem.require(b);
+    problem.require(SmtFactory.createUnequal(x, SmtFactory.createValue(3)));
+    problem.require(SmtFactory.createNegation(SmtFactory.createGreater(x,
+      SmtFactory.createValue(4))));
+    if (solver.checkSatisfiability(problem) instanceof Answer.YES(Valuation val)) {
+      assertTrue(val.queryAssignment(x) == 4);
+    }
+    else assertTrue(false);
+  }
+
+  @Test
+  public void testNonLinearGoesToFallback() {
+    FakeSolver fallback = new FakeSolver();
+    LinearSmtSolver solver = new LinearSmtSolver(fallback);
+    SmtProblem problem = new SmtProblem();
+    IVar x = problem.createIntegerVariable();
+    IVar y = problem.createIntegerVariable();
+    problem.require(SmtFactory.createGreater(SmtFactory.createMultiplication(x, y),
+      SmtFactory.createValue(2)));
+    assertTrue(solver.checkSatisfiability(problem) instanceof Answer.MAYBE);
+    assertFalse(solver.checkValidity(problem));
+    assertTrue(fallback.calls == 2);
+  }
+
+  @Test
+  public void testValidityBatch() {
+    FakeSolver fallback = new FakeSolver();
+    LinearSmtSolver solver = new LinearSmtSolver(fallback);
+    SmtProblem valid = new SmtProblem();
+    IVar x = valid.createIntegerVariable();
+    valid.requireImplication(SmtFactory.createGreater(x, SmtFactory.createValue(2)),
+                             SmtFactory.createGeq(x, SmtFactory.createValue(3)));
+    SmtProblem invalid = new SmtProblem();
+    IVar y = invalid.createIntegerVariable();
+    invalid.require(SmtFactory.createGeq(y, SmtFactory.createValue(0)));
+    SmtProblem nonlinear1 = new SmtProblem();
+    IVar a = nonlinear1.createIntegerVariable();
+    nonlinear1.require(SmtFactory.createGeq(SmtFactory.createMultiplication(a, a),
+                                            SmtFactory.createValue(0)));
+    SmtProblem nonlinear2 = new SmtProblem();
+    IVar b = nonlinear2.createIntegerVariable();
+    IVar c = nonlinear2.createIntegerVariable();
+    nonlinear2.require(SmtFactory.createGeq(SmtFactory.createMultiplication(b, c), b));
+
+    List<Boolean> result =
+      solver.checkValidityBatch(List.of(valid, nonlinear1, invalid, nonlinear2));
+    assertTrue(result.equals(List.of(true, false, false, false)));
+    // both non-linear problems are passed on in a single batch
+    assertTrue(fallback.batches == 1);
+    assertTrue(fallback.calls == 2);
+  }
+}
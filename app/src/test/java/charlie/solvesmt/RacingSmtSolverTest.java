@@ -0,0 +1,203 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import charlie.smt.*;
+import charlie.smt.SmtSolver.Answer;
+
+public class RacingSmtSolverTest {
+  /**
+   * A solver that waits for the given number of milliseconds, and then gives the given answer.
+   * It counts how often it was called, and how often it was cancelled while waiting.
+   */
+  private static class SlowSolver implements SmtSolver {
+    final long millis;
+    final Answer answer;
+    final AtomicInteger calls = new AtomicInteger(0);
+    final AtomicInteger cancelled = new AtomicInteger(0);
+    SlowSolver(long m, Answer a) { millis = m; answer = a; }
+    private boolean waitUntilDone() {
+      calls.incrementAndGet();
+      try { Thread.sleep(millis); return true; }
+      catch (InterruptedException e) { cancelled.incrementAndGet(); return false; }
+    }
+    public Answer checkSatisfiability(SmtProblem problem) {
+      return waitUntilDone() ? answer : new Answer.MAYBE("cancelled");
+    }
+    public boolean checkValidity(SmtProblem problem) {
+      return waitUntilDone() && answer instanceof Answer.NO;
+    }
+  }
+
+  /** A solver that waits for the given time, and then only proves the given problems valid. */
+  private static class PickySolver implements SmtSolver {
+    final long millis;
+    final List<SmtProblem> provable;
+    final AtomicInteger cancelled = new AtomicInteger(0);
+    PickySolver(long m, List<SmtProblem> p) { millis = m; provable = p; }
+    public Answer checkSatisfiability(SmtProblem problem) { return new Answer.MAYBE("picky"); }
+    public boolean checkValidity(SmtProblem problem) { return false; }
+    public List<Boolean> checkValidityBatch(List<SmtProblem> problems) {
+      try { Thread.sleep(millis); }
+      catch (InterruptedException e) { cancelled.incrementAndGet(); return null; }
+      return problems.stream().map(p -> provable.stream().anyMatch(q -> q == p)).toList();
+    }
+  }
+
+  private SmtProblem makeProblem() {
+    SmtProblem problem = new SmtProblem();
+    IVar x = problem.createIntegerVariable();
+    problem.require(SmtFactory.createGreater(x, SmtFactory.createValue(3)));
+    return problem;
+  }
+
+  @Test
+  public void testFirstDefinitiveAnswerWins() {
+    SlowSolver slow = new SlowSolver(5000, new Answer.NO());
+    SlowSolver unsure = new SlowSolver(1, new Answer.MAYBE("no idea"));
+    SlowSolver fast = new SlowSolver(50, new Answer.NO());
+    RacingSmtSolver solver = new RacingSmtSolver(List.of(slow, unsure, fast));
+    long start = System.nanoTime();
+    assertTrue(solver.checkSatisfiability(makeProblem()) instanceof Answer.NO);
+    assertTrue(solver.checkValidity(makeProblem()));
+    assertTrue(System.nanoTime() - start < 4_000_000_000L);
+  }
+
+  @Test
+  public void testLosersAreCancelled() throws InterruptedException {
+    SlowSolver slow = new SlowSolver(5000, new Answer.NO());
+    SlowSolver fast = new SlowSolver(10, new Answer.NO());
+    RacingSmtSolver solver = new RacingSmtSolver(List.of(slow, fast));
+    assertTrue(solver.checkValidity(makeProblem()));
+    for (int i = 0; i < 100 && slow.cancelled.get() == 0; i++) Thread.sleep(10);
+    assertTrue(slow.cancelled.get() == 1);
+  }
+
+  @Test
+  public void testInvalidityEndsTheRace() throws InterruptedException {
+    SlowSolver slow = new SlowSolver(5000, new Answer.NO());
+    SlowSolver fast = new SlowSolver(10, new Answer.YES(new Valuation()));
+    RacingSmtSolver solver = new RacingSmtSolver(List.of(slow, fast));
+    long start = System.nanoTime();
+    assertFalse(solver.checkValidity(makeProblem()));
+    assertTrue(System.nanoTime() - start < 4_000_000_000L);
+    for (int i = 0; i < 100 && slow.cancelled.get() == 0; i++) Thread.sleep(10);
+    assertTrue(slow.cancelled.get() == 1);
+  }
+
+  @Test
+  public void testNoDefinitiveAnswer() {
+    SlowSolver a = new SlowSolver(1, new Answer.MAYBE("a"));
+    SlowSolver b = new SlowSolver(20, new Answer.MAYBE("b"));
+    RacingSmtSolver solver = new RacingSmtSolver(List.of(a, b));
+    assertTrue(solver.checkSatisfiability(makeProblem()) instanceof Answer.MAYBE);
+    assertFalse(solver.checkValidity(makeProblem()));
+  }
+
+  @Test
+  public void testLearnsFavourite() {
+    SlowSolver slow = new SlowSolver(300, new Answer.NO());
+    SlowSolver fast = new SlowSolver(1, new Answer.NO());
+    RacingSmtSolver solver = new RacingSmtSolver(List.of(slow, fast));
+    String shape = RacingSmtSolver.shape(List.of(makeProblem()));
+    assertTrue(shape.startsWith("QF_LIA/"));
+    for (int i = 0; i < RacingSmtSolver.MIN_EVIDENCE; i++) {
+      assertTrue(solver.queryFavourite(shape) == -1);
+      assertTrue(solver.checkValidity(makeProblem()));
+    }
+    assertTrue(solver.queryFavourite(shape) == 1);
+    int slowCalls = slow.calls.get();
+    for (int i = 0; i < 5; i++) assertTrue(solver.checkValidity(makeProblem()));
+    assertTrue(slow.calls.get() == slowCalls);
+  }
+
+  @Test
+  public void testFavouriteIsPerShape() {
+    SlowSolver unsure = new SlowSolver(1, new Answer.MAYBE("unsure"));
+    SlowSolver sure = new SlowSolver(1, new Answer.NO());
+    RacingSmtSolver solver = new RacingSmtSolver(List.of(sure, unsure));
+    String shape = RacingSmtSolver.shape(List.of(makeProblem()));
+    for (int i = 0; i < RacingSmtSolver.MIN_EVIDENCE; i++) {
+      solver.checkSatisfiability(makeProblem());
+    }
+    assertTrue(solver.queryFavourite(shape) == 0);
+    // a problem of another shape is raced as usual
+    SmtProblem bool = new SmtProblem();
+    bool.require(bool.createBooleanVariable());
+    assertTrue(solver.queryFavourite(RacingSmtSolver.shape(List.of(bool))) == -1);
+    assertTrue(solver.checkSatisfiability(bool) instanceof Answer.NO);
+  }
+
+  @Test
+  public void testValidityBatch() {
+    SlowSolver unsure = new SlowSolver(1, new Answer.MAYBE("unsure"));
+    SlowSolver sure = new SlowSolver(30, new Answer.NO());
+    RacingSmtSolver solver = new RacingSmtSolver(List.of(unsure, sure));
+    List<Boolean> result = solver.checkValidityBatch(List.of(makeProblem(), makeProblem()));
+    assertTrue(result.equals(List.of(true, true)));
+    solver = new RacingSmtSolver(List.of(unsure));
+    result = solver.checkValidityBatch(List.of(makeProblem(), makeProblem()));
+    assertTrue(result.equals(List.of(false, false)));
+  }
+
+  @Test
+  public void testValidityBatchCombinesSolvers() throws InterruptedException {
+    SmtProblem a = makeProblem(), b = makeProblem(), c = makeProblem();
+    PickySolver fast = new PickySolver(1, List.of(a));
+    PickySolver slow = new PickySolver(100, List.of(b));
+    PickySolver none = new PickySolver(50, List.of());
+    RacingSmtSolver solver = new RacingSmtSolver(List.of(fast, slow, none));
+    // the fast solver's answer is not enough, so the others are not cancelled
+    assertTrue(solver.checkValidityBatch(List.of(a, b, c)).equals(List.of(true, true, false)));
+    assertTrue(slow.cancelled.get() == 0);
+    assertTrue(none.cancelled.get() == 0);
+    // once everything is proved, the remaining solvers are cancelled
+    PickySolver slowest = new PickySolver(5000, List.of(a, b));
+    solver = new RacingSmtSolver(List.of(fast, slow, slowest));
+    long start = System.nanoTime();
+    assertTrue(solver.checkValidityBatch(List.of(a, b)).equals(List.of(true, true)));
+    assertTrue(System.nanoTime() - start < 4_000_000_000L);
+    for (int i = 0; i < 100 && slowest.cancelled.get() == 0; i++) Thread.sleep(10);
+    assertTrue(slowest.cancelled.get() == 1);
+  }
+
+  @Test
+  public void testValidityBatchAfterFavourite() {
+    SmtProblem a = makeProblem(), b = makeProblem();
+    PickySolver fast = new PickySolver(1, List.of(a, b));
+    PickySolver slow = new PickySolver(50, List.of(b));
+    RacingSmtSolver solver = new RacingSmtSolver(List.of(fast, slow));
+    List<SmtProblem> batch = List.of(a, b);
+    for (int i = 0; i < RacingSmtSolver.MIN_EVIDENCE; i++) {
+      assertTrue(solver.checkValidityBatch(batch).equals(List.of(true, true)));
+    }
+    String shape = RacingSmtSolver.shape(batch);
+    assertTrue(solver.queryFavourite(shape) == 0);
+    // the favourite cannot prove a third problem, but the other solver can prove it
+    SmtProblem c = makeProblem();
+    PickySolver third = new PickySolver(1, List.of(c));
+    solver = new RacingSmtSolver(List.of(fast, third));
+    for (int i = 0; i < RacingSmtSolver.MIN_EVIDENCE; i++) solver.checkValidityBatch(batch);
+    assertTrue(solver.queryFavourite(shape) == 0);
+    assertTrue(solver.checkValidityBatch(List.of(a, c)).equals(List.of(true, true)));
+  }
+}
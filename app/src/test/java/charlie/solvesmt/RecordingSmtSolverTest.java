@@ -0,0 +1,110 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.List;
+
+import charlie.smt.*;
+import charlie.smt.SmtSolver.Answer;
+
+public class RecordingSmtSolverTest {
+  /** A solver that gives the answers it is told to give, in order. */
+  private static class ScriptedSolver implements SmtSolver {
+    ArrayDeque<Answer> sat = new ArrayDeque<Answer>();
+    ArrayDeque<Boolean> valid = new ArrayDeque<Boolean>();
+    public Answer checkSatisfiability(SmtProblem problem) { return sat.poll(); }
+    public boolean checkValidity(SmtProblem problem) { return valid.poll(); }
+  }
+
+  /** Creates the problem x > y ∧ y > n, with fresh variables x and y. */
+  private SmtProblem makeProblem(SmtProblem problem, int n) {
+    IVar x = problem.createIntegerVariable();
+    IVar y = problem.createIntegerVariable();
+    problem.require(SmtFactory.createGreater(x, y));
+    problem.require(SmtFactory.createGreater(y, SmtFactory.createValue(n)));
+    return problem;
+  }
+
+  @Test
+  public void testRecordAndReplay() throws IOException {
+    Path file = Files.createTempFile("coraSmtLogTest", null);
+    ScriptedSolver inner = new ScriptedSolver();
+    RecordingSmtSolver recorder = new RecordingSmtSolver(inner, file);
+
+    SmtProblem problem = makeProblem(new SmtProblem(), 0);
+    Valuation val = new Valuation();
+    val.setInt(1, 3);
+    val.setInt(2, 1);
+    inner.sat.add(new Answer.YES(val));
+    inner.sat.add(new Answer.MAYBE("timeout\nafter 3 seconds"));
+    inner.valid.add(false);
+    inner.valid.add(true);
+    inner.valid.add(true);
+    assertTrue(recorder.checkSatisfiability(problem) instanceof Answer.YES);
+    assertTrue(recorder.checkSatisfiability(problem) instanceof Answer.MAYBE);
+    assertFalse(recorder.checkValidity(problem));
+    assertTrue(recorder.checkValidityBatch(List.of(problem, makeProblem(new SmtProblem(), 7)))
+               .equals(List.of(true, true)));
+    recorder.close();
+    assertTrue(Files.readAllLines(file).size() == 5);
+
+    ReplayingSmtSolver replay = new ReplayingSmtSolver(file);
+    // the same question with different variable names: the valuation is translated
+    SmtProblem renamed = new SmtProblem();
+    renamed.createBooleanVariable();
+    renamed.createIntegerVariable();
+    makeProblem(renamed, 0);
+    switch (replay.checkSatisfiability(renamed)) {
+      case Answer.YES(Valuation v):
+        assertTrue(v.queryIntAssignment(2) == 3);
+        assertTrue(v.queryIntAssignment(3) == 1);
+        break;
+      default: assertTrue(false);
+    }
+    // answers are given in order, and the last one is repeated
+    assertTrue(replay.checkSatisfiability(problem) instanceof Answer.MAYBE(String reason) &&
+               reason.equals("timeout after 3 seconds"));
+    assertTrue(replay.checkSatisfiability(problem) instanceof Answer.MAYBE);
+    assertFalse(replay.checkValidity(problem));
+    assertTrue(replay.checkValidity(problem));
+    assertTrue(replay.checkValidity(problem));
+    assertTrue(replay.checkValidity(makeProblem(new SmtProblem(), 7)));
+    assertTrue(replay.queryReplayed() == 7);
+    assertTrue(replay.queryUnknown() == 0);
+
+    // questions that were never asked
+    SmtProblem other = makeProblem(new SmtProblem(), 8);
+    assertTrue(replay.checkSatisfiability(other) instanceof Answer.MAYBE);
+    assertFalse(replay.checkValidity(other));
+    assertTrue(replay.queryUnknown() == 2);
+    Files.delete(file);
+  }
+
+  @Test
+  public void testMalformedLog() throws IOException {
+    Path file = Files.createTempFile("coraSmtLogTest", null);
+    Files.writeString(file, "valid\t(>= i1 0)\ttrue\nsat\t(>= i1 0)\tYES\t0\t1\t\n");
+    assertThrows(IOException.class, () -> new ReplayingSmtSolver(file));
+    Files.delete(file);
+  }
+}
@@ -18,6 +18,11 @@ package charlie.solvesmt;
 import charlie.smt.*;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class SMTLibStringTest {
@@ -47,4 +52,62 @@ class SMTLibStringTest {
       "(exit)\n").replace("\n", System.lineSeparator()))
     );
   }
+
+  @Test
+  void buildSessionQuery() {
+    SmtProblem smtProblem = new SmtProblem();
+
+    IVar iVar = SmtFactory.createIntegerVariable(smtProblem);
+    BVar bVar = SmtFactory.createBooleanVariable(smtProblem);
+    smtProblem.require(SmtFactory.createConjunction(SmtFactory.createGeq(iVar,
+      SmtFactory.createValue(3)), bVar));
+
+    SMTLibString sls = new SMTLibString(SMTLibString.Version.V26, SMTLibString.Logic.QFNIA);
+    assertTrue(sls.buildSessionHeader().equals(
+      ("(set-option :produce-models true)\n" +
+      "(set-logic QF_NIA)\n").replace("\n", System.lineSeparator())));
+    assertTrue(sls.buildSessionQuery(smtProblem.queryCombinedConstraint(), true).equals(
+      ("(push 1)\n" +
+      "(declare-fun b1() Bool)\n" +
+      "(declare-fun i1() Int)\n" +
+      "(assert (>= (+ i1 (- 3)) 0))\n" +
+      "(assert b1)\n" +
+      "(check-sat)\n" +
+      "(get-model)\n" +
+      "(pop 1)\n").replace("\n", System.lineSeparator()))
+    );
+  }
+
+  @Test
+  void onlyOccurringVariablesAreDeclared() {
+    SmtProblem smtProblem = new SmtProblem();
+    IVar x = SmtFactory.createIntegerVariable(smtProblem);
+    IVar y = SmtFactory.createIntegerVariable(smtProblem);
+    IVar z = SmtFactory.createIntegerVariable(smtProblem);
+    SmtFactory.createBooleanVariable(smtProblem);
+    smtProblem.require(SmtFactory.createSmaller(y, z));
+
+    SMTLibString sls = new SMTLibString(SMTLibString.Version.V26, SMTLibString.Logic.QFNIA);
+    String txt = sls.buildSmtlibString(smtProblem);
+    assertTrue(txt.contains("(declare-fun i2() Int)"));
+    assertTrue(txt.contains("(declare-fun i3() Int)"));
+    assertFalse(txt.contains("i1"));
+    assertFalse(txt.contains("b1"));
+  }
+
+  @Test
+  void writeSmtlibMatchesString() throws IOException {
+    SmtProblem smtProblem = new SmtProblem();
+    IVar x = SmtFactory.createIntegerVariable(smtProblem);
+    BVar b = SmtFactory.createBooleanVariable(smtProblem);
+    smtProblem.require(SmtFactory.createDisjunction(SmtFactory.createNegation(b),
+      SmtFactory.createGreater(x, SmtFactory.createValue(2))));
+    smtProblem.require(SmtFactory.createIff(b, SmtFactory.createEqual(x, SmtFactory.createValue(7))));
+
+    SMTLibString sls = new SMTLibString(SMTLibString.Version.V26, SMTLibString.Logic.QFNIA);
+    StringWriter writer = new StringWriter();
+    sls.writeSmtlib(List.of(smtProblem.queryCombinedConstraint()), writer);
+    assertTrue(writer.toString().equals(sls.buildSmtlibString(smtProblem)));
+    assertTrue(writer.toString().contains("(declare-fun b1() Bool)"));
+  }
 }
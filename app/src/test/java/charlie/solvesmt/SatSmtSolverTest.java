@@ -0,0 +1,209 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+import charlie.smt.*;
+import charlie.smt.SmtSolver.Answer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SatSmtSolverTest {
+  /** A fallback solver that just records whether it was called. */
+  private static class FakeSolver implements SmtSolver {
+    int calls = 0;
+    public Answer checkSatisfiability(SmtProblem problem) {
+      calls++;
+      return new Answer.MAYBE("fake");
+    }
+    public boolean checkValidity(SmtProblem problem) {
+      calls++;
+      return false;
+    }
+  }
+
+  @Test
+  public void testBoundedLinearProblem() {
+    FakeSolver fallback = new FakeSolver();
+    SatSmtSolver solver = new SatSmtSolver(fallback);
+    SmtProblem problem = new SmtProblem();
+    // 1 ≤ x ≤ 3 ∧ 1 ≤ y ≤ 3 ∧ x + y = 6 ∧ (b ∨ x ≠ 3)
+    IVar x = problem.createIntegerVariable();
+    IVar y = problem.createIntegerVariable();
+    BVar b = problem.createBooleanVariable();
+    problem.require(SmtFactory.createGeq(x, SmtFactory.createValue(1)));
+    problem.require(SmtFactory.createLeq(x, SmtFactory.createValue(3)));
+    problem.require(SmtFactory.createGeq(y, SmtFactory.createValue(1)));
+    problem.require(SmtFactory.createLeq(y, SmtFactory.createValue(3)));
+    problem.require(SmtFactory.createEqual(SmtFactory.createAddition(x, y),
+      SmtFactory.createValue(6)));
+    problem.require(SmtFactory.createDisjunction(b,
+      SmtFactory.createUnequal(x, SmtFactory.createValue(3))));
+    if (solver.checkSatisfiability(problem) instanceof Answer.YES(Valuation val)) {
+      assertTrue(val.queryAssignment(x) == 3);
+      assertTrue(val.queryAssignment(y) == 3);
+      assertTrue(val.queryAssignment(b));
+    }
+    else assertTrue(false);
+    // x + y = 7 is impossible, and as all variables are bounded we may conclude this ourselves
+    problem.require(SmtFactory.createGreater(SmtFactory.createAddition(x, y),
+      SmtFactory.createValue(6)));
+    assertTrue(solver.checkSatisfiability(problem) instanceof Answer.NO);
+    assertTrue(fallback.calls == 0);
+  }
+
+  @Test
+  public void testUnboundedPrecedence() {
+    FakeSolver fallback = new FakeSolver();
+    SatSmtSolver solver = new SatSmtSolver(fallback);
+    SmtProblem problem = new SmtProblem();
+    // x1 > x2 > ... > x20 ≥ 0: this needs more than the smallest widths
+    ArrayList<IVar> xs = new ArrayList<IVar>();
+    for (int i = 0; i < 20; i++) xs.add(problem.createIntegerVariable());
+    for (int i = 0; i + 1 < 20; i++) problem.require(SmtFactory.createGreater(xs.get(i),
+      xs.get(i + 1)));
+    problem.require(SmtFactory.createGeq(xs.get(19), SmtFactory.createValue(0)));
+    if (solver.checkSatisfiability(problem) instanceof Answer.YES(Valuation val)) {
+      for (int i = 0; i + 1 < 20; i++) {
+        assertTrue(val.queryAssignment(xs.get(i)) > val.queryAssignment(xs.get(i + 1)));
+      }
+    }
+    else assertTrue(false);
+    assertTrue(fallback.calls == 0);
+  }
+
+  @Test
+  public void testUnboundedUnsatisfiableGoesToFallback() {
+    FakeSolver fallback = new FakeSolver();
+    SatSmtSolver solver = new SatSmtSolver(fallback);
+    SmtProblem problem = new SmtProblem();
+    IVar x = problem.createIntegerVariable();
+    IVar y = problem.createIntegerVariable();
+    problem.require(SmtFactory.createGreater(x, y));
+    problem.require(SmtFactory.createGreater(y, x));
+    assertTrue(solver.checkSatisfiability(problem) instanceof Answer.MAYBE);
+    assertTrue(fallback.calls == 1);
+  }
+
+  @Test
+  public void testBoundsInDisjunctions() {
+    FakeSolver fallback = new FakeSolver();
+    SatSmtSolver solver = new SatSmtSolver(fallback);
+    SmtProblem problem = new SmtProblem();
+    // (1 ≤ x ≤ 2 ∨ x = 5) ∧ x > y ∧ (y = 1 ∨ y = 4): every disjunct bounds x and y
+    IVar x = problem.createIntegerVariable();
+    IVar y = problem.createIntegerVariable();
+    problem.require(SmtFactory.createDisjunction(
+      SmtFactory.createConjunction(SmtFactory.createGeq(x, SmtFactory.createValue(1)),
+                                   SmtFactory.createLeq(x, SmtFactory.createValue(2))),
+      SmtFactory.createEqual(x, SmtFactory.createValue(5))));
+    problem.require(SmtFactory.createGreater(x, y));
+    problem.require(SmtFactory.createDisjunction(
+      SmtFactory.createEqual(y, SmtFactory.createValue(1)),
+      SmtFactory.createEqual(y, SmtFactory.createValue(4))));
+    if (solver.checkSatisfiability(problem) instanceof Answer.YES(Valuation val)) {
+      assertTrue(val.queryAssignment(y) == 1 || val.queryAssignment(y) == 4);
+      assertTrue(val.queryAssignment(x) > val.queryAssignment(y));
+    }
+    else assertTrue(false);
+    // so when x = 5 is excluded, we can conclude that there is no solution ourselves
+    problem.require(SmtFactory.createGreater(y, SmtFactory.createValue(1)));
+    problem.require(SmtFactory.createSmaller(x, SmtFactory.createValue(5)));
+    assertTrue(solver.checkSatisfiability(problem) instanceof Answer.NO);
+    assertTrue(fallback.calls == 0);
+  }
+
+  @Test
+  public void testNonLinearAndNegative() {
+    FakeSolver fallback = new FakeSolver();
+    SatSmtSolver solver = new SatSmtSolver(fallback);
+    SmtProblem problem = new SmtProblem();
+    // -12 ≤ x ≤ 12 ∧ -12 ≤ y ≤ 12 ∧ x * y = 12 ∧ x < y < -2
+    IVar x = problem.createIntegerVariable();
+    IVar y = problem.createIntegerVariable();
+    for (IVar v : List.of(x, y)) {
+      problem.require(SmtFactory.createGeq(v, SmtFactory.createValue(-12)));
+      problem.require(SmtFactory.createLeq(v, SmtFactory.createValue(12)));
+    }
+    problem.require(SmtFactory.createEqual(SmtFactory.createMultiplication(x, y),
+      SmtFactory.createValue(12)));
+    problem.require(SmtFactory.createSmaller(x, y));
+    problem.require(SmtFactory.createSmaller(y, SmtFactory.createValue(-2)));
+    if (solver.checkSatisfiability(problem) instanceof Answer.YES(Valuation val)) {
+      assertTrue(val.queryAssignment(x) == -4);
+      assertTrue(val.queryAssignment(y) == -3);
+    }
+    else assertTrue(false);
+    // 3 * x + 2 < -16 ∧ x ≥ -6 has no solutions
+    SmtProblem problem2 = new SmtProblem();
+    IVar z = problem2.createIntegerVariable();
+    problem2.require(SmtFactory.createSmaller(SmtFactory.createAddition(
+      SmtFactory.createMultiplication(3, z), SmtFactory.createValue(2)),
+      SmtFactory.createValue(-16)));
+    problem2.require(SmtFactory.createGeq(z, SmtFactory.createValue(-6)));
+    problem2.require(SmtFactory.createLeq(z, SmtFactory.createValue(100)));
+    assertTrue(solver.checkSatisfiability(problem2) instanceof Answer.NO);
+    assertTrue(fallback.calls == 0);
+  }
+
+  @Test
+  public void testValidity() {
+    FakeSolver fallback = new FakeSolver();
+    SatSmtSolver solver = new SatSmtSolver(fallback);
+    SmtProblem problem = new SmtProblem();
+    BVar a = problem.createBooleanVariable();
+    BVar b = problem.createBooleanVariable();
+    // (a ⇒ b) ⇔ (¬b ⇒ ¬a)
+    problem.require(SmtFactory.createIff(SmtFactory.createImplication(a, b),
+      SmtFactory.createImplication(SmtFactory.createNegation(b), SmtFactory.createNegation(a))));
+    assertTrue(solver.checkValidity(problem));
+    problem.require(a);
+    assertFalse(solver.checkValidity(problem));
+    assertTrue(fallback.calls == 0);
+
+    // the negation of x ≥ 1 ⇒ x ≥ 0 is x ≥ 1 ∧ x < 0, whose bounds are already contradictory
+    SmtProblem problem2 = new SmtProblem();
+    IVar x = problem2.createIntegerVariable();
+    problem2.require(SmtFactory.createImplication(
+      SmtFactory.createGeq(x, SmtFactory.createValue(1)),
+      SmtFactory.createGeq(x, SmtFactory.createValue(0))));
+    assertTrue(solver.checkValidity(problem2));
+    assertTrue(fallback.calls == 0);
+
+    // x ≥ y ⇒ x + 1 > y holds, but the negation has unbounded variables
+    SmtProblem problem3 = new SmtProblem();
+    IVar y = problem3.createIntegerVariable();
+    IVar z = problem3.createIntegerVariable();
+    problem3.require(SmtFactory.createImplication(SmtFactory.createGeq(y, z),
+      SmtFactory.createGreater(SmtFactory.createAddition(y, SmtFactory.createValue(1)), z)));
+    solver.checkValidity(problem3);
+    assertTrue(fallback.calls == 1);
+  }
+
+  @Test
+  public void testDivisionGoesToFallback() {
+    FakeSolver fallback = new FakeSolver();
+    SatSmtSolver solver = new SatSmtSolver(fallback);
+    SmtProblem problem = new SmtProblem();
+    IVar x = problem.createIntegerVariable();
+    problem.require(SmtFactory.createEqual(SmtFactory.createDivision(x,
+      SmtFactory.createValue(2)), SmtFactory.createValue(3)));
+    assertTrue(solver.checkSatisfiability(problem) instanceof Answer.MAYBE);
+    assertTrue(fallback.calls == 1);
+  }
+}
@@ -0,0 +1,165 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+public class SatSolverTest {
+  private static final long LIMIT = 1000000;
+
+  /** Returns whether the given clauses are satisfied by the model of the solver. */
+  private boolean satisfiedByModel(SatSolver solver, ArrayList<int[]> clauses) {
+    for (int[] clause : clauses) {
+      boolean sat = false;
+      for (int l : clause) sat |= solver.modelValue(l);
+      if (!sat) return false;
+    }
+    return true;
+  }
+
+  /** Checks by brute force whether the given clauses over n variables are satisfiable. */
+  private boolean bruteForce(int n, ArrayList<int[]> clauses) {
+    for (int assignment = 0; assignment < (1 << n); assignment++) {
+      boolean all = true;
+      for (int[] clause : clauses) {
+        boolean sat = false;
+        for (int l : clause) {
+          boolean value = ((assignment >> (Math.abs(l) - 1)) & 1) == 1;
+          if (l > 0 ? value : !value) sat = true;
+        }
+        if (!sat) { all = false; break; }
+      }
+      if (all) return true;
+    }
+    return false;
+  }
+
+  @Test
+  public void testSimpleSatisfiable() {
+    SatSolver solver = new SatSolver();
+    int a = solver.newVariable(), b = solver.newVariable(), c = solver.newVariable();
+    ArrayList<int[]> clauses = new ArrayList<int[]>();
+    clauses.add(new int[] { a, b });
+    clauses.add(new int[] { -a, c });
+    clauses.add(new int[] { -b, c });
+    clauses.add(new int[] { -c, -a });
+    for (int[] clause : clauses) assertTrue(solver.addClause(clause));
+    assertTrue(solver.solve(LIMIT));
+    assertTrue(satisfiedByModel(solver, clauses));
+    assertFalse(solver.modelValue(a));
+    assertTrue(solver.modelValue(b));
+    assertTrue(solver.modelValue(c));
+  }
+
+  @Test
+  public void testPigeonHole() {
+    // 5 pigeons do not fit in 4 holes
+    int pigeons = 5, holes = 4;
+    SatSolver solver = new SatSolver();
+    int[][] in = new int[pigeons][holes];
+    for (int p = 0; p < pigeons; p++) {
+      for (int h = 0; h < holes; h++) in[p][h] = solver.newVariable();
+    }
+    for (int p = 0; p < pigeons; p++) solver.addClause(in[p]);
+    for (int h = 0; h < holes; h++) {
+      for (int p = 0; p < pigeons; p++) {
+        for (int q = p + 1; q < pigeons; q++) solver.addClause(-in[p][h], -in[q][h]);
+      }
+    }
+    assertFalse(solver.solve(LIMIT));
+    // once unsatisfiable, always unsatisfiable
+    assertFalse(solver.addClause(in[0][0]));
+    assertFalse(solver.solve(LIMIT));
+  }
+
+  @Test
+  public void testAssumptions() {
+    SatSolver solver = new SatSolver();
+    int a = solver.newVariable(), b = solver.newVariable(), c = solver.newVariable();
+    solver.addClause(a, b);
+    solver.addClause(-a, c);
+    assertFalse(solver.solve(LIMIT, -b, -c));
+    assertTrue(solver.solve(LIMIT, -b));
+    assertTrue(solver.modelValue(a));
+    assertTrue(solver.modelValue(c));
+    // the assumptions did not make the clauses unsatisfiable
+    assertTrue(solver.solve(LIMIT, -a));
+    assertTrue(solver.modelValue(b));
+    // assumptions that contradict each other
+    assertFalse(solver.solve(LIMIT, c, -c));
+    solver.addClause(-b);
+    assertTrue(solver.solve(LIMIT));
+    assertTrue(solver.modelValue(a));
+    assertFalse(solver.solve(LIMIT, -c));
+  }
+
+  @Test
+  public void testTrivialClauses() {
+    SatSolver solver = new SatSolver();
+    int a = solver.newVariable(), b = solver.newVariable();
+    assertTrue(solver.addClause(a, -a));
+    assertTrue(solver.addClause(b, b));
+    assertTrue(solver.solve(LIMIT));
+    assertTrue(solver.modelValue(b));
+    assertThrows(IllegalArgumentException.class, () -> solver.addClause(a, 3));
+    assertFalse(solver.addClause());
+  }
+
+  @Test
+  public void testRandomAgainstBruteForce() {
+    Random random = new Random(2024);
+    for (int round = 0; round < 200; round++) {
+      int n = 6 + random.nextInt(7);
+      int m = (int)(n * (3.5 + random.nextDouble()));
+      SatSolver solver = new SatSolver();
+      for (int i = 0; i < n; i++) solver.newVariable();
+      ArrayList<int[]> clauses = new ArrayList<int[]>();
+      for (int j = 0; j < m; j++) {
+        int[] clause = new int[3];
+        for (int k = 0; k < 3; k++) {
+          clause[k] = (1 + random.nextInt(n)) * (random.nextBoolean() ? 1 : -1);
+        }
+        clauses.add(clause);
+        solver.addClause(clause);
+      }
+      boolean expected = bruteForce(n, clauses);
+      assertTrue(solver.solve(LIMIT) == expected);
+      if (expected) assertTrue(satisfiedByModel(solver, clauses));
+    }
+  }
+
+  @Test
+  public void testConflictLimit() {
+    int pigeons = 9, holes = 8;
+    SatSolver solver = new SatSolver();
+    int[][] in = new int[pigeons][holes];
+    for (int p = 0; p < pigeons; p++) {
+      for (int h = 0; h < holes; h++) in[p][h] = solver.newVariable();
+    }
+    for (int p = 0; p < pigeons; p++) solver.addClause(in[p]);
+    for (int h = 0; h < holes; h++) {
+      for (int p = 0; p < pigeons; p++) {
+        for (int q = p + 1; q < pigeons; q++) solver.addClause(-in[p][h], -in[q][h]);
+      }
+    }
+    assertTrue(solver.solve(10) == null);
+    assertTrue(solver.numberConflicts() == 10);
+  }
+}
@@ -0,0 +1,148 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.solvesmt;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import charlie.smt.*;
+import charlie.util.Deadline;
+
+/**
+ * Tests the session pool of the SessionSmtSolver.  Instead of starting solver processes, the
+ * sessions are fakes that answer every query with the same response.
+ */
+public class SessionSmtSolverTest {
+  /** Tracks how many fake sessions exist, are in use at the same time, and were closed. */
+  private static class Tracker {
+    final AtomicInteger created = new AtomicInteger(0);
+    final AtomicInteger active = new AtomicInteger(0);
+    final AtomicInteger maxActive = new AtomicInteger(0);
+    final AtomicInteger closed = new AtomicInteger(0);
+  }
+
+  private static class FakeSession extends SmtSession {
+    private final Tracker _tracker;
+    private final String _response;
+    private final long _millis;
+    private boolean _inUse = false;
+
+    FakeSession(Tracker tracker, String response, long millis) {
+      super(List.of("fake-solver"), "");
+      _tracker = tracker;
+      _response = response;
+      _millis = millis;
+      tracker.created.incrementAndGet();
+    }
+
+    @Override
+    Optional<String> query(String commands, int timeout) {
+      // a session should never be used by two threads at once
+      synchronized (this) {
+        assertFalse(_inUse);
+        _inUse = true;
+      }
+      int now = _tracker.active.incrementAndGet();
+      _tracker.maxActive.accumulateAndGet(now, Math::max);
+      try { Thread.sleep(_millis); }
+      catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+      _tracker.active.decrementAndGet();
+      synchronized (this) { _inUse = false; }
+      return Optional.of(_response);
+    }
+
+    @Override
+    void close() { _tracker.closed.incrementAndGet(); }
+  }
+
+  private SmtProblem makeProblem() {
+    SmtProblem problem = new SmtProblem();
+    IVar x = problem.createIntegerVariable();
+    problem.require(SmtFactory.createGreater(x, SmtFactory.createValue(3)));
+    return problem;
+  }
+
+  @Test
+  public void testSequentialQueriesReuseOneSession() {
+    Tracker tracker = new Tracker();
+    SessionSmtSolver solver =
+      new SessionSmtSolver(() -> new FakeSession(tracker, "unsat", 0), 4);
+    for (int i = 0; i < 10; i++) assertTrue(solver.checkValidity(makeProblem()));
+    assertTrue(tracker.created.get() == 1);
+    assertTrue(solver.numberSessions() == 1);
+  }
+
+  @Test
+  public void testConcurrentQueriesAreBounded() throws Exception {
+    Tracker tracker = new Tracker();
+    SessionSmtSolver solver =
+      new SessionSmtSolver(() -> new FakeSession(tracker, "unsat", 20), 3);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      ArrayList<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+      for (int i = 0; i < 40; i++) {
+        futures.add(executor.submit(() -> solver.checkValidity(makeProblem())));
+      }
+      for (Future<Boolean> future : futures) assertTrue(future.get());
+    }
+    finally { executor.shutdownNow(); }
+    assertTrue(tracker.created.get() <= 3);
+    assertTrue(tracker.maxActive.get() <= 3);
+    assertTrue(tracker.maxActive.get() >= 2);
+  }
+
+  @Test
+  public void testWaitingForSessionRespectsDeadline() throws Exception {
+    Tracker tracker = new Tracker();
+    SessionSmtSolver solver =
+      new SessionSmtSolver(() -> new FakeSession(tracker, "unsat", 2000), 1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Boolean> busy = executor.submit(() -> solver.checkValidity(makeProblem()));
+      while (tracker.active.get() == 0) Thread.sleep(1);
+      long start = System.nanoTime();
+      boolean valid = Deadline.after(100, TimeUnit.MILLISECONDS).call(() ->
+        solver.checkValidity(makeProblem()));
+      assertFalse(valid);
+      assertTrue(System.nanoTime() - start < 1_500_000_000L);
+      assertTrue(busy.get());
+    }
+    finally { executor.shutdownNow(); }
+    assertTrue(tracker.created.get() == 1);
+  }
+
+  @Test
+  public void testCloseStopsIdleSessions() throws Exception {
+    Tracker tracker = new Tracker();
+    SessionSmtSolver solver =
+      new SessionSmtSolver(() -> new FakeSession(tracker, "sat", 0), 2);
+    assertFalse(solver.checkValidity(makeProblem()));
+    solver.close();
+    assertTrue(tracker.closed.get() == 1);
+    // the session is restarted when it is used again, rather than a new one being made
+    assertFalse(solver.checkValidity(makeProblem()));
+    assertTrue(tracker.created.get() == 1);
+  }
+}
@@ -21,7 +21,7 @@ import charlie.smt.*;
 import charlie.smt.SmtSolver.Answer;
 
 /**
- * This class tests both the ExternalSmtSolver and the ProcessSmtSolver.
+ * This class tests the ExternalSmtSolver, the ProcessSmtSolver and the SessionSmtSolver.
  * Since these class invoke external processes, the tests are in principle disabled.  Turn them
  * back on if you have changed the relevant classes, and then disable again if everything works
  * fine. :)
@@ -54,6 +54,11 @@ public class SharedSmtSolversTest {
     testSimpleValidityCheck(new ExternalSmtSolver("./smtsolver"));
   }
 
+  @Test
+  public void testSimpleValidityCheckForSessionSolver() {
+    testSimpleValidityCheck(new SessionSmtSolver(ProcessSmtSolver.PhysicalSolver.Z3));
+  }
+
   /** Check satisfiability of: x ∧ z < 0 ∧ y > 12 ∧ y = z */
   private void testSatisfiabilityAnswerIsNo(SmtSolver solver) {
     if (!ENABLED) return;
@@ -81,6 +86,11 @@ public class SharedSmtSolversTest {
     testSatisfiabilityAnswerIsNo(new ExternalSmtSolver("./smtsolver"));
   }
 
+  @Test
+  public void testSatisfiabilityAnswerIsNoForSessionSolver() {
+    testSatisfiabilityAnswerIsNo(new SessionSmtSolver(ProcessSmtSolver.PhysicalSolver.Z3));
+  }
+
   /** Check satisfiability of: x ∧ z < 10 ∧ (y > 12 ∨ y = z) */
   private void testSatisfiabilityAnswerIsYes(SmtSolver solver) {
     if (!ENABLED) return;
@@ -113,6 +123,11 @@ public class SharedSmtSolversTest {
     testSatisfiabilityAnswerIsYes(new ExternalSmtSolver("./smtsolver"));
   }
 
+  @Test
+  public void testSatisfiabilityAnswerIsYesForSessionSolver() {
+    testSatisfiabilityAnswerIsYes(new SessionSmtSolver(ProcessSmtSolver.PhysicalSolver.Z3));
+  }
+
   /** Check satisfiability of: x ∧ z > u, where u is a variable NOT in the problem */
   private void testSatisfiabilityAnswerIsMaybe(SmtSolver solver) {
     if (!ENABLED) return;
@@ -139,4 +154,9 @@ public class SharedSmtSolversTest {
   public void testSatisfiabilityAnswerIsMaybeForExternalSolver() {
     testSatisfiabilityAnswerIsMaybe(new ExternalSmtSolver("./smtsolver"));
   }
+
+  @Test
+  public void testSatisfiabilityAnswerIsMaybeForSessionSolver() {
+    testSatisfiabilityAnswerIsMaybe(new SessionSmtSolver(ProcessSmtSolver.PhysicalSolver.Z3));
+  }
 }
@@ -0,0 +1,120 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.terms;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import charlie.exceptions.CustomParserException;
+import charlie.types.Type;
+import charlie.terms.position.Position;
+
+public class TermSharingTest extends TermTestFoundation {
+  @Test
+  public void testAlphaEqualTermsHaveTheSameHash() {
+    Type o = baseType("o");
+    Variable x = TermFactory.createBinder("x", o);
+    Variable y = TermFactory.createBinder("y", o);
+    Term f = constantTerm("f", arrowType(o, arrowType(o, o)));
+    Term a = constantTerm("a", o);
+    Term abs1 = TermFactory.createAbstraction(x, TermFactory.createApp(f, x, a));
+    Term abs2 = TermFactory.createAbstraction(y, TermFactory.createApp(f, y, a));
+    assertTrue(abs1.equals(abs2));
+    assertEquals(abs1.hashCode(), abs2.hashCode());
+  }
+
+  @Test
+  public void testEqualTermsHaveTheSameHash() {
+    Term s = twoArgFuncTerm();
+    Term t = twoArgFuncTerm();
+    assertTrue(s != t);
+    assertTrue(s.equals(t));
+    assertEquals(s.hashCode(), t.hashCode());
+  }
+
+  @Test
+  public void testDistinctBindersHaveDistinctHashCodes() {
+    Type o = baseType("o");
+    Variable x = TermFactory.createBinder("x", o);
+    Variable y = TermFactory.createBinder("x", o);
+    assertFalse(x.equals(y));
+    assertNotEquals(x.hashCode(), y.hashCode());
+    assertEquals(x.structuralHash(), y.structuralHash());
+  }
+
+  @Test
+  public void testSharingDisabledByDefault() {
+    assertFalse(TermFactory.queryHashConsing());
+    FunctionSymbol g = TermFactory.createConstant("g", arrowType("o", "o"));
+    Term a = constantTerm("a", baseType("o"));
+    assertTrue(TermFactory.createApp(g, a) != TermFactory.createApp(g, a));
+  }
+
+  @Test
+  public void testSharedTermsAreIdentical() throws CustomParserException {
+    TermFactory.setHashConsing(true);
+    try {
+      FunctionSymbol f = TermFactory.createConstant("f", arrowType(baseType("o"), arrowType("o", "o")));
+      FunctionSymbol g = TermFactory.createConstant("g", arrowType("o", "o"));
+      Term a = constantTerm("a", baseType("o"));
+      Term ga1 = TermFactory.createApp(g, a);
+      Term ga2 = TermFactory.createApp(g, a);
+      assertTrue(ga1 == ga2);
+      Term s = TermFactory.createApp(f, ga1, a);
+      Term t = TermFactory.createApp(f, a, ga2);
+      assertFalse(s.equals(t));
+      // replacing a subterm yields the shared representative
+      Term u = t.replaceSubterm(Position.parse("1"), ga1).replaceSubterm(Position.parse("2"), a);
+      assertTrue(u == s);
+    }
+    finally { TermFactory.setHashConsing(false); }
+  }
+
+  @Test
+  public void testSubstitutionSharesSubterms() {
+    TermFactory.setHashConsing(true);
+    try {
+      FunctionSymbol f = TermFactory.createConstant("f", arrowType(baseType("o"), arrowType("o", "o")));
+      FunctionSymbol g = TermFactory.createConstant("g", arrowType("o", "o"));
+      Variable x = TermFactory.createVar("x", baseType("o"));
+      Term a = constantTerm("a", baseType("o"));
+      Term s = TermFactory.createApp(f, TermFactory.createApp(g, x), TermFactory.createApp(g, a));
+      Substitution gamma = TermFactory.createEmptySubstitution();
+      gamma.extend(x, a);
+      Term t = s.substitute(gamma);
+      assertTrue(t.queryArgument(1) == t.queryArgument(2));
+      assertTrue(t.queryArgument(2) == s.queryArgument(2));
+    }
+    finally { TermFactory.setHashConsing(false); }
+  }
+
+  @Test
+  public void testTermsWithBindersAreNotShared() {
+    TermFactory.setHashConsing(true);
+    try {
+      Type o = baseType("o");
+      Variable x = TermFactory.createBinder("x", o);
+      FunctionSymbol h = TermFactory.createConstant("h", arrowType(arrowType(o, o), o));
+      Term abs = TermFactory.createAbstraction(x, x);
+      Term s = TermFactory.createApp(h, abs);
+      Term t = s.refreshBinders();
+      assertTrue(s.equals(t));
+      assertTrue(s != t);
+      assertFalse(s.queryArgument(1).queryVariable() == t.queryArgument(1).queryVariable());
+    }
+    finally { TermFactory.setHashConsing(false); }
+  }
+}
@@ -0,0 +1,84 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package charlie.trs;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import charlie.terms.*;
+import charlie.reader.CoraInputReader;
+
+public class RuleIndexTest {
+  private TRS exampleTrs() {
+    return CoraInputReader.readTrsFromString(
+      "a :: o  b :: o  s :: o -> o  f :: o -> o -> o  g :: o -> o -> o -> o\n" +
+      "f(x, a) -> x\n" +                  // 0
+      "f(s(x), s(y)) -> f(x, y)\n" +      // 1
+      "f(x, s(a)) -> a\n" +               // 2
+      "g(x, x, b) -> f(b, x)\n" +         // 3
+      "g(x, y) -> f(y)\n" +               // 4
+      "s(s(s(x))) -> x\n");               // 5
+  }
+
+  @Test
+  public void testFirstOrderCandidates() {
+    TRS trs = exampleTrs();
+    RuleIndex index = trs.queryRuleIndex();
+    assertTrue(index.queryCandidates(CoraInputReader.readTerm("f(b, a)", trs)).equals(List.of(0)));
+    assertTrue(index.queryCandidates(CoraInputReader.readTerm("f(s(a), s(a))", trs))
+                    .equals(List.of(1, 2)));
+    assertTrue(index.queryCandidates(CoraInputReader.readTerm("f(s(a), s(b))", trs))
+                    .equals(List.of(1)));
+    assertTrue(index.queryCandidates(CoraInputReader.readTerm("f(b, b)", trs)).size() == 0);
+    assertTrue(index.queryCandidates(CoraInputReader.readTerm("s(s(a))", trs)).size() == 0);
+    assertTrue(index.queryCandidates(CoraInputReader.readTerm("s(s(s(b)))", trs))
+                    .equals(List.of(5)));
+    assertTrue(index.queryCandidates(CoraInputReader.readTerm("a", trs)).size() == 0);
+  }
+
+  @Test
+  public void testVariableInQueryOnlyMatchesWildcard() {
+    TRS trs = exampleTrs();
+    RuleIndex index = trs.queryRuleIndex();
+    Term t = CoraInputReader.readTerm("f(s(y), z)", trs);
+    assertTrue(index.queryCandidates(t).size() == 0);
+  }
+
+  @Test
+  public void testHeadAdditions() {
+    TRS trs = exampleTrs();
+    RuleIndex index = trs.queryRuleIndex();
+    // g(x, y) → f(y) may be applied to the head of g(a, a, b), and so may g(x, x, b) → f(b, x)
+    assertTrue(index.queryCandidates(CoraInputReader.readTerm("g(a, a, b)", trs))
+                    .equals(List.of(3, 4)));
+    assertTrue(index.queryCandidates(CoraInputReader.readTerm("g(a, a, a)", trs))
+                    .equals(List.of(4)));
+    assertTrue(index.queryCandidates(CoraInputReader.readTerm("g(a, b)", trs)).equals(List.of(4)));
+    assertTrue(index.queryCandidates(CoraInputReader.readTerm("g(a)", trs)).size() == 0);
+  }
+
+  @Test
+  public void testMinimalArity() {
+    TRS trs = exampleTrs();
+    RuleIndex index = trs.queryRuleIndex();
+    assertTrue(index.queryMinimalArity(trs.lookupSymbol("f")) == 2);
+    assertTrue(index.queryMinimalArity(trs.lookupSymbol("g")) == 2);
+    assertTrue(index.queryMinimalArity(trs.lookupSymbol("a")) == -1);
+    assertFalse(index.hasUnrootedRules());
+  }
+}
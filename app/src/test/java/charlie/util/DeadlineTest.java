@@ -0,0 +1,63 @@
+package charlie.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+class DeadlineTest {
+  @Test
+  void testNone() {
+    Deadline none = Deadline.none();
+    assertFalse(none.isLimited());
+    assertFalse(none.hasExpired());
+    assertTrue(none.queryRemaining(TimeUnit.SECONDS) == Long.MAX_VALUE);
+    assertTrue(none.limit(10, TimeUnit.SECONDS) == 10);
+    assertTrue(none.share(0.5) == none);
+  }
+
+  @Test
+  void testLimited() {
+    Deadline past = Deadline.after(0, TimeUnit.SECONDS);
+    assertTrue(past.isLimited());
+    assertTrue(past.hasExpired());
+    assertTrue(past.queryRemaining(TimeUnit.MILLISECONDS) == 0);
+    assertTrue(past.limit(10, TimeUnit.SECONDS) == 0);
+    Deadline future = Deadline.after(1, TimeUnit.HOURS);
+    assertFalse(future.hasExpired());
+    assertTrue(future.limit(10, TimeUnit.SECONDS) == 10);
+    assertTrue(future.queryRemaining(TimeUnit.MINUTES) >= 59);
+    long half = future.share(0.5).queryRemaining(TimeUnit.MINUTES);
+    assertTrue(half >= 29 && half <= 30);
+  }
+
+  @Test
+  void testEarliest() {
+    Deadline soon = Deadline.after(1, TimeUnit.MINUTES);
+    Deadline later = Deadline.after(1, TimeUnit.HOURS);
+    assertTrue(soon.earliest(later) == soon);
+    assertTrue(later.earliest(soon) == soon);
+    assertTrue(Deadline.none().earliest(later) == later);
+    assertTrue(later.earliest(Deadline.none()) == later);
+  }
+
+  @Test
+  void testRunActivatesAndRestores() {
+    Deadline outer = Deadline.after(1, TimeUnit.HOURS);
+    Deadline inner = Deadline.after(1, TimeUnit.MINUTES);
+    assertFalse(Deadline.current().isLimited());
+    boolean ok = outer.run(() -> {
+      boolean innerOk = inner.run(() -> Deadline.current() == inner);
+      return innerOk && Deadline.current() == outer;
+    });
+    assertTrue(ok);
+    assertFalse(Deadline.current().isLimited());
+  }
+
+  @Test
+  void testProcessCallerRespectsExpiredDeadline() throws Exception {
+    ProcessCaller pc = new ProcessCaller(java.util.List.of("this-command-does-not-exist"), 10);
+    assertTrue(Deadline.after(0, TimeUnit.SECONDS).call(() -> pc.getResultAsString(w -> {})).isEmpty());
+  }
+}
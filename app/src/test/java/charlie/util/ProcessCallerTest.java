@@ -35,7 +35,7 @@ class ProcessCallerTest {
     List<String> commands = new ArrayList<>(Arrays.asList("z3", "--version"));
     ProcessCaller pc = new ProcessCaller(commands, 1);
     try {
-      Optional<String> result = pc.getResultAsString();
+      Optional<String> result = pc.getResultAsString(w -> {});
       System.out.println(result);
     }
     catch (Exception e) {
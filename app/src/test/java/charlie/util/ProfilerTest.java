@@ -0,0 +1,67 @@
+package charlie.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import charlie.smt.*;
+import charlie.solvesmt.LinearSmtSolver;
+import charlie.solvesmt.ProfilingSmtSolver;
+
+class ProfilerTest {
+  @Test
+  void testMeasureRecordsTask() {
+    Profiler profiler = new Profiler();
+    int result = profiler.measure("processor", "Test", () -> 37);
+    assertTrue(result == 37);
+    List<Profiler.Measurement> lst = profiler.queryMeasurements();
+    assertTrue(lst.size() == 1);
+    assertEquals("processor", lst.get(0).category());
+    assertEquals("Test", lst.get(0).name());
+    assertTrue(lst.get(0).wallNanos() >= 0);
+    assertTrue(lst.get(0).variables() == -1);
+  }
+
+  @Test
+  void testMeasureRecordsFailingTask() {
+    Profiler profiler = new Profiler();
+    assertThrows(IllegalStateException.class, () ->
+      profiler.measure("processor", "Failing", () -> { throw new IllegalStateException(); }));
+    assertTrue(profiler.queryMeasurements().size() == 1);
+  }
+
+  @Test
+  void testProfilingSolver() {
+    Profiler profiler = new Profiler();
+    SmtSolver solver = new ProfilingSmtSolver(new LinearSmtSolver(), profiler);
+    SmtProblem problem = new SmtProblem();
+    IVar x = problem.createIntegerVariable();
+    problem.require(SmtFactory.createGreater(x, SmtFactory.createValue(3)));
+    assertTrue(solver.checkSatisfiability(problem) instanceof SmtSolver.Answer.YES);
+    List<Profiler.Measurement> lst = profiler.queryMeasurements();
+    assertTrue(lst.size() == 1);
+    assertEquals("smt-satisfiability", lst.get(0).category());
+    assertEquals("LinearSmtSolver", lst.get(0).name());
+    assertTrue(lst.get(0).variables() == 1);
+    assertTrue(lst.get(0).constraints() == 1);
+  }
+
+  @Test
+  void testPrintJsonAndSummary() {
+    Profiler profiler = new Profiler();
+    profiler.measure("processor", "A\"B", () -> null);
+    profiler.measure("smt-validity", "Solver", 3, 2, () -> true);
+    profiler.measure("smt-validity", "Solver", 1, 1, () -> false);
+    String json = profiler.printJson();
+    assertTrue(json.startsWith("["));
+    assertTrue(json.contains("\"name\": \"A\\\"B\""));
+    assertTrue(json.contains("\"variables\": 3, \"constraints\": 2}"));
+    String summary = profiler.printSummary();
+    String[] lines = summary.split(System.lineSeparator());
+    assertTrue(lines.length == 3);
+    assertTrue(lines[2].startsWith("smt-validity Solver"));
+    assertTrue(lines[2].contains(" 2 "));
+  }
+}
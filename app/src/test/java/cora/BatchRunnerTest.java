@@ -0,0 +1,63 @@
+package cora;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import charlie.solvesmt.LinearSmtSolver;
+import cora.config.ProverContext;
+
+class BatchRunnerTest {
+  private Path createDirectory() throws IOException {
+    Path dir = Files.createTempDirectory("coraBatchTest");
+    Files.writeString(dir.resolve("a.lctrs"),
+      "f :: Int -> Int\nf(x) -> f(x - 1) | x > 0");
+    Files.writeString(dir.resolve("b.lctrs"),
+      "f :: Int -> Int\nf(x) -> f(x)");
+    Files.writeString(dir.resolve("c.lctrs"), "f :: Int -> \n");
+    Files.writeString(dir.resolve("notes.txt"), "not a TRS");
+    return dir;
+  }
+
+  private ProverContext createContext() {
+    return new ProverContext(new LinearSmtSolver(), Set.of(), 2, false, Map.of());
+  }
+
+  @Test
+  void testCollectFiles() throws IOException {
+    Path dir = createDirectory();
+    List<String> files = BatchRunner.collectFiles(List.of(dir.toString(), "other.itrs"));
+    assertTrue(files.size() == 4);
+    assertTrue(files.get(0).endsWith("a.lctrs"));
+    assertTrue(files.get(1).endsWith("b.lctrs"));
+    assertTrue(files.get(2).endsWith("c.lctrs"));
+    assertTrue(files.get(3).equals("other.itrs"));
+  }
+
+  @Test
+  void testRunBatch() throws IOException {
+    Path dir = createDirectory();
+    List<String> files = BatchRunner.collectFiles(List.of(dir.toString()));
+    BatchRunner runner =
+      new BatchRunner(Parameters.Request.Termination, List.of(), createContext(), 0);
+    List<BatchRunner.Result> results = runner.run(files);
+    assertTrue(results.size() == 3);
+    assertEquals("YES", results.get(0).answer());
+    assertTrue(results.get(0).smtCalls() > 0);
+    assertEquals("MAYBE", results.get(1).answer());
+    assertEquals("ERROR", results.get(2).answer());
+
+    String table = BatchRunner.printResults(results);
+    String[] lines = table.split(System.lineSeparator());
+    assertTrue(lines.length == 4);
+    assertEquals("file\tanswer\ttime_ms\tsmt_calls", lines[0]);
+    assertTrue(lines[1].startsWith(files.get(0) + "\tYES\t"));
+  }
+}
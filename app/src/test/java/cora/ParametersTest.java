@@ -20,6 +20,12 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import charlie.reader.CoraInputReader;
 import cora.io.OutputModule;
+import charlie.smt.SmtSolver;
+import charlie.solvesmt.CachingSmtSolver;
+import charlie.solvesmt.LinearSmtSolver;
+import charlie.solvesmt.RacingSmtSolver;
+import charlie.solvesmt.SatSmtSolver;
+import cora.config.ProverContext;
 import cora.config.Settings;
 
 class ParametersTest {
@@ -119,10 +125,10 @@ class ParametersTest {
     Parameters param = new Parameters(new String[] {
       "myfile", "-d", "dp,graph", "--disable", "dp,imap" });
     param.setupSettings();
-    assertTrue(Settings.disabled.size() == 3);
-    assertTrue(Settings.disabled.contains("dp"));
-    assertTrue(Settings.disabled.contains("graph"));
-    assertTrue(Settings.disabled.contains("imap"));
+    assertTrue(ProverContext.current().queryDisabled().size() == 3);
+    assertTrue(Settings.isDisabled("dp"));
+    assertTrue(Settings.isDisabled("graph"));
+    assertTrue(Settings.isDisabled("imap"));
   }
 
   @Test
@@ -130,5 +136,96 @@ class ParametersTest {
     Parameters param = new Parameters(new String[] { "myfile", "-d", "dp,extra,graph" });
     assertThrows(Parameters.WrongParametersException.class, () -> param.setupSettings());
   }
-}
 
+  @Test
+  public void testPortfolioAndLimits() {
+    Parameters param = new Parameters(new String[] {
+      "myfile", "--portfolio", "-l", "imap=2,horpo=1", "--limit", "graph=3" });
+    param.setupSettings();
+    assertTrue(Settings.queryPortfolio());
+    assertTrue(Settings.queryLimit("imap") == 2);
+    assertTrue(Settings.queryLimit("horpo") == 1);
+    assertTrue(Settings.queryLimit("graph") == 3);
+    assertTrue(Settings.queryLimit("subcrit") == Settings.queryThreads());
+    new Parameters(new String[] { "myfile" }).setupSettings();
+    assertFalse(Settings.queryPortfolio());
+    assertTrue(Settings.queryLimit("imap") == Settings.queryThreads());
+  }
+
+  @Test
+  public void testIllegalLimits() {
+    assertThrows(Parameters.WrongParametersException.class, () ->
+      new Parameters(new String[] { "myfile", "--limit", "imap=0" }));
+    assertThrows(Parameters.WrongParametersException.class, () ->
+      new Parameters(new String[] { "myfile", "--limit", "imap" }));
+    Parameters param = new Parameters(new String[] { "myfile", "-l", "extra=2" });
+    assertThrows(Parameters.WrongParametersException.class, () -> param.setupSettings());
+  }
+
+  @Test
+  public void testBatch() {
+    Parameters param = new Parameters(new String[] {
+      "dir1", "-b", "file2", "--timeout", "30", "--results", "out.tsv" });
+    assertTrue(param.queryBatch());
+    assertTrue(param.queryTimeout() == 30);
+    assertTrue(param.queryResultsFile().equals("out.tsv"));
+    assertTrue(param.queryFiles().size() == 2);
+    assertTrue(param.queryRequest() == Parameters.Request.Termination);
+    Parameters param2 = new Parameters(new String[] { "file" });
+    assertFalse(param2.queryBatch());
+    assertTrue(param2.queryTimeout() == 0);
+    assertTrue(param2.queryResultsFile() == null);
+    assertThrows(Parameters.WrongParametersException.class, () ->
+      new Parameters(new String[] { "--batch", "--timeout", "-3" }));
+  }
+
+  @Test
+  public void testServer() {
+    Parameters param = new Parameters(new String[] { "--server", "--timeout", "10" });
+    assertTrue(param.queryServer());
+    assertTrue(param.queryPort() == 0);
+    assertTrue(param.queryTimeout() == 10);
+    Parameters param2 = new Parameters(new String[] { "--port", "4321" });
+    assertTrue(param2.queryServer());
+    assertTrue(param2.queryPort() == 4321);
+    assertFalse(new Parameters(new String[] { "file" }).queryServer());
+    assertThrows(Parameters.WrongParametersException.class, () ->
+      new Parameters(new String[] { "--port", "0" }));
+    assertThrows(Parameters.WrongParametersException.class, () ->
+      new Parameters(new String[] { "--port", "x" }));
+  }
+
+  @Test
+  public void testProfile() {
+    Parameters param = new Parameters(new String[] { "file", "--profile" });
+    assertTrue(param.queryProfile());
+    assertTrue(param.queryProfileFile() == null);
+    param = new Parameters(new String[] { "--profile-json", "out.json", "file" });
+    assertTrue(param.queryProfile());
+    assertTrue(param.queryProfileFile().equals("out.json"));
+    assertTrue(param.querySingleFile().equals("file"));
+    assertFalse(new Parameters(new String[] { "file" }).queryProfile());
+  }
+
+  @Test
+  public void testSatSolver() {
+    SmtSolver old = Settings.querySolver();
+    try {
+      new Parameters(new String[] { "-s", "sat", "x" }).setupSettings();
+      if (Settings.querySolver() instanceof CachingSmtSolver cache &&
+          cache.queryInner() instanceof SatSmtSolver sat) {
+        assertTrue(sat.queryFallback() instanceof LinearSmtSolver);
+      }
+      else assertTrue(false);
+      new Parameters(new String[] { "-s", "sat:race:z3,cvc5", "x" }).setupSettings();
+      if (Settings.querySolver() instanceof CachingSmtSolver cache &&
+          cache.queryInner() instanceof SatSmtSolver sat) {
+        assertTrue(sat.queryFallback() instanceof RacingSmtSolver);
+      }
+      else assertTrue(false);
+      assertThrows(Parameters.WrongParametersException.class, () ->
+        new Parameters(new String[] { "-s", "sat:satisfy", "x" }));
+    }
+    finally { Settings.setSolver(old); }
+  }
+}
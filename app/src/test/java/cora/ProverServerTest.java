@@ -0,0 +1,88 @@
+package cora;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.Set;
+
+import charlie.solvesmt.LinearSmtSolver;
+import cora.config.ProverContext;
+
+class ProverServerTest {
+  private String serve(String input, int timeout) throws IOException {
+    ProverContext context = new ProverContext(new LinearSmtSolver(), Set.of(), 2, false, Map.of());
+    ProverServer server = new ProverServer(context, 2, timeout);
+    StringWriter out = new StringWriter();
+    server.serve(new BufferedReader(new StringReader(input)), out);
+    return out.toString();
+  }
+
+  /** Returns the RESULT line for the request with the given id. */
+  private String resultLine(String output, String id) {
+    for (String line : output.split(System.lineSeparator())) {
+      if (line.startsWith("RESULT " + id + " ")) return line;
+    }
+    return null;
+  }
+
+  @Test
+  void testTerminationRequests() throws IOException {
+    String output = serve(
+      "REQUEST a termination format=lcstrs\n" +
+      "f :: Int -> Int\n" +
+      "f(x) -> f(x - 1) | x > 0\n" +
+      "END\n" +
+      "REQUEST b termination format=lcstrs\n" +
+      "f :: Int -> Int\n" +
+      "f(x) -> f(x)\n" +
+      "END\n" +
+      "QUIT\n", 0);
+    assertTrue(resultLine(output, "a").startsWith("RESULT a YES "));
+    assertTrue(resultLine(output, "b").startsWith("RESULT b MAYBE "));
+    assertTrue(output.contains("END a"));
+    assertTrue(output.contains("END b"));
+  }
+
+  @Test
+  void testReduceRequest() throws IOException {
+    String output = serve(
+      "REQUEST r reduce format=lcstrs\n" +
+      "f :: Int -> Int\n" +
+      "f(x) -> x + 1\n" +
+      "TERM f(f(3))\n" +
+      "END\n", 0);
+    String[] lines = output.split(System.lineSeparator());
+    assertTrue(lines[0].startsWith("RESULT r "));
+    assertTrue(output.contains("5"));
+    assertEquals("END r", lines[lines.length-1]);
+  }
+
+  @Test
+  void testErrors() throws IOException {
+    String output = serve(
+      "REQUEST p termination format=unknown\n" +
+      "END\n" +
+      "REQUEST q prove\n" +
+      "END\n" +
+      "REQUEST s print format=lcstrs\n" +
+      "f :: Int -> \n" +
+      "END\n" +
+      "HELLO\n", 0);
+    assertTrue(resultLine(output, "p").startsWith("RESULT p ERROR "));
+    assertTrue(resultLine(output, "q").startsWith("RESULT q ERROR "));
+    assertTrue(resultLine(output, "s").startsWith("RESULT s ERROR "));
+    assertTrue(resultLine(output, "-").startsWith("RESULT - ERROR "));
+  }
+
+  @Test
+  void testCancelUnknownRequestIsIgnored() throws IOException {
+    String output = serve("CANCEL x\nQUIT\n", 0);
+    assertEquals("", output);
+  }
+}
@@ -0,0 +1,161 @@
+package cora.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import charlie.smt.SmtSolver;
+import charlie.solvesmt.LinearSmtSolver;
+import charlie.solvesmt.ProfilingSmtSolver;
+import charlie.util.Deadline;
+import charlie.util.Profiler;
+
+class ProverContextTest {
+  private ProverContext createContext(String... disabled) {
+    return new ProverContext(new LinearSmtSolver(), Set.of(disabled), 2, false, Map.of("imap", 1));
+  }
+
+  @Test
+  void testDefaultsFromSettings() {
+    ProverContext ctx = ProverContext.current();
+    ProverContext defaults = ProverContext.fromSettings();
+    assertTrue(ctx.querySolver() == defaults.querySolver());
+    assertTrue(ctx.queryThreads() == defaults.queryThreads());
+    assertTrue(ctx.queryDisabled().equals(defaults.queryDisabled()));
+  }
+
+  @Test
+  void testDefaultContextIsCachedUntilSettingsChange() {
+    SmtSolver oldSolver = Settings.querySolver();
+    Set<String> oldDisabled = ProverContext.current().queryDisabled();
+    try {
+      ProverContext ctx = ProverContext.current();
+      assertTrue(ProverContext.current() == ctx);
+      LinearSmtSolver solver = new LinearSmtSolver();
+      Settings.setSolver(solver);
+      assertTrue(ProverContext.current() != ctx);
+      assertTrue(ProverContext.current().querySolver() == solver);
+      Settings.setDisabled(Set.of("graph"));
+      assertTrue(Settings.isDisabled("graph"));
+      assertTrue(ProverContext.current() == ProverContext.current());
+    }
+    finally {
+      Settings.setSolver(oldSolver);
+      Settings.setDisabled(oldDisabled);
+    }
+  }
+
+  @Test
+  void testRunActivatesAndRestores() {
+    ProverContext outer = createContext("graph");
+    ProverContext inner = createContext("imap");
+    SmtSolver solver = outer.run(() -> {
+      assertTrue(Settings.isDisabled("graph"));
+      inner.run(() -> {
+        assertFalse(Settings.isDisabled("graph"));
+        assertTrue(Settings.isDisabled("imap"));
+        return null;
+      });
+      assertTrue(Settings.isDisabled("graph"));
+      assertTrue(Settings.queryThreads() == 2);
+      assertTrue(Settings.queryLimit("imap") == 1);
+      assertTrue(Settings.queryLimit("graph") == 2);
+      return Settings.querySolver();
+    });
+    assertTrue(solver == outer.querySolver());
+    assertTrue(ProverContext.current().querySolver() == ProverContext.fromSettings().querySolver());
+  }
+
+  @Test
+  void testWithers() {
+    ProverContext ctx = createContext("graph");
+    LinearSmtSolver solver = new LinearSmtSolver();
+    assertTrue(ctx.withSolver(solver).querySolver() == solver);
+    assertTrue(ctx.withSolver(solver).isDisabled("graph"));
+    assertFalse(ctx.withDisabled(Set.of()).isDisabled("graph"));
+    assertTrue(ctx.withThreads(0).queryThreads() == 1);
+  }
+
+  @Test
+  void testProfiler() {
+    ProverContext ctx = createContext();
+    assertTrue(ctx.queryProfiler() == null);
+    assertTrue(ctx.measure("processor", "Test", () -> 3) == 3);
+    Profiler profiler = new Profiler();
+    ProverContext profiled = ctx.withProfiler(profiler);
+    assertTrue(profiled.queryProfiler() == profiler);
+    assertTrue(profiled.querySolver() instanceof ProfilingSmtSolver);
+    assertTrue(profiled.withThreads(1).queryProfiler() == profiler);
+    assertTrue(profiled.measure("processor", "Test", () -> 4) == 4);
+    assertTrue(profiler.queryMeasurements().size() == 1);
+  }
+
+  @Test
+  void testPermitsArePerRun() {
+    ProverContext ctx = createContext();
+    Semaphore horpo = ctx.queryPermits("horpo");
+    assertTrue(horpo.availablePermits() == 2);
+    assertTrue(ctx.queryPermits("imap").availablePermits() == 1);
+    assertTrue(ctx.queryPermits("horpo") == horpo);
+    assertTrue(ctx.withTimeLimit(60).queryPermits("horpo") == horpo);
+    assertTrue(ctx.withSolver(new LinearSmtSolver()).queryPermits("horpo") == horpo);
+    assertTrue(ctx.newRun().queryPermits("horpo") != horpo);
+    ProverContext single = ctx.withThreads(1);
+    assertTrue(single.queryPermits("horpo") != horpo);
+    assertTrue(single.queryPermits("horpo").availablePermits() == 1);
+  }
+
+  @Test
+  void testDeadline() {
+    ProverContext ctx = createContext();
+    assertFalse(ctx.queryDeadline().isLimited());
+    assertTrue(ctx.withTimeLimit(0) == ctx);
+    ProverContext limited = ctx.withTimeLimit(60);
+    assertTrue(limited.queryDeadline().isLimited());
+    assertTrue(limited.withThreads(1).queryDeadline() == limited.queryDeadline());
+    assertTrue(limited.withTimeLimit(3600).queryDeadline() == limited.queryDeadline());
+    assertFalse(limited.run(() -> Settings.isTimeUp()));
+    assertTrue(limited.run(() -> Deadline.current() == limited.queryDeadline()));
+    ProverContext expired = ctx.withDeadline(Deadline.after(0, TimeUnit.SECONDS));
+    assertTrue(expired.run(() -> Settings.isTimeUp()));
+  }
+
+  @Test
+  void testBindCarriesContextToOtherThreads() throws Exception {
+    ProverContext ctx = createContext("subcrit");
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      assertTrue(executor.submit(ctx.bind(() -> Settings.isDisabled("subcrit"))).get());
+      assertFalse(executor.submit(() -> Settings.isDisabled("subcrit")).get());
+    }
+    finally { executor.shutdown(); }
+  }
+
+  @Test
+  void testConcurrentContextsAreIndependent() throws Exception {
+    CyclicBarrier barrier = new CyclicBarrier(2);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<Boolean> a = executor.submit(createContext("graph").bind(() -> {
+        barrier.await();
+        return Settings.isDisabled("graph") && !Settings.isDisabled("imap");
+      }));
+      Future<Boolean> b = executor.submit(createContext("imap").bind(() -> {
+        barrier.await();
+        return Settings.isDisabled("imap") && !Settings.isDisabled("graph");
+      }));
+      assertTrue(a.get());
+      assertTrue(b.get());
+    }
+    finally { executor.shutdown(); }
+  }
+}
@@ -81,6 +81,26 @@ class DigraphTest {
     assertThrows(UnsupportedOperationException.class, () -> n0.remove(1));
   }
 
+  @Test
+  public void testPrimitiveNeighbours() {
+    Digraph g = createExampleGraph();
+    Set<Integer> n0 = g.getNeighbours(0);
+    assertTrue(g.getOutDegree(0) == 2);
+    assertTrue(g.getOutDegree(3) == 0);
+    assertTrue(g.nextNeighbour(0, 0) == 1);
+    assertTrue(g.nextNeighbour(0, 2) == 2);
+    assertTrue(g.nextNeighbour(0, 3) == -1);
+    assertTrue(g.nextNeighbour(3, 0) == -1);
+    assertTrue(g.nextNeighbour(0, 100) == -1);
+    g.addVertex();
+    g.addEdge(0, 4);
+    assertTrue(g.nextNeighbour(0, 3) == 4);
+    // the neighbours set is a view of the graph
+    assertTrue(n0.size() == 3);
+    assertTrue(n0.toString().equals("[1, 2, 4]"));
+    assertThrows(IndexingException.class, () -> g.nextNeighbour(5, 0));
+  }
+
   @Test
   void testDigraphNegativeSizeCreation() {
     Assertions.assertThrows(IllegalArgumentException.class, () -> {
@@ -5,6 +5,10 @@ import cora.data.digraph.SCC;
 import cora.data.digraph.TransitiveClosure;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
 class SCCTest {
 
   @Test
@@ -22,4 +26,40 @@ class SCCTest {
 //    System.out.println(scc);
 
   }
+
+  @Test
+  void testDeepCycleDoesNotOverflow() {
+    int n = 20000;
+    Digraph g = new Digraph(n);
+    for (int i = 0; i + 1 < n; i++) g.addEdge(i, i + 1);
+    SCC scc = new SCC(g);
+    assertEquals(n, scc.getNumberOfSCCs());
+    g.addEdge(n - 1, 0);
+    scc = new SCC(g);
+    assertEquals(1, scc.getNumberOfSCCs());
+    assertTrue(scc.isStronglyConnected(0, n - 1));
+  }
+
+  @Test
+  void testTopologicalOrder() {
+    // components {0,1}, {2}, {3,4,5} and {6}, with edges {0,1} -> {2} -> {3,4,5} and {0,1} -> {6}
+    Digraph g = new Digraph(7);
+    g.addEdge(0, 1); g.addEdge(1, 0);
+    g.addEdge(1, 2); g.addEdge(0, 6);
+    g.addEdge(2, 3);
+    g.addEdge(3, 4); g.addEdge(4, 5); g.addEdge(5, 3);
+    SCC scc = new SCC(g);
+    assertEquals(4, scc.getNumberOfSCCs());
+    assertTrue(scc.isStronglyConnected(3, 5));
+    assertFalse(scc.isStronglyConnected(2, 3));
+    List<Integer> order = scc.getTopologicalOrder();
+    assertEquals(4, order.size());
+    for (int u = 0; u < 7; u++) {
+      for (int v = 0; v < 7; v++) {
+        int a = scc.getSccId(u), b = scc.getSccId(v);
+        if (g.isAdjacent(u, v) && a != b) assertTrue(order.indexOf(a) < order.indexOf(b));
+      }
+    }
+    assertTrue(scc.getSccId(0) == order.getFirst());
+  }
 }
@@ -262,5 +262,34 @@ public class ReducerTest {
     term = reducer.leftmostInnermostReduce(term);
     assertTrue(term == null);
   }
-}
 
+  @Test
+  public void testNormaliseCFS() {
+    TRS trs = createCFS(true);
+    Reducer reducer = new Reducer(trs);
+    String str = "f(g(a, (λx::A.x)(b), a), λz.a)";
+    Term term = CoraInputReader.readTerm(str, trs);
+    Reduction reduction = reducer.normalise(term);
+    assertTrue(reduction.printAnswer().equals("Normalised input term to: f(g(b, a, b), λz.a)"));
+  }
+
+  @Test
+  public void testNormaliseReducesInsideReduct() {
+    TRS trs = createMSTRS();
+    Reducer reducer = new Reducer(trs);
+    // g(a, a, b) → f(b, a) → b and f(b, a) → b, after which the outer g(b, b, b) is a redex
+    String str = "g(g(a, a, b), f(b, a), b)";
+    Term term = CoraInputReader.readTerm(str, trs);
+    Reduction reduction = reducer.normalise(term);
+    assertTrue(reduction.printAnswer().equals("Normalised input term to: f(b, b)"));
+  }
+
+  @Test
+  public void testNormaliseNormalForm() {
+    TRS trs = createMSTRS();
+    Reducer reducer = new Reducer(trs);
+    Term term = CoraInputReader.readTerm("g(f(a, b), f(b, x), b)", trs);
+    Reduction reduction = reducer.normalise(term);
+    assertTrue(reduction.printAnswer().equals("Normalised input term to: g(f(a, b), f(b, x), b)"));
+  }
+}
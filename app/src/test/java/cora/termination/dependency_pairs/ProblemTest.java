@@ -14,6 +14,8 @@ import org.junit.jupiter.api.Test;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import charlie.reader.CoraInputReader;
 
 class ProblemTest {
 
@@ -52,4 +54,30 @@ class ProblemTest {
 //    });
 //  }
 
+  @Test
+  void testRemoveDPsRestrictsGraph() {
+    Problem p = DPGenerator.generateProblemFromTrs(CoraInputReader.readTrsFromString(
+      "f :: Int -> Int\ng :: Int -> Int\nh :: Int -> Int\n" +
+      "f(x) -> g(x)\ng(x) -> h(x)\nh(x) -> f(x)"));
+    assertTrue(p.getDPList().size() == 3);
+    Digraph graph = new Digraph(3);
+    graph.addEdge(0, 1);
+    graph.addEdge(1, 2);
+    graph.addEdge(2, 0);
+    graph.addEdge(2, 2);
+    Problem withGraph = new Problem(p.getDPList(), p.getTRS(), graph);
+
+    Problem q = withGraph.removeDPs(Set.of(0));
+    assertTrue(q.getDPList().size() == 2);
+    assertTrue(q.getDPList().get(0) == p.getDPList().get(1));
+    assertTrue(q.getDPList().get(1) == p.getDPList().get(2));
+    Digraph sub = q.getGraph().get();
+    assertTrue(sub.getNumberOfVertices() == 2);
+    assertTrue(sub.getNumberOfEdges() == 2);
+    assertTrue(sub.isAdjacent(0, 1));
+    assertTrue(sub.isAdjacent(1, 1));
+
+    // without a graph, none is created
+    assertTrue(p.removeDPs(Set.of(1, 2)).getGraph().isEmpty());
+  }
 }
@@ -0,0 +1,176 @@
+package cora.termination.dependency_pairs;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import java.util.concurrent.TimeUnit;
+
+import charlie.reader.CoraInputReader;
+import charlie.util.Deadline;
+import cora.config.ProverContext;
+import cora.io.OutputModule;
+import cora.io.ProofObject;
+import cora.termination.dependency_pairs.processors.Processor;
+import cora.termination.dependency_pairs.processors.ProcessorProofObject;
+
+class ProofSchedulerTest {
+  private static class SimpleProof extends ProcessorProofObject {
+    SimpleProof(Problem input, List<Problem> output) { super(input, output); }
+    SimpleProof(Problem input) { super(input); }
+    public String queryProcessorName() { return "Simple"; }
+    public void justify(OutputModule module) {}
+  }
+
+  /**
+   * Splits every problem into singletons, and removes singletons unless their lhs is bad.  On the
+   * singleton whose lhs is slow, it first waits for a while; if interrupted, it gives up.
+   */
+  private static class SplitProcessor implements Processor {
+    private final String _bad;
+    private final String _slow;
+    private final AtomicInteger _calls;
+    SplitProcessor(String bad, AtomicInteger calls) { this(bad, "none", calls); }
+    SplitProcessor(String bad, String slow, AtomicInteger calls) {
+      _bad = bad; _slow = slow; _calls = calls;
+    }
+    public boolean isApplicable(Problem dpp) { return true; }
+    public ProcessorProofObject processDPP(Problem dpp) {
+      _calls.incrementAndGet();
+      List<DP> dps = dpp.getDPList();
+      if (dps.size() == 1) {
+        String name = dps.get(0).lhs().queryRoot().queryName();
+        if (name.equals(_slow)) {
+          try { Thread.sleep(200); }
+          catch (InterruptedException e) { return new SimpleProof(dpp); }
+        }
+        if (name.equals(_bad)) return new SimpleProof(dpp);
+        return new SimpleProof(dpp, List.of());
+      }
+      ArrayList<Problem> ret = new ArrayList<Problem>();
+      for (DP dp : dps) ret.add(new Problem(List.of(dp), dpp.getTRS()));
+      return new SimpleProof(dpp, ret);
+    }
+  }
+
+  private Problem createProblem() {
+    return DPGenerator.generateProblemFromTrs(CoraInputReader.readTrsFromString(
+      "f :: Int -> Int\ng :: Int -> Int\nh :: Int -> Int\n" +
+      "f(x) -> g(x)\ng(x) -> h(x)\nh(x) -> f(x)"));
+  }
+
+  private DPProofObject solve(String bad, int threads, AtomicInteger calls) {
+    return solve(bad, "none", threads, calls);
+  }
+
+  private DPProofObject solve(String bad, String slow, int threads, AtomicInteger calls) {
+    Problem p = createProblem();
+    DPProofObject proof = new DPProofObject(null, p);
+    ProofScheduler scheduler = new ProofScheduler(() ->
+      List.of(new SplitProcessor(bad, slow, calls)), threads);
+    if (scheduler.solve(p, proof)) proof.setTerminating();
+    return proof;
+  }
+
+  @Test
+  void testSequentialSuccess() {
+    AtomicInteger calls = new AtomicInteger(0);
+    DPProofObject proof = solve("none", 1, calls);
+    assertTrue(proof.queryAnswer() == ProofObject.Answer.YES);
+    assertTrue(calls.get() == 4);
+  }
+
+  @Test
+  void testParallelSuccess() {
+    AtomicInteger calls = new AtomicInteger(0);
+    DPProofObject proof = solve("none", 4, calls);
+    assertTrue(proof.queryAnswer() == ProofObject.Answer.YES);
+    assertTrue(calls.get() == 4);
+  }
+
+  @Test
+  void testSequentialFailure() {
+    AtomicInteger calls = new AtomicInteger(0);
+    DPProofObject proof = solve("f#", 1, calls);
+    assertTrue(proof.queryAnswer() == ProofObject.Answer.MAYBE);
+    assertTrue(calls.get() == 2);
+  }
+
+  /** Returns the name of the root symbol of the lhs of the only DP in the given problem. */
+  private String rootOf(Problem problem) {
+    assertTrue(problem.getDPList().size() == 1);
+    return problem.getDPList().get(0).lhs().queryRoot().queryName();
+  }
+
+  /**
+   * Checks that the given proof consists of the split of the initial problem, followed by the
+   * removal of the given singletons, and fails on the given singleton.
+   */
+  private void checkFailedProof(DPProofObject proof, String failure, String... removed) {
+    assertTrue(proof.queryAnswer() == ProofObject.Answer.MAYBE);
+    assertTrue(rootOf(proof.queryFailedProblem()).equals(failure));
+    List<ProcessorProofObject> proofs = proof.queryProcessorProofs();
+    assertTrue(proofs.size() == removed.length + 1);
+    assertTrue(proofs.get(0).queryResults().size() == 3);
+    for (int i = 0; i < removed.length; i++) {
+      assertTrue(rootOf(proofs.get(i + 1).queryInput()).equals(removed[i]));
+      assertTrue(proofs.get(i + 1).queryResults().isEmpty());
+    }
+  }
+
+  @Test
+  void testParallelFailure() {
+    // the output should be the same as for the sequential loop, whatever the thread timing
+    for (int i = 0; i < 20; i++) {
+      checkFailedProof(solve("g#", 3, new AtomicInteger(0)), "g#", "f#");
+      checkFailedProof(solve("f#", 3, new AtomicInteger(0)), "f#");
+      checkFailedProof(solve("h#", 3, new AtomicInteger(0)), "h#", "f#", "g#");
+    }
+  }
+
+  @Test
+  void testParallelFailureAfterSlowProblem() {
+    // the failure of h# is found first, which interrupts f#; but the sequential loop would have
+    // handled f# (and g#) before h#, so this should still be reported
+    AtomicInteger calls = new AtomicInteger(0);
+    DPProofObject proof = solve("h#", "f#", 3, calls);
+    checkFailedProof(proof, "h#", "f#", "g#");
+    // if the slow problem fails itself, the later problems are not reported
+    checkFailedProof(solve("f#", "f#", 3, new AtomicInteger(0)), "f#");
+    checkFailedProof(solve("f#", "f#", 1, new AtomicInteger(0)), "f#");
+  }
+
+  @Test
+  void testExpiredDeadlineStartsNoProcessors() {
+    AtomicInteger calls = new AtomicInteger(0);
+    ProverContext context = ProverContext.current().withDeadline(
+      Deadline.after(0, TimeUnit.SECONDS));
+    DPProofObject proof = context.run(() -> solve("none", 1, calls));
+    assertTrue(proof.queryAnswer() == ProofObject.Answer.MAYBE);
+    assertTrue(calls.get() == 0);
+  }
+
+  @Test
+  void testProcessorGetsPartOfTheRemainingTime() {
+    ArrayList<Deadline> seen = new ArrayList<Deadline>();
+    Processor recorder = new Processor() {
+      public boolean isApplicable(Problem dpp) { return true; }
+      public ProcessorProofObject processDPP(Problem dpp) {
+        seen.add(Deadline.current());
+        return new SimpleProof(dpp, List.of());
+      }
+    };
+    Problem p = createProblem();
+    Deadline total = Deadline.after(1, TimeUnit.HOURS);
+    ProverContext context = ProverContext.current().withDeadline(total);
+    assertTrue(context.run(() -> new ProofScheduler(() -> List.of(recorder), 1)
+                                   .solve(p, new DPProofObject(null, p))));
+    assertTrue(seen.size() == 1);
+    long share = seen.get(0).queryRemaining(TimeUnit.MINUTES);
+    assertTrue(share >= 25 && share <= 30);
+  }
+}
@@ -0,0 +1,68 @@
+/**************************************************************************************************
+ Copyright 2024 Cynthia Kop
+
+ Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software distributed under the
+ License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ express or implied.
+ See the License for the specific language governing permissions and limitations under the License.
+ *************************************************************************************************/
+
+package cora.termination.dependency_pairs.processors;
+
+import charlie.reader.CoraInputReader;
+import charlie.solvesmt.LinearSmtSolver;
+import charlie.smt.SmtSolver;
+import cora.config.Settings;
+import cora.data.digraph.Digraph;
+import cora.termination.dependency_pairs.DPGenerator;
+import cora.termination.dependency_pairs.Problem;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApproximatorTest {
+  /** Creates a problem with 12 DPs, where fi(x) calls f(i+1)(x - 1) under a constraint. */
+  private Problem createChain() {
+    StringBuilder program = new StringBuilder();
+    for (int i = 0; i < 12; i++) program.append("f" + i + " :: Int -> Int\n");
+    for (int i = 0; i < 12; i++) {
+      int j = (i + 1) % 12;
+      program.append("f" + i + "(x) -> f" + j + "(x - 1) | x > " + i + "\n");
+    }
+    return DPGenerator.generateProblemFromTrs(
+      CoraInputReader.readTrsFromString(program.toString()));
+  }
+
+  @Test
+  public void testParallelGraphEqualsSequentialGraph() {
+    SmtSolver oldSolver = Settings.querySolver();
+    int oldThreads = Settings.queryThreads();
+    Settings.setSolver(new LinearSmtSolver());
+    try {
+      Problem problem = createChain();
+      Settings.setThreads(1);
+      Digraph sequential = Approximator.problemToGraph(problem);
+      Settings.setThreads(4);
+      Digraph parallel = Approximator.problemToGraph(problem);
+      int n = problem.getDPList().size();
+      assertTrue(n == 12);
+      assertTrue(sequential.getNumberOfEdges() == parallel.getNumberOfEdges());
+      for (int i = 0; i < n; i++) {
+        for (int j = 0; j < n; j++) {
+          assertTrue(sequential.isAdjacent(i, j) == parallel.isAdjacent(i, j));
+        }
+      }
+      assertTrue(parallel.getNumberOfEdges() >= 11);
+    }
+    finally {
+      Settings.setSolver(oldSolver);
+      Settings.setThreads(oldThreads);
+    }
+  }
+}
@@ -0,0 +1,143 @@
+package cora.termination.dependency_pairs.processors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import charlie.reader.CoraInputReader;
+import charlie.solvesmt.LinearSmtSolver;
+import charlie.util.Pair;
+import cora.config.ProverContext;
+import cora.config.Settings;
+import cora.io.OutputModule;
+import cora.termination.dependency_pairs.DPGenerator;
+import cora.termination.dependency_pairs.Problem;
+
+class PortfolioProcessorTest {
+  private static class SimpleProof extends ProcessorProofObject {
+    private String _name;
+    SimpleProof(String name, Problem input, List<Problem> output) {
+      super(input, output);
+      _name = name;
+    }
+    SimpleProof(String name, Problem input) { super(input); _name = name; }
+    public String queryProcessorName() { return _name; }
+    public void justify(OutputModule module) {}
+  }
+
+  /**
+   * Removes all DPs, or fails, after waiting for the given time (unless interrupted first).  If
+   * another processor is given, it first waits until that one has started.
+   */
+  private static class WaitingProcessor implements Processor {
+    private final boolean _succeed;
+    private final long _millis;
+    private final WaitingProcessor _after;
+    private final CountDownLatch _started = new CountDownLatch(1);
+    private final CountDownLatch _interrupted = new CountDownLatch(1);
+    WaitingProcessor(boolean succeed, long millis) { this(succeed, millis, null); }
+    WaitingProcessor(boolean succeed, long millis, WaitingProcessor after) {
+      _succeed = succeed;
+      _millis = millis;
+      _after = after;
+    }
+    public boolean isApplicable(Problem dpp) { return true; }
+    public ProcessorProofObject processDPP(Problem dpp) {
+      _started.countDown();
+      try {
+        if (_after != null) _after._started.await();
+        Thread.sleep(_millis);
+      }
+      catch (InterruptedException e) {
+        _interrupted.countDown();
+        return new SimpleProof("interrupted", dpp);
+      }
+      if (_succeed) return new SimpleProof("success", dpp, List.of());
+      return new SimpleProof("failure", dpp);
+    }
+    boolean wasInterrupted() throws InterruptedException {
+      return _interrupted.await(5, TimeUnit.SECONDS);
+    }
+  }
+
+  private Problem createProblem() {
+    return DPGenerator.generateProblemFromTrs(CoraInputReader.readTrsFromString(
+      "f :: Int -> Int\nf(x) -> f(x - 1) | x > 0"));
+  }
+
+  @Test
+  void testFastSuccessWins() throws InterruptedException {
+    WaitingProcessor slow = new WaitingProcessor(true, 60000);
+    // the fast processor only finishes once the slow one is running, so it must be interrupted
+    WaitingProcessor fast = new WaitingProcessor(true, 0, slow);
+    PortfolioProcessor portfolio = new PortfolioProcessor(List.of(
+      new Pair<String,Processor>("imap", slow), new Pair<String,Processor>("graph", fast)));
+    ProcessorProofObject ppo = portfolio.processDPP(createProblem());
+    assertTrue(ppo.applicable());
+    assertTrue(ppo.queryProcessorName().equals("success"));
+    assertTrue(slow.wasInterrupted());
+  }
+
+  @Test
+  void testFailureDoesNotWin() {
+    WaitingProcessor failing = new WaitingProcessor(false, 0);
+    WaitingProcessor succeeding = new WaitingProcessor(true, 50);
+    PortfolioProcessor portfolio = new PortfolioProcessor(List.of(
+      new Pair<String,Processor>("graph", failing),
+      new Pair<String,Processor>("subcrit", succeeding)));
+    ProcessorProofObject ppo = portfolio.processDPP(createProblem());
+    assertTrue(ppo.applicable());
+    assertTrue(ppo.queryProcessorName().equals("success"));
+  }
+
+  @Test
+  void testAllFail() {
+    PortfolioProcessor portfolio = new PortfolioProcessor(List.of(
+      new Pair<String,Processor>("graph", new WaitingProcessor(false, 10)),
+      new Pair<String,Processor>("subcrit", new WaitingProcessor(false, 0))));
+    ProcessorProofObject ppo = portfolio.processDPP(createProblem());
+    assertFalse(ppo.applicable());
+  }
+
+  @Test
+  void testCrashedProcessorDoesNotAbortPortfolio() {
+    Processor crashing = new Processor() {
+      public boolean isApplicable(Problem dpp) { return true; }
+      public ProcessorProofObject processDPP(Problem dpp) {
+        throw new IllegalStateException("crash");
+      }
+    };
+    PortfolioProcessor portfolio = new PortfolioProcessor(List.of(
+      new Pair<String,Processor>("graph", crashing),
+      new Pair<String,Processor>("subcrit", new WaitingProcessor(true, 50))));
+    ProcessorProofObject ppo = portfolio.processDPP(createProblem());
+    assertTrue(ppo.applicable());
+    assertTrue(ppo.queryProcessorName().equals("success"));
+    portfolio = new PortfolioProcessor(List.of(new Pair<String,Processor>("graph", crashing)));
+    assertFalse(portfolio.processDPP(createProblem()).applicable());
+  }
+
+  @Test
+  void testProcessorsRunInCallerContext() {
+    Processor checking = new Processor() {
+      public boolean isApplicable(Problem dpp) { return true; }
+      public ProcessorProofObject processDPP(Problem dpp) {
+        if (Settings.isDisabled("mine")) return new SimpleProof("success", dpp, List.of());
+        return new SimpleProof("failure", dpp);
+      }
+    };
+    PortfolioProcessor portfolio = new PortfolioProcessor(List.of(
+      new Pair<String,Processor>("graph", checking),
+      new Pair<String,Processor>("subcrit", new WaitingProcessor(false, 0))));
+    ProverContext context = new ProverContext(new LinearSmtSolver(), Set.of("mine"), 2, true,
+                                              Map.of());
+    assertTrue(context.run(() -> portfolio.processDPP(createProblem())).applicable());
+    assertFalse(portfolio.processDPP(createProblem()).applicable());
+  }
+}
@@ -85,6 +85,111 @@ public class HorpoConstraintListTest {
     assertTrue(lst.toString().equals("@ [f(x, d(y)) ≻ g(x, x) | x > 0 { x }]\n"));
   }
 
+  @Test
+  public void testStoreRenamedCopies() {
+    TRS trs = makeTrs("f :: Int -> Int -> Int g :: Int -> Int -> Int d :: Int -> Int");
+    HorpoConstraintList lst = makeList(new HorpoParameters(1000, false), trs);
+    Rule rule1 = CoraInputReader.readRule("f(x, d(y)) -> g(y, x) | x > y", trs);
+    Rule rule2 = CoraInputReader.readRule("f(x, d(y)) -> g(y, x) | x > y", trs);
+    BVar x1 = lst.store(rule1.queryLeftSide(), HorpoConstraintList.StartRelation.Geq,
+                        rule1.queryRightSide(), rule1.queryConstraint());
+    BVar x2 = lst.store(rule2.queryLeftSide(), HorpoConstraintList.StartRelation.Geq,
+                        rule2.queryRightSide(), rule2.queryConstraint());
+    // the variables of rule1 and rule2 are different objects, but have the same names
+    assertTrue(x1 == x2);
+    // the same holds if the theory variables correspond
+    Term truth = TheoryFactory.createValue(true);
+    Variable y2 = rule2.queryRightSide().queryArgument(1).queryVariable();
+    BVar x3 = lst.getVariableFor(rule2.queryLeftSide(), Relation.RPO, rule2.queryRightSide(),
+                                 truth, new TreeSet<Variable>(Set.of(y2)));
+    Variable y1 = rule1.queryRightSide().queryArgument(1).queryVariable();
+    BVar x4 = lst.getVariableFor(rule1.queryLeftSide(), Relation.RPO, rule1.queryRightSide(),
+                                 truth, new TreeSet<Variable>(Set.of(y1)));
+    assertTrue(x3 == x4);
+    // but not if they do not
+    Variable x = rule1.queryRightSide().queryArgument(2).queryVariable();
+    BVar x5 = lst.getVariableFor(rule1.queryLeftSide(), Relation.RPO, rule1.queryRightSide(),
+                                 truth, new TreeSet<Variable>(Set.of(x)));
+    assertTrue(x3 != x5);
+    assertTrue(lst.toString().equals(
+      "@ [f(x, d(y)) ≽ g(y, x) | x > y { x y }]\n" +
+      "@ [f(x, d(y)) ▷ g(y, x) | true { y }]\n" +
+      "@ [f(x, d(y)) ▷ g(y, x) | true { x }]\n"));
+  }
+
+  @Test
+  public void testStoreMatchingNonRenamings() {
+    TRS trs = makeTrs("f :: Int -> Int -> Int g :: Int -> Int -> Int d :: Int -> Int");
+    HorpoConstraintList lst = makeList(new HorpoParameters(1000, false), trs);
+    Term constraint = TheoryFactory.createValue(true);
+    TreeSet<Variable> empty = new TreeSet<Variable>();
+    // f(x, y) matches f(x, x), but the substitution is not injective
+    Term left1 = CoraInputReader.readTerm("f(x, y)", trs);
+    Term left2 = CoraInputReader.readTerm("f(x, x)", trs);
+    BVar x1 = lst.getVariableFor(left1, Relation.GEQ, left1.queryArgument(1), constraint, empty);
+    BVar x2 = lst.getVariableFor(left2, Relation.GEQ, left2.queryArgument(1), constraint, empty);
+    assertTrue(x1 != x2);
+    // two different variables with the same name are not the same as a single variable
+    Variable a = TermFactory.createVar("x", type("Int"));
+    Variable b = TermFactory.createVar("x", type("Int"));
+    FunctionSymbol f = trs.lookupSymbol("f");
+    Term left3 = TermFactory.createApp(f, a, b);
+    BVar x3 = lst.getVariableFor(left3, Relation.GEQ, a, constraint, empty);
+    assertTrue(x3 != x2);
+    // f(x, y) matches f(x, d(y)), but the substitution does not map to variables
+    Term left4 = CoraInputReader.readTerm("f(x, d(y))", trs);
+    BVar x4 = lst.getVariableFor(left4, Relation.GEQ, left4.queryArgument(1), constraint, empty);
+    assertTrue(x4 != x1);
+    // f(x, y) and f(y, x) are renamings of each other, but the names are not preserved
+    Term left5 = CoraInputReader.readTerm("f(y, x)", trs);
+    BVar x5 = lst.getVariableFor(left5, Relation.GEQ, left5.queryArgument(1), constraint, empty);
+    assertTrue(x5 != x1);
+    // a renaming with a different relation is a different requirement
+    Term left6 = CoraInputReader.readTerm("f(x, y)", trs);
+    BVar x6 = lst.getVariableFor(left6, Relation.GEQNOGR, left6.queryArgument(1), constraint,
+                                 empty);
+    assertTrue(x6 != x1);
+    // but an actual renaming is recognised
+    Term left7 = CoraInputReader.readTerm("f(x, y)", trs);
+    BVar x7 = lst.getVariableFor(left7, Relation.GEQ, left7.queryArgument(1), constraint, empty);
+    assertTrue(x7 == x1);
+  }
+
+  @Test
+  public void testStoreWithBinders() {
+    TRS trs = makeTrs("h :: (Int -> Int) -> Int -> Int d :: Int -> Int -> Int");
+    HorpoConstraintList lst = makeList(new HorpoParameters(1000, false), trs);
+    Term constraint = TheoryFactory.createValue(true);
+    TreeSet<Variable> empty = new TreeSet<Variable>();
+    Term left1 = CoraInputReader.readTerm("h(λx.d(x, y), y)", trs);
+    Term left2 = CoraInputReader.readTerm("h(λx.d(x, y), y)", trs);
+    Term left3 = CoraInputReader.readTerm("h(λz.d(z, y), y)", trs);
+    Term left4 = CoraInputReader.readTerm("h(λx.d(y, x), y)", trs);
+    BVar x1 = lst.getVariableFor(left1, Relation.GREATER, left1.queryArgument(2), constraint,
+                                 empty);
+    // a copy with a different free variable y
+    BVar x2 = lst.getVariableFor(left2, Relation.GREATER, left2.queryArgument(2), constraint,
+                                 empty);
+    // a copy with a different free variable y, and a different name for the bound variable
+    BVar x3 = lst.getVariableFor(left3, Relation.GREATER, left3.queryArgument(2), constraint,
+                                 empty);
+    // the bound variable is used in a different place
+    BVar x4 = lst.getVariableFor(left4, Relation.GREATER, left4.queryArgument(2), constraint,
+                                 empty);
+    assertTrue(x1 == x2);
+    assertTrue(x1 == x3);
+    assertTrue(x1 != x4);
+    // the same term, but with the free variable y as bound variable
+    Term left5 = CoraInputReader.readTerm("h(λy.d(y, y), y)", trs);
+    BVar x5 = lst.getVariableFor(left5, Relation.GREATER, left5.queryArgument(2), constraint,
+                                 empty);
+    assertTrue(x1 != x5);
+    assertTrue(lst.toString().equals(
+      "@ [h(λx.d(x, y), y) ≻ y | true { }]\n" +
+      "@ [h(λx.d(y, x), y) ≻ y | true { }]\n" +
+      "@ [h(λy1.d(y1, y1), y) ≻ y | true { }]\n"));
+  }
+
   /**
    * This sets up a simplification problem l <relation> r | phi { x1,...,xn,y }, where l and r have
    * the given types and x1,...,xn are the variables of phi.  Then, it does a single simplification
@@ -297,7 +402,7 @@ public class HorpoConstraintListTest {
   @Test
   public void testGreaterDown() {
     FakeSolver solver = new FakeSolver(true, false);
-    Settings.smtSolver = solver;
+    Settings.setSolver(solver);
     Pair<HorpoConstraintList,SmtProblem> pair = setupSimplify("x+1", "Int", "x-1", "Int", "Int",
                                                          "x >= -4", Relation.GREATERTHEORY, "");
     assertTrue(pair.fst().toString().equals("$ [x + 1 ≻{theory} x - 1 | x ≥ -4 { x }]\n"));
@@ -316,7 +421,7 @@ public class HorpoConstraintListTest {
   @Test
   public void testGreaterNeither() {
     FakeSolver solver = new FakeSolver(false, false);
-    Settings.smtSolver = solver;
+    Settings.setSolver(solver);
     Pair<HorpoConstraintList,SmtProblem> pair = setupSimplify("x+y", "Int", "y", "Int", "Int",
                                                          "x > y", Relation.GREATERTHEORY, "");
     assertTrue(pair.fst().toString().equals("$ [x + y ≻{theory} y | x > y { x y }]\n"));
@@ -335,7 +440,7 @@ public class HorpoConstraintListTest {
   @Test
   public void testGeqUp() {
     FakeSolver solver = new FakeSolver(false, true);
-    Settings.smtSolver = solver;
+    Settings.setSolver(solver);
     Pair<HorpoConstraintList,SmtProblem> pair = setupSimplify("x+y", "Int", "y", "Int", "Int",
                                                          "x >= 0", Relation.GEQTHEORY, "");
     assertTrue(pair.fst().toString().equals("$ [x + y ≽{theory} y | x ≥ 0 { x y }]\n"));
@@ -354,7 +459,7 @@ public class HorpoConstraintListTest {
   @Test
   public void testGeqBoth() {
     FakeSolver solver = new FakeSolver(true, true);
-    Settings.smtSolver = solver;
+    Settings.setSolver(solver);
     Pair<HorpoConstraintList,SmtProblem> pair = setupSimplify("x+y", "Int", "y", "Int", "Int",
                                                          "x = 0", Relation.GEQTHEORY, "");
     assertTrue(pair.fst().toString().equals("$ [x + y ≽{theory} y | x = 0 { x y }]\n"));
@@ -373,7 +478,7 @@ public class HorpoConstraintListTest {
   @Test
   public void testGreaterWhenNotAllVariablesAreConstrained() {
     FakeSolver solver = new FakeSolver(true, true);
-    Settings.smtSolver = solver;
+    Settings.setSolver(solver);
     Pair<HorpoConstraintList,SmtProblem> pair = setupSimplify("x+y", "Int", "x", "Int", "Int",
                                                          "y = 0", Relation.GEQTHEORY, "");
     assertTrue(pair.fst().toString().equals("$ [x + y ≽{theory} x | y = 0 { y }]\n"));
@@ -386,7 +491,7 @@ public class HorpoConstraintListTest {
   @Test
   public void testBoolComparisonGeqTrue() {
     FakeSolver solver = new FakeSolver(true);
-    Settings.smtSolver = solver;
+    Settings.setSolver(solver);
     Pair<HorpoConstraintList,SmtProblem> pair = setupSimplify("x", "Bool", "x ∧ false", "Bool",
                                                            "Bool", "x", Relation.GEQTHEORY, "");
     assertTrue(pair.fst().toString().equals("$ [x ≽{theory} x ∧ false | x { x }]\n"));
@@ -399,7 +504,7 @@ public class HorpoConstraintListTest {
   @Test
   public void testBoolComparisonGreaterFalse() {
     FakeSolver solver = new FakeSolver(false);
-    Settings.smtSolver = solver;
+    Settings.setSolver(solver);
     Pair<HorpoConstraintList,SmtProblem> pair = setupSimplify("x", "Bool", "x ∨ false", "Bool",
                                                        "Bool", "x", Relation.GREATERTHEORY, "");
     assertTrue(pair.fst().toString().equals("$ [x ≻{theory} x ∨ false | x { x }]\n"));
@@ -64,6 +64,26 @@ public class HorpoParametersTest {
       "[pred(g)] >= 0\n"));
   }
 
+  @Test
+  public void testBoundPrecedence() {
+    FunctionSymbol f = TermFactory.createConstant("f", type("Int -> Int"));
+    FunctionSymbol g = TermFactory.createConstant("g", type("Int -> Int -> Int"));
+    FunctionSymbol minus = TheoryFactory.minusSymbol;
+    HorpoParameters horpo = new HorpoParameters(40, false);
+    horpo.getPrecedenceFor(f);
+    horpo.getPrecedenceFor(minus);
+    horpo.getPrecedenceFor(g);
+    horpo.boundPrecedence();
+    assertTrue(horpo.queryProblem().toString().equals(
+      "[alwaystrue]\n" +
+      "[pred(f)] >= 0\n" +
+      "0 >= 1 + [pred(-)]\n" +
+      "[pred(g)] >= 0\n" +
+      "1 + [pred(-)] >= 0\n" +
+      "1 >= [pred(f)]\n" +
+      "1 >= [pred(g)]\n"));
+  }
+
   @Test
   public void testStatusFor() {
     FunctionSymbol f = TermFactory.createConstant("f", type("Int -> Int"));